@@ -0,0 +1,107 @@
+package moneytransfer.database;
+
+import ch.vorburger.exec.ManagedProcessException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AccountBalanceRepositoryMySqlImplBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+    private static final String CURRENCY = "GBP";
+
+    @Param({"1000"})
+    int accountCount;
+
+    Vertx vertx;
+    JDBCClient jdbcClient;
+    AccountBalanceRepositoryMySqlImpl accountBalanceRepository;
+
+    @Setup(Level.Trial)
+    public void setup() throws ManagedProcessException {
+        Database.start();
+        vertx = Vertx.vertx();
+        jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx);
+        accountBalanceRepository = new AccountBalanceRepositoryMySqlImpl(jdbcClient, new TransferRetryPolicy(vertx, 3, 5, 200));
+
+        executeUpdate("DROP TABLE IF EXISTS account_balance");
+        executeUpdate("DROP TABLE IF EXISTS account");
+        new AccountRepositoryMySqlImpl(jdbcClient).createTable().toBlocking().value();
+        accountBalanceRepository.createTable().toBlocking().value();
+        for (int i = 0; i < accountCount; i++) {
+            executeUpdate("INSERT INTO account ( account_id ) VALUES ( ? )", accountId(i));
+            executeUpdate("INSERT INTO account_balance ( account_id, currency, balance ) VALUES ( ?, ?, 1000000000 )", accountId(i), CURRENCY);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executeUpdate("DROP TABLE account_balance");
+        executeUpdate("DROP TABLE account");
+        vertx.rxClose().toBlocking().value();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transferMoney1Caller() {
+        transferBetweenRandomAccounts();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void transferMoney8Callers() {
+        transferBetweenRandomAccounts();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void transferMoney64Callers() {
+        transferBetweenRandomAccounts();
+    }
+
+    private void transferBetweenRandomAccounts() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(accountCount);
+        int destination = (source + 1 + random.nextInt(accountCount - 1)) % accountCount;
+        accountBalanceRepository.transferMoney(accountId(source), accountId(destination), AMOUNT, CURRENCY).toBlocking().value();
+    }
+
+    private void executeUpdate(String statement, Object... params) {
+        JsonArray jsonParams = new JsonArray();
+        for (Object param : params) {
+            jsonParams.add(param);
+        }
+        jdbcClient.rxGetConnection().flatMap(sqlConnection ->
+            sqlConnection.rxUpdateWithParams(statement, jsonParams)
+                .doAfterTerminate(sqlConnection::close))
+            .toBlocking().value();
+    }
+
+    private static String accountId(int index) {
+        return String.format("%08d", index);
+    }
+}
@@ -0,0 +1,64 @@
+package moneytransfer.handlers;
+
+import io.vertx.core.json.Json;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.models.MoneyTransfer;
+import moneytransfer.money.FixedPointMoney;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyTransferDecodeBenchmark {
+
+    @Param({"10.24", "1262621612621643843232378.3434"})
+    String amount;
+
+    String body;
+
+    @Setup
+    public void setup() {
+        body = "{ \"sourceAccount\": \"12345678\", \"destinationAccount\": \"87654321\", \"amount\": \"" + amount + "\", \"currency\": \"GBP\" }";
+    }
+
+    @Benchmark
+    public MoneyTransfer decode() {
+        return Json.decodeValue(body, MoneyTransfer.class);
+    }
+
+    @Benchmark
+    public void decodeAndParseBigDecimal(Blackhole blackhole) {
+        MoneyTransfer moneyTransfer = Json.decodeValue(body, MoneyTransfer.class);
+        blackhole.consume(moneyTransfer);
+        blackhole.consume(new BigDecimal(moneyTransfer.getAmount()));
+    }
+
+    @Benchmark
+    public void decodeAndParseFixedPoint(Blackhole blackhole) {
+        MoneyTransfer moneyTransfer = Json.decodeValue(body, MoneyTransfer.class);
+        blackhole.consume(moneyTransfer);
+        try {
+            blackhole.consume(FixedPointMoney.parse(moneyTransfer.getAmount(), 4));
+        } catch (MoneyOverflowException | MoneyTooManyDecimalPlacesException ex) {
+            blackhole.consume(ex);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package moneytransfer.services;
+
+import moneytransfer.database.AccountBalanceRepository;
+import moneytransfer.database.AccountRepository;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyTransferServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("10.24");
+
+    @Param({"false", "true"})
+    boolean repositoryChecksAccountsExist;
+
+    MoneyTransferService moneyTransferService;
+
+    @Setup
+    public void setup() {
+        moneyTransferService = new MoneyTransferService(new StubAccountRepository(), new StubAccountBalanceRepository(repositoryChecksAccountsExist));
+    }
+
+    @Benchmark
+    public void transferMoney(Blackhole blackhole) {
+        moneyTransferService.transferMoney("12345678", "87654321", AMOUNT, "GBP")
+            .subscribe(blackhole::consume, blackhole::consume);
+    }
+
+    @Benchmark
+    public void transferMoneyFromString(Blackhole blackhole) {
+        moneyTransferService.transferMoney("12345678", "87654321", "10.24", "GBP")
+            .subscribe(blackhole::consume, blackhole::consume);
+    }
+
+    private static class StubAccountRepository implements AccountRepository {
+
+        @Override
+        public Single<Void> createTable() {
+            return Single.just(null);
+        }
+
+        @Override
+        public Single<Boolean> doesAccountExist(String accountId) {
+            return Single.just(true);
+        }
+
+        @Override
+        public Single<Set<String>> findExistingAccounts(Collection<String> accountIds) {
+            return Single.just(new HashSet<>(accountIds));
+        }
+    }
+
+    private static class StubAccountBalanceRepository implements AccountBalanceRepository {
+
+        private final boolean checksAccountsExist;
+
+        private StubAccountBalanceRepository(boolean checksAccountsExist) {
+            this.checksAccountsExist = checksAccountsExist;
+        }
+
+        @Override
+        public Single<Void> createTable() {
+            return Single.just(null);
+        }
+
+        @Override
+        public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+            return Single.just(null);
+        }
+
+        @Override
+        public boolean checksAccountsExist() {
+            return checksAccountsExist;
+        }
+
+        @Override
+        public Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode) {
+            return Single.just(null);
+        }
+
+        @Override
+        public Single<Map<String, BigDecimal>> getBalances(String accountId) {
+            return Single.just(new HashMap<>());
+        }
+
+        @Override
+        public Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances) {
+            return Single.just(new ArrayList<>());
+        }
+
+        @Override
+        public Single<Void> deleteAccounts(Collection<String> accountIds) {
+            return Single.just(null);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package moneytransfer;
+
+import com.google.inject.Inject;
+import io.vertx.core.Future;
+import io.vertx.rxjava.core.AbstractVerticle;
+import moneytransfer.binary.BinaryTransferConnection;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.services.MoneyTransferService;
+
+public class BinaryServerVerticle extends AbstractVerticle {
+
+    @Inject
+    MoneyTransferService moneyTransferService;
+
+    @Inject
+    Metrics metrics;
+
+    @Override
+    public void start(Future<Void> future) {
+        int maxInFlight = config().getInteger("maxInFlightPerConnection", 1024);
+        vertx
+            .createNetServer()
+            .connectHandler((socket) -> new BinaryTransferConnection(socket, moneyTransferService, metrics, maxInFlight))
+            .rxListen(config().getInteger("port", 1235), "localhost")
+            .subscribe((__) -> future.complete(), future::fail);
+    }
+}
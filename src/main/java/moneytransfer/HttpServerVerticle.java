@@ -0,0 +1,32 @@
+package moneytransfer;
+
+import com.google.inject.Inject;
+import io.prometheus.client.Counter;
+import io.vertx.core.Future;
+import io.vertx.rxjava.core.AbstractVerticle;
+import io.vertx.rxjava.ext.web.Router;
+import moneytransfer.metrics.Metrics;
+
+public class HttpServerVerticle extends AbstractVerticle {
+
+    @Inject
+    MainRouter mainRouter;
+
+    @Inject
+    Metrics metrics;
+
+    @Override
+    public void start(Future<Void> future) {
+        Counter.Child requests = metrics.requestCounter(String.valueOf(config().getInteger("instance", 0)));
+        Router router = mainRouter.router();
+        metrics.monitorEventLoop(vertx);
+        vertx
+            .createHttpServer()
+            .requestHandler((request) -> {
+                requests.inc();
+                router.accept(request);
+            })
+            .rxListen(1234, "localhost")
+            .subscribe((__) -> future.complete(), future::fail);
+    }
+}
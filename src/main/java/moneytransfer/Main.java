@@ -1,14 +1,32 @@
 package moneytransfer;
 
 import ch.vorburger.exec.ManagedProcessException;
-import ch.vorburger.mariadb4j.DB;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.rxjava.core.Vertx;
+import moneytransfer.database.Database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class Main {
 
-    public static void main(String[] args) throws ManagedProcessException {
-        DB db = DB.newEmbeddedDB(3306);
-        db.start();
-        Vertx.vertx().deployVerticle(MainVerticle.class.getName());
+    public static void main(String[] args) throws ManagedProcessException, IOException {
+        JsonObject config = new JsonObject();
+        if (args.length > 0) {
+            config = new JsonObject(new String(Files.readAllBytes(Paths.get(args[0]))));
+        }
+
+        Database.start(3306, config.getJsonObject("database", new JsonObject()).getString("dataDirectory"));
+        JsonArray shards = config.getJsonObject("sharding", new JsonObject()).getJsonArray("shards", new JsonArray());
+        for (int i = 0; i < shards.size(); i++) {
+            JsonObject shard = shards.getJsonObject(i);
+            if (!shard.containsKey("url")) {
+                Database.start(shard.getInteger("port", 3306), shard.getString("dataDirectory"));
+            }
+        }
+        Vertx.vertx().deployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(config));
     }
 }
@@ -1,26 +1,270 @@
 package moneytransfer;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.ext.asyncsql.AsyncSQLClient;
 import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import io.vertx.rxjava.ext.sql.SQLClient;
 import moneytransfer.database.*;
+import moneytransfer.handlers.AccountImportHandler;
+import moneytransfer.ledger.InMemoryLedger;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.money.CurrencyScales;
+import moneytransfer.services.AdmissionController;
+import moneytransfer.services.IdempotencyCache;
+import moneytransfer.services.IdempotencyKeyPurgeJob;
+import moneytransfer.services.InDoubtTransferRecoveryJob;
+import moneytransfer.services.MoneyTransferService;
+import moneytransfer.services.ReconciliationJob;
+import moneytransfer.services.StripeConsolidationJob;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class MainModule extends AbstractModule {
 
     private final Vertx vertx;
+    private final JsonObject config;
 
-    MainModule(Vertx vertx) {
+    MainModule(Vertx vertx, JsonObject config) {
         this.vertx = vertx;
+        this.config = config;
     }
 
     @Override
     protected void configure() {
         bind(Vertx.class).toInstance(vertx);
 
-        JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx);
-        bind(JDBCClient.class).toInstance(jdbcClient);
+        if ("asyncMySql".equals(config.getString("accountBalanceRepository"))) {
+            AsyncSQLClient asyncSqlClient = MySqlAsyncClientFactory.createMySqlAsyncClient(vertx, config.getJsonObject("asyncMySql", new JsonObject()));
+            bind(AsyncSQLClient.class).toInstance(asyncSqlClient);
+            bind(SQLClient.class).toInstance(asyncSqlClient);
+        } else {
+            JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx);
+            bind(JDBCClient.class).toInstance(jdbcClient);
+            bind(SQLClient.class).toInstance(jdbcClient);
+        }
+
+        if ("inMemory".equals(config.getString("accountBalanceRepository"))) {
+            bind(AccountRepository.class).to(AccountRepositoryInMemoryImpl.class);
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryInMemoryImpl.class);
+            return;
+        }
+
+        if ("sharded".equals(config.getString("accountBalanceRepository"))) {
+            bind(AccountRepository.class).to(AccountRepositoryShardedImpl.class);
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryShardedImpl.class);
+            return;
+        }
+
+        if (accountCacheConfig().getBoolean("enabled", false)) {
+            bind(AccountRepository.class).to(CachingAccountRepository.class);
+        } else {
+            bind(AccountRepository.class).to(AccountRepositoryMySqlImpl.class);
+        }
+
+        if ("storedProcedure".equals(config.getString("accountBalanceRepository"))) {
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryStoredProcedureImpl.class);
+        } else if ("fixedPoint".equals(config.getString("accountBalanceRepository"))) {
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryFixedPointImpl.class);
+        } else if ("asyncMySql".equals(config.getString("accountBalanceRepository"))) {
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryAsyncMySqlImpl.class);
+        } else {
+            bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryMySqlImpl.class);
+        }
+    }
+
+    @Provides
+    @Singleton
+    CachingAccountRepository cachingAccountRepository(AccountRepositoryMySqlImpl accountRepositoryMySql, Metrics metrics) {
+        JsonObject accountCacheConfig = accountCacheConfig();
+        CachingAccountRepository cachingAccountRepository = new CachingAccountRepository(accountRepositoryMySql,
+            accountCacheConfig.getInteger("maxSize", 100000),
+            accountCacheConfig.getLong("positiveTtlMillis", 60000L),
+            accountCacheConfig.getLong("negativeTtlMillis", 1000L));
+        metrics.registerCounter("account_cache_hits_total", "Account lookups answered from the account cache", cachingAccountRepository::getHits);
+        metrics.registerCounter("account_cache_misses_total", "Account lookups not found in the account cache", cachingAccountRepository::getMisses);
+        metrics.registerCounter("account_cache_evictions_total", "Entries evicted from the full account cache", cachingAccountRepository::getEvictions);
+        return cachingAccountRepository;
+    }
+
+    @Provides
+    @Singleton
+    ShardRing shardRing() {
+        return new ShardRing(shardConfigs().size(), shardingConfig().getInteger("virtualNodes", 128));
+    }
+
+    @Provides
+    @Singleton
+    AccountRepositoryShardedImpl accountRepositorySharded(ShardRing shardRing) {
+        List<AccountRepositoryMySqlImpl> shards = new ArrayList<>();
+        for (JDBCClient shardClient : shardClients()) {
+            shards.add(new AccountRepositoryMySqlImpl(shardClient));
+        }
+        return new AccountRepositoryShardedImpl(shards, shardRing);
+    }
+
+    @Provides
+    @Singleton
+    AccountBalanceRepositoryShardedImpl accountBalanceRepositorySharded(ShardRing shardRing, TransferRetryPolicy transferRetryPolicy, Metrics metrics,
+                                                                        BalanceCache balanceCache, BalanceStripes balanceStripes) {
+        List<AccountBalanceRepositoryMySqlImpl> shards = new ArrayList<>();
+        for (JDBCClient shardClient : shardClients()) {
+            shards.add(new AccountBalanceRepositoryMySqlImpl(shardClient, transferRetryPolicy, metrics, balanceCache, balanceStripes));
+        }
+        return new AccountBalanceRepositoryShardedImpl(shards, shardRing);
+    }
+
+    @Provides
+    @Singleton
+    IdempotencyCache idempotencyCache() {
+        JsonObject idempotencyConfig = config.getJsonObject("idempotency", new JsonObject());
+        return new IdempotencyCache(
+            idempotencyConfig.getInteger("maxSize", 100000),
+            idempotencyConfig.getLong("ttlMillis", 86400000L));
+    }
+
+    @Provides
+    @Singleton
+    AdmissionController admissionController(Metrics metrics) {
+        JsonObject admissionConfig = config.getJsonObject("admission", new JsonObject());
+        if (!admissionConfig.getBoolean("enabled", false)) {
+            return AdmissionController.unlimited();
+        }
+        return new AdmissionController(
+            vertx.getDelegate(),
+            admissionConfig.getInteger("initialLimit", 20),
+            admissionConfig.getInteger("minLimit", 4),
+            admissionConfig.getInteger("maxLimit", 200),
+            admissionConfig.getLong("targetLatencyMillis", 100L),
+            admissionConfig.getDouble("backoffRatio", 0.9),
+            admissionConfig.getInteger("maxQueuedPerAccount", 8),
+            admissionConfig.getInteger("maxQueued", 1000),
+            admissionConfig.getLong("maxQueueWaitMillis", 1000L),
+            metrics);
+    }
+
+    @Provides
+    @Singleton
+    BalanceStripes balanceStripes() {
+        JsonObject balanceStripesConfig = balanceStripesConfig();
+        JsonArray accountIds = balanceStripesConfig.getJsonArray("accounts", new JsonArray());
+        List<String> accounts = new ArrayList<>();
+        for (int i = 0; i < accountIds.size(); i++) {
+            accounts.add(accountIds.getString(i));
+        }
+        return new BalanceStripes(accounts, balanceStripesConfig.getInteger("stripes", 8));
+    }
+
+    @Provides
+    @Singleton
+    StripeConsolidationJob stripeConsolidationJob(AccountBalanceRepository accountBalanceRepository, BalanceStripes balanceStripes) {
+        return new StripeConsolidationJob(accountBalanceRepository,
+            balanceStripes.isEnabled() ? balanceStripesConfig().getLong("consolidateIntervalMillis", 1000L) : 0L);
+    }
+
+    @Provides
+    @Singleton
+    IdempotencyKeyPurgeJob idempotencyKeyPurgeJob(AccountBalanceRepository accountBalanceRepository) {
+        JsonObject idempotencyConfig = config.getJsonObject("idempotency", new JsonObject());
+        return new IdempotencyKeyPurgeJob(accountBalanceRepository,
+            idempotencyConfig.getLong("ttlMillis", 86400000L),
+            idempotencyConfig.getLong("purgeIntervalMillis", 60000L));
+    }
+
+    @Provides
+    @Singleton
+    InDoubtTransferRecoveryJob inDoubtTransferRecoveryJob(AccountBalanceRepository accountBalanceRepository) {
+        return new InDoubtTransferRecoveryJob(accountBalanceRepository, shardingConfig().getLong("recoveryIntervalMillis", 10000L));
+    }
+
+    @Provides
+    @Singleton
+    ReconciliationJob reconciliationJob(AccountBalanceRepository accountBalanceRepository, Metrics metrics) {
+        JsonObject reconciliationConfig = config.getJsonObject("reconciliation", new JsonObject());
+        return new ReconciliationJob(accountBalanceRepository, metrics,
+            reconciliationConfig.getInteger("partitions", 4),
+            reconciliationConfig.getInteger("pageSize", 1000),
+            reconciliationConfig.getLong("intervalMillis", 0L));
+    }
+
+    @Provides
+    @Singleton
+    BalanceCache balanceCache(Metrics metrics) {
+        JsonObject balanceCacheConfig = config.getJsonObject("balanceCache", new JsonObject());
+        if ("primary".equals(balanceCacheConfig.getString("consistency", "cached"))) {
+            return BalanceCache.readFromPrimary();
+        }
+        BalanceCache balanceCache = new BalanceCache(
+            balanceCacheConfig.getInteger("maxSize", 100000),
+            balanceCacheConfig.getLong("ttlMillis", 5000L));
+        metrics.registerCounter("balance_cache_hits_total", "Balance queries answered from the balance cache", balanceCache::getHits);
+        metrics.registerCounter("balance_cache_misses_total", "Balance queries not found in the balance cache", balanceCache::getMisses);
+        metrics.registerCounter("balance_cache_evictions_total", "Entries evicted from the full balance cache", balanceCache::getEvictions);
+        return balanceCache;
+    }
+
+    @Provides
+    @Singleton
+    AccountImportHandler accountImportHandler(MoneyTransferService moneyTransferService) {
+        JsonObject accountImportConfig = config.getJsonObject("accountImport", new JsonObject());
+        return new AccountImportHandler(moneyTransferService, accountImportConfig.getInteger("batchSize", 1000));
+    }
+
+    @Provides
+    @Singleton
+    TransferRetryPolicy transferRetryPolicy(Metrics metrics) {
+        JsonObject transferRetryConfig = config.getJsonObject("transferRetry", new JsonObject());
+        TransferRetryPolicy transferRetryPolicy = new TransferRetryPolicy(vertx,
+            transferRetryConfig.getInteger("maxRetries", 3),
+            transferRetryConfig.getLong("baseBackoffMillis", 5L),
+            transferRetryConfig.getLong("maxBackoffMillis", 200L));
+        metrics.registerCounter("transfer_retries_total", "Transfers retried after a deadlock or lock wait timeout", transferRetryPolicy::getRetries);
+        return transferRetryPolicy;
+    }
+
+    @Provides
+    @Singleton
+    CurrencyScales currencyScales() {
+        return CurrencyScales.fromConfig(config.getJsonObject("money", new JsonObject()));
+    }
+
+    @Provides
+    @Singleton
+    InMemoryLedger inMemoryLedger() {
+        return InMemoryLedger.createShared(vertx, config.getJsonObject("ledger", new JsonObject()));
+    }
+
+    private List<JDBCClient> shardClients() {
+        List<JDBCClient> shardClients = new ArrayList<>();
+        for (JsonObject shardConfig : shardConfigs()) {
+            shardClients.add(MySqlJdbcClientFactory.createMySqlJdbcClient(vertx, shardConfig));
+        }
+        return shardClients;
+    }
+
+    private List<JsonObject> shardConfigs() {
+        List<JsonObject> shardConfigs = new ArrayList<>();
+        JsonArray shards = shardingConfig().getJsonArray("shards", new JsonArray().add(new JsonObject()));
+        for (int i = 0; i < shards.size(); i++) {
+            shardConfigs.add(shards.getJsonObject(i));
+        }
+        return shardConfigs;
+    }
+
+    private JsonObject shardingConfig() {
+        return config.getJsonObject("sharding", new JsonObject());
+    }
+
+    private JsonObject balanceStripesConfig() {
+        return config.getJsonObject("balanceStripes", new JsonObject());
+    }
 
-        bind(AccountRepository.class).to(AccountRepositoryMySqlImpl.class);
-        bind(AccountBalanceRepository.class).to(AccountBalanceRepositoryMySqlImpl.class);
+    private JsonObject accountCacheConfig() {
+        return config.getJsonObject("accountCache", new JsonObject());
     }
 }
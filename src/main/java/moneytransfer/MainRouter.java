@@ -4,25 +4,65 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.vertx.rxjava.core.Vertx;
 import io.vertx.rxjava.ext.web.Router;
-import io.vertx.rxjava.ext.web.handler.BodyHandler;
+import moneytransfer.handlers.AccountBalanceHandler;
+import moneytransfer.handlers.AccountImportHandler;
+import moneytransfer.handlers.BodyLimitHandler;
+import moneytransfer.handlers.MetricsHandler;
+import moneytransfer.handlers.MoneyTransferBatchHandler;
 import moneytransfer.handlers.MoneyTransferHandler;
+import moneytransfer.handlers.ReadinessHandler;
+import moneytransfer.handlers.ReconciliationHandler;
+import moneytransfer.handlers.TransferHistoryHandler;
 
+import static io.vertx.core.http.HttpMethod.GET;
 import static io.vertx.core.http.HttpMethod.POST;
 
 @Singleton
 public class MainRouter {
 
+    private static final long MAX_TRANSFER_BODY_BYTES = 16 * 1024;
+    private static final long MAX_BATCH_BODY_BYTES = 4 * 1024 * 1024;
+
     @Inject
     Vertx vertx;
 
     @Inject
     MoneyTransferHandler moneyTransferHandler;
 
+    @Inject
+    MoneyTransferBatchHandler moneyTransferBatchHandler;
+
+    @Inject
+    AccountBalanceHandler accountBalanceHandler;
+
+    @Inject
+    AccountImportHandler accountImportHandler;
+
+    @Inject
+    TransferHistoryHandler transferHistoryHandler;
+
+    @Inject
+    MetricsHandler metricsHandler;
+
+    @Inject
+    ReadinessHandler readinessHandler;
+
+    @Inject
+    ReconciliationHandler reconciliationHandler;
 
     Router router() {
         Router router = Router.router(vertx);
-        router.route().handler(BodyHandler.create());
-        router.route(POST, "/transfer-money").handler(moneyTransferHandler);
+        router.route(POST, "/accounts/import").handler(accountImportHandler);
+        router.route(POST, "/transfer-money").handler(new BodyLimitHandler(MAX_TRANSFER_BODY_BYTES)).handler(moneyTransferHandler);
+        router.route(POST, "/transfer-money/batch").handler(new BodyLimitHandler(MAX_BATCH_BODY_BYTES)).handler(moneyTransferBatchHandler);
+        router.route(GET, "/accounts/:accountId/balances").handler(accountBalanceHandler);
+        router.route(GET, "/accounts/:accountId/balances/:currency").handler(accountBalanceHandler);
+        router.route(GET, "/accounts/:accountId/transfers").handler(transferHistoryHandler);
+        router.route(GET, "/metrics").handler(metricsHandler);
+        router.route(GET, "/ready").handler(readinessHandler);
+        router.route(GET, "/reconciliation").handler(reconciliationHandler);
+        router.route(POST, "/reconciliation").handler(reconciliationHandler);
+        router.route().failureHandler(BodyLimitHandler::handleFailure);
         return router;
     }
 }
@@ -1,12 +1,24 @@
 package moneytransfer;
 
-import ch.vorburger.exec.ManagedProcessException;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
+import com.google.inject.Injector;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.Verticle;
+import io.vertx.core.json.JsonObject;
+import io.vertx.rx.java.SingleOnSubscribeAdapter;
 import io.vertx.rxjava.core.AbstractVerticle;
 import moneytransfer.database.AccountBalanceRepository;
 import moneytransfer.database.AccountRepository;
+import moneytransfer.services.IdempotencyKeyPurgeJob;
+import moneytransfer.services.InDoubtTransferRecoveryJob;
+import moneytransfer.services.Readiness;
+import moneytransfer.services.ReconciliationJob;
+import moneytransfer.services.StripeConsolidationJob;
+import rx.Observable;
+import rx.Single;
+import rx.functions.Func1;
 
 public class MainVerticle extends AbstractVerticle {
 
@@ -17,19 +29,67 @@ public class MainVerticle extends AbstractVerticle {
     AccountBalanceRepository accountBalanceRepository;
 
     @Inject
-    MainRouter mainRouter;
+    TransferWarmUp transferWarmUp;
+
+    @Inject
+    Readiness readiness;
+
+    @Inject
+    ReconciliationJob reconciliationJob;
+
+    @Inject
+    StripeConsolidationJob stripeConsolidationJob;
+
+    @Inject
+    IdempotencyKeyPurgeJob idempotencyKeyPurgeJob;
+
+    @Inject
+    InDoubtTransferRecoveryJob inDoubtTransferRecoveryJob;
 
     @Override
     public void start(Future<Void> future) {
-        Guice.createInjector(new MainModule(vertx)).injectMembers(this);
+        Injector injector = Guice.createInjector(new MainModule(vertx, config()));
+        injector.injectMembers(this);
+        int instances = config().getInteger("instances", Runtime.getRuntime().availableProcessors());
+        JsonObject startupConfig = config().getJsonObject("startup", new JsonObject());
         accountRepository.createTable()
             .flatMap((__) -> accountBalanceRepository.createTable())
+            .flatMap((__) -> accountBalanceRepository.openConnections(startupConfig.getInteger("openConnections", 0)))
+            .flatMap((__) -> transferWarmUp.run(startupConfig.getInteger("warmUpTransfers", 0), startupConfig.getInteger("warmUpConcurrency", 8)))
+            .flatMap((__) -> deployHttpServers(injector, instances))
+            .flatMap((__) -> deployBinaryServers(injector, instances))
             .subscribe((__) -> {
-                vertx
-                    .createHttpServer()
-                    .requestHandler(mainRouter.router()::accept)
-                    .listen(1234, "localhost");
+                readiness.markReady();
+                reconciliationJob.schedule(vertx);
+                stripeConsolidationJob.schedule(vertx);
+                idempotencyKeyPurgeJob.schedule(vertx);
+                inDoubtTransferRecoveryJob.schedule(vertx);
                 future.complete();
-            });
+            }, future::fail);
+    }
+
+    private Single<Void> deployHttpServers(Injector injector, int instances) {
+        return deployVerticles(injector, HttpServerVerticle.class, instances, (instance) -> new JsonObject().put("instance", instance));
+    }
+
+    private Single<Void> deployBinaryServers(Injector injector, int instances) {
+        JsonObject binaryConfig = config().getJsonObject("binary", new JsonObject());
+        if (!binaryConfig.getBoolean("enabled", false)) {
+            return Single.just(null);
+        }
+
+        return deployVerticles(injector, BinaryServerVerticle.class, instances, (instance) -> new JsonObject()
+            .put("port", binaryConfig.getInteger("port", 1235))
+            .put("maxInFlightPerConnection", binaryConfig.getInteger("maxInFlightPerConnection", 1024)));
+    }
+
+    private Single<Void> deployVerticles(Injector injector, Class<? extends Verticle> verticleClass, int instances, Func1<Integer, JsonObject> config) {
+        return Observable.range(0, instances)
+            .concatMap((instance) -> Single.<String>create(new SingleOnSubscribeAdapter<>((deployed) ->
+                vertx.getDelegate().deployVerticle(injector.getInstance(verticleClass),
+                    new DeploymentOptions().setConfig(config.call(instance)), deployed))).toObservable())
+            .toList()
+            .toSingle()
+            .map((deploymentIds) -> null);
     }
-}
\ No newline at end of file
+}
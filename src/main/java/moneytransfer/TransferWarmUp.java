@@ -0,0 +1,70 @@
+package moneytransfer;
+
+import com.google.inject.Inject;
+import io.vertx.rxjava.core.buffer.Buffer;
+import moneytransfer.handlers.MoneyTransferDecoder;
+import moneytransfer.models.MoneyTransfer;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.services.MoneyTransferService;
+import rx.Observable;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+public class TransferWarmUp {
+
+    static final String SOURCE_ACCOUNT = "warm-up-source";
+    static final String DESTINATION_ACCOUNT = "warm-up-destination";
+    static final String CURRENCY = "XXX";
+
+    private static final List<String> ACCOUNTS = Arrays.asList(SOURCE_ACCOUNT, DESTINATION_ACCOUNT);
+    private static final String AMOUNT = "0.01";
+
+    private final MoneyTransferService moneyTransferService;
+
+    @Inject
+    public TransferWarmUp(MoneyTransferService moneyTransferService) {
+        this.moneyTransferService = moneyTransferService;
+    }
+
+    public Single<Void> run(int transfers, int concurrency) {
+        if (transfers <= 0) {
+            return Single.just(null);
+        }
+
+        BigDecimal balance = new BigDecimal(AMOUNT).multiply(BigDecimal.valueOf(transfers));
+        return moneyTransferService.deleteAccounts(ACCOUNTS)
+            .flatMap((__) -> moneyTransferService.importOpeningBalances(Arrays.asList(
+                new OpeningBalance(SOURCE_ACCOUNT, CURRENCY, balance),
+                new OpeningBalance(DESTINATION_ACCOUNT, CURRENCY, balance))))
+            .flatMap((results) -> results.stream().allMatch(Objects::isNull)
+                ? transferBackAndForth(transfers, concurrency)
+                : Single.<Void>error(new IllegalStateException("Warm-up accounts could not be imported: " + results)))
+            .flatMap((__) -> moneyTransferService.deleteAccounts(ACCOUNTS))
+            .onErrorResumeNext((throwable) -> moneyTransferService.deleteAccounts(ACCOUNTS)
+                .onErrorResumeNext((__) -> Single.just(null))
+                .flatMap((__) -> Single.<Void>error(throwable)));
+    }
+
+    private Single<Void> transferBackAndForth(int transfers, int concurrency) {
+        return Observable.range(0, transfers)
+            .flatMap((i) -> transfer(i % 2 == 0).toObservable(), Math.max(1, concurrency))
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    private Single<Void> transfer(boolean forward) {
+        return Single.defer(() -> {
+            String sourceAccount = forward ? SOURCE_ACCOUNT : DESTINATION_ACCOUNT;
+            String destinationAccount = forward ? DESTINATION_ACCOUNT : SOURCE_ACCOUNT;
+            MoneyTransfer moneyTransfer = MoneyTransferDecoder.decode(Buffer.buffer("{\"sourceAccount\":\"" + sourceAccount +
+                "\",\"destinationAccount\":\"" + destinationAccount + "\",\"amount\":\"" + AMOUNT + "\",\"currency\":\"" + CURRENCY + "\"}"));
+            return moneyTransferService.transferMoney(moneyTransfer.getSourceAccount(), moneyTransfer.getDestinationAccount(),
+                moneyTransfer.getAmount(), moneyTransfer.getCurrency(), null);
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package moneytransfer.binary;
+
+import io.vertx.core.Handler;
+import io.vertx.rxjava.core.buffer.Buffer;
+import io.vertx.rxjava.core.parsetools.RecordParser;
+import io.vertx.rxjava.core.streams.ReadStream;
+import moneytransfer.models.ErrorCode;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+public final class BinaryProtocol {
+
+    public static final int MAX_FRAME_BYTES = 1024;
+    public static final int CURRENCY_BYTES = 3;
+    public static final int MAX_ACCOUNT_BYTES = 255;
+
+    static final int STATUS_OK = 0;
+
+    private static final int LENGTH_BYTES = 4;
+    private static final int REQUEST_ID_BYTES = 8;
+    private static final int RESPONSE_BYTES = REQUEST_ID_BYTES + 1;
+
+    private BinaryProtocol() {
+    }
+
+    public static Buffer encodeRequest(long requestId, String sourceAccount, String destinationAccount, long unscaledAmount, int scale, String currency) {
+        byte[] source = sourceAccount.getBytes(StandardCharsets.UTF_8);
+        byte[] destination = destinationAccount.getBytes(StandardCharsets.UTF_8);
+        byte[] currencyCode = currency.getBytes(StandardCharsets.US_ASCII);
+        if (source.length > MAX_ACCOUNT_BYTES || destination.length > MAX_ACCOUNT_BYTES) {
+            throw new IllegalArgumentException("Account ids are limited to " + MAX_ACCOUNT_BYTES + " bytes");
+        }
+        if (currencyCode.length != CURRENCY_BYTES) {
+            throw new IllegalArgumentException("Currency codes must be " + CURRENCY_BYTES + " bytes");
+        }
+        if (scale < 0 || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Scale must be between 0 and " + Byte.MAX_VALUE);
+        }
+
+        int frameLength = REQUEST_ID_BYTES + 1 + source.length + 1 + destination.length + 8 + 1 + CURRENCY_BYTES;
+        return Buffer.newInstance(io.vertx.core.buffer.Buffer.buffer(LENGTH_BYTES + frameLength)
+            .appendInt(frameLength)
+            .appendLong(requestId)
+            .appendUnsignedByte((short) source.length)
+            .appendBytes(source)
+            .appendUnsignedByte((short) destination.length)
+            .appendBytes(destination)
+            .appendLong(unscaledAmount)
+            .appendByte((byte) scale)
+            .appendBytes(currencyCode));
+    }
+
+    public static long requestIdOf(Buffer frame) {
+        return frame.getLong(0);
+    }
+
+    public static BinaryTransferRequest decodeRequest(Buffer frame) {
+        try {
+            int position = REQUEST_ID_BYTES;
+            int sourceLength = frame.getUnsignedByte(position++);
+            String sourceAccount = frame.getString(position, position + sourceLength, "UTF-8");
+            position += sourceLength;
+            int destinationLength = frame.getUnsignedByte(position++);
+            String destinationAccount = frame.getString(position, position + destinationLength, "UTF-8");
+            position += destinationLength;
+            long unscaledAmount = frame.getLong(position);
+            position += 8;
+            int scale = frame.getByte(position++);
+            String currency = frame.getString(position, position + CURRENCY_BYTES, "US-ASCII");
+            position += CURRENCY_BYTES;
+            if (position != frame.length() || scale < 0) {
+                throw new IllegalArgumentException("Malformed transfer request");
+            }
+            return new BinaryTransferRequest(requestIdOf(frame), sourceAccount, destinationAccount, BigDecimal.valueOf(unscaledAmount, scale), currency);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Malformed transfer request", ex);
+        }
+    }
+
+    public static Buffer encodeResponse(long requestId, ErrorCode errorCode) {
+        return Buffer.buffer(LENGTH_BYTES + RESPONSE_BYTES)
+            .appendInt(RESPONSE_BYTES)
+            .appendLong(requestId)
+            .appendByte((byte) (errorCode == null ? STATUS_OK : errorCode.getWireCode()));
+    }
+
+    public static int statusOf(Buffer responseFrame) {
+        if (responseFrame.length() != RESPONSE_BYTES) {
+            throw new IllegalArgumentException("Malformed transfer response");
+        }
+        return responseFrame.getByte(REQUEST_ID_BYTES);
+    }
+
+    public static RecordParser frameParser(ReadStream<Buffer> stream, Handler<Buffer> frameHandler, Handler<Integer> invalidLengthHandler) {
+        RecordParser parser = RecordParser.newFixed(LENGTH_BYTES, stream);
+        boolean[] readingLength = {true};
+        parser.handler((buffer) -> {
+            if (!readingLength[0]) {
+                readingLength[0] = true;
+                parser.fixedSizeMode(LENGTH_BYTES);
+                frameHandler.handle(buffer);
+                return;
+            }
+
+            int frameLength = buffer.getInt(0);
+            if (frameLength < REQUEST_ID_BYTES || frameLength > MAX_FRAME_BYTES) {
+                invalidLengthHandler.handle(frameLength);
+                return;
+            }
+            readingLength[0] = false;
+            parser.fixedSizeMode(frameLength);
+        });
+        return parser;
+    }
+}
@@ -0,0 +1,114 @@
+package moneytransfer.binary;
+
+import io.vertx.core.VertxException;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.buffer.Buffer;
+import io.vertx.rxjava.core.net.NetClient;
+import io.vertx.rxjava.core.net.NetSocket;
+import moneytransfer.exceptions.TransferFailedException;
+import moneytransfer.models.ErrorCode;
+import rx.Single;
+import rx.SingleSubscriber;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class BinaryTransferClient {
+
+    private final NetClient netClient;
+    private final NetSocket socket;
+    private final Map<Long, SingleSubscriber<? super Void>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private BinaryTransferClient(NetClient netClient, NetSocket socket) {
+        this.netClient = netClient;
+        this.socket = socket;
+        BinaryProtocol.frameParser(socket, this::handleFrame, (frameLength) -> socket.close());
+        socket.closeHandler((__) -> failPending());
+    }
+
+    public static Single<BinaryTransferClient> connect(Vertx vertx, String host, int port) {
+        NetClient netClient = vertx.createNetClient();
+        return netClient.rxConnect(port, host)
+            .map((socket) -> new BinaryTransferClient(netClient, socket))
+            .doOnError((__) -> netClient.close());
+    }
+
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        return Single.create((subscriber) -> {
+            BigDecimal normalizedAmount = amount.stripTrailingZeros();
+            if (normalizedAmount.scale() < 0) {
+                normalizedAmount = normalizedAmount.setScale(0);
+            }
+            if (normalizedAmount.scale() > Byte.MAX_VALUE) {
+                subscriber.onError(new TransferFailedException(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES));
+                return;
+            }
+            if (normalizedAmount.unscaledValue().bitLength() > 63) {
+                subscriber.onError(new TransferFailedException(ErrorCode.MONEY_OVERFLOW));
+                return;
+            }
+
+            long requestId = nextRequestId.incrementAndGet();
+            Buffer request;
+            try {
+                request = BinaryProtocol.encodeRequest(requestId, sourceAccount, destinationAccount,
+                    normalizedAmount.unscaledValue().longValue(), normalizedAmount.scale(), currency);
+            } catch (IllegalArgumentException ex) {
+                subscriber.onError(new TransferFailedException(ErrorCode.BAD_REQUEST));
+                return;
+            }
+
+            pending.put(requestId, subscriber);
+            if (closed) {
+                failPending();
+                return;
+            }
+            socket.write(request);
+        });
+    }
+
+    public void close() {
+        closed = true;
+        socket.close();
+        netClient.close();
+    }
+
+    private void handleFrame(Buffer frame) {
+        long requestId = BinaryProtocol.requestIdOf(frame);
+        int status;
+        try {
+            status = BinaryProtocol.statusOf(frame);
+        } catch (IllegalArgumentException ex) {
+            socket.close();
+            return;
+        }
+
+        SingleSubscriber<? super Void> subscriber = pending.remove(requestId);
+        if (subscriber == null) {
+            return;
+        }
+        if (status == BinaryProtocol.STATUS_OK) {
+            subscriber.onSuccess(null);
+        } else {
+            subscriber.onError(new TransferFailedException(ErrorCode.fromWireCode(status)));
+        }
+    }
+
+    private void failPending() {
+        closed = true;
+        List<Long> requestIds = new ArrayList<>(pending.keySet());
+        for (Long requestId : requestIds) {
+            SingleSubscriber<? super Void> subscriber = pending.remove(requestId);
+            if (subscriber != null) {
+                subscriber.onError(new VertxException("Connection closed"));
+            }
+        }
+    }
+}
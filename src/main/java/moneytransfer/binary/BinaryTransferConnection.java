@@ -0,0 +1,121 @@
+package moneytransfer.binary;
+
+import io.vertx.rxjava.core.RxHelper;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.buffer.Buffer;
+import io.vertx.rxjava.core.net.NetSocket;
+import io.vertx.rxjava.core.parsetools.RecordParser;
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.services.MoneyTransferService;
+import rx.Scheduler;
+
+public class BinaryTransferConnection {
+
+    private final NetSocket socket;
+    private final MoneyTransferService moneyTransferService;
+    private final Metrics metrics;
+    private final int maxInFlight;
+    private final Scheduler scheduler;
+    private final RecordParser parser;
+
+    private int inFlight;
+    private boolean paused;
+    private boolean closed;
+
+    public BinaryTransferConnection(NetSocket socket, MoneyTransferService moneyTransferService, Metrics metrics, int maxInFlight) {
+        this.socket = socket;
+        this.moneyTransferService = moneyTransferService;
+        this.metrics = metrics;
+        this.maxInFlight = maxInFlight;
+        this.scheduler = RxHelper.scheduler(Vertx.currentContext());
+        this.parser = BinaryProtocol.frameParser(socket, this::handleFrame, (frameLength) -> close());
+        socket.closeHandler((__) -> closed = true);
+        socket.drainHandler((__) -> updateFlow());
+    }
+
+    private void handleFrame(Buffer frame) {
+        if (closed) {
+            return;
+        }
+
+        BinaryTransferRequest request;
+        long decodeStart = System.nanoTime();
+        try {
+            request = BinaryProtocol.decodeRequest(frame);
+        } catch (IllegalArgumentException ex) {
+            respond(BinaryProtocol.requestIdOf(frame), ErrorCode.BAD_REQUEST);
+            return;
+        } finally {
+            metrics.observe(TransferStage.DECODE, decodeStart);
+        }
+
+        inFlight++;
+        updateFlow();
+        moneyTransferService
+            .transferMoney(request.getSourceAccount(), request.getDestinationAccount(), request.getAmount(), request.getCurrency())
+            .observeOn(scheduler)
+            .subscribe((__) -> {
+                inFlight--;
+                respond(request.getRequestId(), null);
+            }, (throwable) -> {
+                inFlight--;
+                respond(request.getRequestId(), errorCodeOf(throwable));
+            });
+    }
+
+    private void respond(long requestId, ErrorCode errorCode) {
+        if (errorCode != null) {
+            metrics.recordError(errorCode);
+        }
+        if (closed) {
+            return;
+        }
+
+        long writeStart = System.nanoTime();
+        socket.write(BinaryProtocol.encodeResponse(requestId, errorCode));
+        metrics.observe(TransferStage.RESPONSE_WRITE, writeStart);
+        updateFlow();
+    }
+
+    private void updateFlow() {
+        boolean shouldPause = inFlight >= maxInFlight || socket.writeQueueFull();
+        if (shouldPause == paused || closed) {
+            return;
+        }
+
+        paused = shouldPause;
+        if (paused) {
+            parser.pause();
+        } else {
+            parser.resume();
+        }
+    }
+
+    private void close() {
+        parser.pause();
+        closed = true;
+        socket.close();
+    }
+
+    private static ErrorCode errorCodeOf(Throwable throwable) {
+        if (throwable instanceof NumberFormatException) {
+            return ErrorCode.BAD_REQUEST;
+        } else if (throwable instanceof InsufficientAccountBalanceException) {
+            return ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE;
+        } else if (throwable instanceof InvalidAccountException) {
+            return ErrorCode.INVALID_ACCOUNT;
+        } else if (throwable instanceof MoneyTooManyDecimalPlacesException) {
+            return ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES;
+        } else if (throwable instanceof MoneyOverflowException) {
+            return ErrorCode.MONEY_OVERFLOW;
+        } else {
+            return ErrorCode.INTERNAL_SERVER_ERROR;
+        }
+    }
+}
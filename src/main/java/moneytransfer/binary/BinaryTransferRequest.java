@@ -0,0 +1,39 @@
+package moneytransfer.binary;
+
+import java.math.BigDecimal;
+
+public class BinaryTransferRequest {
+    private final long requestId;
+    private final String sourceAccount;
+    private final String destinationAccount;
+    private final BigDecimal amount;
+    private final String currency;
+
+    public BinaryTransferRequest(long requestId, String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        this.requestId = requestId;
+        this.sourceAccount = sourceAccount;
+        this.destinationAccount = destinationAccount;
+        this.amount = amount;
+        this.currency = currency;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public String getSourceAccount() {
+        return sourceAccount;
+    }
+
+    public String getDestinationAccount() {
+        return destinationAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+}
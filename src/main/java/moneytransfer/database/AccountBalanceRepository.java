@@ -1,12 +1,75 @@
 package moneytransfer.database;
 
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException;
+import moneytransfer.exceptions.TransferHistoryNotRecordedException;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferJournalEntry;
+import moneytransfer.models.TransferResult;
+import rx.Observable;
 import rx.Single;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface AccountBalanceRepository {
 
     Single<Void> createTable();
 
     Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency);
+
+    default Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency) {
+        return Single.defer(() -> transferMoney(sourceAccount, destinationAccount, new BigDecimal(amount), currency));
+    }
+
+    default Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return Single.error(new IdempotencyKeyNotSupportedException());
+        }
+        return transferMoney(sourceAccount, destinationAccount, amount, currency);
+    }
+
+    default Single<Integer> purgeIdempotencyKeys(long retentionMillis) {
+        return Single.just(0);
+    }
+
+    default boolean checksAccountsExist() {
+        return false;
+    }
+
+    Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode);
+
+    Single<Map<String, BigDecimal>> getBalances(String accountId);
+
+    Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances);
+
+    Single<Void> deleteAccounts(Collection<String> accountIds);
+
+    default Single<Void> openConnections(int connections) {
+        return Single.just(null);
+    }
+
+    default Observable<TransferJournalEntry> getTransferHistory(String accountId, long beforeEntryId, int limit) {
+        return Observable.error(new TransferHistoryNotRecordedException());
+    }
+
+    default Single<Integer> recoverInDoubtTransfers(long minAgeMillis) {
+        return Single.just(0);
+    }
+
+    default Single<Integer> consolidateBalanceStripes() {
+        return Single.just(0);
+    }
+
+    default Single<BalanceScan> scanBalances(int partitions, int pageSize) {
+        return Single.error(new UnsupportedOperationException("Balances cannot be reconciled by " + getClass().getSimpleName()));
+    }
+
+    default Single<Void> baselineCurrencySupply(Map<String, BigDecimal> totals) {
+        return Single.error(new UnsupportedOperationException("Balances cannot be reconciled by " + getClass().getSimpleName()));
+    }
 }
@@ -0,0 +1,97 @@
+package moneytransfer.database;
+
+import com.github.mauricio.async.db.mysql.exceptions.MySQLException;
+import com.github.mauricio.async.db.mysql.message.server.ErrorMessage;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.json.JsonArray;
+import io.vertx.rxjava.ext.asyncsql.AsyncSQLClient;
+import io.vertx.rxjava.ext.sql.SQLConnection;
+import moneytransfer.metrics.Metrics;
+import rx.Observable;
+import rx.Single;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+@Singleton
+public class AccountBalanceRepositoryAsyncMySqlImpl extends AccountBalanceRepositoryMySqlImpl {
+
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE_CLASS = "23";
+
+    public AccountBalanceRepositoryAsyncMySqlImpl(AsyncSQLClient asyncSqlClient) {
+        this(asyncSqlClient, TransferRetryPolicy.noRetries(), new Metrics());
+    }
+
+    public AccountBalanceRepositoryAsyncMySqlImpl(AsyncSQLClient asyncSqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics) {
+        this(asyncSqlClient, transferRetryPolicy, metrics, BalanceCache.readFromPrimary());
+    }
+
+    public AccountBalanceRepositoryAsyncMySqlImpl(AsyncSQLClient asyncSqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, BalanceCache balanceCache) {
+        this(asyncSqlClient, transferRetryPolicy, metrics, balanceCache, BalanceStripes.none());
+    }
+
+    @Inject
+    public AccountBalanceRepositoryAsyncMySqlImpl(AsyncSQLClient asyncSqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, BalanceCache balanceCache,
+                                                  BalanceStripes balanceStripes) {
+        super(asyncSqlClient, transferRetryPolicy, metrics, balanceCache, balanceStripes);
+    }
+
+    @Override
+    Observable<JsonArray> streamRows(SQLConnection sqlConnection, String query, JsonArray params) {
+        return sqlConnection.rxQueryWithParams(query, params)
+            .toObservable()
+            .flatMap((resultSet) -> Observable.from(resultSet.getResults()));
+    }
+
+    @Override
+    Single<List<Integer>> batchUpdate(SQLConnection sqlConnection, String statement, List<JsonArray> batchParams) {
+        return updateFrom(sqlConnection, statement, batchParams, new ArrayList<>());
+    }
+
+    private Single<List<Integer>> updateFrom(SQLConnection sqlConnection, String statement, List<JsonArray> batchParams, List<Integer> updateCounts) {
+        if (updateCounts.size() == batchParams.size()) {
+            return Single.just(updateCounts);
+        }
+
+        return sqlConnection.rxUpdateWithParams(statement, batchParams.get(updateCounts.size()))
+            .onErrorResumeNext((throwable) -> Single.error(toBatchUpdateException(throwable, updateCounts)))
+            .flatMap((updateResult) -> {
+                updateCounts.add(updateResult.getUpdated());
+                return updateFrom(sqlConnection, statement, batchParams, updateCounts);
+            });
+    }
+
+    private Throwable toBatchUpdateException(Throwable throwable, List<Integer> updateCounts) {
+        Throwable error = translateError(throwable);
+        if (!(error instanceof SQLException)) {
+            return error;
+        }
+
+        int[] counts = new int[updateCounts.size() + 1];
+        for (int i = 0; i < updateCounts.size(); i++) {
+            counts[i] = updateCounts.get(i);
+        }
+        counts[updateCounts.size()] = Statement.EXECUTE_FAILED;
+        SQLException sqlException = (SQLException) error;
+        return new BatchUpdateException(sqlException.getMessage(), sqlException.getSQLState(), sqlException.getErrorCode(), counts, sqlException);
+    }
+
+    @Override
+    Throwable translateError(Throwable throwable) {
+        if (!(throwable instanceof MySQLException)) {
+            return throwable;
+        }
+
+        ErrorMessage errorMessage = ((MySQLException) throwable).errorMessage();
+        String sqlState = errorMessage.sqlState().startsWith("#") ? errorMessage.sqlState().substring(1) : errorMessage.sqlState();
+        if (sqlState.startsWith(INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE_CLASS)) {
+            return new SQLIntegrityConstraintViolationException(errorMessage.errorMessage(), sqlState, errorMessage.errorCode(), throwable);
+        }
+        return new SQLException(errorMessage.errorMessage(), sqlState, errorMessage.errorCode(), throwable);
+    }
+}
@@ -0,0 +1,169 @@
+package moneytransfer.database;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.json.JsonArray;
+import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import io.vertx.rxjava.ext.sql.SQLConnection;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.money.CurrencyScales;
+import moneytransfer.money.FixedPointMoney;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Singleton
+public class AccountBalanceRepositoryFixedPointImpl extends AccountBalanceRepositoryMySqlImpl {
+
+    private static final String COLUMN_TYPE_QUERY = "SELECT DATA_TYPE FROM information_schema.COLUMNS " +
+        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = ?";
+
+    private static final String UPSERT_BALANCE_STATEMENT = "INSERT INTO account_balance ( account_id, currency, balance ) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE balance=balance+?";
+    private static final String SUBTRACT_BALANCE_STATEMENT = "UPDATE account_balance set balance=balance-? WHERE balance >= ? AND account_id = ? AND currency = ?";
+    private static final String UPSERT_STRIPE_STATEMENT = "INSERT INTO account_balance_stripe ( account_id, currency, stripe, balance ) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE balance=balance+?";
+
+    private final CurrencyScales currencyScales;
+
+    public AccountBalanceRepositoryFixedPointImpl(JDBCClient jdbcClient, CurrencyScales currencyScales) {
+        this(jdbcClient, TransferRetryPolicy.noRetries(), new Metrics(), currencyScales);
+    }
+
+    public AccountBalanceRepositoryFixedPointImpl(JDBCClient jdbcClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, CurrencyScales currencyScales) {
+        this(jdbcClient, transferRetryPolicy, metrics, currencyScales, BalanceCache.readFromPrimary());
+    }
+
+    public AccountBalanceRepositoryFixedPointImpl(JDBCClient jdbcClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, CurrencyScales currencyScales,
+                                                  BalanceCache balanceCache) {
+        this(jdbcClient, transferRetryPolicy, metrics, currencyScales, balanceCache, BalanceStripes.none());
+    }
+
+    @Inject
+    public AccountBalanceRepositoryFixedPointImpl(JDBCClient jdbcClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, CurrencyScales currencyScales,
+                                                  BalanceCache balanceCache, BalanceStripes balanceStripes) {
+        super(jdbcClient, transferRetryPolicy, metrics, balanceCache, balanceStripes);
+        this.currencyScales = currencyScales;
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return SchemaMigrations.migrate(sqlClient, "account_balance_fixed_point",
+            Arrays.asList(this::createBalanceTables, this::createCurrencySupplyTable, this::createBalanceStripeTable,
+                this::scopeIdempotencyKeys, this::migrateDecimalAmounts));
+    }
+
+    private Single<Void> createBalanceTables(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE account_balance ( account_id varchar(255), " +
+                                                                "currency varchar(255), " +
+                                                                "balance BIGINT NOT NULL, " +
+                                                                "PRIMARY KEY (account_id, currency), " +
+                                                                "FOREIGN KEY (account_id) REFERENCES account(account_id))";
+        return columnType(sqlConnection, "account_balance", "balance")
+            .flatMap((columnType) -> {
+                if (columnType == null) {
+                    return sqlConnection.rxExecute(createStatement);
+                }
+                if ("bigint".equalsIgnoreCase(columnType)) {
+                    return Single.just(null);
+                }
+                return migrateDecimalColumn(sqlConnection, "account_balance", "balance", "BIGINT NOT NULL");
+            })
+            .flatMap((__) -> createIdempotencyKeyTable(sqlConnection))
+            .flatMap((__) -> createJournalTable(sqlConnection));
+    }
+
+    private Single<Void> migrateDecimalAmounts(SQLConnection sqlConnection) {
+        return columnType(sqlConnection, "transfer_journal", "amount")
+            .flatMap((columnType) -> "decimal".equalsIgnoreCase(columnType) ?
+                migrateDecimalColumn(sqlConnection, "transfer_journal", "amount", "BIGINT") : Single.just(null))
+            .flatMap((__) -> columnType(sqlConnection, "account_balance_stripe", "balance"))
+            .flatMap((columnType) -> "decimal".equalsIgnoreCase(columnType) ?
+                migrateDecimalColumn(sqlConnection, "account_balance_stripe", "balance", "BIGINT NOT NULL") : Single.just(null));
+    }
+
+    private Single<String> columnType(SQLConnection sqlConnection, String table, String column) {
+        return sqlConnection.rxQueryWithParams(COLUMN_TYPE_QUERY, new JsonArray().add(table).add(column))
+            .map((resultSet) -> resultSet.getNumRows() == 0 ? null : resultSet.getResults().get(0).getString(0));
+    }
+
+    @Override
+    Object parseAmountParam(String amount, String currency) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        return FixedPointMoney.parse(amount, currencyScales.scaleOf(currency));
+    }
+
+    @Override
+    Object toAmountParam(BigDecimal amount, String currency) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        return FixedPointMoney.toUnits(amount, currencyScales.scaleOf(currency));
+    }
+
+    @Override
+    Object negateAmountParam(Object amountParam) {
+        return -(Long) amountParam;
+    }
+
+    @Override
+    BigDecimal toBalance(String value, String currency) {
+        return BigDecimal.valueOf(Long.parseLong(value), currencyScales.scaleOf(currency));
+    }
+
+    @Override
+    String amountDatatype() {
+        return "BIGINT";
+    }
+
+    @Override
+    String upsertBalanceStatement() {
+        return UPSERT_BALANCE_STATEMENT;
+    }
+
+    @Override
+    String subtractBalanceStatement() {
+        return SUBTRACT_BALANCE_STATEMENT;
+    }
+
+    @Override
+    String upsertStripeStatement() {
+        return UPSERT_STRIPE_STATEMENT;
+    }
+
+    private Single<Void> migrateDecimalColumn(SQLConnection sqlConnection, String table, String column, String definition) {
+        return sqlConnection.rxQuery("SELECT DISTINCT currency FROM " + table).flatMap((resultSet) -> {
+            List<String> currencies = new ArrayList<>();
+            resultSet.getResults().forEach(row -> currencies.add(row.getString(0)));
+
+            Single<Void> migrated = Single.just(null);
+            for (String currency : currencies) {
+                migrated = migrated.flatMap((__) -> checkAmountsConvertible(sqlConnection, table, column, currency));
+            }
+            migrated = migrated.flatMap((__) -> sqlConnection.rxExecute("ALTER TABLE " + table + " ADD COLUMN " + column + "_units BIGINT"));
+            for (String currency : currencies) {
+                migrated = migrated.flatMap((__) -> sqlConnection.rxUpdateWithParams(
+                    "UPDATE " + table + " SET " + column + "_units = CAST(" + column + " * " + BigDecimal.ONE.movePointRight(currencyScales.scaleOf(currency)).toPlainString() +
+                        " AS SIGNED) WHERE currency = ?",
+                    new JsonArray().add(currency)).map((updateResult) -> null));
+            }
+            return migrated.flatMap((__) -> sqlConnection.rxExecute(
+                "ALTER TABLE " + table + " DROP COLUMN " + column + ", CHANGE COLUMN " + column + "_units " + column + " " + definition));
+        });
+    }
+
+    private Single<Void> checkAmountsConvertible(SQLConnection sqlConnection, String table, String column, String currency) {
+        int scale = currencyScales.scaleOf(currency);
+        String query = "SELECT COUNT(*) FROM " + table + " WHERE currency = ? AND " +
+            "(" + column + " <> TRUNCATE(" + column + ", " + scale + ") OR ABS(" + column + ") > CAST(? AS " + MONEY_DATATYPE + "))";
+        JsonArray params = new JsonArray()
+            .add(currency)
+            .add(BigDecimal.valueOf(Long.MAX_VALUE, scale).toPlainString());
+        return sqlConnection.rxQueryWithParams(query, params).flatMap((resultSet) -> {
+            if (resultSet.getResults().get(0).getLong(0) > 0) {
+                return Single.error(new IllegalStateException(
+                    "Amounts in " + table + " in " + currency + " do not fit in a BIGINT with " + scale + " decimal places"));
+            }
+            return Single.just(null);
+        });
+    }
+}
@@ -0,0 +1,104 @@
+package moneytransfer.database;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.ledger.InMemoryLedger;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferResult;
+import rx.Observable;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Singleton
+public class AccountBalanceRepositoryInMemoryImpl implements AccountBalanceRepository {
+
+    private final InMemoryLedger ledger;
+
+    @Inject
+    public AccountBalanceRepositoryInMemoryImpl(InMemoryLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return Single.just(null);
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        return ledger.transfer(sourceAccount, destinationAccount, amount, currency);
+    }
+
+    @Override
+    public boolean checksAccountsExist() {
+        return true;
+    }
+
+    @Override
+    public Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode) {
+        return ledger.transferBatch(transfers, batchMode);
+    }
+
+    @Override
+    public Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances) {
+        Set<List<String>> importedBalances = new HashSet<>();
+        return Observable.from(openingBalances)
+            .concatMapEager((openingBalance) -> {
+                if (openingBalance.getCurrency() != null
+                    && !importedBalances.add(Arrays.asList(openingBalance.getAccountId(), openingBalance.getCurrency()))) {
+                    return Observable.just(ErrorCode.BALANCE_ALREADY_EXISTS);
+                }
+                return importOpeningBalance(openingBalance).toObservable();
+            })
+            .toList()
+            .toSingle();
+    }
+
+    private Single<ErrorCode> importOpeningBalance(OpeningBalance openingBalance) {
+        return ledger.createAccount(openingBalance.getAccountId())
+            .flatMap((__) -> {
+                if (openingBalance.getCurrency() == null) {
+                    return Single.just((ErrorCode) null);
+                }
+                if (ledger.getBalance(openingBalance.getAccountId(), openingBalance.getCurrency()) != null) {
+                    return Single.just(ErrorCode.BALANCE_ALREADY_EXISTS);
+                }
+                return ledger.deposit(openingBalance.getAccountId(), openingBalance.getCurrency(), openingBalance.getBalance())
+                    .map((___) -> (ErrorCode) null);
+            })
+            .onErrorResumeNext((throwable) -> {
+                if (throwable instanceof MoneyTooManyDecimalPlacesException) {
+                    return Single.just(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES);
+                } else if (throwable instanceof MoneyOverflowException) {
+                    return Single.just(ErrorCode.MONEY_OVERFLOW);
+                }
+                return Single.error(throwable);
+            });
+    }
+
+    @Override
+    public Single<Void> deleteAccounts(Collection<String> accountIds) {
+        return Observable.from(accountIds)
+            .concatMap((accountId) -> ledger.deleteAccount(accountId).toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Map<String, BigDecimal>> getBalances(String accountId) {
+        return Single.fromCallable(() -> ledger.getBalances(accountId));
+    }
+}
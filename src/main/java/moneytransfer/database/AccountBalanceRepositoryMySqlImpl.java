@@ -4,85 +4,1200 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.mysql.cj.jdbc.exceptions.MysqlDataTruncation;
 import io.vertx.core.json.JsonArray;
-import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import io.vertx.rxjava.ext.sql.SQLClient;
+import io.vertx.ext.sql.SQLOptions;
 import io.vertx.rxjava.ext.sql.SQLConnection;
+import io.vertx.rxjava.ext.sql.SQLRowStream;
+import moneytransfer.exceptions.BatchItemFailedException;
+import moneytransfer.exceptions.IdempotencyKeyReusedException;
 import moneytransfer.exceptions.InsufficientAccountBalanceException;
 import moneytransfer.exceptions.MoneyOverflowException;
 import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferJournalEntry;
+import moneytransfer.models.TransferResult;
+import rx.Observable;
 import rx.Single;
 
 import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 @Singleton
 public class AccountBalanceRepositoryMySqlImpl implements AccountBalanceRepository {
 
-    private final JDBCClient jdbcClient;
+    final SQLClient sqlClient;
+    final TransferRetryPolicy transferRetryPolicy;
+    final Metrics metrics;
+    final BalanceCache balanceCache;
+    final BalanceStripes balanceStripes;
 
-    private static int MONEY_SCALE = 10;
-    private static int MONEY_PRECISION = 65;
+    static final int MONEY_SCALE = 10;
+    static final int MONEY_PRECISION = 65;
 
-    private static final String MONEY_DATATYPE = "DECIMAL(" + MONEY_PRECISION + "," + MONEY_SCALE + ")";
+    static final String MONEY_DATATYPE = "DECIMAL(" + MONEY_PRECISION + "," + MONEY_SCALE + ")";
+
+    private static final int ER_DUP_ENTRY = 1062;
+    private static final int ER_WARN_DATA_OUT_OF_RANGE = 1264;
+    private static final int ER_DATA_OUT_OF_RANGE = 1690;
+    private static final int IDEMPOTENCY_KEY_PURGE_ROWS = 1000;
+
+    private static final String UPSERT_BALANCE_STATEMENT = "INSERT INTO account_balance ( account_id, currency, balance ) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE balance=balance+CAST(? AS " + MONEY_DATATYPE + ")";
+    private static final String SUBTRACT_BALANCE_STATEMENT = "UPDATE account_balance set balance=balance-CAST(? AS " + MONEY_DATATYPE + ") WHERE balance-CAST(? AS " + MONEY_DATATYPE + ") >= 0 AND account_id = ? AND currency = ?";
+    private static final String INSERT_IDEMPOTENCY_KEY_STATEMENT = "INSERT INTO idempotency_key ( source_account, idempotency_key, request_hash, error_code ) VALUES (?, ?, ?, ?)";
+    private static final String PURGE_IDEMPOTENCY_KEYS_STATEMENT = "DELETE FROM idempotency_key WHERE created_at < NOW() - INTERVAL ? SECOND LIMIT " + IDEMPOTENCY_KEY_PURGE_ROWS;
+    private static final String SELECT_BALANCES_QUERY = "SELECT currency, CAST(balance AS CHAR) FROM account_balance WHERE account_id = ?";
+    private static final String SELECT_STRIPED_BALANCES_QUERY = "SELECT currency, CAST(SUM(balance) AS CHAR) FROM ( " +
+        "SELECT currency, balance FROM account_balance WHERE account_id = ? " +
+        "UNION ALL SELECT currency, balance FROM account_balance_stripe WHERE account_id = ? ) balances GROUP BY currency";
+    private static final String UPSERT_STRIPE_STATEMENT = "INSERT INTO account_balance_stripe ( account_id, currency, stripe, balance ) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE balance=balance+CAST(? AS " + MONEY_DATATYPE + ")";
+    private static final String LOCK_BALANCE_QUERY = "SELECT balance FROM account_balance WHERE account_id = ? AND currency = ? FOR UPDATE";
+    private static final String LOCK_STRIPES_QUERY = "SELECT stripe FROM account_balance_stripe WHERE account_id = ? AND currency = ? ORDER BY stripe FOR UPDATE";
+    private static final String FOLD_STRIPES_STATEMENT = "INSERT INTO account_balance ( account_id, currency, balance ) " +
+        "SELECT account_id, currency, SUM(balance) FROM account_balance_stripe WHERE account_id = ? AND currency = ? GROUP BY account_id, currency " +
+        "ON DUPLICATE KEY UPDATE balance = balance + VALUES(balance)";
+    private static final String CLEAR_STRIPES_STATEMENT = "UPDATE account_balance_stripe SET balance = 0 WHERE account_id = ? AND currency = ?";
+    private static final String SELECT_FILLED_STRIPES_QUERY = "SELECT DISTINCT account_id, currency FROM account_balance_stripe WHERE balance <> 0";
+    private static final String SELECT_STRIPE_TOTALS_QUERY = "SELECT currency, CAST(SUM(balance) AS CHAR), COUNT(*) FROM account_balance_stripe GROUP BY currency";
+    private static final String IDEMPOTENCY_KEY_SCOPE_COLUMN_QUERY = "SELECT COLUMN_NAME FROM information_schema.COLUMNS " +
+        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'idempotency_key' AND COLUMN_NAME = 'source_account'";
+    private static final String SELECT_IDEMPOTENCY_KEY_QUERY = "SELECT error_code, request_hash FROM idempotency_key WHERE source_account = ? AND idempotency_key = ?";
+    private static final String INSERT_TRANSFER_OUT_STATEMENT = "INSERT INTO transfer_out ( transfer_id, source_account, destination_account, currency, amount, state ) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_TRANSFER_OUT_STATEMENT = "UPDATE transfer_out SET state = ? WHERE transfer_id = ? AND state = ?";
+    private static final String SELECT_TRANSFER_OUT_QUERY = "SELECT state FROM transfer_out WHERE transfer_id = ?";
+    private static final String SELECT_PREPARED_TOTALS_QUERY = "SELECT currency, CAST(SUM(amount) AS CHAR) FROM transfer_out WHERE state = ? GROUP BY currency";
+    private static final String SELECT_PREPARED_TRANSFERS_QUERY = "SELECT transfer_id, source_account, destination_account, currency, CAST(amount AS CHAR) FROM transfer_out " +
+        "WHERE state = ? AND created_at <= NOW() - INTERVAL ? SECOND ORDER BY created_at";
+    private static final String PURGE_SETTLED_TRANSFERS_OUT_STATEMENT = "DELETE FROM transfer_out WHERE state IN (?, ?) AND created_at < NOW() - INTERVAL ? SECOND LIMIT " +
+        IDEMPOTENCY_KEY_PURGE_ROWS;
+    private static final String INSERT_TRANSFER_IN_STATEMENT = "INSERT INTO transfer_in ( transfer_id, state ) VALUES (?, ?)";
+    private static final String SELECT_TRANSFER_IN_QUERY = "SELECT state FROM transfer_in WHERE transfer_id = ?";
+    private static final String PURGE_TRANSFERS_IN_STATEMENT = "DELETE FROM transfer_in WHERE created_at < NOW() - INTERVAL ? SECOND LIMIT " + IDEMPOTENCY_KEY_PURGE_ROWS;
+    private static final String INSERT_JOURNAL_STATEMENT = "INSERT INTO transfer_journal ( account_id, counterparty_account, currency, amount ) VALUES ";
+    private static final String SELECT_JOURNAL_QUERY = "SELECT entry_id, counterparty_account, currency, CAST(amount AS CHAR), CAST(UNIX_TIMESTAMP(created_at) * 1000 AS SIGNED) " +
+        "FROM transfer_journal WHERE account_id = ? AND entry_id < ? ORDER BY entry_id DESC LIMIT ?";
+
+    private static final String START_SNAPSHOT_STATEMENT = "START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY";
+    private static final String COMMIT_STATEMENT = "COMMIT";
+    private static final String SELECT_ACCOUNT_RANGE_QUERY = "SELECT MIN(account_id), MAX(account_id) FROM account_balance";
+    private static final String SELECT_NEXT_ACCOUNT_QUERY = "SELECT MIN(account_id) FROM account_balance WHERE account_id >= ?";
+    private static final String RECORD_MINT_STATEMENT = "UPDATE currency_supply SET total = total + ? WHERE currency = ?";
+    private static final String SELECT_CURRENCY_SUPPLY_QUERY = "SELECT currency, CAST(total AS CHAR) FROM currency_supply";
+
+    private static final int JOURNAL_INSERT_ROWS = 1000;
+    private static final int JOURNAL_FETCH_SIZE = 128;
+
+    static final String TRANSFER_PREPARED = "PREPARED";
+    static final String TRANSFER_COMMITTED = "COMMITTED";
+    static final String TRANSFER_ABORTED = "ABORTED";
+    static final String TRANSFER_APPLIED = "APPLIED";
+
+    public AccountBalanceRepositoryMySqlImpl(SQLClient sqlClient) {
+        this(sqlClient, TransferRetryPolicy.noRetries());
+    }
+
+    public AccountBalanceRepositoryMySqlImpl(SQLClient sqlClient, TransferRetryPolicy transferRetryPolicy) {
+        this(sqlClient, transferRetryPolicy, new Metrics());
+    }
+
+    public AccountBalanceRepositoryMySqlImpl(SQLClient sqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics) {
+        this(sqlClient, transferRetryPolicy, metrics, BalanceCache.readFromPrimary());
+    }
+
+    public AccountBalanceRepositoryMySqlImpl(SQLClient sqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, BalanceCache balanceCache) {
+        this(sqlClient, transferRetryPolicy, metrics, balanceCache, BalanceStripes.none());
+    }
 
     @Inject
-    public AccountBalanceRepositoryMySqlImpl(JDBCClient jdbcClient) {
-        this.jdbcClient = jdbcClient;
+    public AccountBalanceRepositoryMySqlImpl(SQLClient sqlClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics, BalanceCache balanceCache,
+                                             BalanceStripes balanceStripes) {
+        this.sqlClient = sqlClient;
+        this.transferRetryPolicy = transferRetryPolicy;
+        this.metrics = metrics;
+        this.balanceCache = balanceCache;
+        this.balanceStripes = balanceStripes;
     }
 
     @Override
     public Single<Void> createTable() {
-        String createStatement = "CREATE TABLE account_balance ( account_id varchar(255), " +
+        return SchemaMigrations.migrate(sqlClient, "account_balance",
+            Arrays.asList(this::createBalanceTables, this::createCurrencySupplyTable, this::createBalanceStripeTable, this::scopeIdempotencyKeys));
+    }
+
+    private Single<Void> createBalanceTables(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS account_balance ( account_id varchar(255), " +
                                                                 "currency varchar(255), " +
                                                                 "balance " + MONEY_DATATYPE + ", " +
                                                                 "PRIMARY KEY (account_id, currency), " +
                                                                 "FOREIGN KEY (account_id) REFERENCES account(account_id))";
-        return jdbcClient.rxGetConnection().flatMap(sqlConnection ->
-            sqlConnection.rxUpdate(createStatement)
-                .doAfterTerminate(sqlConnection::close)).map(updateResult -> null);
+        return sqlConnection.rxUpdate(createStatement)
+            .flatMap((__) -> createIdempotencyKeyTable(sqlConnection))
+            .flatMap((__) -> createJournalTable(sqlConnection));
+    }
+
+    Single<Void> createCurrencySupplyTable(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS currency_supply ( currency varchar(255), " +
+                                                                "total " + MONEY_DATATYPE + " NOT NULL, " +
+                                                                "PRIMARY KEY (currency))";
+        return sqlConnection.rxExecute(createStatement);
+    }
+
+    Single<Void> createBalanceStripeTable(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS account_balance_stripe ( account_id varchar(255), " +
+                                                                "currency varchar(255), " +
+                                                                "stripe INT, " +
+                                                                "balance " + amountDatatype() + " NOT NULL, " +
+                                                                "PRIMARY KEY (account_id, currency, stripe), " +
+                                                                "FOREIGN KEY (account_id) REFERENCES account(account_id))";
+        return sqlConnection.rxExecute(createStatement);
+    }
+
+    Single<Void> scopeIdempotencyKeys(SQLConnection sqlConnection) {
+        String alterStatement = "ALTER TABLE idempotency_key ADD COLUMN source_account varchar(255) NOT NULL DEFAULT '' FIRST, " +
+                                                                "ADD COLUMN request_hash CHAR(64), " +
+                                                                "DROP PRIMARY KEY, " +
+                                                                "ADD PRIMARY KEY (source_account, idempotency_key), " +
+                                                                "ADD KEY (created_at)";
+        return sqlConnection.rxQuery(IDEMPOTENCY_KEY_SCOPE_COLUMN_QUERY)
+            .flatMap((resultSet) -> resultSet.getNumRows() == 0 ? sqlConnection.rxExecute(alterStatement) : Single.just(null));
+    }
+
+    @Override
+    public Single<Void> openConnections(int connections) {
+        return Observable.range(0, connections)
+            .flatMap((i) -> sqlClient.rxGetConnection().toObservable())
+            .toList()
+            .toSingle()
+            .map((sqlConnections) -> {
+                sqlConnections.forEach(SQLConnection::close);
+                return null;
+            });
+    }
+
+    Single<Void> createJournalTable(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS transfer_journal ( account_id varchar(255), " +
+                                                                "entry_id BIGINT NOT NULL AUTO_INCREMENT, " +
+                                                                "counterparty_account varchar(255), " +
+                                                                "currency varchar(255), " +
+                                                                "amount " + amountDatatype() + ", " +
+                                                                "created_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3), " +
+                                                                "PRIMARY KEY (account_id, entry_id), " +
+                                                                "KEY (entry_id))";
+        return sqlConnection.rxUpdate(createStatement).map(updateResult -> null);
+    }
+
+    Single<Void> createIdempotencyKeyTable(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS idempotency_key ( idempotency_key varchar(255), " +
+                                                                "error_code varchar(64), " +
+                                                                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                                                                "PRIMARY KEY (idempotency_key))";
+        return sqlConnection.rxUpdate(createStatement).map(updateResult -> null);
     }
 
     @Override
     public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        Object amountParam;
+        try {
+            amountParam = toAmountParam(amount, currency);
+        } catch (MoneyTooManyDecimalPlacesException | MoneyOverflowException ex) {
+            return Single.error(ex);
+        }
+        return transferAmount(sourceAccount, destinationAccount, amountParam, currency, null, null);
+    }
 
-        if (amount.scale() > MONEY_SCALE) {
-            return Single.error(new MoneyTooManyDecimalPlacesException());
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency) {
+        return transferMoney(sourceAccount, destinationAccount, amount, currency, null);
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency, String idempotencyKey) {
+        Object amountParam;
+        try {
+            amountParam = parseAmountParam(amount, currency);
+        } catch (MoneyTooManyDecimalPlacesException | MoneyOverflowException | NumberFormatException ex) {
+            return Single.error(ex);
         }
+        return transferAmount(sourceAccount, destinationAccount, amountParam, currency, idempotencyKey,
+            idempotencyKey == null ? null : IdempotencyKeys.fingerprint(sourceAccount, destinationAccount, amount, currency));
+    }
 
-        return jdbcClient.rxGetConnection().flatMap(sqlConnection ->
-            sqlConnection.rxSetAutoCommit(false)
-                .flatMap((__) ->
-                    subtractAmountFromSourceAccountBalance(sqlConnection, sourceAccount, currency, amount))
+    Single<Void> transferAmount(String sourceAccount, String destinationAccount, Object amountParam, String currency, String idempotencyKey,
+                                String requestHash) {
+        return transferRetryPolicy.execute(() -> metrics.time(TransferStage.CONNECTION_ACQUIRE, getConnection()).flatMap(sqlConnection -> {
+            long sourceVersion = balanceCache.beginWrite(sourceAccount);
+            long destinationVersion = balanceCache.beginWrite(destinationAccount);
+            return sqlConnection.rxSetAutoCommit(false)
                 .flatMap((__) ->
-                    addAmountToDestinationAccountBalance(sqlConnection, destinationAccount, currency, amount))
+                    lockAccountBalances(sqlConnection, currency, balanceStripes.isStriped(destinationAccount)
+                        ? Collections.singletonList(sourceAccount) : Arrays.asList(sourceAccount, destinationAccount)))
+                .flatMap((balances) ->
+                    subtractAmountFromSourceAccountBalance(sqlConnection, sourceAccount, currency, amountParam)
+                        .flatMap((__) ->
+                            addAmountToDestinationAccountBalance(sqlConnection, destinationAccount, currency, amountParam))
+                        .flatMap((__) -> recordJournalEntries(sqlConnection, transferLegs(sourceAccount, destinationAccount, currency, amountParam)))
+                        .flatMap((__) -> idempotencyKey == null ? Single.just(null) : insertIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash, null))
+                        .flatMap((__) -> metrics.time(TransferStage.COMMIT, sqlConnection.rxCommit()))
+                        .doOnSuccess((__) -> cacheTransferredBalances(sourceAccount, sourceVersion, destinationAccount, destinationVersion,
+                            currency, amountParam, balances)))
+                .doOnError((__) -> {
+                    balanceCache.invalidate(sourceAccount);
+                    balanceCache.invalidate(destinationAccount);
+                })
+                .onErrorResumeNext((throwable) -> metrics.time(TransferStage.ROLLBACK, sqlConnection.rxRollback())
+                    .flatMap((__) -> {
+                        Throwable error = translateError(throwable);
+                        if (isMoneyOverflow(error)) {
+                            error = new MoneyOverflowException(error);
+                        }
+                        if (idempotencyKey == null) {
+                            return Single.<Void>error(error);
+                        }
+                        if (isDuplicateKey(error)) {
+                            return replayIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash);
+                        }
+                        if (error instanceof InsufficientAccountBalanceException || error instanceof MoneyOverflowException) {
+                            return recordFailedTransfer(sqlConnection, sourceAccount, idempotencyKey, requestHash, error);
+                        }
+                        return Single.<Void>error(error);
+                    }))
+                .doAfterTerminate(sqlConnection::close);
+        }));
+    }
+
+    private void cacheTransferredBalances(String sourceAccount, long sourceVersion, String destinationAccount, long destinationVersion,
+                                          String currency, Object amountParam, Map<String, String> balances) {
+        if (!balanceCache.isEnabled()) {
+            return;
+        }
+        if (sourceAccount.equals(destinationAccount) || balanceStripes.isStriped(sourceAccount) || balanceStripes.isStriped(destinationAccount)) {
+            balanceCache.invalidate(sourceAccount);
+            balanceCache.invalidate(destinationAccount);
+            return;
+        }
+
+        BigDecimal amount = toBalance(String.valueOf(amountParam), currency);
+        balanceCache.completeWrite(sourceAccount, sourceVersion, currency, toBalance(balances.get(sourceAccount), currency).subtract(amount));
+        String destinationBalance = balances.get(destinationAccount);
+        balanceCache.completeWrite(destinationAccount, destinationVersion, currency,
+            destinationBalance == null ? amount : toBalance(destinationBalance, currency).add(amount));
+    }
+
+    @Override
+    public Single<Map<String, BigDecimal>> getBalances(String accountId) {
+        Map<String, BigDecimal> cached = balanceCache.get(accountId);
+        if (cached != null) {
+            return Single.just(cached);
+        }
+
+        long version = balanceCache.version(accountId);
+        return sqlClient.rxGetConnection().flatMap(sqlConnection ->
+            (balanceStripes.isStriped(accountId)
+                ? sqlConnection.rxQueryWithParams(SELECT_STRIPED_BALANCES_QUERY, new JsonArray().add(accountId).add(accountId))
+                : sqlConnection.rxQueryWithParams(SELECT_BALANCES_QUERY, new JsonArray().add(accountId)))
+                .doAfterTerminate(sqlConnection::close))
+            .map((resultSet) -> {
+                Map<String, BigDecimal> balances = new TreeMap<>();
+                resultSet.getResults().forEach(row -> balances.put(row.getString(0), toBalance(row.getString(1), row.getString(0))));
+                balanceCache.putIfUnchanged(accountId, version, balances);
+                return balances;
+            });
+    }
+
+    @Override
+    public Observable<TransferJournalEntry> getTransferHistory(String accountId, long beforeEntryId, int limit) {
+        JsonArray params = new JsonArray().add(accountId).add(beforeEntryId).add(limit);
+        return sqlClient.rxGetConnection().toObservable().flatMap(sqlConnection ->
+            streamRows(sqlConnection, SELECT_JOURNAL_QUERY, params)
+                .map((row) -> new TransferJournalEntry(row.getLong(0), row.getString(1), row.getString(2),
+                    toBalance(row.getString(3), row.getString(2)), row.getLong(4)))
+                .doOnUnsubscribe(sqlConnection::close));
+    }
+
+    @Override
+    public Single<BalanceScan> scanBalances(int partitions, int pageSize) {
+        return scanBalances(partitions, pageSize, false);
+    }
+
+    Single<BalanceScan> scanBalances(int partitions, int pageSize, boolean includePreparedTransfers) {
+        return getConnection().flatMap(sqlConnection ->
+            partitionBoundaries(sqlConnection, partitions)
+                .doAfterTerminate(sqlConnection::close))
+            .flatMap((boundaries) -> scanPartitions(boundaries, pageSize, includePreparedTransfers));
+    }
+
+    private Single<List<String>> partitionBoundaries(SQLConnection sqlConnection, int partitions) {
+        if (partitions < 2) {
+            return Single.just(Collections.emptyList());
+        }
+
+        return sqlConnection.rxQuery(SELECT_ACCOUNT_RANGE_QUERY).flatMap((resultSet) -> {
+            JsonArray range = resultSet.getResults().get(0);
+            if (range.getString(0) == null) {
+                return Single.just(Collections.<String>emptyList());
+            }
+
+            return Observable.from(KeyRanges.split(range.getString(0), range.getString(1), partitions))
+                .concatMap((candidate) -> sqlConnection.rxQueryWithParams(SELECT_NEXT_ACCOUNT_QUERY, new JsonArray().add(candidate)).toObservable())
+                .map((next) -> next.getResults().get(0).getString(0))
+                .filter((accountId) -> accountId != null)
+                .toList()
+                .toSingle()
+                .flatMap((accountIds) -> accountIds.isEmpty() ? Single.just(accountIds) : sortDistinct(sqlConnection, accountIds));
+        });
+    }
+
+    private Single<List<String>> sortDistinct(SQLConnection sqlConnection, List<String> accountIds) {
+        StringBuilder query = new StringBuilder("SELECT DISTINCT account_id FROM account_balance WHERE account_id IN (");
+        JsonArray params = new JsonArray();
+        for (String accountId : accountIds) {
+            query.append(params.isEmpty() ? "?" : ", ?");
+            params.add(accountId);
+        }
+        query.append(") ORDER BY account_id");
+        return sqlConnection.rxQueryWithParams(query.toString(), params)
+            .map((resultSet) -> {
+                List<String> sorted = new ArrayList<>();
+                resultSet.getResults().forEach(row -> sorted.add(row.getString(0)));
+                return sorted;
+            });
+    }
+
+    private Single<BalanceScan> scanPartitions(List<String> boundaries, int pageSize, boolean includePreparedTransfers) {
+        int partitions = boundaries.size() + 1;
+        List<SQLConnection> sqlConnections = new ArrayList<>();
+        return Observable.range(0, partitions)
+            .concatMap((i) -> getConnection().toObservable())
+            .doOnNext(sqlConnections::add)
+            .flatMap((sqlConnection) -> sqlConnection.rxExecute(START_SNAPSHOT_STATEMENT).toObservable())
+            .toList()
+            .toSingle()
+            .flatMap((__) -> readCurrencySupply(sqlConnections.get(0)))
+            .flatMap((supply) -> readStripeTotals(sqlConnections.get(0), supply))
+            .flatMap((supply) -> includePreparedTransfers ? readPreparedTotals(sqlConnections.get(0), supply) : Single.just(supply))
+            .flatMap((supply) -> Observable.range(0, partitions)
+                .flatMap((i) -> scanPartition(sqlConnections.get(i), i == 0 ? null : boundaries.get(i - 1), null,
+                    i == partitions - 1 ? null : boundaries.get(i), pageSize, new BalanceScan()).toObservable())
+                .reduce(supply, BalanceScan::merge)
+                .toSingle())
+            .doAfterTerminate(() -> sqlConnections.forEach((sqlConnection) ->
+                sqlConnection.rxExecute(COMMIT_STATEMENT).subscribe((__) -> sqlConnection.close(), (__) -> sqlConnection.close())));
+    }
+
+    private Single<BalanceScan> readCurrencySupply(SQLConnection sqlConnection) {
+        return sqlConnection.rxQuery(SELECT_CURRENCY_SUPPLY_QUERY)
+            .map((resultSet) -> {
+                BalanceScan supply = new BalanceScan();
+                resultSet.getResults().forEach(row -> supply.addSupply(row.getString(0), new BigDecimal(row.getString(1))));
+                return supply;
+            });
+    }
+
+    private Single<BalanceScan> readStripeTotals(SQLConnection sqlConnection, BalanceScan scan) {
+        return sqlConnection.rxQuery(SELECT_STRIPE_TOTALS_QUERY)
+            .map((resultSet) -> {
+                resultSet.getResults().forEach(row -> scan.addStripes(row.getString(0), toBalance(row.getString(1), row.getString(0)), row.getLong(2)));
+                return scan;
+            });
+    }
+
+    private Single<BalanceScan> readPreparedTotals(SQLConnection sqlConnection, BalanceScan scan) {
+        return sqlConnection.rxQueryWithParams(SELECT_PREPARED_TOTALS_QUERY, new JsonArray().add(TRANSFER_PREPARED))
+            .map((resultSet) -> {
+                resultSet.getResults().forEach(row -> scan.addInFlight(row.getString(0), toBalance(row.getString(1), row.getString(0))));
+                return scan;
+            });
+    }
+
+    private Single<BalanceScan> scanPartition(SQLConnection sqlConnection, String fromAccount, JsonArray lastRow, String toAccount, int pageSize,
+                                              BalanceScan scan) {
+        List<String> conditions = new ArrayList<>();
+        JsonArray params = new JsonArray();
+        if (lastRow != null) {
+            conditions.add("(account_id > ? OR (account_id = ? AND currency > ?))");
+            params.add(lastRow.getString(0)).add(lastRow.getString(0)).add(lastRow.getString(1));
+        } else if (fromAccount != null) {
+            conditions.add("account_id >= ?");
+            params.add(fromAccount);
+        }
+        if (toAccount != null) {
+            conditions.add("account_id < ?");
+            params.add(toAccount);
+        }
+        params.add(pageSize);
+        String query = "SELECT account_id, currency, CAST(balance AS CHAR) FROM account_balance" +
+            (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) + " ORDER BY account_id, currency LIMIT ?";
+
+        return sqlConnection.rxQueryWithParams(query, params).flatMap((resultSet) -> {
+            List<JsonArray> rows = resultSet.getResults();
+            rows.forEach(row -> scan.add(row.getString(0), row.getString(1), toBalance(row.getString(2), row.getString(1))));
+            if (rows.size() < pageSize) {
+                return Single.just(scan);
+            }
+            return scanPartition(sqlConnection, fromAccount, rows.get(rows.size() - 1), toAccount, pageSize, scan);
+        });
+    }
+
+    @Override
+    public Single<Void> baselineCurrencySupply(Map<String, BigDecimal> totals) {
+        if (totals.isEmpty()) {
+            return Single.just(null);
+        }
+
+        StringBuilder statement = new StringBuilder("INSERT IGNORE INTO currency_supply ( currency, total ) VALUES ");
+        JsonArray params = new JsonArray();
+        totals.forEach((currency, total) -> {
+            statement.append(params.isEmpty() ? "(?, ?)" : ", (?, ?)");
+            params.add(currency).add(total.toPlainString());
+        });
+        return getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxUpdateWithParams(statement.toString(), params)
+                .doAfterTerminate(sqlConnection::close))
+            .map((updateResult) -> null);
+    }
+
+    private Single<Void> recordJournalEntries(SQLConnection sqlConnection, List<JsonArray> entries) {
+        Single<Void> recorded = Single.just(null);
+        for (int from = 0; from < entries.size(); from += JOURNAL_INSERT_ROWS) {
+            StringBuilder statement = new StringBuilder(INSERT_JOURNAL_STATEMENT);
+            JsonArray params = new JsonArray();
+            for (JsonArray entry : entries.subList(from, Math.min(from + JOURNAL_INSERT_ROWS, entries.size()))) {
+                statement.append(params.isEmpty() ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                params.addAll(entry);
+            }
+            recorded = recorded.flatMap((__) -> sqlConnection.rxUpdateWithParams(statement.toString(), params).map((updateResult) -> null));
+        }
+        return metrics.time(TransferStage.JOURNAL, recorded);
+    }
+
+    private List<JsonArray> transferLegs(String sourceAccount, String destinationAccount, String currency, Object amountParam) {
+        return Arrays.asList(
+            new JsonArray().add(sourceAccount).add(destinationAccount).add(currency).add(negateAmountParam(amountParam)),
+            new JsonArray().add(destinationAccount).add(sourceAccount).add(currency).add(amountParam));
+    }
+
+    private Single<Void> insertIdempotencyKey(SQLConnection sqlConnection, String sourceAccount, String idempotencyKey, String requestHash,
+                                              ErrorCode errorCode) {
+        JsonArray params = new JsonArray();
+        params.add(sourceAccount);
+        params.add(idempotencyKey);
+        params.add(requestHash);
+        if (errorCode == null) {
+            params.addNull();
+        } else {
+            params.add(errorCode.name());
+        }
+        return sqlConnection.rxUpdateWithParams(INSERT_IDEMPOTENCY_KEY_STATEMENT, params)
+            .map((updateResult) -> null);
+    }
+
+    private Single<Void> recordFailedTransfer(SQLConnection sqlConnection, String sourceAccount, String idempotencyKey, String requestHash,
+                                              Throwable error) {
+        ErrorCode errorCode = error instanceof MoneyOverflowException ? ErrorCode.MONEY_OVERFLOW : ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE;
+        return insertIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash, errorCode)
+            .flatMap((__) -> sqlConnection.rxCommit())
+            .map((__) -> true)
+            .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> {
+                Throwable insertError = translateError(throwable);
+                return isDuplicateKey(insertError) ? Single.just(false) : Single.error(insertError);
+            }))
+            .flatMap((recorded) -> recorded ? Single.<Void>error(error) : replayIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash));
+    }
+
+    private Single<Void> replayIdempotencyKey(SQLConnection sqlConnection, String sourceAccount, String idempotencyKey, String requestHash) {
+        return sqlConnection.rxQueryWithParams(SELECT_IDEMPOTENCY_KEY_QUERY, new JsonArray().add(sourceAccount).add(idempotencyKey))
+            .flatMap((resultSet) -> {
+                if (resultSet.getNumRows() == 0) {
+                    return Single.error(new IdempotencyKeyReusedException());
+                }
+                String errorCode = resultSet.getResults().get(0).getString(0);
+                String recordedRequestHash = resultSet.getResults().get(0).getString(1);
+                if (recordedRequestHash != null && !recordedRequestHash.equals(requestHash)) {
+                    return Single.error(new IdempotencyKeyReusedException());
+                }
+                if (errorCode == null) {
+                    return Single.just(null);
+                }
+                switch (ErrorCode.valueOf(errorCode)) {
+                    case INSUFFICIENT_ACCOUNT_BALANCE:
+                        return Single.error(new InsufficientAccountBalanceException());
+                    case MONEY_OVERFLOW:
+                        return Single.error(new MoneyOverflowException());
+                    default:
+                        return Single.error(new IllegalStateException("Unknown idempotency key outcome " + errorCode));
+                }
+            });
+    }
+
+    @Override
+    public Single<Integer> purgeIdempotencyKeys(long retentionMillis) {
+        JsonArray params = new JsonArray().add(TimeUnit.MILLISECONDS.toSeconds(retentionMillis));
+        return getConnection().flatMap(sqlConnection -> purgeRows(sqlConnection, PURGE_IDEMPOTENCY_KEYS_STATEMENT, params, 0)
+            .doAfterTerminate(sqlConnection::close));
+    }
+
+    Single<Integer> purgeSettledTransfers(long retentionMillis) {
+        long retentionSeconds = TimeUnit.MILLISECONDS.toSeconds(retentionMillis);
+        JsonArray transferOutParams = new JsonArray().add(TRANSFER_COMMITTED).add(TRANSFER_ABORTED).add(retentionSeconds);
+        return getConnection().flatMap(sqlConnection -> purgeRows(sqlConnection, PURGE_SETTLED_TRANSFERS_OUT_STATEMENT, transferOutParams, 0)
+            .flatMap((purged) -> purgeRows(sqlConnection, PURGE_TRANSFERS_IN_STATEMENT, new JsonArray().add(retentionSeconds), purged))
+            .doAfterTerminate(sqlConnection::close));
+    }
+
+    private Single<Integer> purgeRows(SQLConnection sqlConnection, String statement, JsonArray params, int purged) {
+        return sqlConnection.rxUpdateWithParams(statement, params)
+            .flatMap((updateResult) -> updateResult.getUpdated() < IDEMPOTENCY_KEY_PURGE_ROWS ? Single.just(purged + updateResult.getUpdated())
+                : purgeRows(sqlConnection, statement, params, purged + updateResult.getUpdated()));
+    }
+
+    @Override
+    public Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances) {
+        ErrorCode[] results = new ErrorCode[openingBalances.size()];
+        Object[] balanceParams = new Object[openingBalances.size()];
+        SortedSet<String> accountIds = new TreeSet<>();
+        for (int i = 0; i < openingBalances.size(); i++) {
+            OpeningBalance openingBalance = openingBalances.get(i);
+            if (openingBalance.getCurrency() != null) {
+                try {
+                    if (openingBalance.getBalance().precision() - openingBalance.getBalance().scale() > MONEY_PRECISION - MONEY_SCALE) {
+                        throw new MoneyOverflowException();
+                    }
+                    balanceParams[i] = toAmountParam(openingBalance.getBalance(), openingBalance.getCurrency());
+                } catch (MoneyTooManyDecimalPlacesException ex) {
+                    results[i] = ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES;
+                    continue;
+                } catch (MoneyOverflowException ex) {
+                    results[i] = ErrorCode.MONEY_OVERFLOW;
+                    continue;
+                }
+            }
+            accountIds.add(openingBalance.getAccountId());
+        }
+
+        if (accountIds.isEmpty()) {
+            return Single.just(Arrays.asList(results));
+        }
+
+        return transferRetryPolicy.execute(() -> getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> insertAccounts(sqlConnection, accountIds))
+                .flatMap((__) -> lockExistingBalances(sqlConnection, accountIds))
+                .flatMap((existingBalances) -> {
+                    ErrorCode[] rowResults = results.clone();
+                    Map<String, BigDecimal> minted = new TreeMap<>();
+                    StringBuilder statement = new StringBuilder("INSERT INTO account_balance ( account_id, currency, balance ) VALUES ");
+                    JsonArray params = new JsonArray();
+                    for (int i = 0; i < openingBalances.size(); i++) {
+                        OpeningBalance openingBalance = openingBalances.get(i);
+                        if (rowResults[i] != null || openingBalance.getCurrency() == null) {
+                            continue;
+                        }
+                        if (!existingBalances.add(Arrays.asList(openingBalance.getAccountId(), openingBalance.getCurrency()))) {
+                            rowResults[i] = ErrorCode.BALANCE_ALREADY_EXISTS;
+                            continue;
+                        }
+                        statement.append(params.isEmpty() ? "(?, ?, ?)" : ", (?, ?, ?)");
+                        params.add(openingBalance.getAccountId()).add(openingBalance.getCurrency()).add(balanceParams[i]);
+                        minted.merge(openingBalance.getCurrency(), openingBalance.getBalance(), BigDecimal::add);
+                    }
+                    Single<Void> inserted = params.isEmpty() ? Single.just(null) :
+                        sqlConnection.rxUpdateWithParams(statement.toString(), params)
+                            .flatMap((updateResult) -> recordMints(sqlConnection, minted));
+                    return inserted.flatMap((__) -> sqlConnection.rxCommit()).map((__) -> Arrays.asList(rowResults));
+                })
+                .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> Single.<List<ErrorCode>>error(translateError(throwable))))
+                .doAfterTerminate(() -> {
+                    accountIds.forEach(balanceCache::invalidate);
+                    sqlConnection.close();
+                })));
+    }
+
+    private Single<Void> recordMints(SQLConnection sqlConnection, Map<String, BigDecimal> minted) {
+        List<JsonArray> batchParams = new ArrayList<>();
+        minted.forEach((currency, total) -> batchParams.add(new JsonArray().add(total.toPlainString()).add(currency)));
+        return batchUpdate(sqlConnection, RECORD_MINT_STATEMENT, batchParams).map((updateCounts) -> null);
+    }
+
+    @Override
+    public Single<Void> deleteAccounts(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Single.just(null);
+        }
+
+        StringBuilder inList = new StringBuilder("(");
+        JsonArray params = new JsonArray();
+        for (String accountId : new TreeSet<>(accountIds)) {
+            inList.append(params.isEmpty() ? "?" : ", ?");
+            params.add(accountId);
+        }
+        inList.append(")");
+        return transferRetryPolicy.execute(() -> getConnection().flatMap(sqlConnection -> {
+            Map<String, BigDecimal> deletedBalances = new TreeMap<>();
+            return sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> sumBalances(sqlConnection, "account_balance", inList, params, deletedBalances))
+                .flatMap((__) -> sumBalances(sqlConnection, "account_balance_stripe", inList, params, deletedBalances))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams("DELETE FROM account_balance_stripe WHERE account_id IN " + inList, params))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams("DELETE FROM account_balance WHERE account_id IN " + inList, params))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams("DELETE FROM transfer_journal WHERE account_id IN " + inList, params))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams("DELETE FROM account WHERE account_id IN " + inList, params))
+                .flatMap((__) -> {
+                    deletedBalances.replaceAll((currency, total) -> total.negate());
+                    return deletedBalances.isEmpty() ? Single.just(null) : recordMints(sqlConnection, deletedBalances);
+                })
                 .flatMap((__) -> sqlConnection.rxCommit())
-                .onErrorResumeNext((throwable) -> sqlConnection.rxRollback()
+                .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> Single.<Void>error(translateError(throwable))))
+                .doAfterTerminate(() -> {
+                    accountIds.forEach(balanceCache::invalidate);
+                    sqlConnection.close();
+                });
+        }));
+    }
+
+    private Single<Void> sumBalances(SQLConnection sqlConnection, String table, CharSequence inList, JsonArray params, Map<String, BigDecimal> totals) {
+        return sqlConnection.rxQueryWithParams("SELECT currency, CAST(SUM(balance) AS CHAR) FROM " + table + " WHERE account_id IN " + inList +
+            " GROUP BY currency FOR UPDATE", params)
+            .map((resultSet) -> {
+                resultSet.getResults().forEach(row -> totals.merge(row.getString(0), toBalance(row.getString(1), row.getString(0)), BigDecimal::add));
+                return null;
+            });
+    }
+
+    private Single<Void> insertAccounts(SQLConnection sqlConnection, Collection<String> accountIds) {
+        StringBuilder statement = new StringBuilder("INSERT INTO account ( account_id ) VALUES ");
+        JsonArray params = new JsonArray();
+        for (String accountId : accountIds) {
+            statement.append(params.isEmpty() ? "(?)" : ", (?)");
+            params.add(accountId);
+        }
+        statement.append(" ON DUPLICATE KEY UPDATE account_id = account_id");
+        return sqlConnection.rxUpdateWithParams(statement.toString(), params).map((updateResult) -> null);
+    }
+
+    private Single<Set<List<String>>> lockExistingBalances(SQLConnection sqlConnection, Collection<String> accountIds) {
+        StringBuilder query = new StringBuilder("SELECT account_id, currency FROM account_balance WHERE account_id IN (");
+        JsonArray params = new JsonArray();
+        for (String accountId : accountIds) {
+            query.append(params.isEmpty() ? "?" : ", ?");
+            params.add(accountId);
+        }
+        query.append(") FOR UPDATE");
+        return sqlConnection.rxQueryWithParams(query.toString(), params)
+            .map((resultSet) -> {
+                Set<List<String>> existingBalances = new HashSet<>();
+                resultSet.getResults().forEach(row -> existingBalances.add(Arrays.asList(row.getString(0), row.getString(1))));
+                return existingBalances;
+            });
+    }
+
+    Single<Void> createCrossShardTransferTables() {
+        return SchemaMigrations.migrate(sqlClient, "cross_shard_transfer", Collections.singletonList(this::createCrossShardTransferTables));
+    }
+
+    private Single<Void> createCrossShardTransferTables(SQLConnection sqlConnection) {
+        String createTransferOutStatement = "CREATE TABLE IF NOT EXISTS transfer_out ( transfer_id varchar(255), " +
+                                                                "source_account varchar(255), " +
+                                                                "destination_account varchar(255), " +
+                                                                "currency varchar(255), " +
+                                                                "amount " + MONEY_DATATYPE + ", " +
+                                                                "state varchar(16), " +
+                                                                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                                                                "PRIMARY KEY (transfer_id), " +
+                                                                "KEY (state))";
+        String createTransferInStatement = "CREATE TABLE IF NOT EXISTS transfer_in ( transfer_id varchar(255), " +
+                                                                "state varchar(16), " +
+                                                                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                                                                "PRIMARY KEY (transfer_id))";
+        return sqlConnection.rxUpdate(createTransferOutStatement)
+            .flatMap((__) -> sqlConnection.rxUpdate(createTransferInStatement))
+            .map(updateResult -> null);
+    }
+
+    Single<String> reserveTransfer(String transferId, String sourceAccount, String destinationAccount, Object amountParam, String currency,
+                                   String idempotencyKey, String requestHash) {
+        JsonArray params = new JsonArray()
+            .add(transferId)
+            .add(sourceAccount)
+            .add(destinationAccount)
+            .add(currency)
+            .add(amountParam)
+            .add(TRANSFER_PREPARED);
+        return transferRetryPolicy.execute(() -> metrics.time(TransferStage.CONNECTION_ACQUIRE, getConnection()).flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> idempotencyKey == null ? Single.just(null) : insertIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash, null))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams(INSERT_TRANSFER_OUT_STATEMENT, params))
+                .flatMap((__) -> subtractAmountFromSourceAccountBalance(sqlConnection, sourceAccount, currency, amountParam))
+                .flatMap((__) -> recordJournalEntries(sqlConnection, Collections.singletonList(
+                    new JsonArray().add(sourceAccount).add(destinationAccount).add(currency).add(negateAmountParam(amountParam)))))
+                .flatMap((__) -> metrics.time(TransferStage.COMMIT, sqlConnection.rxCommit()))
+                .map((__) -> TRANSFER_PREPARED)
+                .onErrorResumeNext((throwable) -> metrics.time(TransferStage.ROLLBACK, sqlConnection.rxRollback())
                     .flatMap((__) -> {
-                        if (throwable instanceof MysqlDataTruncation) {
-                            return Single.<Void>error(new MoneyOverflowException(throwable));
+                        Throwable error = translateError(throwable);
+                        if (isDuplicateKey(error)) {
+                            return (idempotencyKey == null ? Single.<Void>just(null) : replayIdempotencyKey(sqlConnection, sourceAccount, idempotencyKey, requestHash))
+                                .flatMap((replayed) -> queryState(sqlConnection, SELECT_TRANSFER_OUT_QUERY, transferId));
+                        }
+                        if (idempotencyKey != null && error instanceof InsufficientAccountBalanceException) {
+                            return recordFailedTransfer(sqlConnection, sourceAccount, idempotencyKey, requestHash, error)
+                                .flatMap((replayed) -> queryState(sqlConnection, SELECT_TRANSFER_OUT_QUERY, transferId));
                         }
-                        return Single.error(throwable);
+                        return Single.<String>error(error);
                     }))
-                .doAfterTerminate(sqlConnection::close));
+                .doAfterTerminate(() -> {
+                    balanceCache.invalidate(sourceAccount);
+                    sqlConnection.close();
+                })));
+    }
+
+    Single<String> applyCredit(String transferId, String sourceAccount, String destinationAccount, Object amountParam, String currency) {
+        return transferRetryPolicy.execute(() -> metrics.time(TransferStage.CONNECTION_ACQUIRE, getConnection()).flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams(INSERT_TRANSFER_IN_STATEMENT, new JsonArray().add(transferId).add(TRANSFER_APPLIED)))
+                .flatMap((__) -> addAmountToDestinationAccountBalance(sqlConnection, destinationAccount, currency, amountParam))
+                .flatMap((__) -> recordJournalEntries(sqlConnection, Collections.singletonList(
+                    new JsonArray().add(destinationAccount).add(sourceAccount).add(currency).add(amountParam))))
+                .flatMap((__) -> metrics.time(TransferStage.COMMIT, sqlConnection.rxCommit()))
+                .map((__) -> TRANSFER_APPLIED)
+                .onErrorResumeNext((throwable) -> metrics.time(TransferStage.ROLLBACK, sqlConnection.rxRollback())
+                    .flatMap((__) -> {
+                        Throwable error = translateError(throwable);
+                        if (isDuplicateKey(error)) {
+                            return queryState(sqlConnection, SELECT_TRANSFER_IN_QUERY, transferId);
+                        }
+                        if (isMoneyOverflow(error)) {
+                            return fenceCredit(sqlConnection, transferId);
+                        }
+                        return Single.<String>error(error);
+                    }))
+                .doAfterTerminate(() -> {
+                    balanceCache.invalidate(destinationAccount);
+                    sqlConnection.close();
+                })));
+    }
+
+    private Single<String> fenceCredit(SQLConnection sqlConnection, String transferId) {
+        return sqlConnection.rxUpdateWithParams(INSERT_TRANSFER_IN_STATEMENT, new JsonArray().add(transferId).add(TRANSFER_ABORTED))
+            .flatMap((__) -> sqlConnection.rxCommit())
+            .map((__) -> TRANSFER_ABORTED)
+            .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> {
+                Throwable error = translateError(throwable);
+                return isDuplicateKey(error) ? queryState(sqlConnection, SELECT_TRANSFER_IN_QUERY, transferId) : Single.<String>error(error);
+            }));
+    }
+
+    Single<Void> completeReservation(String transferId) {
+        return transferRetryPolicy.execute(() -> getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxUpdateWithParams(UPDATE_TRANSFER_OUT_STATEMENT, new JsonArray().add(TRANSFER_COMMITTED).add(transferId).add(TRANSFER_PREPARED))
+                .doAfterTerminate(sqlConnection::close)))
+            .map((updateResult) -> null);
+    }
+
+    Single<Void> cancelReservation(String transferId, String sourceAccount, String destinationAccount, Object amountParam, String currency) {
+        return transferRetryPolicy.execute(() -> getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams(UPDATE_TRANSFER_OUT_STATEMENT,
+                    new JsonArray().add(TRANSFER_ABORTED).add(transferId).add(TRANSFER_PREPARED)))
+                .flatMap((updateResult) -> updateResult.getUpdated() == 1 ?
+                    addAmountToDestinationAccountBalance(sqlConnection, sourceAccount, currency, amountParam)
+                        .flatMap((__) -> recordJournalEntries(sqlConnection, Collections.singletonList(
+                            new JsonArray().add(sourceAccount).add(destinationAccount).add(currency).add(amountParam)))) :
+                    Single.just(null))
+                .flatMap((__) -> sqlConnection.rxCommit())
+                .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> Single.<Void>error(translateError(throwable))))
+                .doAfterTerminate(() -> {
+                    balanceCache.invalidate(sourceAccount);
+                    sqlConnection.close();
+                })));
+    }
+
+    Single<List<JsonArray>> findPreparedTransfers() {
+        return findPreparedTransfers(0);
+    }
+
+    Single<List<JsonArray>> findPreparedTransfers(long minAgeMillis) {
+        JsonArray params = new JsonArray().add(TRANSFER_PREPARED).add(TimeUnit.MILLISECONDS.toSeconds(minAgeMillis));
+        return sqlClient.rxGetConnection().flatMap(sqlConnection ->
+            sqlConnection.rxQueryWithParams(SELECT_PREPARED_TRANSFERS_QUERY, params)
+                .doAfterTerminate(sqlConnection::close))
+            .map((resultSet) -> resultSet.getResults());
+    }
+
+    private Single<String> queryState(SQLConnection sqlConnection, String query, String transferId) {
+        return sqlConnection.rxQueryWithParams(query, new JsonArray().add(transferId))
+            .map((resultSet) -> resultSet.getResults().get(0).getString(0));
+    }
+
+    @Override
+    public Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode) {
+        TransferResult[] results = new TransferResult[transfers.size()];
+        Object[] amountParams = new Object[transfers.size()];
+        List<Integer> pendingIndexes = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            try {
+                amountParams[i] = toAmountParam(transfer.getAmount(), transfer.getCurrency());
+                pendingIndexes.add(i);
+            } catch (MoneyTooManyDecimalPlacesException ex) {
+                results[i] = TransferResult.failed(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES);
+            } catch (MoneyOverflowException ex) {
+                results[i] = TransferResult.failed(ErrorCode.MONEY_OVERFLOW);
+            }
+        }
+
+        if (pendingIndexes.isEmpty() || (batchMode == BatchMode.ALL_OR_NOTHING && pendingIndexes.size() < transfers.size())) {
+            return Single.just(fillRolledBack(results));
+        }
+
+        return transferRetryPolicy.execute(() -> metrics.time(TransferStage.CONNECTION_ACQUIRE, getConnection()).flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> executeBatch(sqlConnection, transfers, amountParams, pendingIndexes, results.clone(), batchMode))
+                .doOnSuccess((__) -> invalidateCachedBalances(transfers, pendingIndexes))
+                .doOnError((__) -> invalidateCachedBalances(transfers, pendingIndexes))
+                .doAfterTerminate(sqlConnection::close)));
     }
 
-    private Single<Void> addAmountToDestinationAccountBalance(SQLConnection sqlConnection, String destinationAccount, String currency, BigDecimal amount) {
-        String upsertBalanceStatement = "INSERT INTO account_balance ( account_id, currency, balance ) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE balance=balance+CAST(? AS " + MONEY_DATATYPE + ")";
+    private Single<List<TransferResult>> executeBatch(SQLConnection sqlConnection, List<Transfer> transfers, Object[] amountParams,
+                                                     List<Integer> pendingIndexes, TransferResult[] results, BatchMode batchMode) {
+        List<Integer> debitedIndexes = new ArrayList<>();
+        return lockAccountBalances(sqlConnection, transfers, pendingIndexes)
+            .flatMap((__) -> foldSourceStripes(sqlConnection, transfers, pendingIndexes))
+            .flatMap((__) -> subtractAmountsFromSourceAccountBalances(sqlConnection, transfers, amountParams, pendingIndexes))
+            .flatMap((updateCounts) -> {
+                for (int i = 0; i < pendingIndexes.size(); i++) {
+                    if (updateCounts.get(i) == 1) {
+                        debitedIndexes.add(pendingIndexes.get(i));
+                    } else {
+                        results[pendingIndexes.get(i)] = TransferResult.failed(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE);
+                    }
+                }
+
+                if (batchMode == BatchMode.ALL_OR_NOTHING && debitedIndexes.size() < pendingIndexes.size()) {
+                    return metrics.time(TransferStage.ROLLBACK, sqlConnection.rxRollback()).map((__) -> fillRolledBack(results));
+                }
+
+                return addAmountsToDestinationAccountBalances(sqlConnection, transfers, amountParams, debitedIndexes)
+                    .flatMap((__) -> recordJournalEntries(sqlConnection, batchTransferLegs(transfers, amountParams, debitedIndexes)))
+                    .flatMap((__) -> metrics.time(TransferStage.COMMIT, sqlConnection.rxCommit()))
+                    .map((__) -> {
+                        debitedIndexes.forEach(index -> results[index] = TransferResult.success());
+                        return Arrays.asList(results);
+                    });
+            })
+            .onErrorResumeNext((throwable) -> metrics.time(TransferStage.ROLLBACK, sqlConnection.rxRollback())
+                .flatMap((__) -> {
+                    if (!(throwable instanceof BatchItemFailedException)) {
+                        return Single.error(translateError(throwable));
+                    }
+
+                    BatchItemFailedException batchItemFailedException = (BatchItemFailedException) throwable;
+                    results[batchItemFailedException.getItemIndex()] = TransferResult.failed(batchItemFailedException.getErrorCode());
+                    List<Integer> remainingIndexes = new ArrayList<>(pendingIndexes);
+                    remainingIndexes.remove(Integer.valueOf(batchItemFailedException.getItemIndex()));
+                    if (batchMode == BatchMode.ALL_OR_NOTHING || remainingIndexes.isEmpty()) {
+                        remainingIndexes.forEach(index -> results[index] = null);
+                        return Single.just(fillRolledBack(results));
+                    }
+                    return executeBatch(sqlConnection, transfers, amountParams, remainingIndexes, results, batchMode);
+                }));
+    }
+
+    private Single<Void> lockAccountBalances(SQLConnection sqlConnection, List<Transfer> transfers, List<Integer> indexes) {
+        Map<String, SortedSet<String>> accountsByCurrency = new TreeMap<>();
+        for (int index : indexes) {
+            Transfer transfer = transfers.get(index);
+            SortedSet<String> accounts = accountsByCurrency.computeIfAbsent(transfer.getCurrency(), (__) -> new TreeSet<>());
+            accounts.add(transfer.getSourceAccount());
+            if (!balanceStripes.isStriped(transfer.getDestinationAccount())) {
+                accounts.add(transfer.getDestinationAccount());
+            }
+        }
+
+        Single<Void> locked = Single.just(null);
+        for (Map.Entry<String, SortedSet<String>> entry : accountsByCurrency.entrySet()) {
+            locked = locked.flatMap((__) -> lockAccountBalances(sqlConnection, entry.getKey(), entry.getValue()).map((balances) -> null));
+        }
+        return locked;
+    }
+
+    private Single<Map<String, String>> lockAccountBalances(SQLConnection sqlConnection, String currency, Collection<String> accounts) {
+        SortedSet<String> sortedAccounts = new TreeSet<>(accounts);
+        StringBuilder query = new StringBuilder("SELECT account_id, CAST(balance AS CHAR) FROM account_balance WHERE currency = ? AND account_id IN (");
         JsonArray params = new JsonArray();
-        params.add(destinationAccount);
         params.add(currency);
-        params.add(amount.toString());
-        params.add(amount.toString());
-        return sqlConnection.rxUpdateWithParams(upsertBalanceStatement, params)
+        for (String account : sortedAccounts) {
+            query.append(params.size() == 1 ? "?" : ", ?");
+            params.add(account);
+        }
+        query.append(") ORDER BY account_id FOR UPDATE");
+        return sqlConnection.rxQueryWithParams(query.toString(), params)
+            .map((resultSet) -> {
+                Map<String, String> balances = new TreeMap<>();
+                resultSet.getResults().forEach(row -> balances.put(row.getString(0), row.getString(1)));
+                return balances;
+            });
+    }
+
+    private List<JsonArray> batchTransferLegs(List<Transfer> transfers, Object[] amountParams, List<Integer> indexes) {
+        List<JsonArray> entries = new ArrayList<>();
+        for (int index : indexes) {
+            Transfer transfer = transfers.get(index);
+            entries.addAll(transferLegs(transfer.getSourceAccount(), transfer.getDestinationAccount(), transfer.getCurrency(), amountParams[index]));
+        }
+        return entries;
+    }
+
+    private void invalidateCachedBalances(List<Transfer> transfers, List<Integer> indexes) {
+        for (int index : indexes) {
+            balanceCache.invalidate(transfers.get(index).getSourceAccount());
+            balanceCache.invalidate(transfers.get(index).getDestinationAccount());
+        }
+    }
+
+    private Single<Void> addAmountsToDestinationAccountBalances(SQLConnection sqlConnection, List<Transfer> transfers, Object[] amountParams,
+                                                                List<Integer> indexes) {
+        List<Integer> balanceIndexes = new ArrayList<>();
+        List<JsonArray> balanceParams = new ArrayList<>();
+        List<Integer> stripeIndexes = new ArrayList<>();
+        List<JsonArray> stripeParams = new ArrayList<>();
+        for (int index : indexes) {
+            Transfer transfer = transfers.get(index);
+            if (balanceStripes.isStriped(transfer.getDestinationAccount())) {
+                stripeIndexes.add(index);
+                stripeParams.add(new JsonArray().add(transfer.getDestinationAccount()).add(transfer.getCurrency()).add(balanceStripes.nextStripe())
+                    .add(amountParams[index]).add(amountParams[index]));
+            } else {
+                balanceIndexes.add(index);
+                balanceParams.add(addBalanceParams(transfer.getDestinationAccount(), transfer.getCurrency(), amountParams[index]));
+            }
+        }
+        return addAmounts(sqlConnection, upsertBalanceStatement(), balanceParams, balanceIndexes)
+            .flatMap((__) -> addAmounts(sqlConnection, upsertStripeStatement(), stripeParams, stripeIndexes));
+    }
+
+    private Single<Void> addAmounts(SQLConnection sqlConnection, String statement, List<JsonArray> batchParams, List<Integer> indexes) {
+        if (indexes.isEmpty()) {
+            return Single.just(null);
+        }
+
+        return metrics.time(TransferStage.CREDIT, batchUpdate(sqlConnection, statement, batchParams))
+            .onErrorResumeNext((throwable) -> Single.error(toBatchItemFailure(throwable, indexes)))
+            .map((updateCounts) -> null);
+    }
+
+    private Single<List<Integer>> subtractAmountsFromSourceAccountBalances(SQLConnection sqlConnection, List<Transfer> transfers, Object[] amountParams,
+                                                                           List<Integer> indexes) {
+        List<JsonArray> batchParams = new ArrayList<>();
+        for (int index : indexes) {
+            Transfer transfer = transfers.get(index);
+            batchParams.add(subtractBalanceParams(transfer.getSourceAccount(), transfer.getCurrency(), amountParams[index]));
+        }
+        return metrics.time(TransferStage.DEBIT, batchUpdate(sqlConnection, subtractBalanceStatement(), batchParams))
+            .onErrorResumeNext((throwable) -> Single.error(toBatchItemFailure(throwable, indexes)));
+    }
+
+    private Throwable toBatchItemFailure(Throwable throwable, List<Integer> indexes) {
+        if (!(throwable instanceof BatchUpdateException)) {
+            return throwable;
+        }
+
+        ErrorCode errorCode;
+        if (isMoneyOverflow(throwable.getCause())) {
+            errorCode = ErrorCode.MONEY_OVERFLOW;
+        } else if (throwable.getCause() instanceof SQLIntegrityConstraintViolationException) {
+            errorCode = ErrorCode.INVALID_ACCOUNT;
+        } else {
+            return throwable;
+        }
+
+        int[] updateCounts = ((BatchUpdateException) throwable).getUpdateCounts();
+        int failedPosition = updateCounts.length;
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                failedPosition = i;
+                break;
+            }
+        }
+
+        if (failedPosition >= indexes.size()) {
+            return throwable;
+        }
+        return new BatchItemFailedException(indexes.get(failedPosition), errorCode, throwable);
+    }
+
+    private List<TransferResult> fillRolledBack(TransferResult[] results) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = TransferResult.rolledBack();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private Single<Void> addAmountToDestinationAccountBalance(SQLConnection sqlConnection, String destinationAccount, String currency, Object amountParam) {
+        if (balanceStripes.isStriped(destinationAccount)) {
+            JsonArray params = new JsonArray().add(destinationAccount).add(currency).add(balanceStripes.nextStripe()).add(amountParam).add(amountParam);
+            return metrics.time(TransferStage.CREDIT, sqlConnection.rxUpdateWithParams(upsertStripeStatement(), params))
+                .map((updateResult) -> null);
+        }
+        return metrics.time(TransferStage.CREDIT, sqlConnection.rxUpdateWithParams(upsertBalanceStatement(), addBalanceParams(destinationAccount, currency, amountParam)))
             .map((updateResult) -> null);
     }
 
-    private Single<Void> subtractAmountFromSourceAccountBalance(SQLConnection sqlConnection, String sourceAccount, String currency, BigDecimal amount) {
-        String subtractBalanceStatement = "UPDATE account_balance set balance=balance-CAST(? AS " + MONEY_DATATYPE + ") WHERE balance-CAST(? AS " + MONEY_DATATYPE + ") >= 0 AND account_id = ? AND currency = ?";
+    private Single<Void> subtractAmountFromSourceAccountBalance(SQLConnection sqlConnection, String sourceAccount, String currency, Object amountParam) {
+        JsonArray params = subtractBalanceParams(sourceAccount, currency, amountParam);
+        return metrics.time(TransferStage.DEBIT, sqlConnection.rxUpdateWithParams(subtractBalanceStatement(), params)
+            .flatMap((updateResult) -> updateResult.getUpdated() == 1 || !balanceStripes.isStriped(sourceAccount) ? Single.just(updateResult) :
+                foldStripes(sqlConnection, sourceAccount, currency).flatMap((__) -> sqlConnection.rxUpdateWithParams(subtractBalanceStatement(), params))))
+            .flatMap((updateResult) -> updateResult.getUpdated() == 1 ? Single.just(null) : Single.error(new InsufficientAccountBalanceException()));
+    }
+
+    private Single<Void> foldStripes(SQLConnection sqlConnection, String accountId, String currency) {
+        JsonArray params = new JsonArray().add(accountId).add(currency);
+        return sqlConnection.rxQueryWithParams(LOCK_STRIPES_QUERY, params)
+            .flatMap((resultSet) -> resultSet.getNumRows() == 0 ? Single.just(null) :
+                sqlConnection.rxUpdateWithParams(FOLD_STRIPES_STATEMENT, params)
+                    .flatMap((__) -> sqlConnection.rxUpdateWithParams(CLEAR_STRIPES_STATEMENT, params))
+                    .map((updateResult) -> null));
+    }
+
+    private Single<Void> foldSourceStripes(SQLConnection sqlConnection, List<Transfer> transfers, List<Integer> indexes) {
+        Map<String, SortedSet<String>> currenciesByAccount = new TreeMap<>();
+        for (int index : indexes) {
+            Transfer transfer = transfers.get(index);
+            if (balanceStripes.isStriped(transfer.getSourceAccount())) {
+                currenciesByAccount.computeIfAbsent(transfer.getSourceAccount(), (__) -> new TreeSet<>()).add(transfer.getCurrency());
+            }
+        }
+
+        Single<Void> folded = Single.just(null);
+        for (Map.Entry<String, SortedSet<String>> entry : currenciesByAccount.entrySet()) {
+            for (String currency : entry.getValue()) {
+                folded = folded.flatMap((__) -> foldStripes(sqlConnection, entry.getKey(), currency));
+            }
+        }
+        return folded;
+    }
+
+    @Override
+    public Single<Integer> consolidateBalanceStripes() {
+        return getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxQuery(SELECT_FILLED_STRIPES_QUERY)
+                .doAfterTerminate(sqlConnection::close))
+            .flatMap((resultSet) -> Observable.from(resultSet.getResults())
+                .concatMap((row) -> consolidateBalanceStripes(row.getString(0), row.getString(1)).toObservable())
+                .count()
+                .toSingle());
+    }
+
+    private Single<Void> consolidateBalanceStripes(String accountId, String currency) {
+        JsonArray params = new JsonArray().add(accountId).add(currency);
+        return transferRetryPolicy.execute(() -> getConnection().flatMap(sqlConnection ->
+            sqlConnection.rxSetAutoCommit(false)
+                .flatMap((__) -> sqlConnection.rxQueryWithParams(LOCK_BALANCE_QUERY, params))
+                .flatMap((__) -> foldStripes(sqlConnection, accountId, currency))
+                .flatMap((__) -> sqlConnection.rxCommit())
+                .onErrorResumeNext((throwable) -> sqlConnection.rxRollback().flatMap((__) -> Single.<Void>error(translateError(throwable))))
+                .doAfterTerminate(sqlConnection::close)));
+    }
+
+    private JsonArray addBalanceParams(String destinationAccount, String currency, Object amountParam) {
+        JsonArray params = new JsonArray();
+        params.add(destinationAccount);
+        params.add(currency);
+        params.add(amountParam);
+        params.add(amountParam);
+        return params;
+    }
+
+    private JsonArray subtractBalanceParams(String sourceAccount, String currency, Object amountParam) {
         JsonArray params = new JsonArray();
-        params.add(amount.toString());
-        params.add(amount.toString());
+        params.add(amountParam);
+        params.add(amountParam);
         params.add(sourceAccount);
         params.add(currency);
-        return sqlConnection.rxUpdateWithParams(subtractBalanceStatement, params)
-            .flatMap((updateResult) -> updateResult.getUpdated() == 1 ? Single.just(null) : Single.error(new InsufficientAccountBalanceException()));
+        return params;
+    }
+
+    Object parseAmountParam(String amount, String currency) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        return toAmountParam(new BigDecimal(amount), currency);
+    }
+
+    Object toAmountParam(BigDecimal amount, String currency) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        if (amount.scale() > MONEY_SCALE) {
+            throw new MoneyTooManyDecimalPlacesException();
+        }
+        return amount.toString();
+    }
+
+    Object negateAmountParam(Object amountParam) {
+        return new BigDecimal((String) amountParam).negate().toString();
+    }
+
+    BigDecimal toBalance(String value, String currency) {
+        return new BigDecimal(value);
+    }
+
+    String amountDatatype() {
+        return MONEY_DATATYPE;
+    }
+
+    Single<SQLConnection> getConnection() {
+        return sqlClient.rxGetConnection();
+    }
+
+    Observable<JsonArray> streamRows(SQLConnection sqlConnection, String query, JsonArray params) {
+        return sqlConnection.setOptions(new SQLOptions().setFetchSize(JOURNAL_FETCH_SIZE))
+            .rxQueryStreamWithParams(query, params)
+            .toObservable()
+            .flatMap(SQLRowStream::toObservable);
+    }
+
+    Single<List<Integer>> batchUpdate(SQLConnection sqlConnection, String statement, List<JsonArray> batchParams) {
+        return sqlConnection.rxBatchWithParams(statement, batchParams);
+    }
+
+    Throwable translateError(Throwable throwable) {
+        return throwable;
+    }
+
+    String upsertBalanceStatement() {
+        return UPSERT_BALANCE_STATEMENT;
+    }
+
+    String subtractBalanceStatement() {
+        return SUBTRACT_BALANCE_STATEMENT;
+    }
+
+    String upsertStripeStatement() {
+        return UPSERT_STRIPE_STATEMENT;
+    }
+
+    static boolean isDuplicateKey(Throwable throwable) {
+        return throwable instanceof SQLException && ((SQLException) throwable).getErrorCode() == ER_DUP_ENTRY;
+    }
+
+    static boolean isMoneyOverflow(Throwable throwable) {
+        return throwable instanceof MysqlDataTruncation ||
+            (throwable instanceof SQLException && (((SQLException) throwable).getErrorCode() == ER_DATA_OUT_OF_RANGE
+                || ((SQLException) throwable).getErrorCode() == ER_WARN_DATA_OUT_OF_RANGE));
     }
 }
@@ -0,0 +1,255 @@
+package moneytransfer.database;
+
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferJournalEntry;
+import moneytransfer.models.TransferResult;
+import rx.Observable;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+public class AccountBalanceRepositoryShardedImpl implements AccountBalanceRepository {
+
+    private final List<AccountBalanceRepositoryMySqlImpl> shards;
+    private final ShardRing shardRing;
+
+    public AccountBalanceRepositoryShardedImpl(List<AccountBalanceRepositoryMySqlImpl> shards, ShardRing shardRing) {
+        this.shards = shards;
+        this.shardRing = shardRing;
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.createTable()
+                .flatMap((__) -> shard.createCrossShardTransferTables())
+                .toObservable())
+            .toList()
+            .toSingle()
+            .flatMap((__) -> recoverInDoubtTransfers(0))
+            .map((recovered) -> null);
+    }
+
+    @Override
+    public Single<Void> openConnections(int connections) {
+        return Observable.from(shards)
+            .flatMap((shard) -> shard.openConnections(connections).toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Integer> consolidateBalanceStripes() {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.consolidateBalanceStripes().toObservable())
+            .reduce(0, Integer::sum)
+            .toSingle();
+    }
+
+    @Override
+    public Single<BalanceScan> scanBalances(int partitions, int pageSize) {
+        return Observable.from(shards)
+            .flatMap((shard) -> shard.scanBalances(partitions, pageSize, true).toObservable())
+            .reduce(BalanceScan::merge)
+            .toSingle();
+    }
+
+    @Override
+    public Single<Void> baselineCurrencySupply(Map<String, BigDecimal> totals) {
+        Map<String, BigDecimal> zeros = new TreeMap<>();
+        totals.keySet().forEach(currency -> zeros.put(currency, BigDecimal.ZERO));
+        return Observable.range(0, shards.size())
+            .concatMap((index) -> shards.get(index).baselineCurrencySupply(index == 0 ? totals : zeros).toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Integer> purgeIdempotencyKeys(long retentionMillis) {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.purgeSettledTransfers(retentionMillis)
+                .flatMap((__) -> shard.purgeIdempotencyKeys(retentionMillis))
+                .toObservable())
+            .reduce(0, Integer::sum)
+            .toSingle();
+    }
+
+    @Override
+    public Single<Integer> recoverInDoubtTransfers(long minAgeMillis) {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.findPreparedTransfers(minAgeMillis).toObservable())
+            .concatMap(Observable::from)
+            .concatMap((row) -> completeTransfer(row.getString(0), row.getString(1), row.getString(2), row.getString(4), row.getString(3))
+                .onErrorResumeNext((throwable) -> throwable instanceof MoneyOverflowException ? Single.just(null) : Single.error(throwable))
+                .toObservable())
+            .count()
+            .toSingle();
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        AccountBalanceRepositoryMySqlImpl sourceShard = shardOf(sourceAccount);
+        if (sourceShard == shardOf(destinationAccount)) {
+            return sourceShard.transferMoney(sourceAccount, destinationAccount, amount, currency);
+        }
+
+        Object amountParam;
+        try {
+            amountParam = sourceShard.toAmountParam(amount, currency);
+        } catch (MoneyTooManyDecimalPlacesException | MoneyOverflowException ex) {
+            return Single.error(ex);
+        }
+        return transferAcrossShards(UUID.randomUUID().toString(), sourceAccount, destinationAccount, amountParam, currency, null, null);
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency) {
+        return transferMoney(sourceAccount, destinationAccount, amount, currency, null);
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency, String idempotencyKey) {
+        AccountBalanceRepositoryMySqlImpl sourceShard = shardOf(sourceAccount);
+        if (sourceShard == shardOf(destinationAccount)) {
+            return sourceShard.transferMoney(sourceAccount, destinationAccount, amount, currency, idempotencyKey);
+        }
+
+        Object amountParam;
+        try {
+            amountParam = sourceShard.parseAmountParam(amount, currency);
+        } catch (MoneyTooManyDecimalPlacesException | MoneyOverflowException | NumberFormatException ex) {
+            return Single.error(ex);
+        }
+        if (idempotencyKey == null) {
+            return transferAcrossShards(UUID.randomUUID().toString(), sourceAccount, destinationAccount, amountParam, currency, null, null);
+        }
+        return transferAcrossShards(IdempotencyKeys.scopedTransferId(sourceAccount, idempotencyKey), sourceAccount, destinationAccount, amountParam,
+            currency, idempotencyKey, IdempotencyKeys.fingerprint(sourceAccount, destinationAccount, amount, currency));
+    }
+
+    private Single<Void> transferAcrossShards(String transferId, String sourceAccount, String destinationAccount, Object amountParam, String currency,
+                                              String idempotencyKey, String requestHash) {
+        return shardOf(sourceAccount).reserveTransfer(transferId, sourceAccount, destinationAccount, amountParam, currency, idempotencyKey, requestHash)
+            .flatMap((state) -> {
+                if (AccountBalanceRepositoryMySqlImpl.TRANSFER_ABORTED.equals(state)) {
+                    return Single.error(new MoneyOverflowException());
+                }
+                return completeTransfer(transferId, sourceAccount, destinationAccount, amountParam, currency);
+            });
+    }
+
+    private Single<Void> completeTransfer(String transferId, String sourceAccount, String destinationAccount, Object amountParam, String currency) {
+        AccountBalanceRepositoryMySqlImpl sourceShard = shardOf(sourceAccount);
+        return shardOf(destinationAccount).applyCredit(transferId, sourceAccount, destinationAccount, amountParam, currency)
+            .flatMap((state) -> {
+                if (AccountBalanceRepositoryMySqlImpl.TRANSFER_APPLIED.equals(state)) {
+                    return sourceShard.completeReservation(transferId);
+                }
+                return sourceShard.cancelReservation(transferId, sourceAccount, destinationAccount, amountParam, currency)
+                    .flatMap((__) -> Single.<Void>error(new MoneyOverflowException()));
+            });
+    }
+
+    @Override
+    public Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode) {
+        Set<AccountBalanceRepositoryMySqlImpl> batchShards = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            batchShards.add(shardOf(transfer.getSourceAccount()));
+            batchShards.add(shardOf(transfer.getDestinationAccount()));
+        }
+
+        if (batchShards.size() == 1) {
+            return batchShards.iterator().next().transferMoneyBatch(transfers, batchMode);
+        }
+
+        if (batchMode == BatchMode.ALL_OR_NOTHING) {
+            List<TransferResult> results = new ArrayList<>();
+            transfers.forEach((transfer) -> results.add(TransferResult.failed(ErrorCode.CROSS_SHARD_BATCH)));
+            return Single.just(results);
+        }
+
+        return Observable.from(transfers)
+            .concatMap((transfer) -> transferMoney(transfer.getSourceAccount(), transfer.getDestinationAccount(), transfer.getAmount(), transfer.getCurrency())
+                .map((__) -> TransferResult.success())
+                .onErrorResumeNext((throwable) -> {
+                    if (throwable instanceof InsufficientAccountBalanceException) {
+                        return Single.just(TransferResult.failed(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE));
+                    } else if (throwable instanceof MoneyOverflowException) {
+                        return Single.just(TransferResult.failed(ErrorCode.MONEY_OVERFLOW));
+                    } else if (throwable instanceof MoneyTooManyDecimalPlacesException) {
+                        return Single.just(TransferResult.failed(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES));
+                    }
+                    return Single.just(TransferResult.failed(ErrorCode.INTERNAL_SERVER_ERROR));
+                })
+                .toObservable())
+            .toList()
+            .toSingle();
+    }
+
+    @Override
+    public Single<Map<String, BigDecimal>> getBalances(String accountId) {
+        return shardOf(accountId).getBalances(accountId);
+    }
+
+    @Override
+    public Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances) {
+        Map<Integer, List<Integer>> indexesByShard = new TreeMap<>();
+        for (int i = 0; i < openingBalances.size(); i++) {
+            indexesByShard.computeIfAbsent(shardRing.shardOf(openingBalances.get(i).getAccountId()), (__) -> new ArrayList<>()).add(i);
+        }
+
+        ErrorCode[] results = new ErrorCode[openingBalances.size()];
+        return Observable.from(indexesByShard.entrySet())
+            .flatMap((entry) -> {
+                List<OpeningBalance> shardOpeningBalances = new ArrayList<>();
+                entry.getValue().forEach(index -> shardOpeningBalances.add(openingBalances.get(index)));
+                return shards.get(entry.getKey()).importOpeningBalances(shardOpeningBalances)
+                    .doOnSuccess((shardResults) -> {
+                        for (int i = 0; i < shardResults.size(); i++) {
+                            results[entry.getValue().get(i)] = shardResults.get(i);
+                        }
+                    })
+                    .toObservable();
+            })
+            .toList()
+            .toSingle()
+            .map((__) -> Arrays.asList(results));
+    }
+
+    @Override
+    public Single<Void> deleteAccounts(Collection<String> accountIds) {
+        Map<Integer, List<String>> accountIdsByShard = new TreeMap<>();
+        accountIds.forEach(accountId -> accountIdsByShard.computeIfAbsent(shardRing.shardOf(accountId), (__) -> new ArrayList<>()).add(accountId));
+        return Observable.from(accountIdsByShard.entrySet())
+            .concatMap((entry) -> shards.get(entry.getKey()).deleteAccounts(entry.getValue()).toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Observable<TransferJournalEntry> getTransferHistory(String accountId, long beforeEntryId, int limit) {
+        return shardOf(accountId).getTransferHistory(accountId, beforeEntryId, limit);
+    }
+
+    private AccountBalanceRepositoryMySqlImpl shardOf(String accountId) {
+        return shards.get(shardRing.shardOf(accountId));
+    }
+}
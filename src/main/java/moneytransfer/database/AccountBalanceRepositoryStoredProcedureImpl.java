@@ -0,0 +1,133 @@
+package moneytransfer.database;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.mysql.cj.jdbc.exceptions.MysqlDataTruncation;
+import io.vertx.core.json.JsonArray;
+import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import io.vertx.rxjava.ext.sql.SQLConnection;
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException;
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+@Singleton
+public class AccountBalanceRepositoryStoredProcedureImpl extends AccountBalanceRepositoryMySqlImpl {
+
+    private static final int STATUS_SUCCESS = 0;
+    private static final int STATUS_INVALID_ACCOUNT = 1;
+    private static final int STATUS_INSUFFICIENT_ACCOUNT_BALANCE = 2;
+    private static final int STATUS_MONEY_OVERFLOW = 3;
+
+    private static final String DROP_PROCEDURE_STATEMENT = "DROP PROCEDURE IF EXISTS transfer_money";
+
+    private static final String CREATE_PROCEDURE_STATEMENT =
+        "CREATE PROCEDURE transfer_money ( IN p_source_account varchar(255), " +
+                                          "IN p_destination_account varchar(255), " +
+                                          "IN p_amount " + MONEY_DATATYPE + ", " +
+                                          "IN p_currency varchar(255), " +
+                                          "OUT p_status INT ) " +
+        "BEGIN " +
+            "DECLARE EXIT HANDLER FOR 1264, 1265 BEGIN ROLLBACK; SET p_status = " + STATUS_MONEY_OVERFLOW + "; END; " +
+            "DECLARE EXIT HANDLER FOR SQLEXCEPTION BEGIN ROLLBACK; RESIGNAL; END; " +
+            "IF (SELECT COUNT(*) FROM account WHERE account_id IN (p_source_account, p_destination_account)) " +
+                    "< IF(p_source_account = p_destination_account, 1, 2) THEN " +
+                "SET p_status = " + STATUS_INVALID_ACCOUNT + "; " +
+            "ELSE " +
+                "START TRANSACTION; " +
+                "UPDATE account_balance SET balance = balance - p_amount " +
+                    "WHERE balance - p_amount >= 0 AND account_id = p_source_account AND currency = p_currency; " +
+                "IF ROW_COUNT() <> 1 THEN " +
+                    "ROLLBACK; " +
+                    "SET p_status = " + STATUS_INSUFFICIENT_ACCOUNT_BALANCE + "; " +
+                "ELSE " +
+                    "INSERT INTO account_balance ( account_id, currency, balance ) VALUES (p_destination_account, p_currency, p_amount) " +
+                        "ON DUPLICATE KEY UPDATE balance = balance + p_amount; " +
+                    "INSERT INTO transfer_journal ( account_id, counterparty_account, currency, amount ) " +
+                        "VALUES (p_source_account, p_destination_account, p_currency, -p_amount), " +
+                               "(p_destination_account, p_source_account, p_currency, p_amount); " +
+                    "COMMIT; " +
+                    "SET p_status = " + STATUS_SUCCESS + "; " +
+                "END IF; " +
+            "END IF; " +
+        "END";
+
+    public AccountBalanceRepositoryStoredProcedureImpl(JDBCClient jdbcClient) {
+        super(jdbcClient);
+    }
+
+    @Inject
+    public AccountBalanceRepositoryStoredProcedureImpl(JDBCClient jdbcClient, TransferRetryPolicy transferRetryPolicy, Metrics metrics) {
+        super(jdbcClient, transferRetryPolicy, metrics);
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return super.createTable().flatMap((__) ->
+            SchemaMigrations.migrate(sqlClient, "transfer_money_procedure", Collections.singletonList(this::createProcedure)));
+    }
+
+    private Single<Void> createProcedure(SQLConnection sqlConnection) {
+        return sqlConnection.rxExecute(DROP_PROCEDURE_STATEMENT)
+            .flatMap((__) -> sqlConnection.rxExecute(CREATE_PROCEDURE_STATEMENT));
+    }
+
+    @Override
+    public boolean checksAccountsExist() {
+        return true;
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            return Single.error(new IdempotencyKeyNotSupportedException());
+        }
+        return Single.defer(() -> transferMoney(sourceAccount, destinationAccount, new BigDecimal(amount), currency));
+    }
+
+    @Override
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+
+        if (amount.scale() > MONEY_SCALE) {
+            return Single.error(new MoneyTooManyDecimalPlacesException());
+        }
+
+        JsonArray params = new JsonArray();
+        params.add(sourceAccount);
+        params.add(destinationAccount);
+        params.add(amount.toString());
+        params.add(currency);
+        JsonArray outputs = new JsonArray();
+        outputs.addNull().addNull().addNull().addNull().add("INTEGER");
+        return transferRetryPolicy.execute(() -> metrics.time(TransferStage.CONNECTION_ACQUIRE, sqlClient.rxGetConnection()).flatMap(sqlConnection ->
+            sqlConnection.rxCallWithParams("{ call transfer_money(?, ?, ?, ?, ?) }", params, outputs)
+                .doAfterTerminate(sqlConnection::close)))
+            .onErrorResumeNext((throwable) -> {
+                if (throwable instanceof MysqlDataTruncation) {
+                    return Single.error(new MoneyOverflowException(throwable));
+                }
+                return Single.error(throwable);
+            })
+            .flatMap((resultSet) -> {
+                switch (resultSet.getOutput().getInteger(4)) {
+                    case STATUS_SUCCESS:
+                        return Single.just(null);
+                    case STATUS_INVALID_ACCOUNT:
+                        return Single.error(new InvalidAccountException());
+                    case STATUS_INSUFFICIENT_ACCOUNT_BALANCE:
+                        return Single.error(new InsufficientAccountBalanceException());
+                    case STATUS_MONEY_OVERFLOW:
+                        return Single.error(new MoneyOverflowException());
+                    default:
+                        return Single.error(new IllegalStateException("Unknown transfer_money status"));
+                }
+            });
+    }
+}
@@ -2,8 +2,16 @@ package moneytransfer.database;
 
 import rx.Single;
 
+import java.util.Collection;
+import java.util.Set;
+
 public interface AccountRepository {
     Single<Void> createTable();
 
     Single<Boolean> doesAccountExist(String accountId);
+
+    Single<Set<String>> findExistingAccounts(Collection<String> accountIds);
+
+    default void invalidate(Collection<String> accountIds) {
+    }
 }
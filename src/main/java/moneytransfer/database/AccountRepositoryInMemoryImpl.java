@@ -0,0 +1,44 @@
+package moneytransfer.database;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import moneytransfer.ledger.InMemoryLedger;
+import rx.Single;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+@Singleton
+public class AccountRepositoryInMemoryImpl implements AccountRepository {
+
+    private final InMemoryLedger ledger;
+
+    @Inject
+    public AccountRepositoryInMemoryImpl(InMemoryLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return Single.just(null);
+    }
+
+    @Override
+    public Single<Boolean> doesAccountExist(String accountId) {
+        return Single.fromCallable(() -> ledger.accountExists(accountId));
+    }
+
+    @Override
+    public Single<Set<String>> findExistingAccounts(Collection<String> accountIds) {
+        return Single.fromCallable(() -> {
+            Set<String> existingAccounts = new HashSet<>();
+            for (String accountId : accountIds) {
+                if (ledger.accountExists(accountId)) {
+                    existingAccounts.add(accountId);
+                }
+            }
+            return existingAccounts;
+        });
+    }
+}
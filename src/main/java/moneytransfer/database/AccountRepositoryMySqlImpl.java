@@ -3,26 +3,33 @@ package moneytransfer.database;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.vertx.core.json.JsonArray;
-import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import io.vertx.rxjava.ext.sql.SQLClient;
+import io.vertx.rxjava.ext.sql.SQLConnection;
 import rx.Single;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 @Singleton
 public class AccountRepositoryMySqlImpl implements AccountRepository {
 
-    private final JDBCClient jdbcClient;
+    private final SQLClient sqlClient;
 
     @Inject
-    public AccountRepositoryMySqlImpl(JDBCClient jdbcClient) {
-        this.jdbcClient = jdbcClient;
+    public AccountRepositoryMySqlImpl(SQLClient sqlClient) {
+        this.sqlClient = sqlClient;
     }
 
     @Override
     public Single<Void> createTable() {
-        String createStatement = "CREATE TABLE account ( account_id varchar(255), PRIMARY KEY (account_id) )";
-        return jdbcClient.rxGetConnection().flatMap(sqlConnection ->
-            sqlConnection.rxUpdate(createStatement)
-                .doAfterTerminate(sqlConnection::close))
-            .map(updateResult -> null);
+        return SchemaMigrations.migrate(sqlClient, "account", Collections.singletonList(this::createAccountTable));
+    }
+
+    private Single<Void> createAccountTable(SQLConnection sqlConnection) {
+        String createStatement = "CREATE TABLE IF NOT EXISTS account ( account_id varchar(255), PRIMARY KEY (account_id) )";
+        return sqlConnection.rxUpdate(createStatement).map(updateResult -> null);
     }
 
     @Override
@@ -30,9 +37,32 @@ public class AccountRepositoryMySqlImpl implements AccountRepository {
         String query = "select 1 from account where account_id = ?";
         JsonArray jsonArray = new JsonArray();
         jsonArray.add(accountId);
-        return jdbcClient.rxGetConnection().flatMap(sqlConnection ->
+        return sqlClient.rxGetConnection().flatMap(sqlConnection ->
             sqlConnection.rxQueryWithParams(query, jsonArray)
                 .doAfterTerminate(sqlConnection::close))
             .map(resultSet -> resultSet.getNumRows() > 0);
     }
+
+    @Override
+    public Single<Set<String>> findExistingAccounts(Collection<String> accountIds) {
+        if (accountIds.isEmpty()) {
+            return Single.just(Collections.emptySet());
+        }
+
+        StringBuilder query = new StringBuilder("select account_id from account where account_id in (");
+        JsonArray jsonArray = new JsonArray();
+        for (String accountId : accountIds) {
+            query.append(jsonArray.isEmpty() ? "?" : ", ?");
+            jsonArray.add(accountId);
+        }
+        query.append(")");
+        return sqlClient.rxGetConnection().flatMap(sqlConnection ->
+            sqlConnection.rxQueryWithParams(query.toString(), jsonArray)
+                .doAfterTerminate(sqlConnection::close))
+            .map(resultSet -> {
+                Set<String> existingAccounts = new HashSet<>();
+                resultSet.getResults().forEach(row -> existingAccounts.add(row.getString(0)));
+                return existingAccounts;
+            });
+    }
 }
@@ -0,0 +1,50 @@
+package moneytransfer.database;
+
+import rx.Observable;
+import rx.Single;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class AccountRepositoryShardedImpl implements AccountRepository {
+
+    private final List<? extends AccountRepository> shards;
+    private final ShardRing shardRing;
+
+    public AccountRepositoryShardedImpl(List<? extends AccountRepository> shards, ShardRing shardRing) {
+        this.shards = shards;
+        this.shardRing = shardRing;
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.createTable().toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Boolean> doesAccountExist(String accountId) {
+        return shards.get(shardRing.shardOf(accountId)).doesAccountExist(accountId);
+    }
+
+    @Override
+    public Single<Set<String>> findExistingAccounts(Collection<String> accountIds) {
+        Map<Integer, List<String>> accountIdsByShard = new TreeMap<>();
+        for (String accountId : accountIds) {
+            accountIdsByShard.computeIfAbsent(shardRing.shardOf(accountId), (__) -> new ArrayList<>()).add(accountId);
+        }
+
+        return Observable.from(accountIdsByShard.entrySet())
+            .flatMap((entry) -> shards.get(entry.getKey()).findExistingAccounts(entry.getValue()).toObservable())
+            .collect(() -> (Set<String>) new HashSet<String>(), Set::addAll)
+            .toSingle();
+    }
+}
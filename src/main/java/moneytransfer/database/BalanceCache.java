@@ -0,0 +1,159 @@
+package moneytransfer.database;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+public class BalanceCache {
+
+    private static final int VERSION_STRIPES = 4096;
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CacheEntry> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BalanceCache(int maxSize, long ttlMillis) {
+        this(true, maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    BalanceCache(boolean enabled, int maxSize, long ttlMillis, LongSupplier clock) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static BalanceCache readFromPrimary() {
+        return new BalanceCache(false, 0, 0, System::currentTimeMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, BigDecimal> get(String accountId) {
+        if (!enabled) {
+            return null;
+        }
+
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(accountId);
+            if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+                cache.remove(accountId);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.balances;
+    }
+
+    public long version(String accountId) {
+        return versions.get(stripeOf(accountId));
+    }
+
+    public void putIfUnchanged(String accountId, long version, Map<String, BigDecimal> balances) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (cache) {
+            if (versions.get(stripeOf(accountId)) == version && !cache.containsKey(accountId)) {
+                cache.put(accountId, new CacheEntry(Collections.unmodifiableMap(new TreeMap<>(balances)), clock.getAsLong() + ttlMillis));
+            }
+        }
+    }
+
+    public long beginWrite(String accountId) {
+        return versions.incrementAndGet(stripeOf(accountId));
+    }
+
+    public void completeWrite(String accountId, long version, String currency, BigDecimal balance) {
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (cache) {
+            if (!versions.compareAndSet(stripeOf(accountId), version, version + 1)) {
+                versions.incrementAndGet(stripeOf(accountId));
+                cache.remove(accountId);
+                return;
+            }
+            CacheEntry entry = cache.get(accountId);
+            if (entry == null) {
+                return;
+            }
+            Map<String, BigDecimal> balances = new TreeMap<>(entry.balances);
+            balances.put(currency, balance);
+            cache.put(accountId, new CacheEntry(Collections.unmodifiableMap(balances), entry.expiresAt));
+        }
+    }
+
+    public void invalidate(String accountId) {
+        versions.incrementAndGet(stripeOf(accountId));
+        if (!enabled) {
+            return;
+        }
+
+        synchronized (cache) {
+            cache.remove(accountId);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static int stripeOf(String accountId) {
+        return (accountId.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    private static class CacheEntry {
+        private final Map<String, BigDecimal> balances;
+        private final long expiresAt;
+
+        private CacheEntry(Map<String, BigDecimal> balances, long expiresAt) {
+            this.balances = balances;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package moneytransfer.database;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class BalanceScan {
+
+    static final int MAX_NEGATIVE_BALANCE_ACCOUNTS = 100;
+
+    private final Map<String, BigDecimal> totals = new TreeMap<>();
+    private final Map<String, Long> negativeBalances = new TreeMap<>();
+    private final List<String> negativeBalanceAccounts = new ArrayList<>();
+    private final Map<String, BigDecimal> supply = new TreeMap<>();
+    private final Set<String> baselinedCurrencies = new TreeSet<>();
+    private long rowsScanned;
+
+    public void add(String accountId, String currency, BigDecimal balance) {
+        rowsScanned++;
+        totals.merge(currency, balance, BigDecimal::add);
+        if (balance.signum() < 0) {
+            negativeBalances.merge(currency, 1L, Long::sum);
+            if (negativeBalanceAccounts.size() < MAX_NEGATIVE_BALANCE_ACCOUNTS) {
+                negativeBalanceAccounts.add(accountId);
+            }
+        }
+    }
+
+    public void addStripes(String currency, BigDecimal total, long rows) {
+        rowsScanned += rows;
+        totals.merge(currency, total, BigDecimal::add);
+    }
+
+    public void addInFlight(String currency, BigDecimal total) {
+        totals.merge(currency, total, BigDecimal::add);
+    }
+
+    public void addSupply(String currency, BigDecimal total) {
+        supply.merge(currency, total, BigDecimal::add);
+    }
+
+    public void baseline(String currency) {
+        baselinedCurrencies.add(currency);
+        addSupply(currency, getTotal(currency));
+    }
+
+    public BalanceScan merge(BalanceScan other) {
+        rowsScanned += other.rowsScanned;
+        other.totals.forEach((currency, total) -> totals.merge(currency, total, BigDecimal::add));
+        other.negativeBalances.forEach((currency, count) -> negativeBalances.merge(currency, count, Long::sum));
+        for (String accountId : other.negativeBalanceAccounts) {
+            if (negativeBalanceAccounts.size() == MAX_NEGATIVE_BALANCE_ACCOUNTS) {
+                break;
+            }
+            negativeBalanceAccounts.add(accountId);
+        }
+        other.supply.forEach(this::addSupply);
+        baselinedCurrencies.addAll(other.baselinedCurrencies);
+        return this;
+    }
+
+    public Set<String> getCurrencies() {
+        Set<String> currencies = new TreeSet<>(totals.keySet());
+        currencies.addAll(supply.keySet());
+        return currencies;
+    }
+
+    public BigDecimal getTotal(String currency) {
+        return totals.getOrDefault(currency, BigDecimal.ZERO);
+    }
+
+    public BigDecimal getSupply(String currency) {
+        return supply.get(currency);
+    }
+
+    public long getNegativeBalances(String currency) {
+        return negativeBalances.getOrDefault(currency, 0L);
+    }
+
+    public List<String> getNegativeBalanceAccounts() {
+        return Collections.unmodifiableList(negativeBalanceAccounts);
+    }
+
+    public boolean isBaselined(String currency) {
+        return baselinedCurrencies.contains(currency);
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+}
@@ -0,0 +1,38 @@
+package moneytransfer.database;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class BalanceStripes {
+
+    private final Set<String> accounts;
+    private final int stripes;
+
+    public BalanceStripes(Collection<String> accounts, int stripes) {
+        this.accounts = new HashSet<>(accounts);
+        this.stripes = Math.max(1, stripes);
+    }
+
+    public static BalanceStripes none() {
+        return new BalanceStripes(Collections.emptySet(), 1);
+    }
+
+    public boolean isEnabled() {
+        return !accounts.isEmpty();
+    }
+
+    public boolean isStriped(String accountId) {
+        return accounts.contains(accountId);
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    int nextStripe() {
+        return ThreadLocalRandom.current().nextInt(stripes);
+    }
+}
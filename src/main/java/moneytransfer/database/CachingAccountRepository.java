@@ -0,0 +1,190 @@
+package moneytransfer.database;
+
+import rx.Single;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+public class CachingAccountRepository implements AccountRepository {
+
+    private static final int VERSION_STRIPES = 4096;
+
+    private final AccountRepository delegate;
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CacheEntry> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CachingAccountRepository(AccountRepository delegate, int maxSize, long positiveTtlMillis, long negativeTtlMillis) {
+        this(delegate, maxSize, positiveTtlMillis, negativeTtlMillis, System::currentTimeMillis);
+    }
+
+    CachingAccountRepository(AccountRepository delegate, int maxSize, long positiveTtlMillis, long negativeTtlMillis, LongSupplier clock) {
+        this.delegate = delegate;
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Single<Void> createTable() {
+        return delegate.createTable();
+    }
+
+    @Override
+    public Single<Boolean> doesAccountExist(String accountId) {
+        Boolean cached = lookup(accountId);
+        if (cached != null) {
+            return Single.just(cached);
+        }
+        long version = versions.get(stripeOf(accountId));
+        return delegate.doesAccountExist(accountId)
+            .doOnSuccess((exists) -> store(accountId, version, exists));
+    }
+
+    @Override
+    public Single<Set<String>> findExistingAccounts(Collection<String> accountIds) {
+        Set<String> existingAccounts = new HashSet<>();
+        List<String> uncachedAccountIds = new ArrayList<>();
+        List<Long> uncachedVersions = new ArrayList<>();
+        for (String accountId : accountIds) {
+            Boolean cached = lookup(accountId);
+            if (cached == null) {
+                uncachedAccountIds.add(accountId);
+                uncachedVersions.add(versions.get(stripeOf(accountId)));
+            } else if (cached) {
+                existingAccounts.add(accountId);
+            }
+        }
+
+        if (uncachedAccountIds.isEmpty()) {
+            return Single.just(existingAccounts);
+        }
+        return delegate.findExistingAccounts(uncachedAccountIds)
+            .map((foundAccounts) -> {
+                for (int i = 0; i < uncachedAccountIds.size(); i++) {
+                    String accountId = uncachedAccountIds.get(i);
+                    store(accountId, uncachedVersions.get(i), foundAccounts.contains(accountId));
+                }
+                existingAccounts.addAll(foundAccounts);
+                return existingAccounts;
+            });
+    }
+
+    public void invalidate(String accountId) {
+        synchronized (cache) {
+            versions.incrementAndGet(stripeOf(accountId));
+            cache.remove(accountId);
+        }
+    }
+
+    @Override
+    public void invalidate(Collection<String> accountIds) {
+        synchronized (cache) {
+            for (String accountId : accountIds) {
+                versions.incrementAndGet(stripeOf(accountId));
+                cache.remove(accountId);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+            cache.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private Boolean lookup(String accountId) {
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(accountId);
+            if (entry != null && entry.expiresAt <= clock.getAsLong()) {
+                cache.remove(accountId);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.exists;
+    }
+
+    private void store(String accountId, long version, boolean exists) {
+        long ttlMillis = exists ? positiveTtlMillis : negativeTtlMillis;
+        if (ttlMillis <= 0) {
+            return;
+        }
+        synchronized (cache) {
+            if (versions.get(stripeOf(accountId)) == version) {
+                cache.put(accountId, new CacheEntry(exists, clock.getAsLong() + ttlMillis));
+            }
+        }
+    }
+
+    private static int stripeOf(String accountId) {
+        return (accountId.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+    }
+
+    private static class CacheEntry {
+        private final boolean exists;
+        private final long expiresAt;
+
+        private CacheEntry(boolean exists, long expiresAt) {
+            this.exists = exists;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,15 +2,35 @@ package moneytransfer.database;
 
 import ch.vorburger.exec.ManagedProcessException;
 import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class Database {
 
-    private static DB db;
+    private static final String SQL_MODE = "STRICT_TRANS_TABLES,NO_ENGINE_SUBSTITUTION,NO_AUTO_CREATE_USER";
+
+    private static final Map<Integer, DB> dbs = new HashMap<>();
 
     public static void start() throws ManagedProcessException {
-        if (db == null) {
-            db = DB.newEmbeddedDB(3306);
+        start(3306);
+    }
+
+    public static void start(int port) throws ManagedProcessException {
+        start(port, null);
+    }
+
+    public static synchronized void start(int port, String dataDirectory) throws ManagedProcessException {
+        if (!dbs.containsKey(port)) {
+            DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder().setPort(port);
+            config.addArg("--sql-mode=" + SQL_MODE);
+            if (dataDirectory != null) {
+                config.setDataDir(dataDirectory);
+            }
+            DB db = DB.newEmbeddedDB(config.build());
             db.start();
+            dbs.put(port, db);
         }
     }
 }
@@ -0,0 +1,41 @@
+package moneytransfer.database;
+
+import moneytransfer.money.FixedPointMoney;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class IdempotencyKeys {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private IdempotencyKeys() {
+    }
+
+    public static String fingerprint(String sourceAccount, String destinationAccount, String amount, String currency) {
+        String normalizedAmount = amount != null && FixedPointMoney.isWellFormed(amount)
+            ? new BigDecimal(amount).stripTrailingZeros().toPlainString() : amount;
+        return sha256(sourceAccount + '\0' + destinationAccount + '\0' + normalizedAmount + '\0' + currency);
+    }
+
+    static String scopedTransferId(String sourceAccount, String idempotencyKey) {
+        return sha256(sourceAccount + '\0' + idempotencyKey);
+    }
+
+    private static String sha256(String value) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
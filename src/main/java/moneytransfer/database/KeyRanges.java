@@ -0,0 +1,53 @@
+package moneytransfer.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class KeyRanges {
+
+    private static final int DIGITS = 8;
+    private static final int RADIX = 128;
+
+    private KeyRanges() {
+    }
+
+    static List<String> split(String min, String max, int partitions) {
+        int prefixLength = 0;
+        while (prefixLength < min.length() && prefixLength < max.length() && min.charAt(prefixLength) == max.charAt(prefixLength)) {
+            prefixLength++;
+        }
+
+        String prefix = min.substring(0, prefixLength);
+        long low = toNumber(min, prefixLength);
+        long high = toNumber(max, prefixLength);
+        List<String> boundaries = new ArrayList<>();
+        for (int i = 1; i < partitions; i++) {
+            String boundary = prefix + toKey(low + (high - low) / partitions * i);
+            if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                boundaries.add(boundary);
+            }
+        }
+        return boundaries;
+    }
+
+    private static long toNumber(String key, int from) {
+        long number = 0;
+        for (int i = from; i < from + DIGITS; i++) {
+            number = number * RADIX + (i < key.length() ? Math.min(key.charAt(i), RADIX - 1) : 0);
+        }
+        return number;
+    }
+
+    private static String toKey(long number) {
+        char[] digits = new char[DIGITS];
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) (number % RADIX);
+            number /= RADIX;
+        }
+        int length = DIGITS;
+        while (length > 0 && digits[length - 1] == 0) {
+            length--;
+        }
+        return new String(digits, 0, length);
+    }
+}
@@ -0,0 +1,19 @@
+package moneytransfer.database;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.ext.asyncsql.AsyncSQLClient;
+import io.vertx.rxjava.ext.asyncsql.MySQLClient;
+
+public class MySqlAsyncClientFactory {
+    public static AsyncSQLClient createMySqlAsyncClient(Vertx vertx, JsonObject config) {
+        JsonObject connectionConfig = new JsonObject();
+        connectionConfig.put("host", "localhost");
+        connectionConfig.put("port", 3306);
+        connectionConfig.put("username", "root");
+        connectionConfig.put("database", "test");
+        connectionConfig.put("maxPoolSize", 64);
+        connectionConfig.mergeIn(config);
+        return MySQLClient.createShared(vertx, connectionConfig);
+    }
+}
@@ -12,4 +12,15 @@ public class MySqlJdbcClientFactory {
         connectionConfig.put("driver_class", "com.mysql.cj.jdbc.Driver");
         return JDBCClient.createShared(vertx,connectionConfig);
     }
+
+    public static JDBCClient createMySqlJdbcClient(Vertx vertx, JsonObject shardConfig) {
+        JsonObject connectionConfig = new JsonObject();
+        connectionConfig.put("url", "jdbc:mysql://localhost:" + shardConfig.getInteger("port", 3306) + "/test?serverTimezone=UTC");
+        connectionConfig.put("user", "root");
+        connectionConfig.put("driver_class", "com.mysql.cj.jdbc.Driver");
+        connectionConfig.mergeIn(shardConfig);
+        connectionConfig.remove("port");
+        connectionConfig.remove("dataDirectory");
+        return JDBCClient.createShared(vertx, connectionConfig, connectionConfig.getString("url"));
+    }
 }
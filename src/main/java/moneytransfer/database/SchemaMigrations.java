@@ -0,0 +1,67 @@
+package moneytransfer.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.rxjava.ext.sql.SQLClient;
+import io.vertx.rxjava.ext.sql.SQLConnection;
+import rx.Single;
+import rx.functions.Func1;
+
+import java.util.List;
+
+public final class SchemaMigrations {
+
+    private static final String CREATE_SCHEMA_VERSION_STATEMENT = "CREATE TABLE IF NOT EXISTS schema_version ( component varchar(64), " +
+                                                                "version INT NOT NULL, " +
+                                                                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, " +
+                                                                "PRIMARY KEY (component))";
+    private static final String SELECT_VERSION_QUERY = "SELECT version FROM schema_version WHERE component = ?";
+    private static final String UPSERT_VERSION_STATEMENT =
+        "INSERT INTO schema_version ( component, version ) VALUES ( ?, ? ) ON DUPLICATE KEY UPDATE version = VALUES(version)";
+    private static final String LOCK_QUERY = "SELECT GET_LOCK('schema_migrations', ?)";
+    private static final String UNLOCK_QUERY = "SELECT RELEASE_LOCK('schema_migrations')";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    private SchemaMigrations() {
+    }
+
+    public static Single<Void> migrate(SQLClient sqlClient, String component, List<Func1<SQLConnection, Single<Void>>> migrations) {
+        return sqlClient.rxGetConnection().flatMap(sqlConnection ->
+            sqlConnection.rxExecute(CREATE_SCHEMA_VERSION_STATEMENT)
+                .flatMap((__) -> currentVersion(sqlConnection, component))
+                .flatMap((version) -> version >= migrations.size() ? Single.<Void>just(null) : migrateLocked(sqlConnection, component, migrations))
+                .doAfterTerminate(sqlConnection::close));
+    }
+
+    private static Single<Void> migrateLocked(SQLConnection sqlConnection, String component, List<Func1<SQLConnection, Single<Void>>> migrations) {
+        Single<Void> unlock = sqlConnection.rxQuery(UNLOCK_QUERY).map((resultSet) -> null);
+        return sqlConnection.rxQueryWithParams(LOCK_QUERY, new JsonArray().add(LOCK_TIMEOUT_SECONDS)).flatMap((resultSet) -> {
+            Integer locked = resultSet.getResults().get(0).getInteger(0);
+            if (locked == null || locked != 1) {
+                return Single.error(new IllegalStateException("Timed out waiting for another instance to migrate the schema"));
+            }
+
+            return currentVersion(sqlConnection, component)
+                .flatMap((version) -> applyFrom(sqlConnection, component, migrations, version))
+                .flatMap((__) -> unlock)
+                .onErrorResumeNext((throwable) -> unlock.flatMap((__) -> Single.error(throwable)));
+        });
+    }
+
+    private static Single<Void> applyFrom(SQLConnection sqlConnection, String component, List<Func1<SQLConnection, Single<Void>>> migrations, int version) {
+        Single<Void> applied = Single.just(null);
+        for (int i = version; i < migrations.size(); i++) {
+            Func1<SQLConnection, Single<Void>> migration = migrations.get(i);
+            JsonArray params = new JsonArray().add(component).add(i + 1);
+            applied = applied
+                .flatMap((__) -> migration.call(sqlConnection))
+                .flatMap((__) -> sqlConnection.rxUpdateWithParams(UPSERT_VERSION_STATEMENT, params))
+                .map((updateResult) -> null);
+        }
+        return applied;
+    }
+
+    private static Single<Integer> currentVersion(SQLConnection sqlConnection, String component) {
+        return sqlConnection.rxQueryWithParams(SELECT_VERSION_QUERY, new JsonArray().add(component))
+            .map((resultSet) -> resultSet.getNumRows() == 0 ? 0 : resultSet.getResults().get(0).getInteger(0));
+    }
+}
@@ -0,0 +1,84 @@
+package moneytransfer.database;
+
+import io.vertx.rxjava.core.RxHelper;
+import io.vertx.rxjava.core.Vertx;
+import rx.Observable;
+import rx.Scheduler;
+import rx.Single;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TransferRetryPolicy {
+
+    private static final String SERIALIZATION_FAILURE_SQL_STATE = "40001";
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    private final Vertx vertx;
+    private final int maxRetries;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong retries = new AtomicLong();
+
+    public TransferRetryPolicy(Vertx vertx, int maxRetries, long baseBackoffMillis, long maxBackoffMillis) {
+        this.vertx = vertx;
+        this.maxRetries = maxRetries;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public static TransferRetryPolicy noRetries() {
+        return new TransferRetryPolicy(null, 0, 0, 0);
+    }
+
+    public <T> Single<T> execute(Func0<Single<T>> transaction) {
+        return execute(transaction, 0);
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    private <T> Single<T> execute(Func0<Single<T>> transaction, int attempt) {
+        return Single.defer(transaction)
+            .onErrorResumeNext((throwable) -> {
+                if (attempt >= maxRetries || !isRetryable(throwable)) {
+                    return Single.error(throwable);
+                }
+
+                retries.incrementAndGet();
+                return Observable.timer(backoffMillis(attempt), TimeUnit.MILLISECONDS, scheduler())
+                    .toSingle()
+                    .flatMap((__) -> execute(transaction, attempt + 1));
+            });
+    }
+
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private Scheduler scheduler() {
+        return vertx == null ? Schedulers.computation() : RxHelper.scheduler(vertx.getOrCreateContext());
+    }
+
+    static boolean isRetryable(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                SQLException sqlException = (SQLException) cause;
+                if (SERIALIZATION_FAILURE_SQL_STATE.equals(sqlException.getSQLState())
+                    || sqlException.getErrorCode() == ER_LOCK_DEADLOCK
+                    || sqlException.getErrorCode() == ER_LOCK_WAIT_TIMEOUT) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
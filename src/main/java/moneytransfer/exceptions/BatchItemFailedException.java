@@ -0,0 +1,22 @@
+package moneytransfer.exceptions;
+
+import moneytransfer.models.ErrorCode;
+
+public class BatchItemFailedException extends Exception {
+    private final int itemIndex;
+    private final ErrorCode errorCode;
+
+    public BatchItemFailedException(int itemIndex, ErrorCode errorCode, Throwable ex) {
+        super(ex);
+        this.itemIndex = itemIndex;
+        this.errorCode = errorCode;
+    }
+
+    public int getItemIndex() {
+        return itemIndex;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
@@ -1,6 +1,9 @@
 package moneytransfer.exceptions;
 
 public class MoneyOverflowException extends Exception {
+    public MoneyOverflowException() {
+    }
+
     public MoneyOverflowException(Throwable ex) {
         super(ex);
     }
@@ -0,0 +1,4 @@
+package moneytransfer.exceptions;
+
+public class OverloadedException extends Exception {
+}
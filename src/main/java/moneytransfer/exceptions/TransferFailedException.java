@@ -0,0 +1,16 @@
+package moneytransfer.exceptions;
+
+import moneytransfer.models.ErrorCode;
+
+public class TransferFailedException extends Exception {
+    private final ErrorCode errorCode;
+
+    public TransferFailedException(ErrorCode errorCode) {
+        super(errorCode.name());
+        this.errorCode = errorCode;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
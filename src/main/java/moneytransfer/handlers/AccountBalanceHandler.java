@@ -0,0 +1,63 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Handler;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.models.AccountBalance;
+import moneytransfer.models.AccountBalances;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.services.MoneyTransferService;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Singleton
+public class AccountBalanceHandler implements Handler<RoutingContext> {
+
+    private final MoneyTransferService moneyTransferService;
+
+    @Inject
+    public AccountBalanceHandler(MoneyTransferService moneyTransferService) {
+        this.moneyTransferService = moneyTransferService;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        String accountId = routingContext.pathParam("accountId");
+        String currency = routingContext.pathParam("currency");
+
+        moneyTransferService
+            .getBalances(accountId)
+            .subscribe((balances) -> {
+                Object result;
+                if (currency == null) {
+                    Map<String, String> formattedBalances = new TreeMap<>();
+                    balances.forEach((balanceCurrency, balance) -> formattedBalances.put(balanceCurrency, format(balance)));
+                    result = new AccountBalances(accountId, formattedBalances);
+                } else {
+                    result = new AccountBalance(accountId, currency, format(balances.getOrDefault(currency, BigDecimal.ZERO)));
+                }
+                routingContext.response()
+                    .setStatusCode(200)
+                    .putHeader("Content-Type", "application/json")
+                    .end(Json.encodePrettily(result));
+            }, (throwable) -> {
+                if (throwable instanceof InvalidAccountException) {
+                    respondWithError(routingContext, 400, ErrorCode.INVALID_ACCOUNT);
+                } else {
+                    respondWithError(routingContext, 500, ErrorCode.INTERNAL_SERVER_ERROR);
+                }
+            });
+    }
+
+    private static String format(BigDecimal balance) {
+        return balance.signum() == 0 ? "0" : balance.stripTrailingZeros().toPlainString();
+    }
+
+    private void respondWithError(RoutingContext routingContext, int status, ErrorCode errorCode) {
+        ErrorResponses.end(routingContext.response(), status, errorCode);
+    }
+}
@@ -0,0 +1,233 @@
+package moneytransfer.handlers;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.rxjava.core.RxHelper;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.http.HttpServerRequest;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.models.AccountImportProgress;
+import moneytransfer.models.AccountImportReject;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.ImportStatus;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.money.FixedPointMoney;
+import moneytransfer.services.MoneyTransferService;
+import rx.Scheduler;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AccountImportHandler implements Handler<RoutingContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AccountImportHandler.class);
+
+    private static final int MAX_FIELD_LENGTH = 255;
+    private static final int MAX_LINE_LENGTH = 65536;
+
+    private final MoneyTransferService moneyTransferService;
+    private final int batchSize;
+
+    public AccountImportHandler(MoneyTransferService moneyTransferService, int batchSize) {
+        this.moneyTransferService = moneyTransferService;
+        this.batchSize = batchSize;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        String contentType = routingContext.request().getHeader("Content-Type");
+        new ImportSession(routingContext.request(), contentType != null && contentType.startsWith("text/csv")).start();
+    }
+
+    static OpeningBalance parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 1 && fields.length != 3) {
+            return null;
+        }
+        String currency = fields.length == 1 ? "" : fields[1].trim();
+        String balance = fields.length == 1 ? "" : fields[2].trim();
+        return toOpeningBalance(fields[0].trim(), currency.isEmpty() ? null : currency, balance.isEmpty() ? null : balance);
+    }
+
+    static OpeningBalance parseJson(String line) {
+        try {
+            JsonObject row = new JsonObject(line);
+            Object balance = row.getValue("balance");
+            return toOpeningBalance(row.getString("accountId"), row.getString("currency"), balance == null ? null : balance.toString());
+        } catch (DecodeException | ClassCastException ex) {
+            return null;
+        }
+    }
+
+    private static OpeningBalance toOpeningBalance(String accountId, String currency, String balance) {
+        if (accountId == null || accountId.isEmpty() || accountId.length() > MAX_FIELD_LENGTH) {
+            return null;
+        }
+        if (currency == null && balance == null) {
+            return new OpeningBalance(accountId, null, null);
+        }
+        if (currency == null || currency.isEmpty() || currency.length() > MAX_FIELD_LENGTH || !FixedPointMoney.isWellFormed(balance)) {
+            return null;
+        }
+        BigDecimal amount = new BigDecimal(balance);
+        return amount.signum() < 0 ? null : new OpeningBalance(accountId, currency, amount);
+    }
+
+    private class ImportSession {
+
+        private final HttpServerRequest request;
+        private final HttpServerResponse response;
+        private final boolean csv;
+        private final Scheduler scheduler;
+
+        private List<OpeningBalance> pending = new ArrayList<>();
+        private List<Long> pendingLines = new ArrayList<>();
+        private long lineNumber;
+        private long lineLength;
+        private long rowsRead;
+        private long rowsImported;
+        private long rowsRejected;
+        private boolean writing;
+        private boolean ended;
+        private boolean failed;
+
+        private ImportSession(HttpServerRequest request, boolean csv) {
+            this.request = request;
+            this.response = request.response();
+            this.csv = csv;
+            this.scheduler = RxHelper.scheduler(Vertx.currentContext());
+        }
+
+        private void start() {
+            response.setChunked(true)
+                .setStatusCode(200)
+                .putHeader("Content-Type", "application/x-ndjson");
+            RecordParser parser = RecordParser.newDelimited("\n", this::handleLine);
+            request.handler((buffer) -> {
+                if (failed) {
+                    return;
+                }
+                long line = lineNumber + 1;
+                for (int i = 0; i < buffer.length(); i++) {
+                    if (buffer.getByte(i) == '\n') {
+                        lineLength = 0;
+                        line++;
+                    } else if (++lineLength > MAX_LINE_LENGTH) {
+                        fail(new IllegalArgumentException("Line " + line + " is longer than " + MAX_LINE_LENGTH + " bytes"));
+                        return;
+                    }
+                }
+                parser.handle(buffer.getDelegate());
+            });
+            request.exceptionHandler(this::fail);
+            request.endHandler((__) -> {
+                parser.handle(Buffer.buffer("\n"));
+                ended = true;
+                if (!writing) {
+                    writeBatch();
+                }
+            });
+        }
+
+        private void handleLine(Buffer buffer) {
+            lineNumber++;
+            String line = buffer.toString(StandardCharsets.UTF_8.name()).trim();
+            if (failed || line.isEmpty() || (csv && lineNumber == 1 && line.startsWith("accountId"))) {
+                return;
+            }
+
+            rowsRead++;
+            OpeningBalance openingBalance = csv ? parseCsv(line) : parseJson(line);
+            if (openingBalance == null) {
+                reject(lineNumber, ErrorCode.BAD_REQUEST);
+                return;
+            }
+
+            pending.add(openingBalance);
+            pendingLines.add(lineNumber);
+            if (pending.size() >= batchSize && !writing) {
+                writeBatch();
+            }
+        }
+
+        private void writeBatch() {
+            if (failed) {
+                return;
+            }
+            if (pending.isEmpty()) {
+                if (ended) {
+                    response.end(Json.encode(progress(ImportStatus.COMPLETED)) + "\n");
+                }
+                return;
+            }
+
+            List<OpeningBalance> batch = pending;
+            List<Long> batchLines = pendingLines;
+            pending = new ArrayList<>();
+            pendingLines = new ArrayList<>();
+            writing = true;
+            request.pause();
+            moneyTransferService.importOpeningBalances(batch).observeOn(scheduler).subscribe((results) -> {
+                if (failed) {
+                    return;
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        rowsImported++;
+                    } else {
+                        reject(batchLines.get(i), results.get(i));
+                    }
+                }
+                writing = false;
+                if (!ended) {
+                    response.write(Json.encode(progress(ImportStatus.IN_PROGRESS)) + "\n");
+                }
+                if (ended || pending.size() >= batchSize) {
+                    writeBatch();
+                } else if (response.writeQueueFull()) {
+                    response.drainHandler((__) -> request.resume());
+                } else {
+                    request.resume();
+                }
+            }, this::fail);
+        }
+
+        private void reject(long line, ErrorCode errorCode) {
+            rowsRejected++;
+            response.write(Json.encode(new AccountImportReject(line, errorCode)) + "\n");
+            if (!writing && response.writeQueueFull()) {
+                request.pause();
+                response.drainHandler((__) -> {
+                    if (!writing && !failed) {
+                        request.resume();
+                    }
+                });
+            }
+        }
+
+        private void fail(Throwable throwable) {
+            if (failed) {
+                return;
+            }
+            failed = true;
+            ErrorCode errorCode = throwable instanceof IllegalArgumentException ? ErrorCode.BAD_REQUEST : ErrorCode.INTERNAL_SERVER_ERROR;
+            if (errorCode == ErrorCode.INTERNAL_SERVER_ERROR) {
+                LOGGER.error("Account import failed after " + rowsRead + " rows", throwable);
+            }
+            response.end(Json.encode(new AccountImportProgress(ImportStatus.FAILED, rowsRead, rowsImported, rowsRejected, errorCode)) + "\n");
+            request.resume();
+        }
+
+        private AccountImportProgress progress(ImportStatus status) {
+            return new AccountImportProgress(status, rowsRead, rowsImported, rowsRejected);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package moneytransfer.handlers;
+
+import io.vertx.core.Handler;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import io.vertx.rxjava.ext.web.handler.BodyHandler;
+import moneytransfer.models.ErrorCode;
+
+public class BodyLimitHandler implements Handler<RoutingContext> {
+
+    private static final int REQUEST_ENTITY_TOO_LARGE = 413;
+
+    private final long maxBodyBytes;
+    private final BodyHandler bodyHandler;
+
+    public BodyLimitHandler(long maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.bodyHandler = BodyHandler.create().setBodyLimit(maxBodyBytes);
+    }
+
+    public void handle(RoutingContext routingContext) {
+        String contentLength = routingContext.request().getHeader("Content-Length");
+        if (contentLength != null && exceedsLimit(contentLength)) {
+            ErrorResponses.end(routingContext.response(), REQUEST_ENTITY_TOO_LARGE, ErrorCode.REQUEST_TOO_LARGE);
+            return;
+        }
+        bodyHandler.handle(routingContext);
+    }
+
+    public static void handleFailure(RoutingContext routingContext) {
+        if (routingContext.statusCode() == REQUEST_ENTITY_TOO_LARGE) {
+            ErrorResponses.end(routingContext.response(), REQUEST_ENTITY_TOO_LARGE, ErrorCode.REQUEST_TOO_LARGE);
+        } else {
+            routingContext.next();
+        }
+    }
+
+    private boolean exceedsLimit(String contentLength) {
+        try {
+            return Long.parseLong(contentLength) > maxBodyBytes;
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+    }
+}
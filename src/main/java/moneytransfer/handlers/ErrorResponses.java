@@ -0,0 +1,35 @@
+package moneytransfer.handlers;
+
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.Json;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.ErrorResult;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public final class ErrorResponses {
+
+    private static final CharSequence CONTENT_TYPE = HttpHeaders.createOptimized("Content-Type");
+    private static final CharSequence APPLICATION_JSON = HttpHeaders.createOptimized("application/json");
+
+    private static final Map<ErrorCode, Buffer> BODIES = new EnumMap<>(ErrorCode.class);
+
+    static {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            BODIES.put(errorCode, Buffer.buffer(Json.encodePrettily(new ErrorResult(errorCode))));
+        }
+    }
+
+    private ErrorResponses() {
+    }
+
+    public static void end(HttpServerResponse response, int status, ErrorCode errorCode) {
+        response.getDelegate()
+            .setStatusCode(status)
+            .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+            .end(BODIES.get(errorCode));
+    }
+}
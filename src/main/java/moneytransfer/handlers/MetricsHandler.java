@@ -0,0 +1,26 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.core.Handler;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.metrics.Metrics;
+
+@Singleton
+public class MetricsHandler implements Handler<RoutingContext> {
+
+    private final Metrics metrics;
+
+    @Inject
+    public MetricsHandler(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        routingContext.response()
+            .setStatusCode(200)
+            .putHeader("Content-Type", TextFormat.CONTENT_TYPE_004)
+            .end(metrics.scrape());
+    }
+}
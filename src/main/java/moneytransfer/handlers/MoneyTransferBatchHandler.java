@@ -0,0 +1,101 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Handler;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.MoneyTransfer;
+import moneytransfer.models.MoneyTransferBatch;
+import moneytransfer.models.MoneyTransferBatchResult;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferResult;
+import moneytransfer.services.MoneyTransferService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+@Singleton
+public class MoneyTransferBatchHandler implements Handler<RoutingContext> {
+
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private final MoneyTransferService moneyTransferService;
+    private final Metrics metrics;
+
+    @Inject
+    public MoneyTransferBatchHandler(MoneyTransferService moneyTransferService, Metrics metrics) {
+        this.moneyTransferService = moneyTransferService;
+        this.metrics = metrics;
+    }
+
+    public void handle(RoutingContext routingContext) {
+
+        MoneyTransferBatch moneyTransferBatch;
+        List<Transfer> transfers = new ArrayList<>();
+        long decodeStart = System.nanoTime();
+        try {
+            moneyTransferBatch = MoneyTransferDecoder.decodeBatch(routingContext.getBody());
+            if (moneyTransferBatch.getTransfers() == null) {
+                respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+                return;
+            }
+            for (MoneyTransfer moneyTransfer : moneyTransferBatch.getTransfers()) {
+                if (!isComplete(moneyTransfer)) {
+                    respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+                    return;
+                }
+                transfers.add(new Transfer(moneyTransfer.getSourceAccount(), moneyTransfer.getDestinationAccount(),
+                    new BigDecimal(moneyTransfer.getAmount()), moneyTransfer.getCurrency()));
+            }
+        } catch (DecodeException | NumberFormatException ex) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+            return;
+        } finally {
+            metrics.observe(TransferStage.DECODE, decodeStart);
+        }
+
+        if (transfers.size() > MAX_BATCH_SIZE) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+            return;
+        }
+
+        moneyTransferService
+            .transferMoneyBatch(transfers, moneyTransferBatch.getMode())
+            .subscribe((results) -> {
+                for (TransferResult result : results) {
+                    if (result.getErrorCode() != null) {
+                        metrics.recordError(result.getErrorCode());
+                    }
+                }
+                timeResponseWrite(routingContext)
+                    .setStatusCode(200)
+                    .putHeader("Content-Type", "application/json")
+                    .end(Json.encodePrettily(new MoneyTransferBatchResult(results)));
+            }, (throwable) -> {
+                respondWithError(routingContext, 500, ErrorCode.INTERNAL_SERVER_ERROR);
+            });
+    }
+
+    private static boolean isComplete(MoneyTransfer moneyTransfer) {
+        return moneyTransfer != null && moneyTransfer.getSourceAccount() != null && moneyTransfer.getDestinationAccount() != null
+            && moneyTransfer.getAmount() != null && moneyTransfer.getCurrency() != null;
+    }
+
+    private void respondWithError(RoutingContext routingContext, int status, ErrorCode errorCode) {
+        metrics.recordError(errorCode);
+        ErrorResponses.end(timeResponseWrite(routingContext), status, errorCode);
+    }
+
+    private HttpServerResponse timeResponseWrite(RoutingContext routingContext) {
+        long writeStart = System.nanoTime();
+        return routingContext.response().bodyEndHandler((__) -> metrics.observe(TransferStage.RESPONSE_WRITE, writeStart));
+    }
+
+}
@@ -0,0 +1,107 @@
+package moneytransfer.handlers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.core.buffer.Buffer;
+import moneytransfer.models.MoneyTransfer;
+import moneytransfer.models.MoneyTransferBatch;
+import moneytransfer.money.FixedPointMoney;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+public final class MoneyTransferDecoder {
+
+    private static final JsonFactory JSON_FACTORY = Json.mapper.getFactory();
+
+    private MoneyTransferDecoder() {
+    }
+
+    public static MoneyTransfer decode(Buffer body) {
+        try (JsonParser parser = createParser(body)) {
+            return readMoneyTransfer(parser);
+        } catch (IOException ex) {
+            throw new DecodeException("Failed to decode: " + ex.getMessage());
+        }
+    }
+
+    public static MoneyTransferBatch decodeBatch(Buffer body) {
+        try (JsonParser parser = createParser(body)) {
+            return Json.mapper.readValue(parser, MoneyTransferBatch.class);
+        } catch (IOException ex) {
+            throw new DecodeException("Failed to decode: " + ex.getMessage());
+        }
+    }
+
+    private static JsonParser createParser(Buffer body) throws IOException {
+        if (body == null) {
+            throw new DecodeException("Missing body");
+        }
+
+        ByteBuf byteBuf = body.getDelegate().getByteBuf();
+        if (byteBuf.hasArray()) {
+            return JSON_FACTORY.createParser(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), byteBuf.readableBytes());
+        }
+        return JSON_FACTORY.createParser(body.getDelegate().getBytes());
+    }
+
+    private static MoneyTransfer readMoneyTransfer(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new DecodeException("Expected a JSON object");
+        }
+
+        String sourceAccount = null;
+        String destinationAccount = null;
+        String amount = null;
+        String currency = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (fieldName) {
+                case "sourceAccount":
+                    sourceAccount = readText(parser, value);
+                    break;
+                case "destinationAccount":
+                    destinationAccount = readText(parser, value);
+                    break;
+                case "amount":
+                    amount = readAmount(parser, value);
+                    break;
+                case "currency":
+                    currency = readText(parser, value);
+                    break;
+                default:
+                    throw new DecodeException("Unrecognized field " + fieldName);
+            }
+        }
+
+        if (parser.getCurrentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+            throw new DecodeException("Expected a single JSON object");
+        }
+        if (sourceAccount == null || destinationAccount == null || amount == null || currency == null) {
+            throw new DecodeException("Missing required field");
+        }
+        return new MoneyTransfer(sourceAccount, destinationAccount, amount, currency);
+    }
+
+    private static String readText(JsonParser parser, JsonToken value) throws IOException {
+        if (value == null || !value.isScalarValue() || value == JsonToken.VALUE_NULL) {
+            throw new DecodeException("Expected a value for " + parser.getCurrentName());
+        }
+        return parser.getText();
+    }
+
+    private static String readAmount(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.VALUE_STRING && value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new DecodeException("Expected an amount");
+        }
+        if (!FixedPointMoney.isWellFormed(CharBuffer.wrap(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength()))) {
+            throw new NumberFormatException("Malformed amount");
+        }
+        return parser.getText();
+    }
+}
@@ -4,75 +4,98 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import io.vertx.core.Handler;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.Json;
+import io.vertx.rxjava.core.http.HttpServerResponse;
 import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException;
+import moneytransfer.exceptions.IdempotencyKeyReusedException;
 import moneytransfer.exceptions.InsufficientAccountBalanceException;
 import moneytransfer.exceptions.InvalidAccountException;
 import moneytransfer.exceptions.MoneyOverflowException;
 import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.exceptions.OverloadedException;
 import moneytransfer.models.ErrorCode;
-import moneytransfer.models.ErrorResult;
 import moneytransfer.models.MoneyTransfer;
+import moneytransfer.services.AdmissionController;
 import moneytransfer.services.MoneyTransferService;
 
-import java.math.BigDecimal;
-
 @Singleton
 public class MoneyTransferHandler implements Handler<RoutingContext> {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final MoneyTransferService moneyTransferService;
+    private final Metrics metrics;
+    private final AdmissionController admissionController;
 
     @Inject
-    public MoneyTransferHandler(MoneyTransferService moneyTransferService) {
+    public MoneyTransferHandler(MoneyTransferService moneyTransferService, Metrics metrics, AdmissionController admissionController) {
         this.moneyTransferService = moneyTransferService;
+        this.metrics = metrics;
+        this.admissionController = admissionController;
     }
 
     public void handle(RoutingContext routingContext) {
 
         MoneyTransfer moneyTransfer;
-        BigDecimal amount;
+        long decodeStart = System.nanoTime();
         try {
-            moneyTransfer = Json.decodeValue(routingContext.getBodyAsString(), MoneyTransfer.class);
-            amount = new BigDecimal(moneyTransfer.getAmount());
+            moneyTransfer = MoneyTransferDecoder.decode(routingContext.getBody());
         } catch (DecodeException | NumberFormatException ex) {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.BAD_REQUEST);
-            respondWithError(routingContext, 400, errorResult);
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
             return;
+        } finally {
+            metrics.observe(TransferStage.DECODE, decodeStart);
         }
 
-        moneyTransferService
-            .transferMoney(moneyTransfer.getSourceAccount(), moneyTransfer.getDestinationAccount(), amount, moneyTransfer.getCurrency())
+        String idempotencyKey = routingContext.request().getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey != null && (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+            return;
+        }
+
+        admissionController
+            .admit(moneyTransfer.getSourceAccount(), () -> moneyTransferService.transferMoney(moneyTransfer.getSourceAccount(),
+                moneyTransfer.getDestinationAccount(), moneyTransfer.getAmount(), moneyTransfer.getCurrency(), idempotencyKey))
             .subscribe((__) -> {
-                routingContext.response().setStatusCode(200).end();
+                timeResponseWrite(routingContext).setStatusCode(200).end();
             }, (throwable) -> {
                 handleError(routingContext, throwable);
             });
     }
 
     private void handleError(RoutingContext routingContext, Throwable throwable) {
-        if (throwable instanceof InsufficientAccountBalanceException) {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE);
-            respondWithError(routingContext, 422, errorResult);
+        if (throwable instanceof NumberFormatException) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+        } else if (throwable instanceof InsufficientAccountBalanceException) {
+            respondWithError(routingContext, 422, ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE);
         } else if (throwable instanceof InvalidAccountException) {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.INVALID_ACCOUNT);
-            respondWithError(routingContext, 400, errorResult);
+            respondWithError(routingContext, 400, ErrorCode.INVALID_ACCOUNT);
         } else if (throwable instanceof MoneyTooManyDecimalPlacesException) {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES);
-            respondWithError(routingContext, 400, errorResult);
+            respondWithError(routingContext, 400, ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES);
         } else if (throwable instanceof MoneyOverflowException) {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.MONEY_OVERFLOW);
-            respondWithError(routingContext, 422, errorResult);
+            respondWithError(routingContext, 422, ErrorCode.MONEY_OVERFLOW);
+        } else if (throwable instanceof OverloadedException) {
+            respondWithError(routingContext, 503, ErrorCode.OVERLOADED);
+        } else if (throwable instanceof IdempotencyKeyReusedException) {
+            respondWithError(routingContext, 422, ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        } else if (throwable instanceof IdempotencyKeyNotSupportedException) {
+            respondWithError(routingContext, 501, ErrorCode.IDEMPOTENCY_KEY_NOT_SUPPORTED);
         } else {
-            ErrorResult errorResult = new ErrorResult(ErrorCode.INTERNAL_SERVER_ERROR);
-            respondWithError(routingContext, 500, errorResult);
+            respondWithError(routingContext, 500, ErrorCode.INTERNAL_SERVER_ERROR);
         }
     }
 
-    private void respondWithError(RoutingContext routingContext, int status, ErrorResult errorResult) {
-        routingContext.response()
-            .setStatusCode(status)
-            .putHeader("Content-Type", "application/json")
-            .end(Json.encodePrettily(errorResult));
+    private void respondWithError(RoutingContext routingContext, int status, ErrorCode errorCode) {
+        metrics.recordError(errorCode);
+        ErrorResponses.end(timeResponseWrite(routingContext), status, errorCode);
+    }
+
+    private HttpServerResponse timeResponseWrite(RoutingContext routingContext) {
+        long writeStart = System.nanoTime();
+        return routingContext.response().bodyEndHandler((__) -> metrics.observe(TransferStage.RESPONSE_WRITE, writeStart));
     }
 
 }
\ No newline at end of file
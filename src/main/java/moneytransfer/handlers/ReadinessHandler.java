@@ -0,0 +1,28 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Handler;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.models.ReadinessResult;
+import moneytransfer.services.Readiness;
+
+@Singleton
+public class ReadinessHandler implements Handler<RoutingContext> {
+
+    private final Readiness readiness;
+
+    @Inject
+    public ReadinessHandler(Readiness readiness) {
+        this.readiness = readiness;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        boolean ready = readiness.isReady();
+        routingContext.response()
+            .setStatusCode(ready ? 200 : 503)
+            .putHeader("Content-Type", "application/json")
+            .end(Json.encodePrettily(new ReadinessResult(ready)));
+    }
+}
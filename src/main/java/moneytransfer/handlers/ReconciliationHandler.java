@@ -0,0 +1,60 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.ReconciliationStatus;
+import moneytransfer.services.ReconciliationJob;
+
+@Singleton
+public class ReconciliationHandler implements Handler<RoutingContext> {
+
+    private final ReconciliationJob reconciliationJob;
+
+    @Inject
+    public ReconciliationHandler(ReconciliationJob reconciliationJob) {
+        this.reconciliationJob = reconciliationJob;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        if (routingContext.request().method() == HttpMethod.GET) {
+            respond(routingContext, 200, reconciliationJob.status());
+            return;
+        }
+
+        if (!Boolean.parseBoolean(routingContext.request().getParam("wait"))) {
+            reconciliationJob.trigger();
+            ReconciliationStatus status = reconciliationJob.status();
+            if (!status.isRunning() && status.getLastError() == ErrorCode.RECONCILIATION_NOT_SUPPORTED) {
+                respondWithError(routingContext, 501, ErrorCode.RECONCILIATION_NOT_SUPPORTED);
+            } else {
+                respond(routingContext, 202, status);
+            }
+            return;
+        }
+
+        reconciliationJob.trigger()
+            .subscribe((report) -> respond(routingContext, 200, report), (throwable) -> {
+                if (throwable instanceof UnsupportedOperationException) {
+                    respondWithError(routingContext, 501, ErrorCode.RECONCILIATION_NOT_SUPPORTED);
+                } else {
+                    respondWithError(routingContext, 500, ErrorCode.INTERNAL_SERVER_ERROR);
+                }
+            });
+    }
+
+    private void respond(RoutingContext routingContext, int status, Object result) {
+        routingContext.response()
+            .setStatusCode(status)
+            .putHeader("Content-Type", "application/json")
+            .end(Json.encodePrettily(result));
+    }
+
+    private void respondWithError(RoutingContext routingContext, int status, ErrorCode errorCode) {
+        ErrorResponses.end(routingContext.response(), status, errorCode);
+    }
+}
@@ -0,0 +1,139 @@
+package moneytransfer.handlers;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import io.vertx.core.Handler;
+import io.vertx.core.json.Json;
+import io.vertx.rxjava.core.http.HttpServerResponse;
+import io.vertx.rxjava.ext.web.RoutingContext;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.TransferHistoryNotRecordedException;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.TransferHistoryEntry;
+import moneytransfer.models.TransferJournalEntry;
+import moneytransfer.services.MoneyTransferService;
+import rx.Subscriber;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Singleton
+public class TransferHistoryHandler implements Handler<RoutingContext> {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private final MoneyTransferService moneyTransferService;
+
+    @Inject
+    public TransferHistoryHandler(MoneyTransferService moneyTransferService) {
+        this.moneyTransferService = moneyTransferService;
+    }
+
+    public void handle(RoutingContext routingContext) {
+        String accountId = routingContext.pathParam("accountId");
+        int limit;
+        long beforeEntryId;
+        try {
+            String limitParam = routingContext.request().getParam("limit");
+            String cursorParam = routingContext.request().getParam("cursor");
+            limit = limitParam == null ? DEFAULT_LIMIT : Integer.parseInt(limitParam);
+            beforeEntryId = cursorParam == null ? Long.MAX_VALUE : Long.parseLong(cursorParam);
+        } catch (NumberFormatException ex) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+            return;
+        }
+        if (limit < 1 || limit > MAX_LIMIT || beforeEntryId < 1) {
+            respondWithError(routingContext, 400, ErrorCode.BAD_REQUEST);
+            return;
+        }
+
+        HistorySubscriber subscriber = new HistorySubscriber(routingContext, accountId, limit);
+        routingContext.response().closeHandler((__) -> subscriber.unsubscribe());
+        moneyTransferService.getTransferHistory(accountId, beforeEntryId, limit + 1).subscribe(subscriber);
+    }
+
+    private static String format(BigDecimal amount) {
+        return amount.stripTrailingZeros().toPlainString();
+    }
+
+    private void respondWithError(RoutingContext routingContext, int status, ErrorCode errorCode) {
+        ErrorResponses.end(routingContext.response(), status, errorCode);
+    }
+
+    private class HistorySubscriber extends Subscriber<TransferJournalEntry> {
+
+        private final RoutingContext routingContext;
+        private final HttpServerResponse response;
+        private final String accountId;
+        private final int limit;
+
+        private int written;
+        private long lastEntryId;
+        private Long nextCursor;
+
+        private HistorySubscriber(RoutingContext routingContext, String accountId, int limit) {
+            this.routingContext = routingContext;
+            this.response = routingContext.response();
+            this.accountId = accountId;
+            this.limit = limit;
+        }
+
+        @Override
+        public void onStart() {
+            request(1);
+        }
+
+        @Override
+        public void onNext(TransferJournalEntry entry) {
+            if (written == limit) {
+                nextCursor = lastEntryId;
+                request(1);
+                return;
+            }
+
+            if (written == 0) {
+                writeHeader();
+            }
+            TransferHistoryEntry historyEntry = new TransferHistoryEntry(entry.getEntryId(), entry.getCounterpartyAccount(), entry.getCurrency(),
+                format(entry.getAmount()), Instant.ofEpochMilli(entry.getCreatedAt()).toString());
+            response.write((written == 0 ? "" : ",") + Json.encode(historyEntry));
+            written++;
+            lastEntryId = entry.getEntryId();
+
+            if (response.writeQueueFull()) {
+                response.drainHandler((__) -> request(1));
+            } else {
+                request(1);
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            if (written == 0) {
+                writeHeader();
+            }
+            response.end("],\"nextCursor\":" + (nextCursor == null ? "null" : Json.encode(nextCursor.toString())) + "}");
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (written > 0) {
+                response.close();
+            } else if (throwable instanceof InvalidAccountException) {
+                respondWithError(routingContext, 400, ErrorCode.INVALID_ACCOUNT);
+            } else if (throwable instanceof TransferHistoryNotRecordedException) {
+                respondWithError(routingContext, 501, ErrorCode.TRANSFER_HISTORY_NOT_RECORDED);
+            } else {
+                respondWithError(routingContext, 500, ErrorCode.INTERNAL_SERVER_ERROR);
+            }
+        }
+
+        private void writeHeader() {
+            response.setChunked(true)
+                .setStatusCode(200)
+                .putHeader("Content-Type", "application/json")
+                .write("{\"accountId\":" + Json.encode(accountId) + ",\"transfers\":[");
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package moneytransfer.ledger;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.rxjava.core.Context;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.shareddata.LocalMap;
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferResult;
+import rx.Single;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class InMemoryLedger implements Shareable, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryLedger.class);
+
+    public static final int MONEY_SCALE = 10;
+    public static final BigDecimal MAX_BALANCE = BigDecimal.TEN.pow(55).subtract(BigDecimal.ONE.movePointLeft(MONEY_SCALE));
+
+    private static final String SHARED_LEDGERS = "moneytransfer.ledgers";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    private static final byte ACCOUNT_CREATED = 1;
+    private static final byte ACCOUNT_DELETED = 2;
+    private static final byte DEPOSIT = 3;
+    private static final byte TRANSFERS = 4;
+
+    private final Vertx vertx;
+    private final Path directory;
+    private final Shard[] shards;
+    private final WriteAheadLog writeAheadLog;
+    private final long checkpointIntervalBytes;
+    private final ExecutorService checkpointExecutor;
+    private final AtomicBoolean checkpointScheduled = new AtomicBoolean();
+    private volatile long lastCheckpointLsn;
+
+    private InMemoryLedger(Vertx vertx, Path directory, int shardCount, long segmentSizeBytes, boolean fsync, int checkpointAfterSegments) throws IOException {
+        this.vertx = vertx;
+        this.directory = directory;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.lastCheckpointLsn = loadSnapshot();
+        this.writeAheadLog = WriteAheadLog.replay(directory, segmentSizeBytes, fsync, lastCheckpointLsn, this::applyRecord);
+        this.checkpointIntervalBytes = checkpointAfterSegments * segmentSizeBytes;
+        this.checkpointExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-checkpoint-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static InMemoryLedger open(Vertx vertx, Path directory, int shardCount, long segmentSizeBytes, boolean fsync, int checkpointAfterSegments) throws IOException {
+        Files.createDirectories(directory);
+        return new InMemoryLedger(vertx, directory, shardCount, segmentSizeBytes, fsync, checkpointAfterSegments);
+    }
+
+    public static InMemoryLedger createShared(Vertx vertx, JsonObject config) {
+        Path directory = Paths.get(config.getString("directory", "ledger-data")).toAbsolutePath();
+        LocalMap<String, InMemoryLedger> ledgers = vertx.sharedData().getLocalMap(SHARED_LEDGERS);
+        synchronized (InMemoryLedger.class) {
+            InMemoryLedger ledger = ledgers.get(directory.toString());
+            if (ledger == null) {
+                try {
+                    ledger = open(vertx, directory,
+                        config.getInteger("shards", 64),
+                        config.getLong("segmentSizeBytes", 64L * 1024 * 1024),
+                        config.getBoolean("fsync", true),
+                        config.getInteger("checkpointAfterSegments", 4));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                ledgers.put(directory.toString(), ledger);
+            }
+            return ledger;
+        }
+    }
+
+    public boolean accountExists(String accountId) {
+        Shard shard = shardFor(accountId);
+        shard.lock.lock();
+        try {
+            return shard.balancesByAccount.containsKey(accountId);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public BigDecimal getBalance(String accountId, String currency) {
+        Shard shard = shardFor(accountId);
+        shard.lock.lock();
+        try {
+            Map<String, BigDecimal> balances = shard.balancesByAccount.get(accountId);
+            return balances == null ? null : balances.get(currency);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public Map<String, BigDecimal> getBalances(String accountId) {
+        Shard shard = shardFor(accountId);
+        shard.lock.lock();
+        try {
+            Map<String, BigDecimal> balances = shard.balancesByAccount.get(accountId);
+            return balances == null ? new TreeMap<>() : new TreeMap<>(balances);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public Set<String> getAccountIds() {
+        Set<String> accountIds = new HashSet<>();
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                accountIds.addAll(shard.balancesByAccount.keySet());
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return accountIds;
+    }
+
+    public Single<Void> createAccount(String accountId) {
+        return Single.defer(() -> {
+            Shard shard = shardFor(accountId);
+            long lsn;
+            shard.lock.lock();
+            try {
+                if (shard.balancesByAccount.containsKey(accountId)) {
+                    return Single.just(null);
+                }
+                lsn = append(encode(ACCOUNT_CREATED, accountId));
+                shard.balancesByAccount.put(accountId, new HashMap<>());
+            } finally {
+                shard.lock.unlock();
+            }
+            return whenDurable(lsn);
+        });
+    }
+
+    public Single<Void> deleteAccount(String accountId) {
+        return Single.defer(() -> {
+            Shard shard = shardFor(accountId);
+            long lsn;
+            shard.lock.lock();
+            try {
+                if (!shard.balancesByAccount.containsKey(accountId)) {
+                    return Single.just(null);
+                }
+                lsn = append(encode(ACCOUNT_DELETED, accountId));
+                shard.balancesByAccount.remove(accountId);
+            } finally {
+                shard.lock.unlock();
+            }
+            return whenDurable(lsn);
+        });
+    }
+
+    public Single<Void> deposit(String accountId, String currency, BigDecimal amount) {
+        return Single.defer(() -> {
+            if (amount.signum() < 0) {
+                return Single.error(new IllegalArgumentException("Deposit amount must not be negative"));
+            }
+            if (amount.scale() > MONEY_SCALE) {
+                return Single.error(new MoneyTooManyDecimalPlacesException());
+            }
+
+            Shard shard = shardFor(accountId);
+            long lsn;
+            shard.lock.lock();
+            try {
+                Map<String, BigDecimal> balances = shard.balancesByAccount.get(accountId);
+                if (balances == null) {
+                    return Single.error(new InvalidAccountException());
+                }
+                BigDecimal newBalance = balances.getOrDefault(currency, BigDecimal.ZERO).add(amount);
+                if (newBalance.compareTo(MAX_BALANCE) > 0) {
+                    return Single.error(new MoneyOverflowException());
+                }
+                lsn = append(encode(DEPOSIT, accountId, currency, amount.toPlainString()));
+                balances.put(currency, newBalance);
+            } finally {
+                shard.lock.unlock();
+            }
+            return whenDurable(lsn);
+        });
+    }
+
+    public Single<Void> transfer(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        return Single.defer(() -> {
+            if (amount.scale() > MONEY_SCALE) {
+                return Single.error(new MoneyTooManyDecimalPlacesException());
+            }
+            if (amount.compareTo(MAX_BALANCE) > 0) {
+                return Single.error(new MoneyOverflowException());
+            }
+
+            long lsn;
+            int[] lockedShards = lockShards(Arrays.asList(sourceAccount, destinationAccount));
+            try {
+                Map<String, BigDecimal> sourceBalances = shardFor(sourceAccount).balancesByAccount.get(sourceAccount);
+                Map<String, BigDecimal> destinationBalances = shardFor(destinationAccount).balancesByAccount.get(destinationAccount);
+                if (sourceBalances == null || destinationBalances == null) {
+                    return Single.error(new InvalidAccountException());
+                }
+
+                BigDecimal sourceBalance = sourceBalances.get(currency);
+                if (sourceBalance == null || sourceBalance.subtract(amount).signum() < 0) {
+                    return Single.error(new InsufficientAccountBalanceException());
+                }
+                BigDecimal newSourceBalance = sourceBalance.subtract(amount);
+                BigDecimal destinationBalance = sourceAccount.equals(destinationAccount) ?
+                    newSourceBalance : destinationBalances.getOrDefault(currency, BigDecimal.ZERO);
+                BigDecimal newDestinationBalance = destinationBalance.add(amount);
+                if (newDestinationBalance.compareTo(MAX_BALANCE) > 0) {
+                    return Single.error(new MoneyOverflowException());
+                }
+
+                lsn = append(encodeTransfers(Collections.singletonList(new Transfer(sourceAccount, destinationAccount, amount, currency))));
+                sourceBalances.put(currency, newSourceBalance);
+                destinationBalances.put(currency, newDestinationBalance);
+            } finally {
+                unlockShards(lockedShards);
+            }
+            return whenDurable(lsn);
+        });
+    }
+
+    public Single<List<TransferResult>> transferBatch(List<Transfer> transfers, BatchMode batchMode) {
+        return Single.defer(() -> {
+            TransferResult[] results = new TransferResult[transfers.size()];
+            List<String> accountIds = new ArrayList<>();
+            for (Transfer transfer : transfers) {
+                accountIds.add(transfer.getSourceAccount());
+                accountIds.add(transfer.getDestinationAccount());
+            }
+
+            long lsn = -1;
+            int[] lockedShards = lockShards(accountIds);
+            try {
+                List<Integer> candidateIndexes = new ArrayList<>();
+                for (int i = 0; i < transfers.size(); i++) {
+                    Transfer transfer = transfers.get(i);
+                    if (transfer.getAmount().scale() > MONEY_SCALE) {
+                        results[i] = TransferResult.failed(ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES);
+                    } else if (transfer.getAmount().compareTo(MAX_BALANCE) > 0) {
+                        results[i] = TransferResult.failed(ErrorCode.MONEY_OVERFLOW);
+                    } else if (balancesOf(transfer.getSourceAccount()) == null || balancesOf(transfer.getDestinationAccount()) == null) {
+                        results[i] = TransferResult.failed(ErrorCode.INVALID_ACCOUNT);
+                    } else {
+                        candidateIndexes.add(i);
+                    }
+                }
+
+                while (!candidateIndexes.isEmpty() && (batchMode == BatchMode.BEST_EFFORT || candidateIndexes.size() == transfers.size())) {
+                    Map<Map.Entry<String, String>, BigDecimal> newBalances = new HashMap<>();
+                    List<Integer> debitedIndexes = new ArrayList<>();
+                    for (int index : candidateIndexes) {
+                        Transfer transfer = transfers.get(index);
+                        Map.Entry<String, String> sourceKey = new AbstractMap.SimpleImmutableEntry<>(transfer.getSourceAccount(), transfer.getCurrency());
+                        BigDecimal sourceBalance = newBalances.containsKey(sourceKey) ?
+                            newBalances.get(sourceKey) : balancesOf(transfer.getSourceAccount()).get(transfer.getCurrency());
+                        if (sourceBalance != null && sourceBalance.subtract(transfer.getAmount()).signum() >= 0) {
+                            newBalances.put(sourceKey, sourceBalance.subtract(transfer.getAmount()));
+                            debitedIndexes.add(index);
+                            results[index] = null;
+                        } else {
+                            results[index] = TransferResult.failed(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE);
+                        }
+                    }
+
+                    if (batchMode == BatchMode.ALL_OR_NOTHING && debitedIndexes.size() < candidateIndexes.size()) {
+                        break;
+                    }
+
+                    Integer overflowIndex = null;
+                    for (int index : debitedIndexes) {
+                        Transfer transfer = transfers.get(index);
+                        Map.Entry<String, String> destinationKey = new AbstractMap.SimpleImmutableEntry<>(transfer.getDestinationAccount(), transfer.getCurrency());
+                        BigDecimal destinationBalance = newBalances.containsKey(destinationKey) ?
+                            newBalances.get(destinationKey) : balancesOf(transfer.getDestinationAccount()).getOrDefault(transfer.getCurrency(), BigDecimal.ZERO);
+                        BigDecimal newDestinationBalance = destinationBalance.add(transfer.getAmount());
+                        if (newDestinationBalance.compareTo(MAX_BALANCE) > 0) {
+                            overflowIndex = index;
+                            break;
+                        }
+                        newBalances.put(destinationKey, newDestinationBalance);
+                    }
+
+                    if (overflowIndex != null) {
+                        results[overflowIndex] = TransferResult.failed(ErrorCode.MONEY_OVERFLOW);
+                        candidateIndexes.remove(overflowIndex);
+                        continue;
+                    }
+
+                    if (!debitedIndexes.isEmpty()) {
+                        List<Transfer> appliedTransfers = new ArrayList<>();
+                        debitedIndexes.forEach(index -> appliedTransfers.add(transfers.get(index)));
+                        lsn = append(encodeTransfers(appliedTransfers));
+                        newBalances.forEach((key, balance) -> balancesOf(key.getKey()).put(key.getValue(), balance));
+                    }
+                    debitedIndexes.forEach(index -> results[index] = TransferResult.success());
+                    break;
+                }
+            } finally {
+                unlockShards(lockedShards);
+            }
+
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = TransferResult.rolledBack();
+                }
+            }
+            List<TransferResult> resultList = Arrays.asList(results);
+            return lsn < 0 ? Single.just(resultList) : whenDurable(lsn).map((__) -> resultList);
+        });
+    }
+
+    public void checkpoint() throws IOException {
+        synchronized (checkpointExecutor) {
+            Map<String, Map<String, BigDecimal>> state = new HashMap<>();
+            long lsn;
+            int[] allShards = new int[shards.length];
+            for (int i = 0; i < shards.length; i++) {
+                allShards[i] = i;
+                shards[i].lock.lock();
+            }
+            try {
+                lsn = writeAheadLog.getAppendLsn();
+                for (Shard shard : shards) {
+                    shard.balancesByAccount.forEach((accountId, balances) -> state.put(accountId, new HashMap<>(balances)));
+                }
+            } finally {
+                unlockShards(allShards);
+            }
+
+            writeAheadLog.flush();
+            writeSnapshot(lsn, state);
+            writeAheadLog.deleteSegmentsBefore(lsn);
+            lastCheckpointLsn = lsn;
+        }
+    }
+
+    @Override
+    public void close() {
+        checkpointExecutor.shutdown();
+        writeAheadLog.close();
+        LocalMap<String, InMemoryLedger> ledgers = vertx.sharedData().getLocalMap(SHARED_LEDGERS);
+        synchronized (InMemoryLedger.class) {
+            if (ledgers.get(directory.toString()) == this) {
+                ledgers.remove(directory.toString());
+            }
+        }
+    }
+
+    private long append(byte[] record) {
+        long lsn = writeAheadLog.append(record);
+        if (lsn - lastCheckpointLsn > checkpointIntervalBytes && checkpointScheduled.compareAndSet(false, true)) {
+            checkpointExecutor.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException ex) {
+                    LOGGER.error("Failed to checkpoint ledger in " + directory, ex);
+                } finally {
+                    checkpointScheduled.set(false);
+                }
+            });
+        }
+        return lsn;
+    }
+
+    private Single<Void> whenDurable(long lsn) {
+        Context context = vertx.getOrCreateContext();
+        return Single.fromEmitter(emitter ->
+            writeAheadLog.whenDurable(lsn, () -> context.runOnContext((__) -> emitter.onSuccess(null))));
+    }
+
+    private Shard shardFor(String accountId) {
+        return shards[shardIndex(accountId)];
+    }
+
+    private int shardIndex(String accountId) {
+        int hash = accountId.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length;
+    }
+
+    private Map<String, BigDecimal> balancesOf(String accountId) {
+        return shardFor(accountId).balancesByAccount.get(accountId);
+    }
+
+    private int[] lockShards(Collection<String> accountIds) {
+        TreeSet<Integer> shardIndexes = new TreeSet<>();
+        for (String accountId : accountIds) {
+            shardIndexes.add(shardIndex(accountId));
+        }
+        int[] lockedShards = new int[shardIndexes.size()];
+        int i = 0;
+        for (int shardIndex : shardIndexes) {
+            shards[shardIndex].lock.lock();
+            lockedShards[i++] = shardIndex;
+        }
+        return lockedShards;
+    }
+
+    private void unlockShards(int[] lockedShards) {
+        for (int i = lockedShards.length - 1; i >= 0; i--) {
+            shards[lockedShards[i]].lock.unlock();
+        }
+    }
+
+    private void applyRecord(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case ACCOUNT_CREATED:
+                String createdAccountId = readString(record);
+                shardFor(createdAccountId).balancesByAccount.putIfAbsent(createdAccountId, new HashMap<>());
+                break;
+            case ACCOUNT_DELETED:
+                String deletedAccountId = readString(record);
+                shardFor(deletedAccountId).balancesByAccount.remove(deletedAccountId);
+                break;
+            case DEPOSIT:
+                String accountId = readString(record);
+                String currency = readString(record);
+                balancesOf(accountId).merge(currency, new BigDecimal(readString(record)), BigDecimal::add);
+                break;
+            case TRANSFERS:
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    String sourceAccount = readString(record);
+                    String destinationAccount = readString(record);
+                    String transferCurrency = readString(record);
+                    BigDecimal amount = new BigDecimal(readString(record));
+                    balancesOf(sourceAccount).merge(transferCurrency, amount.negate(), BigDecimal::add);
+                    balancesOf(destinationAccount).merge(transferCurrency, amount, BigDecimal::add);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown ledger record type " + type);
+        }
+    }
+
+    private static byte[] encode(byte type, String... fields) {
+        List<byte[]> encodedFields = new ArrayList<>();
+        int size = 1;
+        for (String field : fields) {
+            byte[] encodedField = field.getBytes(StandardCharsets.UTF_8);
+            encodedFields.add(encodedField);
+            size += 4 + encodedField.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(type);
+        for (byte[] encodedField : encodedFields) {
+            buffer.putInt(encodedField.length).put(encodedField);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] encodeTransfers(List<Transfer> transfers) {
+        List<String> fields = new ArrayList<>();
+        for (Transfer transfer : transfers) {
+            fields.add(transfer.getSourceAccount());
+            fields.add(transfer.getDestinationAccount());
+            fields.add(transfer.getCurrency());
+            fields.add(transfer.getAmount().toPlainString());
+        }
+        byte[] encodedFields = encode(TRANSFERS, fields.toArray(new String[0]));
+        return ByteBuffer.allocate(encodedFields.length + 4)
+            .put(TRANSFERS)
+            .putInt(transfers.size())
+            .put(encodedFields, 1, encodedFields.length - 1)
+            .array();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long loadSnapshot() throws IOException {
+        List<Long> snapshotLsns = snapshotLsns();
+        if (snapshotLsns.isEmpty()) {
+            return 0;
+        }
+
+        long lsn = snapshotLsns.get(snapshotLsns.size() - 1);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath(lsn))))) {
+            if (in.readLong() != lsn) {
+                throw new IOException("Corrupt ledger snapshot " + snapshotPath(lsn));
+            }
+            int accountCount = in.readInt();
+            for (int i = 0; i < accountCount; i++) {
+                String accountId = in.readUTF();
+                Map<String, BigDecimal> balances = new HashMap<>();
+                int balanceCount = in.readInt();
+                for (int j = 0; j < balanceCount; j++) {
+                    balances.put(in.readUTF(), new BigDecimal(in.readUTF()));
+                }
+                shardFor(accountId).balancesByAccount.put(accountId, balances);
+            }
+        }
+        return lsn;
+    }
+
+    private void writeSnapshot(long lsn, Map<String, Map<String, BigDecimal>> state) throws IOException {
+        Path temporaryPath = directory.resolve(SNAPSHOT_PREFIX + "tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeLong(lsn);
+            out.writeInt(state.size());
+            for (Map.Entry<String, Map<String, BigDecimal>> account : state.entrySet()) {
+                out.writeUTF(account.getKey());
+                out.writeInt(account.getValue().size());
+                for (Map.Entry<String, BigDecimal> balance : account.getValue().entrySet()) {
+                    out.writeUTF(balance.getKey());
+                    out.writeUTF(balance.getValue().toPlainString());
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath(lsn), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long snapshotLsn : snapshotLsns()) {
+            if (snapshotLsn < lsn) {
+                Files.deleteIfExists(snapshotPath(snapshotLsn));
+            }
+        }
+    }
+
+    private List<Long> snapshotLsns() throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                lsns.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(lsns);
+        return lsns;
+    }
+
+    private Path snapshotPath(long lsn) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    private static class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Map<String, BigDecimal>> balancesByAccount = new HashMap<>();
+    }
+}
@@ -0,0 +1,322 @@
+package moneytransfer.ledger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SPARE_SEGMENT = "spare-segment";
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean fsync;
+    private final Thread flusher;
+    private final Object flushLock = new Object();
+
+    private final Queue<DurabilityWaiter> waiters = new ArrayDeque<>();
+    private final List<MappedByteBuffer> unforcedSegments = new ArrayList<>();
+
+    private long segmentStartLsn;
+    private MappedByteBuffer segment;
+    private MappedByteBuffer spareSegment;
+    private long spareSegmentInUseLsn = -1;
+    private long appendLsn;
+    private long durableLsn;
+    private boolean closed;
+
+    private WriteAheadLog(Path directory, long segmentSize, boolean fsync, long segmentStartLsn, long appendLsn) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.segmentStartLsn = segmentStartLsn;
+        this.segment = mapSegment(segmentPath(directory, segmentStartLsn));
+        this.appendLsn = appendLsn;
+        this.durableLsn = appendLsn;
+        for (int offset = (int) (appendLsn - segmentStartLsn); offset < segmentSize; offset++) {
+            segment.put(offset, (byte) 0);
+        }
+        Files.deleteIfExists(directory.resolve(SPARE_SEGMENT));
+
+        this.flusher = new Thread(this::flushLoop, "ledger-wal-flusher-" + directory.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    static WriteAheadLog replay(Path directory, long segmentSize, boolean fsync, long fromLsn, Consumer<ByteBuffer> recordConsumer) throws IOException {
+        long segmentStartLsn = fromLsn - (fromLsn % segmentSize);
+        long endLsn = fromLsn;
+        boolean truncated = false;
+        for (long startLsn : segmentStartLsns(directory)) {
+            if (startLsn + segmentSize <= fromLsn) {
+                continue;
+            }
+            if (truncated) {
+                Files.delete(segmentPath(directory, startLsn));
+                continue;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(directory, startLsn)));
+            int offset = (int) Math.max(0, fromLsn - startLsn);
+            segmentStartLsn = startLsn;
+            endLsn = startLsn + offset;
+            while (true) {
+                ByteBuffer record = readRecord(buffer, offset);
+                if (record == null) {
+                    break;
+                }
+                offset += RECORD_HEADER_SIZE + record.remaining();
+                recordConsumer.accept(record);
+                endLsn = startLsn + offset;
+            }
+            truncated = !isCleanEnd(buffer, offset);
+        }
+        return new WriteAheadLog(directory, segmentSize, fsync, segmentStartLsn, endLsn);
+    }
+
+    synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        int recordSize = RECORD_HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment");
+        }
+
+        if (appendLsn - segmentStartLsn + recordSize > segmentSize) {
+            rollover();
+        }
+
+        int offset = (int) (appendLsn - segmentStartLsn);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        segment.putInt(offset + 4, (int) crc.getValue());
+        ByteBuffer record = segment.duplicate();
+        record.position(offset + RECORD_HEADER_SIZE);
+        record.put(payload);
+        segment.putInt(offset, payload.length);
+        appendLsn += recordSize;
+        if (fsync) {
+            notifyAll();
+        } else {
+            durableLsn = appendLsn;
+        }
+        return appendLsn;
+    }
+
+    void whenDurable(long lsn, Runnable callback) {
+        synchronized (this) {
+            if (lsn > durableLsn) {
+                waiters.add(new DurabilityWaiter(lsn, callback));
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    synchronized long getAppendLsn() {
+        return appendLsn;
+    }
+
+    void flush() {
+        synchronized (flushLock) {
+            List<MappedByteBuffer> toForce;
+            long targetLsn;
+            long renameLsn;
+            synchronized (this) {
+                toForce = new ArrayList<>(unforcedSegments);
+                toForce.add(segment);
+                unforcedSegments.clear();
+                targetLsn = appendLsn;
+                renameLsn = spareSegmentInUseLsn;
+                spareSegmentInUseLsn = -1;
+            }
+            if (renameLsn >= 0) {
+                try {
+                    Files.move(directory.resolve(SPARE_SEGMENT), segmentPath(directory, renameLsn), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            toForce.forEach(MappedByteBuffer::force);
+            markDurable(targetLsn);
+        }
+    }
+
+    void deleteSegmentsBefore(long lsn) throws IOException {
+        for (long startLsn : segmentStartLsns(directory)) {
+            if (startLsn + segmentSize <= lsn) {
+                Files.deleteIfExists(segmentPath(directory, startLsn));
+            }
+        }
+    }
+
+    int segmentCount() throws IOException {
+        return segmentStartLsns(directory).size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            Files.deleteIfExists(directory.resolve(SPARE_SEGMENT));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void rollover() {
+        unforcedSegments.add(segment);
+        segmentStartLsn += segmentSize;
+        appendLsn = segmentStartLsn;
+        if (spareSegment != null) {
+            segment = spareSegment;
+            spareSegment = null;
+            spareSegmentInUseLsn = segmentStartLsn;
+        } else {
+            try {
+                segment = mapSegment(segmentPath(directory, segmentStartLsn));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        notifyAll();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && !(fsync && appendLsn != durableLsn) && spareSegmentInUseLsn < 0 && spareSegment != null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            flush();
+            prepareSpareSegment();
+        }
+    }
+
+    private void prepareSpareSegment() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                if (closed || spareSegment != null || spareSegmentInUseLsn >= 0) {
+                    return;
+                }
+            }
+            MappedByteBuffer prepared;
+            try {
+                Path sparePath = directory.resolve(SPARE_SEGMENT);
+                Files.deleteIfExists(sparePath);
+                prepared = mapSegment(sparePath);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            synchronized (this) {
+                spareSegment = prepared;
+            }
+        }
+    }
+
+    private void markDurable(long lsn) {
+        List<DurabilityWaiter> ready = new ArrayList<>();
+        synchronized (this) {
+            durableLsn = Math.max(durableLsn, lsn);
+            while (!waiters.isEmpty() && waiters.peek().lsn <= durableLsn) {
+                ready.add(waiters.poll());
+            }
+        }
+        ready.forEach(waiter -> waiter.callback.run());
+    }
+
+    private MappedByteBuffer mapSegment(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static ByteBuffer readRecord(ByteBuffer buffer, int offset) {
+        if (offset + RECORD_HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + length);
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+        return record.slice();
+    }
+
+    private static boolean isCleanEnd(ByteBuffer buffer, int offset) {
+        return offset + RECORD_HEADER_SIZE > buffer.capacity() || (buffer.getInt(offset) == 0 && buffer.getInt(offset + 4) == 0);
+    }
+
+    private static List<Long> segmentStartLsns(Path directory) throws IOException {
+        List<Long> startLsns = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                startLsns.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(startLsns);
+        return startLsns;
+    }
+
+    private static Path segmentPath(Path directory, long startLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startLsn, SEGMENT_SUFFIX));
+    }
+
+    private static class DurabilityWaiter {
+        private final long lsn;
+        private final Runnable callback;
+
+        private DurabilityWaiter(long lsn, Runnable callback) {
+            this.lsn = lsn;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package moneytransfer.metrics;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+class CounterCollector extends Collector {
+
+    private final String name;
+    private final String help;
+    private final LongSupplier value;
+
+    CounterCollector(String name, String help, LongSupplier value) {
+        this.name = name;
+        this.help = help;
+        this.value = value;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return Collections.singletonList(new CounterMetricFamily(name, help, value.getAsLong()));
+    }
+}
@@ -0,0 +1,41 @@
+package moneytransfer.metrics;
+
+import com.mchange.v2.c3p0.C3P0Registry;
+import com.mchange.v2.c3p0.PooledDataSource;
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class JdbcPoolCollector extends Collector {
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily connections = new GaugeMetricFamily("jdbc_pool_connections",
+            "Connections in the JDBC pool by state", Collections.singletonList("state"));
+        GaugeMetricFamily waiting = new GaugeMetricFamily("jdbc_pool_threads_waiting",
+            "Threads waiting to check out a JDBC connection", Collections.emptyList());
+
+        long inUse = 0;
+        long idle = 0;
+        long threadsWaiting = 0;
+        for (Object dataSource : C3P0Registry.getPooledDataSources()) {
+            PooledDataSource pooledDataSource = (PooledDataSource) dataSource;
+            try {
+                inUse += pooledDataSource.getNumBusyConnectionsAllUsers();
+                idle += pooledDataSource.getNumIdleConnectionsAllUsers();
+                threadsWaiting += pooledDataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+            } catch (SQLException ex) {
+                // a pool that is closing has nothing to report
+            }
+        }
+
+        connections.addMetric(Collections.singletonList("in_use"), inUse);
+        connections.addMetric(Collections.singletonList("idle"), idle);
+        waiting.addMetric(Collections.emptyList(), threadsWaiting);
+        return Arrays.asList(connections, waiting);
+    }
+}
@@ -0,0 +1,204 @@
+package moneytransfer.metrics;
+
+import com.google.inject.Singleton;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import io.prometheus.client.exporter.common.TextFormat;
+import io.vertx.rxjava.core.Vertx;
+import moneytransfer.models.CurrencyReconciliation;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.ReconciliationReport;
+import rx.Single;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+@Singleton
+public class Metrics {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long EVENT_LOOP_PROBE_INTERVAL_MILLIS = 100;
+    private static final double EVENT_LOOP_BLOCKED_THRESHOLD_SECONDS = 0.01;
+
+    private final CollectorRegistry registry = new CollectorRegistry();
+
+    private final Map<TransferStage, Histogram.Child> stageDurations = new EnumMap<>(TransferStage.class);
+    private final Map<ErrorCode, Counter.Child> errors = new EnumMap<>(ErrorCode.class);
+    private final Histogram eventLoopDelay;
+    private final Counter eventLoopBlocked;
+    private final Counter requests;
+    private final Gauge admissionLimit;
+    private final Gauge admissionInFlight;
+    private final Gauge admissionQueued;
+    private final Counter admissionRejections;
+    private final Gauge reconciliationDrift;
+    private final Gauge reconciliationNegativeBalances;
+    private final Gauge reconciliationDuration;
+    private final Gauge reconciliationRowsPerSecond;
+    private final Counter reconciliationRuns;
+
+    public Metrics() {
+        Histogram stageDuration = Histogram.build()
+            .name("transfer_stage_duration_seconds")
+            .help("Time spent in each stage of handling a transfer")
+            .labelNames("stage")
+            .buckets(0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+            .register(registry);
+        for (TransferStage stage : TransferStage.values()) {
+            stageDurations.put(stage, stageDuration.labels(stage.name().toLowerCase()));
+        }
+
+        Counter errorCount = Counter.build()
+            .name("transfer_errors_total")
+            .help("Transfer errors by error code")
+            .labelNames("error_code")
+            .register(registry);
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            errors.put(errorCode, errorCount.labels(errorCode.name()));
+        }
+
+        eventLoopDelay = Histogram.build()
+            .name("event_loop_delay_seconds")
+            .help("How late a periodic timer on the event loop fired")
+            .labelNames("event_loop")
+            .buckets(0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5)
+            .register(registry);
+        eventLoopBlocked = Counter.build()
+            .name("event_loop_blocked_seconds_total")
+            .help("Time the event loop was unable to run timers, counting only delays over 10ms")
+            .labelNames("event_loop")
+            .register(registry);
+
+        requests = Counter.build()
+            .name("http_requests_total")
+            .help("HTTP requests received by each server verticle instance")
+            .labelNames("server_instance")
+            .register(registry);
+
+        admissionLimit = Gauge.build()
+            .name("admission_concurrency_limit")
+            .help("Number of transfers admission control currently lets run at once")
+            .register(registry);
+        admissionInFlight = Gauge.build()
+            .name("admission_in_flight")
+            .help("Transfers admitted and not yet completed")
+            .register(registry);
+        admissionQueued = Gauge.build()
+            .name("admission_queued")
+            .help("Transfers waiting to be admitted")
+            .register(registry);
+        admissionRejections = Counter.build()
+            .name("admission_rejected_total")
+            .help("Transfers rejected by admission control by reason")
+            .labelNames("reason")
+            .register(registry);
+
+        reconciliationDrift = Gauge.build()
+            .name("reconciliation_drift")
+            .help("Scanned total balance minus minted supply per currency in the last reconciliation")
+            .labelNames("currency")
+            .register(registry);
+        reconciliationNegativeBalances = Gauge.build()
+            .name("reconciliation_negative_balances")
+            .help("Negative balances per currency found by the last reconciliation")
+            .labelNames("currency")
+            .register(registry);
+        reconciliationDuration = Gauge.build()
+            .name("reconciliation_duration_seconds")
+            .help("Duration of the last reconciliation")
+            .register(registry);
+        reconciliationRowsPerSecond = Gauge.build()
+            .name("reconciliation_rows_per_second")
+            .help("Balance rows scanned per second by the last reconciliation")
+            .register(registry);
+        reconciliationRuns = Counter.build()
+            .name("reconciliation_runs_total")
+            .help("Reconciliation runs by result")
+            .labelNames("result")
+            .register(registry);
+
+        new JdbcPoolCollector().register(registry);
+    }
+
+    public <T> Single<T> time(TransferStage stage, Single<T> single) {
+        Histogram.Child stageDuration = stageDurations.get(stage);
+        return Single.defer(() -> {
+            long start = System.nanoTime();
+            return single.doAfterTerminate(() -> stageDuration.observe((System.nanoTime() - start) / NANOS_PER_SECOND));
+        });
+    }
+
+    public void observe(TransferStage stage, long startNanos) {
+        stageDurations.get(stage).observe((System.nanoTime() - startNanos) / NANOS_PER_SECOND);
+    }
+
+    public void recordError(ErrorCode errorCode) {
+        errors.get(errorCode).inc();
+    }
+
+    public void recordAdmission(int limit, int inFlight, int queued) {
+        admissionLimit.set(limit);
+        admissionInFlight.set(inFlight);
+        admissionQueued.set(queued);
+    }
+
+    public void recordAdmissionRejection(String reason) {
+        admissionRejections.labels(reason).inc();
+    }
+
+    public void recordReconciliation(ReconciliationReport report) {
+        for (CurrencyReconciliation currency : report.getCurrencies()) {
+            if (currency.getDrift() != null) {
+                reconciliationDrift.labels(currency.getCurrency()).set(Double.parseDouble(currency.getDrift()));
+            }
+            reconciliationNegativeBalances.labels(currency.getCurrency()).set(currency.getNegativeBalances());
+        }
+        reconciliationDuration.set(report.getDurationMillis() / 1000.0);
+        reconciliationRowsPerSecond.set(report.getRowsPerSecond());
+        reconciliationRuns.labels(report.isConsistent() ? "consistent" : "inconsistent").inc();
+    }
+
+    public void recordReconciliationFailure() {
+        reconciliationRuns.labels("failed").inc();
+    }
+
+    public void registerCounter(String name, String help, LongSupplier value) {
+        new CounterCollector(name, help, value).register(registry);
+    }
+
+    public Counter.Child requestCounter(String serverInstance) {
+        return requests.labels(serverInstance);
+    }
+
+    public void monitorEventLoop(Vertx vertx) {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(EVENT_LOOP_PROBE_INTERVAL_MILLIS);
+        long[] expectedNanos = {System.nanoTime() + intervalNanos};
+        vertx.setPeriodic(EVENT_LOOP_PROBE_INTERVAL_MILLIS, (__) -> {
+            long now = System.nanoTime();
+            double delaySeconds = Math.max(0, now - expectedNanos[0]) / NANOS_PER_SECOND;
+            String eventLoop = Thread.currentThread().getName();
+            eventLoopDelay.labels(eventLoop).observe(delaySeconds);
+            if (delaySeconds > EVENT_LOOP_BLOCKED_THRESHOLD_SECONDS) {
+                eventLoopBlocked.labels(eventLoop).inc(delaySeconds);
+            }
+            expectedNanos[0] = now + intervalNanos;
+        });
+    }
+
+    public String scrape() {
+        StringWriter writer = new StringWriter();
+        try {
+            TextFormat.write004(writer, registry.metricFamilySamples());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package moneytransfer.metrics;
+
+public enum TransferStage {
+    DECODE,
+    ACCOUNT_LOOKUP,
+    CONNECTION_ACQUIRE,
+    DEBIT,
+    CREDIT,
+    JOURNAL,
+    COMMIT,
+    ROLLBACK,
+    RESPONSE_WRITE
+}
@@ -0,0 +1,25 @@
+package moneytransfer.models;
+
+public class AccountBalance {
+    private String accountId;
+    private String currency;
+    private String balance;
+
+    public AccountBalance(String accountId, String currency, String balance) {
+        this.accountId = accountId;
+        this.currency = currency;
+        this.balance = balance;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,21 @@
+package moneytransfer.models;
+
+import java.util.Map;
+
+public class AccountBalances {
+    private String accountId;
+    private Map<String, String> balances;
+
+    public AccountBalances(String accountId, Map<String, String> balances) {
+        this.accountId = accountId;
+        this.balances = balances;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public Map<String, String> getBalances() {
+        return balances;
+    }
+}
@@ -0,0 +1,44 @@
+package moneytransfer.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountImportProgress {
+    private ImportStatus status;
+    private long rowsRead;
+    private long rowsImported;
+    private long rowsRejected;
+    private ErrorCode errorCode;
+
+    public AccountImportProgress(ImportStatus status, long rowsRead, long rowsImported, long rowsRejected) {
+        this(status, rowsRead, rowsImported, rowsRejected, null);
+    }
+
+    public AccountImportProgress(ImportStatus status, long rowsRead, long rowsImported, long rowsRejected, ErrorCode errorCode) {
+        this.status = status;
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsRejected = rowsRejected;
+        this.errorCode = errorCode;
+    }
+
+    public ImportStatus getStatus() {
+        return status;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getRowsImported() {
+        return rowsImported;
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,19 @@
+package moneytransfer.models;
+
+public class AccountImportReject {
+    private long line;
+    private ErrorCode errorCode;
+
+    public AccountImportReject(long line, ErrorCode errorCode) {
+        this.line = line;
+        this.errorCode = errorCode;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,6 @@
+package moneytransfer.models;
+
+public enum BatchMode {
+    ALL_OR_NOTHING,
+    BEST_EFFORT
+}
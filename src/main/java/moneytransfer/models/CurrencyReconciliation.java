@@ -0,0 +1,43 @@
+package moneytransfer.models;
+
+public class CurrencyReconciliation {
+    private String currency;
+    private String expectedTotal;
+    private String actualTotal;
+    private String drift;
+    private long negativeBalances;
+    private boolean baselined;
+
+    public CurrencyReconciliation(String currency, String expectedTotal, String actualTotal, String drift, long negativeBalances, boolean baselined) {
+        this.currency = currency;
+        this.expectedTotal = expectedTotal;
+        this.actualTotal = actualTotal;
+        this.drift = drift;
+        this.negativeBalances = negativeBalances;
+        this.baselined = baselined;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getExpectedTotal() {
+        return expectedTotal;
+    }
+
+    public String getActualTotal() {
+        return actualTotal;
+    }
+
+    public String getDrift() {
+        return drift;
+    }
+
+    public long getNegativeBalances() {
+        return negativeBalances;
+    }
+
+    public boolean isBaselined() {
+        return baselined;
+    }
+}
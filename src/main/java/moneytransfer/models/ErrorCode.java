@@ -1,10 +1,41 @@
 package moneytransfer.models;
 
 public enum ErrorCode {
-    INSUFFICIENT_ACCOUNT_BALANCE,
-    INVALID_ACCOUNT,
-    BAD_REQUEST,
-    MONEY_TOO_MANY_DECIMAL_PLACES,
-    MONEY_OVERFLOW,
-    INTERNAL_SERVER_ERROR
+    INSUFFICIENT_ACCOUNT_BALANCE(1),
+    INVALID_ACCOUNT(2),
+    BAD_REQUEST(3),
+    MONEY_TOO_MANY_DECIMAL_PLACES(4),
+    MONEY_OVERFLOW(5),
+    CROSS_SHARD_BATCH(6),
+    BALANCE_ALREADY_EXISTS(7),
+    TRANSFER_HISTORY_NOT_RECORDED(8),
+    REQUEST_TOO_LARGE(9),
+    OVERLOADED(10),
+    RECONCILIATION_NOT_SUPPORTED(11),
+    IDEMPOTENCY_KEY_REUSED(12),
+    IDEMPOTENCY_KEY_NOT_SUPPORTED(13),
+    INTERNAL_SERVER_ERROR(127);
+
+    private static final ErrorCode[] BY_WIRE_CODE = new ErrorCode[128];
+
+    static {
+        for (ErrorCode errorCode : values()) {
+            BY_WIRE_CODE[errorCode.wireCode] = errorCode;
+        }
+    }
+
+    private final int wireCode;
+
+    ErrorCode(int wireCode) {
+        this.wireCode = wireCode;
+    }
+
+    public int getWireCode() {
+        return wireCode;
+    }
+
+    public static ErrorCode fromWireCode(int wireCode) {
+        ErrorCode errorCode = wireCode > 0 && wireCode < BY_WIRE_CODE.length ? BY_WIRE_CODE[wireCode] : null;
+        return errorCode == null ? INTERNAL_SERVER_ERROR : errorCode;
+    }
 }
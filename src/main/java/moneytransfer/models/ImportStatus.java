@@ -0,0 +1,7 @@
+package moneytransfer.models;
+
+public enum ImportStatus {
+    IN_PROGRESS,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,26 @@
+package moneytransfer.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class MoneyTransferBatch {
+    private BatchMode mode;
+    private List<MoneyTransfer> transfers;
+
+    @JsonCreator
+    public MoneyTransferBatch(@JsonProperty(value="mode") BatchMode mode,
+                              @JsonProperty(value="transfers", required=true) List<MoneyTransfer> transfers) {
+        this.mode = mode == null ? BatchMode.ALL_OR_NOTHING : mode;
+        this.transfers = transfers;
+    }
+
+    public BatchMode getMode() {
+        return mode;
+    }
+
+    public List<MoneyTransfer> getTransfers() {
+        return transfers;
+    }
+}
@@ -0,0 +1,15 @@
+package moneytransfer.models;
+
+import java.util.List;
+
+public class MoneyTransferBatchResult {
+    private List<TransferResult> results;
+
+    public MoneyTransferBatchResult(List<TransferResult> results) {
+        this.results = results;
+    }
+
+    public List<TransferResult> getResults() {
+        return results;
+    }
+}
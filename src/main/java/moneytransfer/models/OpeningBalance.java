@@ -0,0 +1,27 @@
+package moneytransfer.models;
+
+import java.math.BigDecimal;
+
+public class OpeningBalance {
+    private final String accountId;
+    private final String currency;
+    private final BigDecimal balance;
+
+    public OpeningBalance(String accountId, String currency, BigDecimal balance) {
+        this.accountId = accountId;
+        this.currency = currency;
+        this.balance = balance;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,13 @@
+package moneytransfer.models;
+
+public class ReadinessResult {
+    private boolean ready;
+
+    public ReadinessResult(boolean ready) {
+        this.ready = ready;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+}
@@ -0,0 +1,64 @@
+package moneytransfer.models;
+
+import java.util.List;
+
+public class ReconciliationReport {
+    private String startedAt;
+    private long durationMillis;
+    private long rowsScanned;
+    private long rowsPerSecond;
+    private int partitions;
+    private boolean rescanned;
+    private boolean consistent;
+    private List<CurrencyReconciliation> currencies;
+    private List<String> negativeBalanceAccounts;
+
+    public ReconciliationReport(String startedAt, long durationMillis, long rowsScanned, long rowsPerSecond, int partitions, boolean rescanned,
+                                boolean consistent, List<CurrencyReconciliation> currencies, List<String> negativeBalanceAccounts) {
+        this.startedAt = startedAt;
+        this.durationMillis = durationMillis;
+        this.rowsScanned = rowsScanned;
+        this.rowsPerSecond = rowsPerSecond;
+        this.partitions = partitions;
+        this.rescanned = rescanned;
+        this.consistent = consistent;
+        this.currencies = currencies;
+        this.negativeBalanceAccounts = negativeBalanceAccounts;
+    }
+
+    public String getStartedAt() {
+        return startedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public boolean isRescanned() {
+        return rescanned;
+    }
+
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public List<CurrencyReconciliation> getCurrencies() {
+        return currencies;
+    }
+
+    public List<String> getNegativeBalanceAccounts() {
+        return negativeBalanceAccounts;
+    }
+}
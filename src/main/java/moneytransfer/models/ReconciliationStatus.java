@@ -0,0 +1,25 @@
+package moneytransfer.models;
+
+public class ReconciliationStatus {
+    private boolean running;
+    private ReconciliationReport lastReport;
+    private ErrorCode lastError;
+
+    public ReconciliationStatus(boolean running, ReconciliationReport lastReport, ErrorCode lastError) {
+        this.running = running;
+        this.lastReport = lastReport;
+        this.lastError = lastError;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public ReconciliationReport getLastReport() {
+        return lastReport;
+    }
+
+    public ErrorCode getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,33 @@
+package moneytransfer.models;
+
+import java.math.BigDecimal;
+
+public class Transfer {
+    private final String sourceAccount;
+    private final String destinationAccount;
+    private final BigDecimal amount;
+    private final String currency;
+
+    public Transfer(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
+        this.sourceAccount = sourceAccount;
+        this.destinationAccount = destinationAccount;
+        this.amount = amount;
+        this.currency = currency;
+    }
+
+    public String getSourceAccount() {
+        return sourceAccount;
+    }
+
+    public String getDestinationAccount() {
+        return destinationAccount;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+}
@@ -0,0 +1,37 @@
+package moneytransfer.models;
+
+public class TransferHistoryEntry {
+    private long entryId;
+    private String counterpartyAccount;
+    private String currency;
+    private String amount;
+    private String createdAt;
+
+    public TransferHistoryEntry(long entryId, String counterpartyAccount, String currency, String amount, String createdAt) {
+        this.entryId = entryId;
+        this.counterpartyAccount = counterpartyAccount;
+        this.currency = currency;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public String getCounterpartyAccount() {
+        return counterpartyAccount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public String getAmount() {
+        return amount;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,39 @@
+package moneytransfer.models;
+
+import java.math.BigDecimal;
+
+public class TransferJournalEntry {
+    private long entryId;
+    private String counterpartyAccount;
+    private String currency;
+    private BigDecimal amount;
+    private long createdAt;
+
+    public TransferJournalEntry(long entryId, String counterpartyAccount, String currency, BigDecimal amount, long createdAt) {
+        this.entryId = entryId;
+        this.counterpartyAccount = counterpartyAccount;
+        this.currency = currency;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+
+    public long getEntryId() {
+        return entryId;
+    }
+
+    public String getCounterpartyAccount() {
+        return counterpartyAccount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+}
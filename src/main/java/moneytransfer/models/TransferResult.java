@@ -0,0 +1,37 @@
+package moneytransfer.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResult {
+    private static final TransferResult SUCCESS = new TransferResult(TransferStatus.SUCCESS, null);
+    private static final TransferResult ROLLED_BACK = new TransferResult(TransferStatus.ROLLED_BACK, null);
+
+    private final TransferStatus status;
+    private final ErrorCode errorCode;
+
+    private TransferResult(TransferStatus status, ErrorCode errorCode) {
+        this.status = status;
+        this.errorCode = errorCode;
+    }
+
+    public static TransferResult success() {
+        return SUCCESS;
+    }
+
+    public static TransferResult rolledBack() {
+        return ROLLED_BACK;
+    }
+
+    public static TransferResult failed(ErrorCode errorCode) {
+        return new TransferResult(TransferStatus.FAILED, errorCode);
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,7 @@
+package moneytransfer.models;
+
+public enum TransferStatus {
+    SUCCESS,
+    FAILED,
+    ROLLED_BACK
+}
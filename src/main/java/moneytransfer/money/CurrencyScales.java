@@ -0,0 +1,34 @@
+package moneytransfer.money;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CurrencyScales {
+
+    private final Map<String, Integer> scales = new HashMap<>();
+    private final int defaultScale;
+
+    public CurrencyScales(Map<String, Integer> configuredScales, int defaultScale) {
+        this.defaultScale = defaultScale;
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            if (currency.getDefaultFractionDigits() >= 0) {
+                scales.put(currency.getCurrencyCode(), currency.getDefaultFractionDigits());
+            }
+        }
+        scales.putAll(configuredScales);
+    }
+
+    public static CurrencyScales fromConfig(JsonObject moneyConfig) {
+        Map<String, Integer> configuredScales = new HashMap<>();
+        moneyConfig.getJsonObject("currencyScales", new JsonObject())
+            .forEach(entry -> configuredScales.put(entry.getKey(), ((Number) entry.getValue()).intValue()));
+        return new CurrencyScales(configuredScales, moneyConfig.getInteger("defaultScale", 2));
+    }
+
+    public int scaleOf(String currency) {
+        return scales.getOrDefault(currency, defaultScale);
+    }
+}
@@ -0,0 +1,136 @@
+package moneytransfer.money;
+
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+
+import java.math.BigDecimal;
+
+public final class FixedPointMoney {
+
+    private FixedPointMoney() {
+    }
+
+    public static boolean isWellFormed(CharSequence amount) {
+        if (amount == null) {
+            return false;
+        }
+
+        int length = amount.length();
+        int i = 0;
+        if (i < length && isSign(amount.charAt(i))) {
+            i++;
+        }
+
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < length; i++) {
+            char c = amount.charAt(i);
+            if (isDigit(c)) {
+                seenDigit = true;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+
+        char c = amount.charAt(i++);
+        if (c != 'e' && c != 'E') {
+            return false;
+        }
+        if (i < length && isSign(amount.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return false;
+        }
+        for (; i < length; i++) {
+            if (!isDigit(amount.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long parse(CharSequence amount, int scale) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        if (!isWellFormed(amount)) {
+            throw new NumberFormatException("Malformed amount: " + amount);
+        }
+
+        int length = amount.length();
+        int i = 0;
+        boolean negative = false;
+        if (isSign(amount.charAt(0))) {
+            negative = amount.charAt(0) == '-';
+            i++;
+        }
+
+        long units = 0;
+        boolean unitsOverflow = false;
+        long amountScale = 0;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char c = amount.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+            if (c == 'e' || c == 'E') {
+                amountScale -= Integer.parseInt(amount.subSequence(i + 1, length).toString());
+                break;
+            }
+
+            if (fraction) {
+                amountScale++;
+            }
+            int digit = c - '0';
+            if (units > (Long.MAX_VALUE - digit) / 10) {
+                unitsOverflow = true;
+            } else if (!unitsOverflow) {
+                units = units * 10 + digit;
+            }
+        }
+
+        if (amountScale > scale) {
+            throw new MoneyTooManyDecimalPlacesException();
+        }
+        if (unitsOverflow) {
+            throw new MoneyOverflowException();
+        }
+        if (units == 0) {
+            return 0;
+        }
+        for (long s = amountScale; s < scale; s++) {
+            if (units > Long.MAX_VALUE / 10) {
+                throw new MoneyOverflowException();
+            }
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    public static long toUnits(BigDecimal amount, int scale) throws MoneyTooManyDecimalPlacesException, MoneyOverflowException {
+        if (amount.scale() > scale) {
+            throw new MoneyTooManyDecimalPlacesException();
+        }
+        try {
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new MoneyOverflowException(ex);
+        }
+    }
+
+    private static boolean isSign(char c) {
+        return c == '+' || c == '-';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
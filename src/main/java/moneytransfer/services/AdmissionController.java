@@ -0,0 +1,262 @@
+package moneytransfer.services;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException;
+import moneytransfer.exceptions.IdempotencyKeyReusedException;
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import moneytransfer.exceptions.OverloadedException;
+import moneytransfer.exceptions.TransferHistoryNotRecordedException;
+import moneytransfer.metrics.Metrics;
+import rx.Single;
+import rx.SingleSubscriber;
+import rx.functions.Func0;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class AdmissionController {
+
+    private static final String ACCOUNT_QUEUE_FULL = "account_queue_full";
+    private static final String QUEUE_FULL = "queue_full";
+    private static final String QUEUE_TIMEOUT = "queue_timeout";
+
+    private final Vertx vertx;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+    private final int maxQueuedPerAccount;
+    private final int maxQueued;
+    private final long maxQueueWaitMillis;
+    private final long maxQueueWaitNanos;
+    private final Metrics metrics;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Deque<Waiter>> queues = new LinkedHashMap<>();
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    public AdmissionController(Vertx vertx, int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis, double backoffRatio,
+                               int maxQueuedPerAccount, int maxQueued, long maxQueueWaitMillis, Metrics metrics) {
+        this(vertx, true, initialLimit, minLimit, maxLimit, targetLatencyMillis, backoffRatio, maxQueuedPerAccount, maxQueued, maxQueueWaitMillis,
+            metrics, System::nanoTime);
+    }
+
+    AdmissionController(Vertx vertx, boolean enabled, int initialLimit, int minLimit, int maxLimit, long targetLatencyMillis, double backoffRatio,
+                        int maxQueuedPerAccount, int maxQueued, long maxQueueWaitMillis, Metrics metrics, LongSupplier nanoClock) {
+        this.vertx = vertx;
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoffRatio = backoffRatio;
+        this.maxQueuedPerAccount = maxQueuedPerAccount;
+        this.maxQueued = maxQueued;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        this.metrics = metrics;
+        this.nanoClock = nanoClock;
+    }
+
+    public static AdmissionController unlimited() {
+        return new AdmissionController(null, false, 0, 1, 0, 0, 1, 0, 0, 0, null, System::nanoTime);
+    }
+
+    public <T> Single<T> admit(String accountId, Func0<Single<T>> operation) {
+        if (!enabled) {
+            return Single.defer(operation);
+        }
+
+        return Single.create((subscriber) -> {
+            String rejection = null;
+            synchronized (this) {
+                if (inFlight < (int) limit && queued == 0) {
+                    inFlight++;
+                } else {
+                    Deque<Waiter> queue = queues.get(accountId);
+                    if (queue != null && queue.size() >= maxQueuedPerAccount) {
+                        rejection = ACCOUNT_QUEUE_FULL;
+                    } else if (queued >= maxQueued) {
+                        rejection = QUEUE_FULL;
+                    } else {
+                        if (queue == null) {
+                            queue = new ArrayDeque<>();
+                            queues.put(accountId, queue);
+                        }
+                        Waiter waiter = new Waiter(nanoClock.getAsLong(), Vertx.currentContext(),
+                            () -> run(operation, subscriber), () -> reject(subscriber, QUEUE_TIMEOUT));
+                        if (vertx != null && maxQueueWaitMillis > 0) {
+                            waiter.timerId = vertx.setTimer(maxQueueWaitMillis, (__) -> expire(accountId, waiter));
+                        }
+                        queue.add(waiter);
+                        queued++;
+                        publish();
+                        return;
+                    }
+                }
+                publish();
+            }
+
+            if (rejection != null) {
+                reject(subscriber, rejection);
+            } else {
+                run(operation, subscriber);
+            }
+        });
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    private <T> void run(Func0<Single<T>> operation, SingleSubscriber<? super T> subscriber) {
+        long start = nanoClock.getAsLong();
+        Single.defer(operation).subscribe((value) -> {
+            release(start, true);
+            subscriber.onSuccess(value);
+        }, (throwable) -> {
+            release(start, isOutcome(throwable));
+            subscriber.onError(throwable);
+        });
+    }
+
+    private void reject(SingleSubscriber<?> subscriber, String reason) {
+        rejections.incrementAndGet();
+        metrics.recordAdmissionRejection(reason);
+        subscriber.onError(new OverloadedException());
+    }
+
+    private void expire(String accountId, Waiter waiter) {
+        synchronized (this) {
+            Deque<Waiter> queue = queues.get(accountId);
+            if (queue == null || !queue.remove(waiter)) {
+                return;
+            }
+            if (queue.isEmpty()) {
+                queues.remove(accountId);
+            }
+            queued--;
+            publish();
+        }
+        waiter.dispatch(waiter.reject);
+    }
+
+    private void release(long start, boolean completedNormally) {
+        long now = nanoClock.getAsLong();
+        List<Waiter> admitted = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            if (!completedNormally || now - start > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight + 1 >= limit / 2) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+
+            while (queued > 0 && inFlight < (int) limit) {
+                Waiter waiter = nextWaiter();
+                queued--;
+                if (now - waiter.enqueuedAt > maxQueueWaitNanos) {
+                    expired.add(waiter);
+                } else {
+                    inFlight++;
+                    admitted.add(waiter);
+                }
+            }
+            publish();
+        }
+
+        for (Waiter waiter : expired) {
+            cancelTimer(waiter);
+            waiter.dispatch(waiter.reject);
+        }
+        for (Waiter waiter : admitted) {
+            cancelTimer(waiter);
+            waiter.dispatch(waiter.start);
+        }
+    }
+
+    private void cancelTimer(Waiter waiter) {
+        if (waiter.timerId >= 0) {
+            vertx.cancelTimer(waiter.timerId);
+        }
+    }
+
+    private Waiter nextWaiter() {
+        Iterator<Map.Entry<String, Deque<Waiter>>> iterator = queues.entrySet().iterator();
+        Map.Entry<String, Deque<Waiter>> next = iterator.next();
+        iterator.remove();
+        Waiter waiter = next.getValue().poll();
+        if (!next.getValue().isEmpty()) {
+            queues.put(next.getKey(), next.getValue());
+        }
+        return waiter;
+    }
+
+    private void publish() {
+        metrics.recordAdmission((int) limit, inFlight, queued);
+    }
+
+    private static boolean isOutcome(Throwable throwable) {
+        return throwable instanceof InsufficientAccountBalanceException
+            || throwable instanceof InvalidAccountException
+            || throwable instanceof IdempotencyKeyReusedException
+            || throwable instanceof IdempotencyKeyNotSupportedException
+            || throwable instanceof TransferHistoryNotRecordedException
+            || throwable instanceof MoneyOverflowException
+            || throwable instanceof MoneyTooManyDecimalPlacesException
+            || throwable instanceof NumberFormatException;
+    }
+
+    private static class Waiter {
+        private final long enqueuedAt;
+        private final Context context;
+        private final Runnable start;
+        private final Runnable reject;
+        private long timerId = -1;
+
+        private Waiter(long enqueuedAt, Context context, Runnable start, Runnable reject) {
+            this.enqueuedAt = enqueuedAt;
+            this.context = context;
+            this.start = start;
+            this.reject = reject;
+        }
+
+        private void dispatch(Runnable action) {
+            if (context == null) {
+                action.run();
+            } else {
+                context.runOnContext((__) -> action.run());
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package moneytransfer.services;
+
+import moneytransfer.exceptions.IdempotencyKeyReusedException;
+import moneytransfer.exceptions.InsufficientAccountBalanceException;
+import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.exceptions.MoneyOverflowException;
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException;
+import rx.Single;
+import rx.functions.Func0;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class IdempotencyCache {
+
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<String, CacheEntry> cache;
+
+    private final AtomicLong replays = new AtomicLong();
+
+    public IdempotencyCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    IdempotencyCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Single<Void> execute(String sourceAccount, String idempotencyKey, String fingerprint, Func0<Single<Void>> operation) {
+        String scopedKey = sourceAccount + '\0' + idempotencyKey;
+        synchronized (cache) {
+            CacheEntry entry = cache.get(scopedKey);
+            if (entry != null && entry.expiresAt > clock.getAsLong()) {
+                if (!entry.fingerprint.equals(fingerprint)) {
+                    return Single.error(new IdempotencyKeyReusedException());
+                }
+                replays.incrementAndGet();
+                return entry.outcome;
+            }
+
+            CacheEntry newEntry = new CacheEntry(fingerprint);
+            newEntry.outcome = Single.defer(operation)
+                .doOnSuccess((__) -> complete(newEntry))
+                .doOnError((throwable) -> {
+                    if (isOutcome(throwable)) {
+                        complete(newEntry);
+                    } else {
+                        remove(scopedKey, newEntry);
+                    }
+                })
+                .toObservable()
+                .cache()
+                .toSingle();
+            cache.put(scopedKey, newEntry);
+            return newEntry.outcome;
+        }
+    }
+
+    public long getReplays() {
+        return replays.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void complete(CacheEntry entry) {
+        entry.expiresAt = clock.getAsLong() + ttlMillis;
+    }
+
+    private void remove(String scopedKey, CacheEntry entry) {
+        synchronized (cache) {
+            cache.remove(scopedKey, entry);
+        }
+    }
+
+    private static boolean isOutcome(Throwable throwable) {
+        return throwable instanceof InsufficientAccountBalanceException
+            || throwable instanceof InvalidAccountException
+            || throwable instanceof MoneyOverflowException
+            || throwable instanceof MoneyTooManyDecimalPlacesException
+            || throwable instanceof NumberFormatException
+            || throwable instanceof IdempotencyKeyReusedException;
+    }
+
+    private static class CacheEntry {
+        private final String fingerprint;
+        private Single<Void> outcome;
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        private CacheEntry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
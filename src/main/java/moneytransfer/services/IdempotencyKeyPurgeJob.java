@@ -0,0 +1,43 @@
+package moneytransfer.services;
+
+import io.vertx.rxjava.core.Vertx;
+import moneytransfer.database.AccountBalanceRepository;
+import rx.Single;
+
+public class IdempotencyKeyPurgeJob {
+
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final long retentionMillis;
+    private final long intervalMillis;
+
+    private boolean running;
+
+    public IdempotencyKeyPurgeJob(AccountBalanceRepository accountBalanceRepository, long retentionMillis, long intervalMillis) {
+        this.accountBalanceRepository = accountBalanceRepository;
+        this.retentionMillis = retentionMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void schedule(Vertx vertx) {
+        if (intervalMillis > 0) {
+            vertx.setPeriodic(intervalMillis, (__) -> run().subscribe((purged) -> { }, (throwable) -> { }));
+        }
+    }
+
+    public Single<Integer> run() {
+        return Single.defer(() -> {
+            synchronized (this) {
+                if (running) {
+                    return Single.just(0);
+                }
+                running = true;
+            }
+            return accountBalanceRepository.purgeIdempotencyKeys(retentionMillis)
+                .doAfterTerminate(this::finished);
+        });
+    }
+
+    private synchronized void finished() {
+        running = false;
+    }
+}
@@ -0,0 +1,41 @@
+package moneytransfer.services;
+
+import io.vertx.rxjava.core.Vertx;
+import moneytransfer.database.AccountBalanceRepository;
+import rx.Single;
+
+public class InDoubtTransferRecoveryJob {
+
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final long intervalMillis;
+
+    private boolean running;
+
+    public InDoubtTransferRecoveryJob(AccountBalanceRepository accountBalanceRepository, long intervalMillis) {
+        this.accountBalanceRepository = accountBalanceRepository;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void schedule(Vertx vertx) {
+        if (intervalMillis > 0) {
+            vertx.setPeriodic(intervalMillis, (__) -> run().subscribe((recovered) -> { }, (throwable) -> { }));
+        }
+    }
+
+    public Single<Integer> run() {
+        return Single.defer(() -> {
+            synchronized (this) {
+                if (running) {
+                    return Single.just(0);
+                }
+                running = true;
+            }
+            return accountBalanceRepository.recoverInDoubtTransfers(intervalMillis)
+                .doAfterTerminate(this::finished);
+        });
+    }
+
+    private synchronized void finished() {
+        running = false;
+    }
+}
@@ -6,34 +6,170 @@ import io.vertx.rxjava.core.Vertx;
 import io.vertx.rxjava.ext.jdbc.JDBCClient;
 import moneytransfer.database.*;
 import moneytransfer.exceptions.InvalidAccountException;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.metrics.TransferStage;
+import moneytransfer.models.BatchMode;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.OpeningBalance;
+import moneytransfer.models.Transfer;
+import moneytransfer.models.TransferJournalEntry;
+import moneytransfer.models.TransferResult;
+import moneytransfer.money.FixedPointMoney;
+import rx.Observable;
 import rx.Single;
+import rx.functions.Func0;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Singleton
 public class MoneyTransferService {
 
     private final AccountBalanceRepository accountBalanceRepository;
     private final AccountRepository accountRepository;
+    private final Metrics metrics;
+    private final IdempotencyCache idempotencyCache;
 
-    @Inject
     public MoneyTransferService(AccountRepository accountRepository, AccountBalanceRepository accountBalanceRepository) {
+        this(accountRepository, accountBalanceRepository, new Metrics());
+    }
+
+    public MoneyTransferService(AccountRepository accountRepository, AccountBalanceRepository accountBalanceRepository, Metrics metrics) {
+        this(accountRepository, accountBalanceRepository, metrics, new IdempotencyCache(100000, 86400000L));
+    }
+
+    @Inject
+    public MoneyTransferService(AccountRepository accountRepository, AccountBalanceRepository accountBalanceRepository, Metrics metrics,
+                                IdempotencyCache idempotencyCache) {
         this.accountBalanceRepository = accountBalanceRepository;
         this.accountRepository = accountRepository;
+        this.metrics = metrics;
+        this.idempotencyCache = idempotencyCache;
     }
 
     public Single<Void> transferMoney(String sourceAccount, String destinationAccount, BigDecimal amount, String currency) {
-        return accountRepository.doesAccountExist(sourceAccount).flatMap((sourceAccountExists) -> {
+        return whenAccountsExist(sourceAccount, destinationAccount, () ->
+            accountBalanceRepository.transferMoney(sourceAccount, destinationAccount, amount, currency));
+    }
+
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency) {
+        if (!FixedPointMoney.isWellFormed(amount)) {
+            return Single.error(new NumberFormatException("Malformed amount: " + amount));
+        }
+
+        return whenAccountsExist(sourceAccount, destinationAccount, () ->
+            accountBalanceRepository.transferMoney(sourceAccount, destinationAccount, amount, currency));
+    }
+
+    public Single<Void> transferMoney(String sourceAccount, String destinationAccount, String amount, String currency, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return transferMoney(sourceAccount, destinationAccount, amount, currency);
+        }
+
+        String fingerprint = IdempotencyKeys.fingerprint(sourceAccount, destinationAccount, amount, currency);
+        return idempotencyCache.execute(sourceAccount, idempotencyKey, fingerprint, () -> {
+            if (!FixedPointMoney.isWellFormed(amount)) {
+                return Single.error(new NumberFormatException("Malformed amount: " + amount));
+            }
+
+            return whenAccountsExist(sourceAccount, destinationAccount, () ->
+                accountBalanceRepository.transferMoney(sourceAccount, destinationAccount, amount, currency, idempotencyKey));
+        });
+    }
+
+    private Single<Void> whenAccountsExist(String sourceAccount, String destinationAccount, Func0<Single<Void>> transfer) {
+        if (accountBalanceRepository.checksAccountsExist()) {
+            return transfer.call();
+        }
+
+        return metrics.time(TransferStage.ACCOUNT_LOOKUP, accountRepository.doesAccountExist(sourceAccount)).flatMap((sourceAccountExists) -> {
             if (!sourceAccountExists) {
                 return Single.error(new InvalidAccountException());
             }
 
-            return accountRepository.doesAccountExist(destinationAccount).flatMap((destinationAccountExists) -> {
+            return metrics.time(TransferStage.ACCOUNT_LOOKUP, accountRepository.doesAccountExist(destinationAccount)).flatMap((destinationAccountExists) -> {
                 if (!destinationAccountExists) {
                     return Single.error(new InvalidAccountException());
                 }
 
-                return accountBalanceRepository.transferMoney(sourceAccount, destinationAccount, amount, currency);
+                return transfer.call();
+            });
+        });
+    }
+
+    public Single<Map<String, BigDecimal>> getBalances(String accountId) {
+        return accountBalanceRepository.getBalances(accountId).flatMap((balances) -> {
+            if (!balances.isEmpty()) {
+                return Single.just(balances);
+            }
+
+            return metrics.time(TransferStage.ACCOUNT_LOOKUP, accountRepository.doesAccountExist(accountId)).flatMap((accountExists) ->
+                accountExists ? Single.just(balances) : Single.<Map<String, BigDecimal>>error(new InvalidAccountException()));
+        });
+    }
+
+    public Observable<TransferJournalEntry> getTransferHistory(String accountId, long beforeEntryId, int limit) {
+        return metrics.time(TransferStage.ACCOUNT_LOOKUP, accountRepository.doesAccountExist(accountId)).toObservable().flatMap((accountExists) ->
+            accountExists ? accountBalanceRepository.getTransferHistory(accountId, beforeEntryId, limit) : Observable.error(new InvalidAccountException()));
+    }
+
+    public Single<List<ErrorCode>> importOpeningBalances(List<OpeningBalance> openingBalances) {
+        return accountBalanceRepository.importOpeningBalances(openingBalances)
+            .doOnSuccess((results) -> {
+                Set<String> importedAccountIds = new HashSet<>();
+                for (int i = 0; i < results.size(); i++) {
+                    if (results.get(i) == null) {
+                        importedAccountIds.add(openingBalances.get(i).getAccountId());
+                    }
+                }
+                accountRepository.invalidate(importedAccountIds);
+            });
+    }
+
+    public Single<Void> deleteAccounts(Collection<String> accountIds) {
+        return accountBalanceRepository.deleteAccounts(accountIds)
+            .doOnSuccess((__) -> accountRepository.invalidate(accountIds));
+    }
+
+    public Single<List<TransferResult>> transferMoneyBatch(List<Transfer> transfers, BatchMode batchMode) {
+        Set<String> accountIds = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            accountIds.add(transfer.getSourceAccount());
+            accountIds.add(transfer.getDestinationAccount());
+        }
+
+        return metrics.time(TransferStage.ACCOUNT_LOOKUP, accountRepository.findExistingAccounts(accountIds)).flatMap((existingAccounts) -> {
+            TransferResult[] results = new TransferResult[transfers.size()];
+            List<Transfer> validTransfers = new ArrayList<>();
+            List<Integer> validIndexes = new ArrayList<>();
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                if (existingAccounts.contains(transfer.getSourceAccount()) && existingAccounts.contains(transfer.getDestinationAccount())) {
+                    validTransfers.add(transfer);
+                    validIndexes.add(i);
+                } else {
+                    results[i] = TransferResult.failed(ErrorCode.INVALID_ACCOUNT);
+                }
+            }
+
+            if (validTransfers.isEmpty() || (batchMode == BatchMode.ALL_OR_NOTHING && validTransfers.size() < transfers.size())) {
+                for (int index : validIndexes) {
+                    results[index] = TransferResult.rolledBack();
+                }
+                return Single.just(Arrays.asList(results));
+            }
+
+            return accountBalanceRepository.transferMoneyBatch(validTransfers, batchMode).map((validResults) -> {
+                for (int i = 0; i < validIndexes.size(); i++) {
+                    results[validIndexes.get(i)] = validResults.get(i);
+                }
+                return Arrays.asList(results);
             });
         });
     }
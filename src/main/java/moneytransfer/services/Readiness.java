@@ -0,0 +1,17 @@
+package moneytransfer.services;
+
+import com.google.inject.Singleton;
+
+@Singleton
+public class Readiness {
+
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void markReady() {
+        ready = true;
+    }
+}
@@ -0,0 +1,154 @@
+package moneytransfer.services;
+
+import io.vertx.rxjava.core.Vertx;
+import moneytransfer.database.AccountBalanceRepository;
+import moneytransfer.database.BalanceScan;
+import moneytransfer.metrics.Metrics;
+import moneytransfer.models.CurrencyReconciliation;
+import moneytransfer.models.ErrorCode;
+import moneytransfer.models.ReconciliationReport;
+import moneytransfer.models.ReconciliationStatus;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+public class ReconciliationJob {
+
+    private final AccountBalanceRepository accountBalanceRepository;
+    private final Metrics metrics;
+    private final int partitions;
+    private final int pageSize;
+    private final long intervalMillis;
+
+    private Single<ReconciliationReport> running;
+    private volatile ReconciliationReport lastReport;
+    private volatile ErrorCode lastError;
+
+    public ReconciliationJob(AccountBalanceRepository accountBalanceRepository, Metrics metrics, int partitions, int pageSize, long intervalMillis) {
+        this.accountBalanceRepository = accountBalanceRepository;
+        this.metrics = metrics;
+        this.partitions = partitions;
+        this.pageSize = pageSize;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void schedule(Vertx vertx) {
+        if (intervalMillis > 0) {
+            vertx.setPeriodic(intervalMillis, (__) -> trigger());
+        }
+    }
+
+    public synchronized Single<ReconciliationReport> trigger() {
+        if (running != null) {
+            return running;
+        }
+
+        Single<ReconciliationReport> run = reconcile()
+            .doOnSuccess((report) -> {
+                lastReport = report;
+                lastError = null;
+                metrics.recordReconciliation(report);
+            })
+            .doOnError((throwable) -> {
+                lastError = throwable instanceof UnsupportedOperationException ? ErrorCode.RECONCILIATION_NOT_SUPPORTED : ErrorCode.INTERNAL_SERVER_ERROR;
+                metrics.recordReconciliationFailure();
+            })
+            .doAfterTerminate(this::finished)
+            .toObservable()
+            .cache()
+            .toSingle();
+        running = run;
+        run.subscribe((__) -> { }, (__) -> { });
+        return run;
+    }
+
+    public synchronized ReconciliationStatus status() {
+        return new ReconciliationStatus(running != null, lastReport, lastError);
+    }
+
+    private synchronized void finished() {
+        running = null;
+    }
+
+    private Single<ReconciliationReport> reconcile() {
+        return Single.defer(() -> {
+            Instant startedAt = Instant.now();
+            long start = System.nanoTime();
+            return accountBalanceRepository.scanBalances(partitions, pageSize)
+                .flatMap((scan) -> hasDrift(scan) || hasUnbaselinedCurrencies(scan)
+                    ? accountBalanceRepository.scanBalances(partitions, pageSize)
+                        .flatMap((rescan) -> baseline(scan, rescan))
+                        .map((rescan) -> toReport(startedAt, start, rescan, scan.getRowsScanned() + rescan.getRowsScanned(), true))
+                    : Single.just(toReport(startedAt, start, scan, scan.getRowsScanned(), false)));
+        });
+    }
+
+    private Single<BalanceScan> baseline(BalanceScan scan, BalanceScan rescan) {
+        Map<String, BigDecimal> totals = new TreeMap<>();
+        if (!hasDrift(rescan)) {
+            for (String currency : rescan.getCurrencies()) {
+                if (rescan.getSupply(currency) == null && rescan.getTotal(currency).compareTo(scan.getTotal(currency)) == 0) {
+                    totals.put(currency, rescan.getTotal(currency));
+                }
+            }
+        }
+        if (totals.isEmpty()) {
+            return Single.just(rescan);
+        }
+
+        return accountBalanceRepository.baselineCurrencySupply(totals)
+            .map((__) -> {
+                totals.keySet().forEach(rescan::baseline);
+                return rescan;
+            });
+    }
+
+    private ReconciliationReport toReport(Instant startedAt, long start, BalanceScan scan, long rowsScanned, boolean rescanned) {
+        long durationNanos = System.nanoTime() - start;
+        long rowsPerSecond = rowsScanned * TimeUnit.SECONDS.toNanos(1) / Math.max(1, durationNanos);
+        boolean consistent = !hasDrift(scan);
+        List<CurrencyReconciliation> currencies = new ArrayList<>();
+        for (String currency : scan.getCurrencies()) {
+            BigDecimal expected = scan.getSupply(currency);
+            BigDecimal actual = scan.getTotal(currency);
+            long negativeBalances = scan.getNegativeBalances(currency);
+            consistent &= negativeBalances == 0 && expected != null;
+            currencies.add(new CurrencyReconciliation(currency, format(expected), format(actual), expected == null ? null : format(actual.subtract(expected)),
+                negativeBalances, scan.isBaselined(currency)));
+        }
+        return new ReconciliationReport(startedAt.toString(), TimeUnit.NANOSECONDS.toMillis(durationNanos), rowsScanned, rowsPerSecond, partitions,
+            rescanned, consistent, currencies, new ArrayList<>(scan.getNegativeBalanceAccounts()));
+    }
+
+    private static boolean hasDrift(BalanceScan scan) {
+        for (String currency : scan.getCurrencies()) {
+            BigDecimal supply = scan.getSupply(currency);
+            if (supply != null && scan.getTotal(currency).compareTo(supply) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasUnbaselinedCurrencies(BalanceScan scan) {
+        for (String currency : scan.getCurrencies()) {
+            if (scan.getSupply(currency) == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String format(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        return amount.signum() == 0 ? "0" : amount.stripTrailingZeros().toPlainString();
+    }
+}
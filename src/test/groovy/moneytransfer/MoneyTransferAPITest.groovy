@@ -1,10 +1,14 @@
 package moneytransfer
 
+import io.vertx.core.DeploymentOptions
+import io.vertx.core.json.JsonObject
 import io.vertx.rxjava.core.Vertx
 import io.vertx.rxjava.ext.jdbc.JDBCClient
 import moneytransfer.database.Database
 import moneytransfer.database.MySqlJdbcClientFactory
+import groovy.json.JsonSlurper
 import moneytransfer.database.TestDBHelper
+import org.junit.Assume
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -13,21 +17,46 @@ import static io.restassured.RestAssured.given
 import static moneytransfer.MoneyConstants.MAX_MONEY_VALUE
 import static moneytransfer.MoneyConstants.MIN_NONZERO_MONEY_VALUE
 import static org.hamcrest.Matchers.is
+import static org.hamcrest.Matchers.startsWith
 
 class MoneyTransferAPITest extends Specification {
 
     @Shared
-    private Vertx vertx;
+    protected Vertx vertx;
 
     @Shared
-    private TestDBHelper testDBHelper
+    private TestDataHelper testDBHelper
 
     def setupSpec() {
-        Database.start()
+        startDatabases()
         vertx = Vertx.vertx();
-        vertx.rxDeployVerticle(MainVerticle.class.getName()).toBlocking().value();
+        vertx.rxDeployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(config())).toBlocking().value();
+        testDBHelper = createTestDataHelper()
+    }
+
+    void startDatabases() {
+        Database.start()
+    }
+
+    JsonObject config() {
+        return new JsonObject()
+    }
+
+    TestDataHelper createTestDataHelper() {
         JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx)
-        testDBHelper = new TestDBHelper(jdbcClient)
+        return new TestDBHelper(jdbcClient)
+    }
+
+    boolean recordsTransferHistory() {
+        return true
+    }
+
+    boolean reconcilesBalances() {
+        return true
+    }
+
+    boolean storesIdempotencyKeys() {
+        return true
     }
 
     def cleanupSpec() {
@@ -361,6 +390,17 @@ class MoneyTransferAPITest extends Specification {
                 .body("errorCode", is("BAD_REQUEST"))
     }
 
+    def "should return 413 with REQUEST_TOO_LARGE when the body is over the limit, before reading it" () {
+        given:
+        def body = '{"sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "1", "currency": "GBP", "memo": "' + ("x" * 20000) + '"}'
+
+        expect:
+        given().contentType("application/json").body(body).post("http://localhost:1234/transfer-money")
+            .then().statusCode(413).body("errorCode", is("REQUEST_TOO_LARGE"))
+        given().contentType("application/json").body('{"sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "x", "currency": "GBP"}')
+            .post("http://localhost:1234/transfer-money").then().statusCode(400).body("errorCode", is("BAD_REQUEST"))
+    }
+
     def "should return 400 Bad Request error if sourceAccount field is missing" () {
         given:
         def request = given().contentType("application/json")
@@ -444,4 +484,412 @@ class MoneyTransferAPITest extends Specification {
                 .statusCode(400)
                 .body("errorCode", is("BAD_REQUEST"))
     }
+
+    def "successfully transfers every item of a batch and returns a result for each" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+        def request = given().contentType("application/json")
+                .body("""
+                    {
+                        "mode": "BEST_EFFORT",
+                        "transfers": [
+                            { "sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "3", "currency": "${currency}" },
+                            { "sourceAccount": "12345678", "destinationAccount": "22554411", "amount": "1", "currency": "${currency}" },
+                            { "sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "8", "currency": "${currency}" },
+                            { "sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "2.5", "currency": "${currency}" }
+                        ]
+                     }
+                    """)
+
+        when:
+        def response = request.when()
+                .post("http://localhost:1234/transfer-money/batch")
+
+        then:
+        response.then()
+                .statusCode(200)
+                .body("results.status", is(["SUCCESS", "FAILED", "FAILED", "SUCCESS"]))
+                .body("results.errorCode", is([null, "INVALID_ACCOUNT", "INSUFFICIENT_ACCOUNT_BALANCE", null]))
+        testDBHelper.getAccountBalance("12345678", currency).toBlocking().value() == new BigDecimal("4.5")
+        testDBHelper.getAccountBalance("87654321", currency).toBlocking().value() == new BigDecimal("5.5")
+    }
+
+    def "should return 400 Bad Request error if a batch item amount is not a valid number" () {
+        given:
+        def request = given().contentType("application/json")
+                .body("""
+                    {
+                        "transfers": [
+                            { "sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "notanumber", "currency": "GBP" }
+                        ]
+                     }
+                    """)
+
+        when:
+        def response = request.when()
+                .post("http://localhost:1234/transfer-money/batch")
+
+        then:
+        response.then()
+                .statusCode(400)
+                .body("errorCode", is("BAD_REQUEST"))
+    }
+
+    @Unroll
+    def "should return 400 Bad Request error if a batch is missing #missing" () {
+        given:
+        def request = given().contentType("application/json").body(body)
+
+        when:
+        def response = request.when()
+                .post("http://localhost:1234/transfer-money/batch")
+
+        then:
+        response.then()
+                .statusCode(400)
+                .body("errorCode", is("BAD_REQUEST"))
+
+        where:
+        missing            | body
+        "its transfers"    | '{ "transfers": null }'
+        "a transfer"       | '{ "transfers": [ null ] }'
+        "an item's amount" | '{ "transfers": [ { "sourceAccount": "12345678", "destinationAccount": "87654321", "amount": null, "currency": "GBP" } ] }'
+    }
+
+    def "applies a transfer once when it is repeated with the same Idempotency-Key" () {
+        given:
+        Assume.assumeTrue(storesIdempotencyKeys())
+        def currency = "GBP"
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+        testDBHelper.insertAccountBalance("87654321", currency, new BigDecimal("0")).toBlocking().value()
+        def request = given().contentType("application/json")
+                .header("Idempotency-Key", "transfer-1")
+                .body("""
+                    {
+                        "sourceAccount": "12345678",
+                        "destinationAccount": "87654321",
+                        "amount": "6",
+                        "currency": "${currency}"
+                     }
+                    """)
+
+        when:
+        def first = request.post("http://localhost:1234/transfer-money")
+        def second = request.post("http://localhost:1234/transfer-money")
+
+        then:
+        first.then().statusCode(200)
+        second.then().statusCode(200)
+        testDBHelper.getAccountBalance("12345678", currency).toBlocking().value() == new BigDecimal("4")
+        testDBHelper.getAccountBalance("87654321", currency).toBlocking().value() == new BigDecimal("6")
+    }
+
+    def "rejects an Idempotency-Key reused for a different transfer" () {
+        given:
+        Assume.assumeTrue(storesIdempotencyKeys())
+        def currency = "GBP"
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+        testDBHelper.insertAccountBalance("87654321", currency, new BigDecimal("0")).toBlocking().value()
+        def request = { amount ->
+            given().contentType("application/json")
+                .header("Idempotency-Key", "transfer-2")
+                .body("""
+                    {
+                        "sourceAccount": "12345678",
+                        "destinationAccount": "87654321",
+                        "amount": "${amount}",
+                        "currency": "${currency}"
+                     }
+                    """)
+        }
+
+        when:
+        def first = request("6").post("http://localhost:1234/transfer-money")
+        def second = request("7").post("http://localhost:1234/transfer-money")
+
+        then:
+        first.then().statusCode(200)
+        second.then()
+                .statusCode(422)
+                .body("errorCode", is("IDEMPOTENCY_KEY_REUSED"))
+        testDBHelper.getAccountBalance("12345678", currency).toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "returns the balances of an account before and after a transfer" () {
+        given:
+        testDBHelper.insertAccount("31111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("31111111", "GBP", new BigDecimal("10.50")).toBlocking().value()
+        testDBHelper.insertAccountBalance("31111111", "USD", new BigDecimal("3")).toBlocking().value()
+        testDBHelper.insertAccount("32222222").toBlocking().value()
+        def before = given().get("http://localhost:1234/accounts/31111111/balances")
+        def transfer = given().contentType("application/json")
+                .body("""
+                    {
+                        "sourceAccount": "31111111",
+                        "destinationAccount": "32222222",
+                        "amount": "0.25",
+                        "currency": "GBP"
+                     }
+                    """)
+
+        when:
+        transfer.post("http://localhost:1234/transfer-money").then().statusCode(200)
+        def after = given().get("http://localhost:1234/accounts/31111111/balances")
+        def destinationAfter = given().get("http://localhost:1234/accounts/32222222/balances/GBP")
+
+        then:
+        before.then()
+                .statusCode(200)
+                .body("accountId", is("31111111"))
+                .body("balances.GBP", is("10.5"))
+                .body("balances.USD", is("3"))
+        after.then()
+                .statusCode(200)
+                .body("balances.GBP", is("10.25"))
+                .body("balances.USD", is("3"))
+        destinationAfter.then()
+                .statusCode(200)
+                .body("accountId", is("32222222"))
+                .body("currency", is("GBP"))
+                .body("balance", is("0.25"))
+    }
+
+    def "returns a zero balance for a currency the account does not hold" () {
+        given:
+        testDBHelper.insertAccount("33333333").toBlocking().value()
+
+        when:
+        def response = given().get("http://localhost:1234/accounts/33333333/balances/EUR")
+
+        then:
+        response.then()
+                .statusCode(200)
+                .body("currency", is("EUR"))
+                .body("balance", is("0"))
+    }
+
+    def "should return INVALID_ACCOUNT error when querying the balances of a non-existing account" () {
+        when:
+        def response = given().get("http://localhost:1234/accounts/34444444/balances")
+
+        then:
+        response.then()
+                .statusCode(400)
+                .body("errorCode", is("INVALID_ACCOUNT"))
+    }
+
+    def "imports accounts and opening balances from NDJSON and reports rejected rows" () {
+        given:
+        testDBHelper.insertAccount("41111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("41111111", "GBP", new BigDecimal("1")).toBlocking().value()
+        def body = [
+            '{"accountId": "42222222", "currency": "GBP", "balance": "10.50"}',
+            '{"accountId": "42222222", "currency": "USD", "balance": 3}',
+            '{"accountId": "43333333"}',
+            'not json',
+            '{"accountId": "41111111", "currency": "GBP", "balance": "5"}',
+            '{"accountId": "44444444", "currency": "GBP", "balance": "-1"}',
+            '{"accountId": "45555555", "currency": "GBP", "balance": "0.00000000001"}'
+        ].join("\n")
+
+        when:
+        def response = given().contentType("application/x-ndjson").body(body.getBytes("UTF-8")).post("http://localhost:1234/accounts/import")
+        def lines = response.asString().readLines().collect { new JsonSlurper().parseText(it) }
+
+        then:
+        response.statusCode() == 200
+        lines.findAll { it.line != null }.collectEntries { [(it.line): it.errorCode] } == [
+            4: "BAD_REQUEST", 5: "BALANCE_ALREADY_EXISTS", 6: "BAD_REQUEST", 7: "MONEY_TOO_MANY_DECIMAL_PLACES"
+        ]
+        lines.last() == [status: "COMPLETED", rowsRead: 7, rowsImported: 3, rowsRejected: 4]
+        testDBHelper.getAccountBalance("42222222", "GBP").toBlocking().value() == new BigDecimal("10.5")
+        testDBHelper.getAccountBalance("42222222", "USD").toBlocking().value() == new BigDecimal("3")
+        testDBHelper.getAccountBalance("41111111", "GBP").toBlocking().value() == new BigDecimal("1")
+        given().get("http://localhost:1234/accounts/43333333/balances").then().statusCode(200)
+    }
+
+    def "imports a CSV file in several batches and reports progress after each one" () {
+        given:
+        def body = "accountId,currency,balance\n" + (1..2500).collect { "5${String.format('%07d', it)},GBP,${it}" }.join("\n") + "\n"
+
+        when:
+        def response = given().contentType("text/csv").body(body.getBytes("UTF-8")).post("http://localhost:1234/accounts/import")
+        def lines = response.asString().readLines().collect { new JsonSlurper().parseText(it) }
+
+        then:
+        response.statusCode() == 200
+        lines*.status == ["IN_PROGRESS", "IN_PROGRESS", "COMPLETED"]
+        lines[0].rowsImported == 1000
+        lines.last() == [status: "COMPLETED", rowsRead: 2500, rowsImported: 2500, rowsRejected: 0]
+        testDBHelper.getAccountBalance("50002500", "GBP").toBlocking().value() == new BigDecimal("2500")
+    }
+
+    def "stops an import with BAD_REQUEST at a line longer than 64KB" () {
+        given:
+        def body = '{"accountId": "46666666", "currency": "GBP", "balance": "1"}\n' + ("x" * 70000) + "\n"
+
+        when:
+        def response = given().contentType("application/x-ndjson").body(body.getBytes("UTF-8")).post("http://localhost:1234/accounts/import")
+        def lines = response.asString().readLines().collect { new JsonSlurper().parseText(it) }
+
+        then:
+        response.statusCode() == 200
+        lines.last().status == "FAILED"
+        lines.last().errorCode == "BAD_REQUEST"
+    }
+
+    def "stops an import with BAD_REQUEST at a line longer than 64KB that ends in a later chunk" () {
+        given:
+        def socket = new Socket("localhost", 1234)
+        socket.setSoTimeout(10000)
+        def output = socket.getOutputStream()
+
+        when:
+        output.write(("POST /accounts/import HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/x-ndjson\r\n" +
+            "Transfer-Encoding: chunked\r\nConnection: close\r\n\r\n").getBytes("UTF-8"))
+        [("x" * 40000), ("x" * 30000) + "\n"].each {
+            output.write((Integer.toHexString(it.length()) + "\r\n" + it + "\r\n").getBytes("UTF-8"))
+            output.flush()
+            Thread.sleep(200)
+        }
+        output.write("0\r\n\r\n".getBytes("UTF-8"))
+        output.flush()
+        def response = socket.getInputStream().getText("UTF-8")
+        socket.close()
+
+        then:
+        response.startsWith("HTTP/1.1 200")
+        response.contains('"status":"FAILED"')
+        response.contains('"errorCode":"BAD_REQUEST"')
+    }
+
+    def "streams the transfer history of an account newest first, one page per cursor" () {
+        given:
+        Assume.assumeTrue(recordsTransferHistory())
+        testDBHelper.insertAccount("61111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("61111111", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("62222222").toBlocking().value()
+        ["1", "2.5", "3"].each {
+            given().body("{\"sourceAccount\": \"61111111\", \"destinationAccount\": \"62222222\", \"amount\": \"${it}\", \"currency\": \"GBP\"}")
+                .post("http://localhost:1234/transfer-money").then().statusCode(200)
+        }
+
+        when:
+        def firstPage = new JsonSlurper().parseText(given().get("http://localhost:1234/accounts/61111111/transfers?limit=2").then().statusCode(200).extract().asString())
+        def secondPage = new JsonSlurper().parseText(given().get("http://localhost:1234/accounts/61111111/transfers?limit=2&cursor=${firstPage.nextCursor}").asString())
+        def credits = new JsonSlurper().parseText(given().get("http://localhost:1234/accounts/62222222/transfers").asString())
+
+        then:
+        firstPage.accountId == "61111111"
+        firstPage.transfers*.amount == ["-3", "-2.5"]
+        firstPage.transfers*.counterpartyAccount == ["62222222", "62222222"]
+        firstPage.transfers*.currency == ["GBP", "GBP"]
+        firstPage.nextCursor != null
+        secondPage.transfers*.amount == ["-1"]
+        secondPage.nextCursor == null
+        credits.transfers*.amount == ["3", "2.5", "1"]
+        credits.transfers.every { it.createdAt.endsWith("Z") }
+    }
+
+    def "returns no cursor when the transfer history has exactly limit entries" () {
+        given:
+        Assume.assumeTrue(recordsTransferHistory())
+        testDBHelper.insertAccount("63333333").toBlocking().value()
+        testDBHelper.insertAccountBalance("63333333", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("64444444").toBlocking().value()
+        ["1", "2"].each {
+            given().body("{\"sourceAccount\": \"63333333\", \"destinationAccount\": \"64444444\", \"amount\": \"${it}\", \"currency\": \"GBP\"}")
+                .post("http://localhost:1234/transfer-money").then().statusCode(200)
+        }
+
+        when:
+        def page = new JsonSlurper().parseText(given().get("http://localhost:1234/accounts/63333333/transfers?limit=2").then().statusCode(200).extract().asString())
+
+        then:
+        page.transfers*.amount == ["-2", "-1"]
+        page.nextCursor == null
+    }
+
+    @Unroll
+    def "should return #expectedStatus when requesting the transfer history #description" () {
+        expect:
+        given().get("http://localhost:1234/accounts/${accountId}/transfers${query}").then().statusCode(expectedStatus).body("errorCode", is(expectedErrorCode))
+
+        where:
+        description                   | accountId  | query         | expectedStatus | expectedErrorCode
+        "of a non-existing account"   | "69999999" | ""            | 400            | "INVALID_ACCOUNT"
+        "with a limit above 1000"     | "69999999" | "?limit=1001" | 400            | "BAD_REQUEST"
+        "with a malformed cursor"     | "69999999" | "?cursor=abc" | 400            | "BAD_REQUEST"
+    }
+
+    def "exposes stage timings and error counts in Prometheus format on /metrics" () {
+        given:
+        given().contentType("application/json")
+                .body("""
+                    {
+                        "sourceAccount": "12345678",
+                        "destinationAccount": "87654321",
+                        "amount": "1",
+                        "currency": "GBP"
+                     }
+                    """)
+                .post("http://localhost:1234/transfer-money")
+
+        when:
+        def response = given().get("http://localhost:1234/metrics")
+
+        then:
+        response.then()
+                .statusCode(200)
+                .contentType(startsWith("text/plain"))
+        def metrics = response.body().asString()
+        metrics =~ /transfer_stage_duration_seconds_count\{stage="decode",\} [1-9]/
+        metrics =~ /transfer_errors_total\{error_code="INVALID_ACCOUNT",\} [1-9]/
+        metrics.contains("jdbc_pool_connections")
+        metrics =~ /http_requests_total\{server_instance="\d+",\} [1-9]/
+    }
+
+    def "reports ready on /ready once started" () {
+        expect:
+        given().get("http://localhost:1234/ready").then().statusCode(200).body("ready", is(true))
+    }
+
+    def "reconciles imported balances after transfers and reports the last run" () {
+        given:
+        Assume.assumeTrue(reconcilesBalances())
+        testDBHelper.insertAccount("70000000").toBlocking().value()
+        testDBHelper.insertAccountBalance("70000000", "GBP", new BigDecimal("5")).toBlocking().value()
+        def body = [
+            '{"accountId": "71111111", "currency": "GBP", "balance": "10"}',
+            '{"accountId": "72222222", "currency": "GBP", "balance": "2.5"}'
+        ].join("\n")
+        given().contentType("application/x-ndjson").body(body.getBytes("UTF-8")).post("http://localhost:1234/accounts/import").then().statusCode(200)
+        given().body('{"sourceAccount": "71111111", "destinationAccount": "72222222", "amount": "4", "currency": "GBP"}')
+            .post("http://localhost:1234/transfer-money").then().statusCode(200)
+
+        when:
+        def report = new JsonSlurper().parseText(given().post("http://localhost:1234/reconciliation?wait=true").then().statusCode(200).extract().asString())
+        given().contentType("application/x-ndjson").body('{"accountId": "73333333", "currency": "GBP", "balance": "1"}'.getBytes("UTF-8"))
+            .post("http://localhost:1234/accounts/import").then().statusCode(200)
+        def afterImport = new JsonSlurper().parseText(given().post("http://localhost:1234/reconciliation?wait=true").then().statusCode(200).extract().asString())
+
+        then:
+        report.consistent
+        report.rowsScanned >= 3
+        report.currencies == [[currency: "GBP", expectedTotal: "17.5", actualTotal: "17.5", drift: "0", negativeBalances: 0, baselined: true]]
+        afterImport.consistent
+        afterImport.currencies == [[currency: "GBP", expectedTotal: "18.5", actualTotal: "18.5", drift: "0", negativeBalances: 0, baselined: false]]
+        given().get("http://localhost:1234/reconciliation").then().statusCode(200)
+            .body("running", is(false))
+            .body("lastReport.consistent", is(true))
+        given().post("http://localhost:1234/reconciliation").then().statusCode(202)
+        given().get("http://localhost:1234/metrics").body().asString() =~ /reconciliation_drift\{currency="GBP",\} 0\.0/
+    }
 }
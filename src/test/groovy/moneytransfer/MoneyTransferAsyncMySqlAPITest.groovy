@@ -0,0 +1,12 @@
+package moneytransfer
+
+import io.vertx.core.json.JsonObject
+
+class MoneyTransferAsyncMySqlAPITest extends MoneyTransferAPITest {
+
+    @Override
+    JsonObject config() {
+        return new JsonObject()
+            .put("accountBalanceRepository", "asyncMySql")
+    }
+}
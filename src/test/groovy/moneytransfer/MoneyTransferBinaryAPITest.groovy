@@ -0,0 +1,137 @@
+package moneytransfer
+
+import io.vertx.core.DeploymentOptions
+import io.vertx.core.json.JsonObject
+import io.vertx.rxjava.core.Vertx
+import io.vertx.rxjava.core.buffer.Buffer
+import moneytransfer.binary.BinaryProtocol
+import moneytransfer.binary.BinaryTransferClient
+import moneytransfer.database.Database
+import moneytransfer.database.MySqlJdbcClientFactory
+import moneytransfer.database.TestDBHelper
+import moneytransfer.exceptions.TransferFailedException
+import moneytransfer.models.ErrorCode
+import rx.Observable
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class MoneyTransferBinaryAPITest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private TestDataHelper testDBHelper
+
+    @Shared
+    private BinaryTransferClient client
+
+    def setupSpec() {
+        Database.start()
+        vertx = Vertx.vertx()
+        vertx.rxDeployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(new JsonObject()
+            .put("binary", new JsonObject().put("enabled", true).put("port", 1235)))).toBlocking().value()
+        testDBHelper = new TestDBHelper(MySqlJdbcClientFactory.createMySqlJdbcClient(vertx))
+        client = BinaryTransferClient.connect(vertx, "localhost", 1235).toBlocking().value()
+    }
+
+    def cleanupSpec() {
+        client.close()
+        testDBHelper.dropTables().toBlocking().value()
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def cleanup() {
+        testDBHelper.clearTables().toBlocking().value()
+    }
+
+    def "transfers money over the binary protocol" () {
+        given:
+        insertAccount("12345678", "10")
+        insertAccount("87654321", "2")
+
+        when:
+        client.transferMoney("12345678", "87654321", new BigDecimal("4.55"), "GBP").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal("5.45")
+        testDBHelper.getAccountBalance("87654321", "GBP").toBlocking().value() == new BigDecimal("6.55")
+    }
+
+    @Unroll
+    def "fails with #expectedErrorCode when transferring #amount from #sourceAccount" () {
+        given:
+        insertAccount("12345678", "10")
+        insertAccount("87654321", "2")
+
+        when:
+        client.transferMoney(sourceAccount, "87654321", new BigDecimal(amount), "GBP").toBlocking().value()
+
+        then:
+        def ex = thrown(RuntimeException)
+        ex.cause instanceof TransferFailedException
+        ex.cause.errorCode == expectedErrorCode
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal("10")
+
+        where:
+        sourceAccount | amount           | expectedErrorCode
+        "12345678"    | "10.01"          | ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE
+        "99999999"    | "1"              | ErrorCode.INVALID_ACCOUNT
+        "12345678"    | "0.000000000001" | ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES
+    }
+
+    def "matches out of order responses to many pipelined requests on one connection" () {
+        given:
+        insertAccount("12345678", "1000")
+        insertAccount("87654321", "0")
+
+        when:
+        def results = Observable.range(0, 200)
+            .flatMap { i -> client.transferMoney("12345678", i % 10 == 0 ? "99999999" : "87654321", BigDecimal.ONE, "GBP")
+                .map { "ok" }
+                .onErrorReturn { ex -> ((TransferFailedException) ex).errorCode.name() }
+                .map { result -> [i, result] }
+                .toObservable() }
+            .toList()
+            .toBlocking()
+            .single()
+
+        then:
+        results.size() == 200
+        results.every { it[1] == (it[0] % 10 == 0 ? "INVALID_ACCOUNT" : "ok") }
+        testDBHelper.getAccountBalance("87654321", "GBP").toBlocking().value() == new BigDecimal("180")
+    }
+
+    def "responds with BAD_REQUEST to a malformed frame and closes the connection on an oversized frame" () {
+        given:
+        def socket = vertx.createNetClient().rxConnect(1235, "localhost").toBlocking().value()
+        def response = new CompletableFuture<Buffer>()
+        def closed = new CompletableFuture<Boolean>()
+        socket.handler { buffer -> response.complete(buffer) }
+        socket.closeHandler { closed.complete(true) }
+
+        when:
+        socket.write(Buffer.buffer().appendInt(9).appendLong(77L).appendByte((byte) 5))
+        def badRequest = response.get(10, TimeUnit.SECONDS)
+
+        then:
+        badRequest.getInt(0) == 9
+        badRequest.getLong(4) == 77L
+        ErrorCode.fromWireCode(badRequest.getByte(12)) == ErrorCode.BAD_REQUEST
+
+        when:
+        socket.write(Buffer.buffer().appendInt(BinaryProtocol.MAX_FRAME_BYTES + 1))
+
+        then:
+        closed.get(10, TimeUnit.SECONDS)
+    }
+
+    private void insertAccount(String accountId, String balance) {
+        testDBHelper.insertAccount(accountId).toBlocking().value()
+        testDBHelper.insertAccountBalance(accountId, "GBP", new BigDecimal(balance)).toBlocking().value()
+    }
+}
@@ -0,0 +1,78 @@
+package moneytransfer
+
+import io.vertx.core.json.JsonObject
+import moneytransfer.ledger.InMemoryLedger
+import moneytransfer.ledger.TestLedgerHelper
+import spock.lang.Shared
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static io.restassured.RestAssured.given
+import static org.hamcrest.Matchers.is
+
+class MoneyTransferInMemoryAPITest extends MoneyTransferAPITest {
+
+    @Shared
+    private Path ledgerDirectory = Files.createTempDirectory("ledger")
+
+    @Override
+    JsonObject config() {
+        return new JsonObject()
+            .put("accountBalanceRepository", "inMemory")
+            .put("ledger", ledgerConfig())
+    }
+
+    @Override
+    TestDataHelper createTestDataHelper() {
+        return new TestLedgerHelper(InMemoryLedger.createShared(vertx, ledgerConfig()), ledgerDirectory)
+    }
+
+    @Override
+    boolean recordsTransferHistory() {
+        return false
+    }
+
+    @Override
+    boolean reconcilesBalances() {
+        return false
+    }
+
+    @Override
+    boolean storesIdempotencyKeys() {
+        return false
+    }
+
+    def "should return 501 with IDEMPOTENCY_KEY_NOT_SUPPORTED and not apply a transfer with an Idempotency-Key" () {
+        given:
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+
+        expect:
+        given().header("Idempotency-Key", "transfer-1")
+            .body('{"sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "6", "currency": "GBP"}')
+            .post("http://localhost:1234/transfer-money").then().statusCode(501).body("errorCode", is("IDEMPOTENCY_KEY_NOT_SUPPORTED"))
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal("10")
+    }
+
+    def "should return 501 with TRANSFER_HISTORY_NOT_RECORDED when requesting the transfer history of an existing account" () {
+        given:
+        testDBHelper.insertAccount("61111111").toBlocking().value()
+
+        expect:
+        given().get("http://localhost:1234/accounts/61111111/transfers").then().statusCode(501).body("errorCode", is("TRANSFER_HISTORY_NOT_RECORDED"))
+    }
+
+    def "should return 501 with RECONCILIATION_NOT_SUPPORTED when triggering a reconciliation" () {
+        expect:
+        given().post("http://localhost:1234/reconciliation").then().statusCode(501).body("errorCode", is("RECONCILIATION_NOT_SUPPORTED"))
+        given().post("http://localhost:1234/reconciliation?wait=true").then().statusCode(501).body("errorCode", is("RECONCILIATION_NOT_SUPPORTED"))
+    }
+
+    private JsonObject ledgerConfig() {
+        return new JsonObject()
+            .put("directory", ledgerDirectory.toString())
+            .put("segmentSizeBytes", 64 * 1024)
+    }
+}
@@ -0,0 +1,36 @@
+package moneytransfer
+
+import io.vertx.core.json.JsonArray
+import io.vertx.core.json.JsonObject
+import moneytransfer.database.Database
+import moneytransfer.database.MySqlJdbcClientFactory
+import moneytransfer.database.ShardRing
+import moneytransfer.database.ShardedTestDBHelper
+import moneytransfer.database.TestDBHelper
+
+class MoneyTransferShardedAPITest extends MoneyTransferAPITest {
+
+    private static final List<Integer> SHARD_PORTS = [3307, 3308, 3309]
+
+    @Override
+    void startDatabases() {
+        SHARD_PORTS.each { Database.start(it) }
+    }
+
+    @Override
+    JsonObject config() {
+        JsonArray shards = new JsonArray()
+        SHARD_PORTS.each { shards.add(new JsonObject().put("port", it)) }
+        return new JsonObject()
+            .put("accountBalanceRepository", "sharded")
+            .put("sharding", new JsonObject().put("shards", shards))
+    }
+
+    @Override
+    TestDataHelper createTestDataHelper() {
+        List<TestDBHelper> shards = SHARD_PORTS.collect {
+            new TestDBHelper(MySqlJdbcClientFactory.createMySqlJdbcClient(vertx, new JsonObject().put("port", it)))
+        }
+        return new ShardedTestDBHelper(shards, new ShardRing(SHARD_PORTS.size(), 128))
+    }
+}
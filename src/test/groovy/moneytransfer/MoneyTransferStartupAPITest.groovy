@@ -0,0 +1,60 @@
+package moneytransfer
+
+import io.vertx.core.DeploymentOptions
+import io.vertx.core.json.JsonObject
+import io.vertx.rxjava.core.Vertx
+import moneytransfer.database.Database
+import moneytransfer.database.MySqlJdbcClientFactory
+import moneytransfer.database.TestDBHelper
+import spock.lang.Shared
+import spock.lang.Specification
+
+import static io.restassured.RestAssured.given
+import static org.hamcrest.Matchers.is
+
+class MoneyTransferStartupAPITest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private TestDBHelper testDBHelper
+
+    def setupSpec() {
+        Database.start()
+        vertx = Vertx.vertx()
+        testDBHelper = new TestDBHelper(MySqlJdbcClientFactory.createMySqlJdbcClient(vertx))
+    }
+
+    def cleanupSpec() {
+        testDBHelper.dropTables().toBlocking().value()
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def "warms up the transfer path before listening, removes the warm-up accounts and starts again on an existing schema" () {
+        given:
+        def config = new JsonObject()
+            .put("instances", 1)
+            .put("startup", new JsonObject().put("openConnections", 4).put("warmUpTransfers", 50).put("warmUpConcurrency", 4))
+
+        when:
+        def deploymentId = vertx.rxDeployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(config)).toBlocking().value()
+
+        then:
+        given().get("http://localhost:1234/ready").then().statusCode(200).body("ready", is(true))
+        given().get("http://localhost:1234/metrics").body().asString() =~ /transfer_stage_duration_seconds_count\{stage="commit",\} 50\.0/
+        given().get("http://localhost:1234/accounts/${TransferWarmUp.SOURCE_ACCOUNT}/balances").then().statusCode(400).body("errorCode", is("INVALID_ACCOUNT"))
+        given().get("http://localhost:1234/accounts/${TransferWarmUp.DESTINATION_ACCOUNT}/balances").then().statusCode(400).body("errorCode", is("INVALID_ACCOUNT"))
+        testDBHelper.countRows("transfer_journal").toBlocking().value() == 0
+        testDBHelper.countRows("account").toBlocking().value() == 0
+
+        when:
+        vertx.rxUndeploy(deploymentId).toBlocking().value()
+        vertx.rxDeployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(config)).toBlocking().value()
+
+        then:
+        given().get("http://localhost:1234/ready").then().statusCode(200).body("ready", is(true))
+        given().get("http://localhost:1234/accounts/${TransferWarmUp.SOURCE_ACCOUNT}/balances").then().statusCode(400).body("errorCode", is("INVALID_ACCOUNT"))
+        testDBHelper.countRows("account_balance").toBlocking().value() == 0
+    }
+}
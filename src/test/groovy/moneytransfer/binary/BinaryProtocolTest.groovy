@@ -0,0 +1,72 @@
+package moneytransfer.binary
+
+import io.vertx.rxjava.core.buffer.Buffer
+import moneytransfer.models.ErrorCode
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BinaryProtocolTest extends Specification {
+
+    def "decodes the transfer request it encoded" () {
+        when:
+        def request = BinaryProtocol.decodeRequest(frameOf(BinaryProtocol.encodeRequest(42L, "12345678", "87654321", 455L, 2, "GBP")))
+
+        then:
+        request.requestId == 42L
+        request.sourceAccount == "12345678"
+        request.destinationAccount == "87654321"
+        request.amount == new BigDecimal("4.55")
+        request.currency == "GBP"
+    }
+
+    @Unroll
+    def "rejects a request with #description" () {
+        when:
+        BinaryProtocol.decodeRequest(frame)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        description             | frame
+        "trailing bytes"        | frameOf(BinaryProtocol.encodeRequest(1L, "a", "b", 1L, 0, "GBP")).appendByte((byte) 0)
+        "a truncated body"      | frameOf(BinaryProtocol.encodeRequest(1L, "a", "b", 1L, 0, "GBP")).slice(0, 20)
+        "a negative scale"      | Buffer.buffer().appendLong(1L).appendByte((byte) 1).appendString("a").appendByte((byte) 1).appendString("b")
+                                      .appendLong(1L).appendByte((byte) -1).appendString("GBP")
+    }
+
+    @Unroll
+    def "refuses to encode #description" () {
+        when:
+        BinaryProtocol.encodeRequest(1L, sourceAccount, "b", 1L, scale, currency)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        description                 | sourceAccount | scale | currency
+        "a long account id"         | "a" * 256     | 0     | "GBP"
+        "a currency of 4 letters"   | "a"           | 0     | "GBPX"
+        "a negative scale"          | "a"           | -1    | "GBP"
+    }
+
+    def "encodes success and every error code as a response status" () {
+        expect:
+        BinaryProtocol.statusOf(frameOf(BinaryProtocol.encodeResponse(7L, null))) == BinaryProtocol.STATUS_OK
+        ErrorCode.values().every { errorCode ->
+            def response = frameOf(BinaryProtocol.encodeResponse(7L, errorCode))
+            BinaryProtocol.requestIdOf(response) == 7L && ErrorCode.fromWireCode(BinaryProtocol.statusOf(response)) == errorCode
+        }
+    }
+
+    def "wire codes are unique and an unknown code maps to INTERNAL_SERVER_ERROR" () {
+        expect:
+        ErrorCode.values()*.wireCode.unique().size() == ErrorCode.values().size()
+        ErrorCode.fromWireCode(100) == ErrorCode.INTERNAL_SERVER_ERROR
+    }
+
+    private static Buffer frameOf(Buffer encoded) {
+        assert encoded.getInt(0) == encoded.length() - 4
+        return encoded.slice(4, encoded.length()).copy()
+    }
+}
@@ -0,0 +1,13 @@
+package moneytransfer.database
+
+import io.vertx.core.json.JsonObject
+import moneytransfer.metrics.Metrics
+
+class AccountBalanceRepositoryAsyncMySqlImplTest extends AccountBalanceRepositoryMySqlImplTest {
+
+    @Override
+    AccountBalanceRepositoryMySqlImpl createAccountBalanceRepository(TransferRetryPolicy transferRetryPolicy, BalanceCache balanceCache, BalanceStripes balanceStripes) {
+        return new AccountBalanceRepositoryAsyncMySqlImpl(MySqlAsyncClientFactory.createMySqlAsyncClient(vertx, new JsonObject()), transferRetryPolicy, new Metrics(), balanceCache,
+            balanceStripes)
+    }
+}
@@ -0,0 +1,203 @@
+package moneytransfer.database
+
+import io.vertx.rxjava.core.Vertx
+import io.vertx.rxjava.ext.jdbc.JDBCClient
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import moneytransfer.exceptions.MoneyOverflowException
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException
+import moneytransfer.metrics.Metrics
+import moneytransfer.models.BatchMode
+import moneytransfer.models.Transfer
+import moneytransfer.models.TransferStatus
+import moneytransfer.money.CurrencyScales
+import rx.observers.TestSubscriber
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class AccountBalanceRepositoryFixedPointImplTest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private JDBCClient jdbcClient
+
+    @Shared
+    private AccountBalanceRepositoryFixedPointImpl accountBalanceRepositoryFixedPoint
+
+    @Shared
+    private TestDBHelper testDBHelper
+
+    def setupSpec() {
+        Database.start()
+        vertx = Vertx.vertx()
+        jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx)
+        accountBalanceRepositoryFixedPoint = new AccountBalanceRepositoryFixedPointImpl(jdbcClient, new CurrencyScales(["BTC": 8], 2))
+        testDBHelper = new TestDBHelper(jdbcClient)
+    }
+
+    def cleanupSpec() {
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def setup() {
+        new AccountRepositoryMySqlImpl(jdbcClient).createTable().toBlocking().value()
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+    }
+
+    def cleanup() {
+        testDBHelper.dropTables().toBlocking().value()
+    }
+
+    @Unroll
+    def "stores balances as minor units when transferring #transferAmount #currency" () {
+        given:
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", currency, new BigDecimal(sourceUnits)).toBlocking().value()
+
+        when:
+        accountBalanceRepositoryFixedPoint.transferMoney("12345678", "87654321", transferAmount, currency).toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance("12345678", currency).toBlocking().value() == new BigDecimal(expectedSourceUnits)
+        testDBHelper.getAccountBalance("87654321", currency).toBlocking().value() == new BigDecimal(expectedDestinationUnits)
+
+        where:
+        currency | sourceUnits | transferAmount | expectedSourceUnits | expectedDestinationUnits
+        "GBP"    | "1024"      | "10.24"        | "0"                 | "1024"
+        "GBP"    | "1025"      | "10.2"         | "5"                 | "1020"
+        "JPY"    | "1000"      | "250"          | "750"               | "250"
+        "BTC"    | "100000000" | "0.00000001"   | "99999999"          | "1"
+    }
+
+    def "records journal amounts as minor units and reads them back as amounts" () {
+        given:
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("1025")).toBlocking().value()
+
+        when:
+        accountBalanceRepositoryFixedPoint.transferMoney("12345678", "87654321", "10.2", "GBP").toBlocking().value()
+
+        then:
+        accountBalanceRepositoryFixedPoint.getTransferHistory("12345678", Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount == [new BigDecimal("-10.20")]
+        accountBalanceRepositoryFixedPoint.getTransferHistory("87654321", Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount == [new BigDecimal("10.20")]
+    }
+
+    @Unroll
+    def "transferring #transferAmount fails with #expectedException.simpleName and leaves balances unchanged" () {
+        given:
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal(sourceUnits)).toBlocking().value()
+        testDBHelper.insertAccountBalance("87654321", "GBP", new BigDecimal(destinationUnits)).toBlocking().value()
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        accountBalanceRepositoryFixedPoint.transferMoney("12345678", "87654321", transferAmount, "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        expectedException.isInstance(testSubscriber.getOnErrorEvents().get(0))
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal(sourceUnits)
+        testDBHelper.getAccountBalance("87654321", "GBP").toBlocking().value() == new BigDecimal(destinationUnits)
+
+        where:
+        sourceUnits           | destinationUnits      | transferAmount | expectedException
+        "100"                 | "0"                   | "1.01"         | InsufficientAccountBalanceException
+        "100"                 | "0"                   | "0.001"        | MoneyTooManyDecimalPlacesException
+        "100"                 | "9223372036854775807" | "0.01"         | MoneyOverflowException
+    }
+
+    def "batch transfers convert amounts to minor units per currency" () {
+        given:
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("500")).toBlocking().value()
+        def transfers = [
+            new Transfer("12345678", "87654321", new BigDecimal("2.5"), "GBP"),
+            new Transfer("12345678", "87654321", new BigDecimal("0.001"), "GBP"),
+            new Transfer("12345678", "87654321", new BigDecimal("2.5"), "GBP")
+        ]
+
+        when:
+        def results = accountBalanceRepositoryFixedPoint.transferMoneyBatch(transfers, BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.SUCCESS]
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == BigDecimal.ZERO
+        testDBHelper.getAccountBalance("87654321", "GBP").toBlocking().value() == new BigDecimal("500")
+    }
+
+    def "getBalances converts minor units back to amounts, including cached balances updated by a transfer" () {
+        given:
+        def cachingRepository = new AccountBalanceRepositoryFixedPointImpl(jdbcClient, TransferRetryPolicy.noRetries(), new moneytransfer.metrics.Metrics(),
+            new CurrencyScales(["BTC": 8], 2), new BalanceCache(100, 60000))
+        cachingRepository.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "BTC", new BigDecimal("100000000")).toBlocking().value()
+        cachingRepository.getBalances("12345678").toBlocking().value()
+
+        when:
+        cachingRepository.transferMoney("12345678", "87654321", "0.25", "BTC").toBlocking().value()
+
+        then:
+        cachingRepository.getBalances("12345678").toBlocking().value() == ["BTC": new BigDecimal("0.75000000")]
+        cachingRepository.getBalances("87654321").toBlocking().value() == ["BTC": new BigDecimal("0.25000000")]
+    }
+
+    def "createTable migrates decimal balances to minor units" () {
+        given:
+        new AccountBalanceRepositoryMySqlImpl(jdbcClient).createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("10.24")).toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "BTC", new BigDecimal("0.5")).toBlocking().value()
+        testDBHelper.insertAccountBalance("87654321", "JPY", new BigDecimal("300")).toBlocking().value()
+
+        when:
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+        accountBalanceRepositoryFixedPoint.createTable().toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal("1024")
+        testDBHelper.getAccountBalance("12345678", "BTC").toBlocking().value() == new BigDecimal("50000000")
+        testDBHelper.getAccountBalance("87654321", "JPY").toBlocking().value() == new BigDecimal("300")
+    }
+
+    def "createTable migrates decimal journal amounts and stripe balances to minor units" () {
+        given:
+        def stripes = new BalanceStripes(["87654321"], 2)
+        def decimalRepository = new AccountBalanceRepositoryMySqlImpl(jdbcClient, TransferRetryPolicy.noRetries(), new Metrics(), BalanceCache.readFromPrimary(), stripes)
+        decimalRepository.createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("10.24")).toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "BTC", new BigDecimal("1")).toBlocking().value()
+        decimalRepository.transferMoney("12345678", "87654321", "2.5", "GBP").toBlocking().value()
+        decimalRepository.transferMoney("12345678", "87654321", "0.25", "BTC").toBlocking().value()
+        def fixedPointRepository = new AccountBalanceRepositoryFixedPointImpl(jdbcClient, TransferRetryPolicy.noRetries(), new Metrics(),
+            new CurrencyScales(["BTC": 8], 2), BalanceCache.readFromPrimary(), stripes)
+
+        when:
+        fixedPointRepository.createTable().toBlocking().value()
+        fixedPointRepository.createTable().toBlocking().value()
+
+        then:
+        fixedPointRepository.getTransferHistory("12345678", Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount ==
+            [new BigDecimal("-0.25000000"), new BigDecimal("-2.50")]
+        fixedPointRepository.getTransferHistory("87654321", Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount ==
+            [new BigDecimal("0.25000000"), new BigDecimal("2.50")]
+        fixedPointRepository.getBalances("87654321").toBlocking().value() == ["BTC": new BigDecimal("0.25000000"), "GBP": new BigDecimal("2.50")]
+        fixedPointRepository.getBalances("12345678").toBlocking().value() == ["BTC": new BigDecimal("0.75000000"), "GBP": new BigDecimal("7.74")]
+    }
+
+    def "createTable refuses to migrate balances that would lose precision" () {
+        given:
+        new AccountBalanceRepositoryMySqlImpl(jdbcClient).createTable().toBlocking().value()
+        testDBHelper.insertAccountBalance("12345678", "GBP", new BigDecimal("10.245")).toBlocking().value()
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        accountBalanceRepositoryFixedPoint.createTable().subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof IllegalStateException
+        testDBHelper.getAccountBalance("12345678", "GBP").toBlocking().value() == new BigDecimal("10.245")
+    }
+}
@@ -2,9 +2,18 @@ package moneytransfer.database
 
 import io.vertx.rxjava.core.Vertx
 import io.vertx.rxjava.ext.jdbc.JDBCClient
+import io.vertx.rxjava.ext.sql.SQLConnection
+import moneytransfer.exceptions.IdempotencyKeyReusedException
 import moneytransfer.exceptions.InsufficientAccountBalanceException
 import moneytransfer.exceptions.MoneyOverflowException
 import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException
+import moneytransfer.metrics.Metrics
+import moneytransfer.models.BatchMode
+import moneytransfer.models.ErrorCode
+import moneytransfer.models.OpeningBalance
+import moneytransfer.models.Transfer
+import moneytransfer.models.TransferStatus
+import rx.Single
 import rx.observers.TestSubscriber
 import spock.lang.Shared
 import spock.lang.Specification
@@ -29,7 +38,7 @@ class AccountBalanceRepositoryMySqlImplTest extends Specification {
         Database.start()
         vertx = Vertx.vertx()
         JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx)
-        accountBalanceRepositoryMySql = new AccountBalanceRepositoryMySqlImpl(jdbcClient)
+        accountBalanceRepositoryMySql = createAccountBalanceRepository(TransferRetryPolicy.noRetries(), BalanceCache.readFromPrimary())
         accountRepositoryMySql = new AccountRepositoryMySqlImpl(jdbcClient)
         testDBHelper = new TestDBHelper(jdbcClient)
 
@@ -37,6 +46,14 @@ class AccountBalanceRepositoryMySqlImplTest extends Specification {
         accountBalanceRepositoryMySql.createTable().toBlocking().value()
     }
 
+    AccountBalanceRepositoryMySqlImpl createAccountBalanceRepository(TransferRetryPolicy transferRetryPolicy, BalanceCache balanceCache) {
+        return createAccountBalanceRepository(transferRetryPolicy, balanceCache, BalanceStripes.none())
+    }
+
+    AccountBalanceRepositoryMySqlImpl createAccountBalanceRepository(TransferRetryPolicy transferRetryPolicy, BalanceCache balanceCache, BalanceStripes balanceStripes) {
+        return new AccountBalanceRepositoryMySqlImpl(MySqlJdbcClientFactory.createMySqlJdbcClient(vertx), transferRetryPolicy, new Metrics(), balanceCache, balanceStripes)
+    }
+
     def cleanupSpec() {
         testDBHelper.dropTables().toBlocking().value()
         vertx.rxClose().toBlocking().value()
@@ -225,4 +242,542 @@ class AccountBalanceRepositoryMySqlImplTest extends Specification {
         MIN_NONZERO_MONEY_VALUE | MAX_MONEY_VALUE            | MIN_NONZERO_MONEY_VALUE
     }
 
+    def "completes concurrent transfers in opposite directions between the same accounts without losing money" () {
+        given:
+        def currency = "GBP"
+        def retryingRepository = createAccountBalanceRepository(new TransferRetryPolicy(vertx, 10, 5, 100), BalanceCache.readFromPrimary())
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("1000")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("1000")).toBlocking().value()
+        def transfers = (1..40).collect { i ->
+            i % 2 == 0 ?
+                    retryingRepository.transferMoney("11111111", "22222222", new BigDecimal("3"), currency) :
+                    retryingRepository.transferMoney("22222222", "11111111", new BigDecimal("2"), currency)
+        }
+
+        when:
+        Single.merge(rx.Observable.from(transfers)).toList().toBlocking().single()
+
+        then:
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("980")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("1020")
+    }
+
+    def "transferMoney with an idempotency key applies the transfer once and replays the outcome for repeats" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-1").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-1").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "concurrent transfers with the same idempotency key are applied once" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("100")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        def transfers = (1..8).collect { accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-3") }
+
+        when:
+        Single.merge(rx.Observable.from(transfers)).toList().toBlocking().single()
+
+        then:
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("96")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "transferMoney with an idempotency key replays a failed transfer even once it could succeed" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("1")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        TestSubscriber first = new TestSubscriber()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-2").subscribe(first)
+        first.awaitTerminalEvent()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("100")).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("22222222", "11111111", "10", currency, null).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-2").subscribe(second)
+        second.awaitTerminalEvent()
+
+        then:
+        first.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        second.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("11")
+    }
+
+    def "transferMoney rejects an idempotency key reused for a different transfer" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-4").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "5", currency, "key-4").subscribe(second)
+        second.awaitTerminalEvent()
+
+        then:
+        second.getOnErrorEvents().get(0) instanceof IdempotencyKeyReusedException
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("6")
+    }
+
+    def "transferMoney scopes idempotency keys per source account" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("10")).toBlocking().value()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-5").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("22222222", "11111111", "1", currency, "key-5").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("7")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("13")
+    }
+
+    def "purgeIdempotencyKeys removes keys older than the retention so they can be used again" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-6").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "1", currency, "key-7").toBlocking().value()
+        testDBHelper.backdateIdempotencyKeys(120).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "1", currency, "key-8").toBlocking().value()
+
+        when:
+        def purged = accountBalanceRepositoryMySql.purgeIdempotencyKeys(60000).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "4", currency, "key-6").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "1", currency, "key-8").toBlocking().value()
+
+        then:
+        purged == 2
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("0")
+    }
+
+    def "importOpeningBalances creates accounts and balances in one batch and rejects rows per index" () {
+        given:
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("1")).toBlocking().value()
+        def rows = [
+            new OpeningBalance("22222222", "GBP", new BigDecimal("10.5")),
+            new OpeningBalance("11111111", "GBP", new BigDecimal("5")),
+            new OpeningBalance("11111111", "USD", new BigDecimal("7")),
+            new OpeningBalance("22222222", "GBP", new BigDecimal("2")),
+            new OpeningBalance("33333333", "GBP", new BigDecimal("0.00000000001")),
+            new OpeningBalance("44444444", "GBP", new BigDecimal(MAX_MONEY_VALUE).add(BigDecimal.ONE)),
+            new OpeningBalance("55555555", null, null)
+        ]
+
+        when:
+        def result = accountBalanceRepositoryMySql.importOpeningBalances(rows).toBlocking().value()
+
+        then:
+        result == [null, ErrorCode.BALANCE_ALREADY_EXISTS, null, ErrorCode.BALANCE_ALREADY_EXISTS,
+                   ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES, ErrorCode.MONEY_OVERFLOW, null]
+        testDBHelper.getAccountBalance("22222222", "GBP").toBlocking().value() == new BigDecimal("10.5")
+        testDBHelper.getAccountBalance("11111111", "GBP").toBlocking().value() == new BigDecimal("1")
+        testDBHelper.getAccountBalance("11111111", "USD").toBlocking().value() == new BigDecimal("7")
+        accountBalanceRepositoryMySql.getBalances("55555555").toBlocking().value().isEmpty()
+    }
+
+    def "records a debit and a credit journal entry for each transfer and pages through them newest first" () {
+        given:
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccount("33333333").toBlocking().value()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "1.5", "GBP").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "33333333", "2", "GBP").toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoneyBatch([new Transfer("22222222", "11111111", new BigDecimal("0.5"), "GBP")], BatchMode.ALL_OR_NOTHING).toBlocking().value()
+        def firstPage = accountBalanceRepositoryMySql.getTransferHistory("11111111", Long.MAX_VALUE, 2).toList().toBlocking().single()
+        def secondPage = accountBalanceRepositoryMySql.getTransferHistory("11111111", firstPage.last().entryId, 2).toList().toBlocking().single()
+        def credited = accountBalanceRepositoryMySql.getTransferHistory("33333333", Long.MAX_VALUE, 10).toList().toBlocking().single()
+
+        then:
+        firstPage.collect { [it.counterpartyAccount, it.amount] } == [["22222222", new BigDecimal("0.5")], ["33333333", new BigDecimal("-2")]]
+        secondPage.collect { [it.counterpartyAccount, it.amount] } == [["22222222", new BigDecimal("-1.5")]]
+        firstPage*.currency == ["GBP", "GBP"]
+        credited.collect { [it.counterpartyAccount, it.amount] } == [["11111111", new BigDecimal("2")]]
+        Math.abs(credited[0].createdAt - System.currentTimeMillis()) < 60000
+    }
+
+    def "does not record journal entries for a transfer that fails" () {
+        given:
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("1")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "2", "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        accountBalanceRepositoryMySql.getTransferHistory("11111111", Long.MAX_VALUE, 10).toList().toBlocking().single().isEmpty()
+        accountBalanceRepositoryMySql.getTransferHistory("22222222", Long.MAX_VALUE, 10).toList().toBlocking().single().isEmpty()
+    }
+
+    def "getBalances returns every currency without waiting for row locks held by a transfer" () {
+        given:
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("10.5")).toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "USD", new BigDecimal("3")).toBlocking().value()
+        SQLConnection lockingConnection = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx).rxGetConnection().toBlocking().value()
+        lockingConnection.rxSetAutoCommit(false).toBlocking().value()
+        lockingConnection.rxQuery("SELECT account_id FROM account_balance WHERE account_id = '11111111' FOR UPDATE").toBlocking().value()
+
+        when:
+        def balances = accountBalanceRepositoryMySql.getBalances("11111111").timeout(5, java.util.concurrent.TimeUnit.SECONDS).toBlocking().value()
+
+        then:
+        balances.keySet() == ["GBP", "USD"] as Set
+        balances["GBP"] == new BigDecimal("10.5")
+        balances["USD"] == new BigDecimal("3")
+
+        cleanup:
+        lockingConnection.rxRollback().toBlocking().value()
+        lockingConnection.close()
+    }
+
+    def "getBalances serves cached balances that transferMoney updates on commit" () {
+        given:
+        def balanceCache = new BalanceCache(100, 60000)
+        def cachingRepository = createAccountBalanceRepository(TransferRetryPolicy.noRetries(), balanceCache)
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", "GBP", new BigDecimal("1")).toBlocking().value()
+        cachingRepository.getBalances("11111111").toBlocking().value()
+        cachingRepository.getBalances("22222222").toBlocking().value()
+
+        when:
+        cachingRepository.transferMoney("11111111", "22222222", "2.5", "GBP").toBlocking().value()
+        def sourceBalances = cachingRepository.getBalances("11111111").toBlocking().value()
+        def destinationBalances = cachingRepository.getBalances("22222222").toBlocking().value()
+
+        then:
+        balanceCache.hits == 2
+        balanceCache.misses == 2
+        sourceBalances["GBP"] == new BigDecimal("7.5")
+        destinationBalances["GBP"] == new BigDecimal("3.5")
+    }
+
+    def "a rolled back transfer invalidates the cached balances of both accounts" () {
+        given:
+        def balanceCache = new BalanceCache(100, 60000)
+        def cachingRepository = createAccountBalanceRepository(TransferRetryPolicy.noRetries(), balanceCache)
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("1")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        cachingRepository.getBalances("11111111").toBlocking().value()
+        cachingRepository.getBalances("22222222").toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        cachingRepository.transferMoney("11111111", "22222222", "2", "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        balanceCache.size() == 0
+        cachingRepository.getBalances("11111111").toBlocking().value()["GBP"] == new BigDecimal("1")
+        cachingRepository.getBalances("22222222").toBlocking().value().isEmpty()
+    }
+
+    def "transferMoneyBatch applies every transfer when all of them can be made" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("5")).toBlocking().value()
+        testDBHelper.insertAccount("33333333").toBlocking().value()
+        def transfers = [
+                new Transfer("11111111", "22222222", new BigDecimal("4"), currency),
+                new Transfer("22222222", "33333333", new BigDecimal("5"), currency),
+                new Transfer("11111111", "33333333", new BigDecimal("1.5"), currency)
+        ]
+
+        when:
+        def results = accountBalanceRepositoryMySql.transferMoneyBatch(transfers, BatchMode.ALL_OR_NOTHING).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.SUCCESS, TransferStatus.SUCCESS]
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("4.5")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("4")
+        testDBHelper.getAccountBalance("33333333", currency).toBlocking().value() == new BigDecimal("6.5")
+    }
+
+    def "transferMoneyBatch rolls back every transfer in ALL_OR_NOTHING mode when one has insufficient balance" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("1")).toBlocking().value()
+        def transfers = [
+                new Transfer("11111111", "22222222", new BigDecimal("4"), currency),
+                new Transfer("22222222", "11111111", new BigDecimal("2"), currency)
+        ]
+
+        when:
+        def results = accountBalanceRepositoryMySql.transferMoneyBatch(transfers, BatchMode.ALL_OR_NOTHING).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.ROLLED_BACK, TransferStatus.FAILED]
+        results[1].errorCode == ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal("10")
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("1")
+    }
+
+    def "transferMoneyBatch applies the remaining transfers in BEST_EFFORT mode when some of them fail" () {
+        given:
+        def currency = "GBP"
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", currency, new BigDecimal(MAX_MONEY_VALUE)).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccountBalance("22222222", currency, new BigDecimal("1")).toBlocking().value()
+        testDBHelper.insertAccount("33333333").toBlocking().value()
+        testDBHelper.insertAccountBalance("33333333", currency, new BigDecimal(MAX_MONEY_VALUE)).toBlocking().value()
+        def transfers = [
+                new Transfer("11111111", "22222222", new BigDecimal("4"), currency),
+                new Transfer("22222222", "11111111", new BigDecimal("2"), currency),
+                new Transfer("11111111", "33333333", new BigDecimal("1"), currency),
+                new Transfer("11111111", "22222222", new BigDecimal("0.00000000001"), currency),
+                new Transfer("11111111", "22222222", new BigDecimal("3"), currency)
+        ]
+
+        when:
+        def results = accountBalanceRepositoryMySql.transferMoneyBatch(transfers, BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.FAILED, TransferStatus.FAILED, TransferStatus.SUCCESS]
+        results*.errorCode == [null, ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE, ErrorCode.MONEY_OVERFLOW, ErrorCode.MONEY_TOO_MANY_DECIMAL_PLACES, null]
+        testDBHelper.getAccountBalance("11111111", currency).toBlocking().value() == new BigDecimal(MAX_MONEY_VALUE) - 7
+        testDBHelper.getAccountBalance("22222222", currency).toBlocking().value() == new BigDecimal("8")
+        testDBHelper.getAccountBalance("33333333", currency).toBlocking().value() == new BigDecimal(MAX_MONEY_VALUE)
+    }
+
+    def "transferMoneyBatch fails only the transfer whose credit overflows in BEST_EFFORT mode when it is not the first in the batch" () {
+        given:
+        def currency = "GBP"
+        def sources = (1..6).collect { String.format("1%07d", it) }
+        def destinations = (1..6).collect { String.format("2%07d", it) }
+        sources.each {
+            testDBHelper.insertAccount(it).toBlocking().value()
+            testDBHelper.insertAccountBalance(it, currency, new BigDecimal("10")).toBlocking().value()
+        }
+        destinations.each {
+            testDBHelper.insertAccount(it).toBlocking().value()
+            testDBHelper.insertAccountBalance(it, currency, new BigDecimal(it == destinations[3] ? MAX_MONEY_VALUE : "1")).toBlocking().value()
+        }
+        def transfers = (0..5).collect { new Transfer(sources[it], destinations[it], new BigDecimal("2"), currency) }
+
+        when:
+        def results = accountBalanceRepositoryMySql.transferMoneyBatch(transfers, BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.SUCCESS, TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.SUCCESS, TransferStatus.SUCCESS]
+        results[3].errorCode == ErrorCode.MONEY_OVERFLOW
+        [0, 1, 2, 4, 5].every { testDBHelper.getAccountBalance(sources[it], currency).toBlocking().value() == new BigDecimal("8") }
+        [0, 1, 2, 4, 5].every { testDBHelper.getAccountBalance(destinations[it], currency).toBlocking().value() == new BigDecimal("3") }
+        testDBHelper.getAccountBalance(sources[3], currency).toBlocking().value() == new BigDecimal("10")
+        testDBHelper.getAccountBalance(destinations[3], currency).toBlocking().value() == new BigDecimal(MAX_MONEY_VALUE)
+    }
+
+    def "scanBalances totals every currency over key-range partitions and baselineCurrencySupply records the supply of a currency that was never minted" () {
+        given:
+        (1..40).each {
+            def accountId = String.format("%08d", it * 2500)
+            testDBHelper.insertAccount(accountId).toBlocking().value()
+            testDBHelper.insertAccountBalance(accountId, "GBP", new BigDecimal(it)).toBlocking().value()
+            testDBHelper.insertAccountBalance(accountId, "USD", new BigDecimal("0.5")).toBlocking().value()
+        }
+
+        when:
+        def first = accountBalanceRepositoryMySql.scanBalances(4, 7).toBlocking().value()
+        accountBalanceRepositoryMySql.baselineCurrencySupply([GBP: first.getTotal("GBP"), USD: first.getTotal("USD")]).toBlocking().value()
+        def second = accountBalanceRepositoryMySql.scanBalances(3, 1000).toBlocking().value()
+
+        then:
+        first.rowsScanned == 80
+        first.getTotal("GBP") == new BigDecimal("820")
+        first.getTotal("USD") == new BigDecimal("20")
+        first.getSupply("GBP") == null
+        first.getSupply("USD") == null
+        second.rowsScanned == 80
+        !second.isBaselined("GBP")
+        second.getSupply("GBP") == new BigDecimal("820")
+        second.getSupply("USD") == new BigDecimal("20")
+    }
+
+    def "scanBalances compares balances with the supply minted by importOpeningBalances and finds negative balances" () {
+        given:
+        accountBalanceRepositoryMySql.baselineCurrencySupply([GBP: BigDecimal.ZERO]).toBlocking().value()
+        accountBalanceRepositoryMySql.importOpeningBalances([
+            new OpeningBalance("11111111", "GBP", new BigDecimal("10")),
+            new OpeningBalance("22222222", "GBP", new BigDecimal("5.25"))
+        ]).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", new BigDecimal("3"), "GBP").toBlocking().value()
+        testDBHelper.insertAccount("33333333").toBlocking().value()
+        testDBHelper.insertAccountBalance("33333333", "GBP", new BigDecimal("-2")).toBlocking().value()
+
+        when:
+        def scan = accountBalanceRepositoryMySql.scanBalances(2, 1).toBlocking().value()
+
+        then:
+        !scan.isBaselined("GBP")
+        scan.getSupply("GBP") == new BigDecimal("15.25")
+        scan.getTotal("GBP") == new BigDecimal("13.25")
+        scan.getNegativeBalances("GBP") == 1
+        scan.negativeBalanceAccounts == ["33333333"]
+    }
+
+    def "importOpeningBalances adds nothing to the supply of a currency that was never baselined" () {
+        given:
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("4")).toBlocking().value()
+        accountBalanceRepositoryMySql.importOpeningBalances([new OpeningBalance("22222222", "GBP", new BigDecimal("10"))]).toBlocking().value()
+
+        when:
+        def scan = accountBalanceRepositoryMySql.scanBalances(2, 100).toBlocking().value()
+        accountBalanceRepositoryMySql.baselineCurrencySupply([GBP: scan.getTotal("GBP")]).toBlocking().value()
+        def baselined = accountBalanceRepositoryMySql.scanBalances(2, 100).toBlocking().value()
+
+        then:
+        scan.getSupply("GBP") == null
+        scan.getTotal("GBP") == new BigDecimal("14")
+        baselined.getSupply("GBP") == new BigDecimal("14")
+        baselined.getTotal("GBP") == new BigDecimal("14")
+    }
+
+    def "deleteAccounts removes the accounts with their balances and history and takes their balances out of the supply" () {
+        given:
+        accountBalanceRepositoryMySql.baselineCurrencySupply([GBP: BigDecimal.ZERO]).toBlocking().value()
+        accountBalanceRepositoryMySql.importOpeningBalances([
+            new OpeningBalance("11111111", "GBP", new BigDecimal("10")),
+            new OpeningBalance("22222222", "GBP", new BigDecimal("5")),
+            new OpeningBalance("33333333", "GBP", new BigDecimal("1"))
+        ]).toBlocking().value()
+        accountBalanceRepositoryMySql.transferMoney("11111111", "22222222", "3", "GBP").toBlocking().value()
+
+        when:
+        accountBalanceRepositoryMySql.deleteAccounts(["11111111", "22222222"]).toBlocking().value()
+        def scan = accountBalanceRepositoryMySql.scanBalances(2, 100).toBlocking().value()
+
+        then:
+        accountBalanceRepositoryMySql.getBalances("11111111").toBlocking().value().isEmpty()
+        accountBalanceRepositoryMySql.getTransferHistory("22222222", Long.MAX_VALUE, 10).toList().toBlocking().single().isEmpty()
+        testDBHelper.countRows("account").toBlocking().value() == 1
+        scan.getSupply("GBP") == new BigDecimal("1")
+        scan.getTotal("GBP") == new BigDecimal("1")
+    }
+
+    def "credits to a striped account go to its stripes, which balances include and consolidation folds back" () {
+        given:
+        def stripedRepository = createAccountBalanceRepository(new TransferRetryPolicy(vertx, 10, 5, 100), BalanceCache.readFromPrimary(),
+            new BalanceStripes(["99999999"], 4))
+        testDBHelper.insertAccount("99999999").toBlocking().value()
+        def sources = (1..20).collect { String.format("%08d", it) }
+        sources.each {
+            testDBHelper.insertAccount(it).toBlocking().value()
+            testDBHelper.insertAccountBalance(it, "GBP", new BigDecimal("10")).toBlocking().value()
+        }
+
+        when:
+        Single.merge(rx.Observable.from(sources.collect { stripedRepository.transferMoney(it, "99999999", new BigDecimal("1.5"), "GBP") }))
+            .toList().toBlocking().single()
+
+        then:
+        stripedRepository.getBalances("99999999").toBlocking().value() == ["GBP": new BigDecimal("30")]
+        stripedRepository.scanBalances(2, 100).toBlocking().value().getTotal("GBP") == new BigDecimal("200")
+
+        when:
+        def consolidated = stripedRepository.consolidateBalanceStripes().toBlocking().value()
+
+        then:
+        consolidated == 1
+        testDBHelper.getAccountBalance("99999999", "GBP").toBlocking().value() == new BigDecimal("30")
+        stripedRepository.getBalances("99999999").toBlocking().value() == ["GBP": new BigDecimal("30")]
+        stripedRepository.consolidateBalanceStripes().toBlocking().value() == 0
+    }
+
+    def "debits from a striped account check the sum of its balance and its stripes" () {
+        given:
+        def stripedRepository = createAccountBalanceRepository(TransferRetryPolicy.noRetries(), BalanceCache.readFromPrimary(),
+            new BalanceStripes(["99999999"], 4))
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("99999999").toBlocking().value()
+        testDBHelper.insertAccountBalance("99999999", "GBP", new BigDecimal("1")).toBlocking().value()
+        5.times { stripedRepository.transferMoney("11111111", "99999999", new BigDecimal("1"), "GBP").toBlocking().value() }
+
+        when:
+        stripedRepository.transferMoney("99999999", "11111111", new BigDecimal("5.5"), "GBP").toBlocking().value()
+        stripedRepository.transferMoney("11111111", "99999999", new BigDecimal("2"), "GBP").toBlocking().value()
+        def batchResults = stripedRepository.transferMoneyBatch([
+            new Transfer("99999999", "11111111", new BigDecimal("2"), "GBP"),
+            new Transfer("99999999", "11111111", new BigDecimal("0.5"), "GBP")
+        ], BatchMode.ALL_OR_NOTHING).toBlocking().value()
+        TestSubscriber overdraft = new TestSubscriber()
+        stripedRepository.transferMoney("99999999", "11111111", new BigDecimal("0.01"), "GBP").subscribe(overdraft)
+        overdraft.awaitTerminalEvent()
+
+        then:
+        batchResults*.status == [TransferStatus.SUCCESS, TransferStatus.SUCCESS]
+        overdraft.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        stripedRepository.getBalances("99999999").toBlocking().value() == ["GBP": BigDecimal.ZERO]
+        testDBHelper.getAccountBalance("11111111", "GBP").toBlocking().value() == new BigDecimal("11")
+    }
+
+    def "batch credits to a striped account go to its stripes and a failing one is reported against its own transfer" () {
+        given:
+        def stripedRepository = createAccountBalanceRepository(TransferRetryPolicy.noRetries(), BalanceCache.readFromPrimary(),
+            new BalanceStripes(["99999999", "98888888"], 4))
+        testDBHelper.insertAccount("11111111").toBlocking().value()
+        testDBHelper.insertAccountBalance("11111111", "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccount("22222222").toBlocking().value()
+        testDBHelper.insertAccount("99999999").toBlocking().value()
+
+        when:
+        def results = stripedRepository.transferMoneyBatch([
+            new Transfer("11111111", "99999999", new BigDecimal("1"), "GBP"),
+            new Transfer("11111111", "22222222", new BigDecimal("1"), "GBP"),
+            new Transfer("11111111", "98888888", new BigDecimal("1"), "GBP"),
+            new Transfer("11111111", "99999999", new BigDecimal("2"), "GBP")
+        ], BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.SUCCESS]
+        results[2].errorCode == ErrorCode.INVALID_ACCOUNT
+        stripedRepository.getBalances("99999999").toBlocking().value() == ["GBP": new BigDecimal("3")]
+        testDBHelper.getAccountBalance("11111111", "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance("22222222", "GBP").toBlocking().value() == new BigDecimal("1")
+        testDBHelper.countRows("account_balance").toBlocking().value() == 2
+        testDBHelper.countRows("account_balance_stripe").toBlocking().value() > 0
+    }
 }
@@ -0,0 +1,414 @@
+package moneytransfer.database
+
+import io.vertx.core.json.JsonObject
+import io.vertx.rxjava.core.Vertx
+import io.vertx.rxjava.ext.jdbc.JDBCClient
+import moneytransfer.exceptions.IdempotencyKeyReusedException
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import moneytransfer.exceptions.MoneyOverflowException
+import moneytransfer.metrics.Metrics
+import moneytransfer.models.BatchMode
+import moneytransfer.models.ErrorCode
+import moneytransfer.models.OpeningBalance
+import moneytransfer.models.Transfer
+import moneytransfer.models.TransferStatus
+import rx.Single
+import rx.observers.TestSubscriber
+import spock.lang.Shared
+import spock.lang.Specification
+
+import static moneytransfer.MoneyConstants.MAX_MONEY_VALUE
+
+class AccountBalanceRepositoryShardedImplTest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private ShardRing shardRing = new ShardRing(2, 128)
+
+    @Shared
+    private List<JDBCClient> jdbcClients
+
+    @Shared
+    private List<AccountBalanceRepositoryMySqlImpl> shards
+
+    @Shared
+    private AccountBalanceRepositoryShardedImpl accountBalanceRepositorySharded
+
+    @Shared
+    private ShardedTestDBHelper testDBHelper
+
+    @Shared
+    private String sourceAccount
+
+    @Shared
+    private String sameShardAccount
+
+    @Shared
+    private String otherShardAccount
+
+    def setupSpec() {
+        Database.start(3307)
+        Database.start(3308)
+        vertx = Vertx.vertx()
+        jdbcClients = [3307, 3308].collect { MySqlJdbcClientFactory.createMySqlJdbcClient(vertx, new JsonObject().put("port", it)) }
+        shards = jdbcClients.collect { new AccountBalanceRepositoryMySqlImpl(it, TransferRetryPolicy.noRetries(), new Metrics()) }
+        accountBalanceRepositorySharded = new AccountBalanceRepositoryShardedImpl(shards, shardRing)
+        testDBHelper = new ShardedTestDBHelper(jdbcClients.collect { new TestDBHelper(it) }, shardRing)
+
+        def accountIds = (10000000..10000100).collect { String.valueOf(it) }
+        sourceAccount = accountIds[0]
+        sameShardAccount = accountIds.find { it != sourceAccount && shardRing.shardOf(it) == shardRing.shardOf(sourceAccount) }
+        otherShardAccount = accountIds.find { shardRing.shardOf(it) != shardRing.shardOf(sourceAccount) }
+
+        new AccountRepositoryShardedImpl(jdbcClients.collect { new AccountRepositoryMySqlImpl(it) }, shardRing).createTable().toBlocking().value()
+        accountBalanceRepositorySharded.createTable().toBlocking().value()
+    }
+
+    def cleanupSpec() {
+        testDBHelper.dropTables().toBlocking().value()
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def setup() {
+        [sourceAccount, sameShardAccount, otherShardAccount].each { testDBHelper.insertAccount(it).toBlocking().value() }
+    }
+
+    def cleanup() {
+        testDBHelper.clearTables().toBlocking().value()
+    }
+
+    def "transfers between accounts on the same shard" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, sameShardAccount, "4", "GBP").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(sameShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "transfers between accounts on different shards and leaves no transfer in doubt" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+        shards.every { it.findPreparedTransfers().toBlocking().value().isEmpty() }
+        accountBalanceRepositorySharded.getBalances(otherShardAccount).toBlocking().value()["GBP"] == new BigDecimal("4")
+    }
+
+    def "records each leg of a cross-shard transfer on the shard of its account, including the refund of an overflowing credit" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccountBalance(otherShardAccount, "USD", new BigDecimal(MAX_MONEY_VALUE)).toBlocking().value()
+        testDBHelper.insertAccountBalance(sourceAccount, "USD", new BigDecimal("1")).toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP").toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "1", "USD").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+        def sourceHistory = accountBalanceRepositorySharded.getTransferHistory(sourceAccount, Long.MAX_VALUE, 10).toList().toBlocking().single()
+        def destinationHistory = accountBalanceRepositorySharded.getTransferHistory(otherShardAccount, Long.MAX_VALUE, 10).toList().toBlocking().single()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof MoneyOverflowException
+        sourceHistory.collect { [it.counterpartyAccount, it.currency, it.amount] } == [
+            [otherShardAccount, "USD", new BigDecimal("1")], [otherShardAccount, "USD", new BigDecimal("-1")], [otherShardAccount, "GBP", new BigDecimal("-4")]
+        ]
+        destinationHistory.collect { [it.counterpartyAccount, it.currency, it.amount] } == [[sourceAccount, "GBP", new BigDecimal("4")]]
+    }
+
+    def "a cross-shard transfer with insufficient balance changes nothing" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("1")).toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("1")
+        accountBalanceRepositorySharded.getBalances(otherShardAccount).toBlocking().value().isEmpty()
+    }
+
+    def "a cross-shard transfer that overflows the destination refunds the source" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccountBalance(otherShardAccount, "GBP", new BigDecimal(MAX_MONEY_VALUE)).toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "1", "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof MoneyOverflowException
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("10")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal(MAX_MONEY_VALUE)
+        shards.every { it.findPreparedTransfers().toBlocking().value().isEmpty() }
+    }
+
+    def "recoverInDoubtTransfers completes a cross-shard transfer that was debited but not yet credited" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        shards[shardRing.shardOf(sourceAccount)].reserveTransfer("in-doubt", sourceAccount, otherShardAccount, "4", "GBP", null, null).toBlocking().value()
+
+        when:
+        def recovered = accountBalanceRepositorySharded.recoverInDoubtTransfers(0).toBlocking().value()
+
+        then:
+        recovered == 1
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+        shards.every { it.findPreparedTransfers().toBlocking().value().isEmpty() }
+    }
+
+    def "recoverInDoubtTransfers leaves transfers younger than the minimum age to the request that prepared them" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        shards[shardRing.shardOf(sourceAccount)].reserveTransfer("in-doubt", sourceAccount, otherShardAccount, "4", "GBP", null, null).toBlocking().value()
+
+        when:
+        def recovered = accountBalanceRepositorySharded.recoverInDoubtTransfers(60000).toBlocking().value()
+
+        then:
+        recovered == 0
+        shards[shardRing.shardOf(sourceAccount)].findPreparedTransfers().toBlocking().value().size() == 1
+    }
+
+    def "createTable recovers a transfer without crediting it twice when the credit was applied before the crash" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        shards[shardRing.shardOf(sourceAccount)].reserveTransfer("in-doubt", sourceAccount, otherShardAccount, "4", "GBP", null, null).toBlocking().value()
+        shards[shardRing.shardOf(otherShardAccount)].applyCredit("in-doubt", sourceAccount, otherShardAccount, "4", "GBP").toBlocking().value()
+
+        when:
+        accountBalanceRepositorySharded.createTable().toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+        shards.every { it.findPreparedTransfers().toBlocking().value().isEmpty() }
+    }
+
+    def "a cross-shard transfer repeated with the same idempotency key is applied once" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-1").toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-1").toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "a cross-shard transfer rejects an idempotency key reused for a different transfer" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-2").toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "5", "GBP", "key-2").subscribe(second)
+        second.awaitTerminalEvent()
+
+        then:
+        second.getOnErrorEvents().get(0) instanceof IdempotencyKeyReusedException
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "a cross-shard transfer can reuse an idempotency key once the key and the settled transfer are purged" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        def shardHelpers = jdbcClients.collect { new TestDBHelper(it) }
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-5").toBlocking().value()
+        shardHelpers.each {
+            it.backdateIdempotencyKeys(120).toBlocking().value()
+            it.backdateCrossShardTransfers(120).toBlocking().value()
+        }
+        def purged = accountBalanceRepositorySharded.purgeIdempotencyKeys(60000).toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-5").toBlocking().value()
+
+        then:
+        purged == 1
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("2")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("8")
+    }
+
+    def "a cross-shard transfer rejects an idempotency key whose earlier transfer is still in doubt after the key was purged" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        def transferId = IdempotencyKeys.scopedTransferId(sourceAccount, "key-6")
+        def requestHash = IdempotencyKeys.fingerprint(sourceAccount, otherShardAccount, "4", "GBP")
+        shards[shardRing.shardOf(sourceAccount)].reserveTransfer(transferId, sourceAccount, otherShardAccount, "4", "GBP", "key-6", requestHash).toBlocking().value()
+        jdbcClients.collect { new TestDBHelper(it) }.each { it.backdateIdempotencyKeys(120).toBlocking().value() }
+        accountBalanceRepositorySharded.purgeIdempotencyKeys(60000).toBlocking().value()
+        TestSubscriber testSubscriber = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-6").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof IdempotencyKeyReusedException
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("6")
+    }
+
+    def "a cross-shard transfer with an idempotency key replays an insufficient balance even once it could succeed" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("1")).toBlocking().value()
+        TestSubscriber first = new TestSubscriber()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-3").subscribe(first)
+        first.awaitTerminalEvent()
+        testDBHelper.insertAccountBalance(sameShardAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sameShardAccount, sourceAccount, "10", "GBP").toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP", "key-3").subscribe(second)
+        second.awaitTerminalEvent()
+
+        then:
+        first.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        second.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("11")
+    }
+
+    def "a BEST_EFFORT batch across shards applies every transfer that can be made" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        def transfers = [
+            new Transfer(sourceAccount, otherShardAccount, new BigDecimal("4"), "GBP"),
+            new Transfer(sourceAccount, sameShardAccount, new BigDecimal("20"), "GBP"),
+            new Transfer(sourceAccount, sameShardAccount, new BigDecimal("1"), "GBP")
+        ]
+
+        when:
+        def results = accountBalanceRepositorySharded.transferMoneyBatch(transfers, BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.SUCCESS]
+        results[1].errorCode == ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("5")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+        testDBHelper.getAccountBalance(sameShardAccount, "GBP").toBlocking().value() == new BigDecimal("1")
+    }
+
+    def "a BEST_EFFORT batch across shards fails only the transfer whose credit could not be applied" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        def failingShards = shards.collect()
+        failingShards[shardRing.shardOf(otherShardAccount)] = new AccountBalanceRepositoryMySqlImpl(jdbcClients[shardRing.shardOf(otherShardAccount)],
+            TransferRetryPolicy.noRetries(), new Metrics()) {
+            @Override
+            Single<String> applyCredit(String transferId, String source, String destination, Object amountParam, String currency) {
+                return Single.error(new IllegalStateException())
+            }
+        }
+        def transfers = [
+            new Transfer(sourceAccount, otherShardAccount, new BigDecimal("4"), "GBP"),
+            new Transfer(sourceAccount, sameShardAccount, new BigDecimal("1"), "GBP")
+        ]
+
+        when:
+        def results = new AccountBalanceRepositoryShardedImpl(failingShards, shardRing).transferMoneyBatch(transfers, BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        results*.status == [TransferStatus.FAILED, TransferStatus.SUCCESS]
+        results[0].errorCode == ErrorCode.INTERNAL_SERVER_ERROR
+        testDBHelper.getAccountBalance(sameShardAccount, "GBP").toBlocking().value() == new BigDecimal("1")
+
+        when:
+        accountBalanceRepositorySharded.recoverInDoubtTransfers(0).toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("5")
+        testDBHelper.getAccountBalance(otherShardAccount, "GBP").toBlocking().value() == new BigDecimal("4")
+    }
+
+    def "an ALL_OR_NOTHING batch across shards is rejected without applying any transfer" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        def transfers = [new Transfer(sourceAccount, otherShardAccount, new BigDecimal("4"), "GBP")]
+
+        when:
+        def results = accountBalanceRepositorySharded.transferMoneyBatch(transfers, BatchMode.ALL_OR_NOTHING).toBlocking().value()
+
+        then:
+        results*.errorCode == [ErrorCode.CROSS_SHARD_BATCH]
+        testDBHelper.getAccountBalance(sourceAccount, "GBP").toBlocking().value() == new BigDecimal("10")
+    }
+
+    def "reconciles the supply of every shard after cross-shard transfers" () {
+        given:
+        accountBalanceRepositorySharded.baselineCurrencySupply([GBP: BigDecimal.ZERO]).toBlocking().value()
+        accountBalanceRepositorySharded.importOpeningBalances([
+            new OpeningBalance(sourceAccount, "GBP", new BigDecimal("10")),
+            new OpeningBalance(otherShardAccount, "GBP", new BigDecimal("1"))
+        ]).toBlocking().value()
+        accountBalanceRepositorySharded.transferMoney(sourceAccount, otherShardAccount, "4", "GBP").toBlocking().value()
+
+        when:
+        def scan = accountBalanceRepositorySharded.scanBalances(2, 100).toBlocking().value()
+
+        then:
+        scan.rowsScanned == 2
+        scan.getSupply("GBP") == new BigDecimal("11")
+        scan.getTotal("GBP") == new BigDecimal("11")
+        !scan.isBaselined("GBP")
+    }
+
+    def "counts the amount of a prepared cross-shard transfer in the scanned totals" () {
+        given:
+        accountBalanceRepositorySharded.baselineCurrencySupply([GBP: BigDecimal.ZERO]).toBlocking().value()
+        accountBalanceRepositorySharded.importOpeningBalances([new OpeningBalance(sourceAccount, "GBP", new BigDecimal("10"))]).toBlocking().value()
+        shards[shardRing.shardOf(sourceAccount)].reserveTransfer("in-doubt", sourceAccount, otherShardAccount, "4", "GBP", null, null).toBlocking().value()
+
+        when:
+        def scan = accountBalanceRepositorySharded.scanBalances(2, 100).toBlocking().value()
+
+        then:
+        scan.getSupply("GBP") == new BigDecimal("10")
+        scan.getTotal("GBP") == new BigDecimal("10")
+    }
+
+    def "baselines the supply of a currency once for all shards and adds later imports on any shard to it" () {
+        given:
+        testDBHelper.insertAccountBalance(sourceAccount, "GBP", new BigDecimal("10")).toBlocking().value()
+        testDBHelper.insertAccountBalance(otherShardAccount, "GBP", new BigDecimal("5")).toBlocking().value()
+
+        when:
+        accountBalanceRepositorySharded.baselineCurrencySupply([GBP: new BigDecimal("15")]).toBlocking().value()
+        def baselined = accountBalanceRepositorySharded.scanBalances(2, 100).toBlocking().value()
+        def importedAccount = (10000101..10000200).collect { String.valueOf(it) }.find { shardRing.shardOf(it) == shardRing.shardOf(otherShardAccount) }
+        accountBalanceRepositorySharded.importOpeningBalances([
+            new OpeningBalance(sourceAccount, "USD", new BigDecimal("3")),
+            new OpeningBalance(sameShardAccount, "GBP", new BigDecimal("2")),
+            new OpeningBalance(importedAccount, "GBP", new BigDecimal("1"))
+        ]).toBlocking().value()
+        def scan = accountBalanceRepositorySharded.scanBalances(2, 100).toBlocking().value()
+
+        then:
+        baselined.getSupply("GBP") == new BigDecimal("15")
+        baselined.getTotal("GBP") == new BigDecimal("15")
+        scan.getSupply("GBP") == new BigDecimal("18")
+        scan.getTotal("GBP") == new BigDecimal("18")
+        scan.getSupply("USD") == null
+    }
+}
@@ -0,0 +1,139 @@
+package moneytransfer.database
+
+import io.vertx.rxjava.core.Vertx
+import io.vertx.rxjava.ext.jdbc.JDBCClient
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import moneytransfer.exceptions.InvalidAccountException
+import moneytransfer.exceptions.MoneyOverflowException
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException
+import rx.observers.TestSubscriber
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+import static moneytransfer.MoneyConstants.*
+
+class AccountBalanceRepositoryStoredProcedureImplTest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private AccountBalanceRepositoryStoredProcedureImpl accountBalanceRepositoryStoredProcedure
+
+    @Shared
+    private TestDBHelper testDBHelper
+
+    def setupSpec() {
+        Database.start()
+        vertx = Vertx.vertx()
+        JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx)
+        accountBalanceRepositoryStoredProcedure = new AccountBalanceRepositoryStoredProcedureImpl(jdbcClient)
+        testDBHelper = new TestDBHelper(jdbcClient)
+
+        new AccountRepositoryMySqlImpl(jdbcClient).createTable().toBlocking().value()
+        accountBalanceRepositoryStoredProcedure.createTable().toBlocking().value()
+    }
+
+    def cleanupSpec() {
+        testDBHelper.dropTables().toBlocking().value()
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def cleanup() {
+        testDBHelper.clearTables().toBlocking().value()
+    }
+
+    @Unroll
+    def "sets correct balance when transferring #transferAmount from account with balance #sourceAccountBalance to account with balance of #destinationAccountBalance" () {
+        given:
+        def sourceAccount = "12345678"
+        def destinationAccount = "87654321"
+        def currency = "GBP"
+        testDBHelper.insertAccount(sourceAccount).toBlocking().value()
+        testDBHelper.insertAccountBalance(sourceAccount, currency, new BigDecimal(sourceAccountBalance)).toBlocking().value()
+        testDBHelper.insertAccount(destinationAccount).toBlocking().value()
+        if (destinationAccountBalance != null) {
+            testDBHelper.insertAccountBalance(destinationAccount, currency, new BigDecimal(destinationAccountBalance)).toBlocking().value()
+        }
+
+        when:
+        accountBalanceRepositoryStoredProcedure.transferMoney(sourceAccount, destinationAccount, new BigDecimal(transferAmount), currency).toBlocking().value()
+
+        then:
+        testDBHelper.getAccountBalance(sourceAccount, currency).toBlocking().value() == new BigDecimal(expectedFinalSourceAccountBalance)
+        testDBHelper.getAccountBalance(destinationAccount, currency).toBlocking().value() == new BigDecimal(expectedFinalDestinationAccountBalance)
+        accountBalanceRepositoryStoredProcedure.getTransferHistory(sourceAccount, Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount == [new BigDecimal(transferAmount).negate()]
+        accountBalanceRepositoryStoredProcedure.getTransferHistory(destinationAccount, Long.MAX_VALUE, 10).toList().toBlocking().single()*.amount == [new BigDecimal(transferAmount)]
+        where:
+        sourceAccountBalance                    | destinationAccountBalance   | transferAmount                               | expectedFinalSourceAccountBalance      | expectedFinalDestinationAccountBalance
+        "10.24"                                 | null                        | "10.24"                                      | "0"                                    | "10.24"
+        "10.25"                                 | "5.30"                      | "10.24"                                      | "0.01"                                 | "15.54"
+        "1262621612621643843232378.3430000004"  | "0.0000000001"              | "0.0000000001"                               | "1262621612621643843232378.3430000003" | "0.0000000002"
+        MAX_MONEY_VALUE_MINUS_MIN_NONZERO_VALUE | MIN_NONZERO_MONEY_VALUE     | MAX_MONEY_VALUE_MINUS_MIN_NONZERO_VALUE      | "0"                                    | MAX_MONEY_VALUE
+    }
+
+    @Unroll
+    def "should throw #expectedException.simpleName and not update balance when transferring #transferAmount from account with balance of #sourceAccountBalance to another account with balance of #destinationAccountBalance" () {
+        given:
+        def sourceAccount = "12345678"
+        def destinationAccount = "87654321"
+        def currency = "GBP"
+        testDBHelper.insertAccount(sourceAccount).toBlocking().value()
+        testDBHelper.insertAccountBalance(sourceAccount, currency, new BigDecimal(sourceAccountBalance)).toBlocking().value()
+        testDBHelper.insertAccount(destinationAccount).toBlocking().value()
+        testDBHelper.insertAccountBalance(destinationAccount, currency, new BigDecimal(destinationAccountBalance)).toBlocking().value()
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        accountBalanceRepositoryStoredProcedure.transferMoney(sourceAccount, destinationAccount, new BigDecimal(transferAmount), currency).subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        expectedException.isInstance(testSubscriber.getOnErrorEvents().get(0))
+        testDBHelper.getAccountBalance(sourceAccount, currency).toBlocking().value() == new BigDecimal(sourceAccountBalance)
+        testDBHelper.getAccountBalance(destinationAccount, currency).toBlocking().value() == new BigDecimal(destinationAccountBalance)
+        where:
+        sourceAccountBalance    | destinationAccountBalance  | transferAmount          | expectedException
+        "1.1"                   | "0"                        | "1.45"                  | InsufficientAccountBalanceException
+        "1"                     | "0"                        | "0.00000000001"         | MoneyTooManyDecimalPlacesException
+        MAX_MONEY_VALUE         | MIN_NONZERO_MONEY_VALUE    | MAX_MONEY_VALUE         | MoneyOverflowException
+        MIN_NONZERO_MONEY_VALUE | MAX_MONEY_VALUE            | MIN_NONZERO_MONEY_VALUE | MoneyOverflowException
+    }
+
+    def "should throw InvalidAccountException and not update balance when transferring to an account that does not exist" () {
+        given:
+        def sourceAccount = "12345678"
+        def currency = "GBP"
+        testDBHelper.insertAccount(sourceAccount).toBlocking().value()
+        testDBHelper.insertAccountBalance(sourceAccount, currency, new BigDecimal("5")).toBlocking().value()
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        accountBalanceRepositoryStoredProcedure.transferMoney(sourceAccount, "87654321", new BigDecimal("2"), currency).subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof InvalidAccountException
+        testDBHelper.getAccountBalance(sourceAccount, currency).toBlocking().value() == new BigDecimal("5")
+    }
+
+    def "rejects a transfer with an idempotency key without applying it" () {
+        given:
+        def sourceAccount = "12345678"
+        def destinationAccount = "87654321"
+        def currency = "GBP"
+        testDBHelper.insertAccount(sourceAccount).toBlocking().value()
+        testDBHelper.insertAccountBalance(sourceAccount, currency, new BigDecimal("5")).toBlocking().value()
+        testDBHelper.insertAccount(destinationAccount).toBlocking().value()
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        accountBalanceRepositoryStoredProcedure.transferMoney(sourceAccount, destinationAccount, "2", currency, "key-1").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof IdempotencyKeyNotSupportedException
+        testDBHelper.getAccountBalance(sourceAccount, currency).toBlocking().value() == new BigDecimal("5")
+    }
+}
@@ -57,4 +57,16 @@ class AccountRepositoryMySqlImplTest extends Specification {
         then:
         doesAccountExist
     }
+
+    def "findExistingAccounts returns only the accounts that exist"() {
+        given:
+        testDBHelper.insertAccount("12345678").toBlocking().value()
+        testDBHelper.insertAccount("87654321").toBlocking().value()
+
+        when:
+        def existingAccounts = accountRepositoryMySql.findExistingAccounts(["12345678", "87654321", "22554411"]).toBlocking().value()
+
+        then:
+        existingAccounts == ["12345678", "87654321"] as Set
+    }
 }
@@ -0,0 +1,123 @@
+package moneytransfer.database
+
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class BalanceCacheTest extends Specification {
+
+    long now = 0
+
+    BalanceCache balanceCache = new BalanceCache(true, 2, 1000, { now } as LongSupplier)
+
+    def "get returns balances put while no write was in progress" () {
+        when:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": new BigDecimal("10")])
+
+        then:
+        balanceCache.get("11111111") == ["GBP": new BigDecimal("10")]
+        balanceCache.hits == 1
+    }
+
+    def "putIfUnchanged ignores balances read before a write started" () {
+        given:
+        def version = balanceCache.version("11111111")
+
+        when:
+        balanceCache.beginWrite("11111111")
+        balanceCache.putIfUnchanged("11111111", version, ["GBP": new BigDecimal("10")])
+
+        then:
+        balanceCache.get("11111111") == null
+        balanceCache.misses == 1
+    }
+
+    def "putIfUnchanged ignores balances read before a write completed" () {
+        given:
+        def writeVersion = balanceCache.beginWrite("11111111")
+        def readVersion = balanceCache.version("11111111")
+
+        when:
+        balanceCache.completeWrite("11111111", writeVersion, "GBP", new BigDecimal("5"))
+        balanceCache.putIfUnchanged("11111111", readVersion, ["GBP": new BigDecimal("10")])
+
+        then:
+        balanceCache.get("11111111") == null
+    }
+
+    def "completeWrite updates the cached balance of the written currency" () {
+        given:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": new BigDecimal("10"), "USD": new BigDecimal("1")])
+        def version = balanceCache.beginWrite("11111111")
+
+        when:
+        balanceCache.completeWrite("11111111", version, "GBP", new BigDecimal("7"))
+
+        then:
+        balanceCache.get("11111111") == ["GBP": new BigDecimal("7"), "USD": new BigDecimal("1")]
+    }
+
+    def "completeWrite drops the entry when another write to the account started in the meantime" () {
+        given:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": new BigDecimal("10")])
+        def version = balanceCache.beginWrite("11111111")
+        balanceCache.beginWrite("11111111")
+
+        when:
+        balanceCache.completeWrite("11111111", version, "GBP", new BigDecimal("7"))
+
+        then:
+        balanceCache.get("11111111") == null
+    }
+
+    def "invalidate removes the entry" () {
+        given:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": new BigDecimal("10")])
+
+        when:
+        balanceCache.invalidate("11111111")
+
+        then:
+        balanceCache.get("11111111") == null
+    }
+
+    def "get misses once an entry has expired" () {
+        given:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": new BigDecimal("10")])
+
+        when:
+        now = 1000
+
+        then:
+        balanceCache.get("11111111") == null
+        balanceCache.size() == 0
+    }
+
+    def "evicts the least recently used entry once maxSize is exceeded" () {
+        given:
+        balanceCache.putIfUnchanged("11111111", balanceCache.version("11111111"), ["GBP": BigDecimal.ONE])
+        balanceCache.putIfUnchanged("22222222", balanceCache.version("22222222"), ["GBP": BigDecimal.ONE])
+        balanceCache.get("11111111")
+
+        when:
+        balanceCache.putIfUnchanged("33333333", balanceCache.version("33333333"), ["GBP": BigDecimal.ONE])
+
+        then:
+        balanceCache.size() == 2
+        balanceCache.evictions == 1
+        balanceCache.get("22222222") == null
+        balanceCache.get("11111111") != null
+    }
+
+    def "readFromPrimary never caches balances" () {
+        given:
+        def primaryCache = BalanceCache.readFromPrimary()
+
+        when:
+        primaryCache.putIfUnchanged("11111111", primaryCache.version("11111111"), ["GBP": BigDecimal.ONE])
+
+        then:
+        !primaryCache.enabled
+        primaryCache.get("11111111") == null
+    }
+}
@@ -0,0 +1,128 @@
+package moneytransfer.database
+
+import rx.Single
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class CachingAccountRepositoryTest extends Specification {
+
+    AccountRepository delegate
+
+    long now = 0
+
+    CachingAccountRepository cachingAccountRepository
+
+    def setup() {
+        delegate = Mock(AccountRepository)
+        cachingAccountRepository = new CachingAccountRepository(delegate, 2, 1000, 100, { now } as LongSupplier)
+    }
+
+    def "doesAccountExist only queries the delegate once while a positive entry is fresh" () {
+        when:
+        def first = cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+        now = 999
+        def second = cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+
+        then:
+        1 * delegate.doesAccountExist("12345678") >> Single.just(true)
+        first
+        second
+        cachingAccountRepository.hits == 1
+        cachingAccountRepository.misses == 1
+    }
+
+    def "doesAccountExist queries the delegate again once an entry has expired, using a shorter TTL for negative lookups" () {
+        when:
+        cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+        now = 100
+        def exists = cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+
+        then:
+        1 * delegate.doesAccountExist("12345678") >> Single.just(false)
+        1 * delegate.doesAccountExist("12345678") >> Single.just(true)
+        exists
+    }
+
+    def "invalidating several accounts makes their next lookups go to the delegate" () {
+        given:
+        delegate.findExistingAccounts(["12345678", "87654321"]) >> Single.just([] as Set)
+        cachingAccountRepository.findExistingAccounts(["12345678", "87654321"]).toBlocking().value()
+
+        when:
+        cachingAccountRepository.invalidate(["12345678", "87654321"])
+        def existing = cachingAccountRepository.findExistingAccounts(["12345678", "87654321"]).toBlocking().value()
+
+        then:
+        1 * delegate.findExistingAccounts(["12345678", "87654321"]) >> Single.just(["12345678", "87654321"] as Set)
+        existing == ["12345678", "87654321"] as Set
+    }
+
+    def "invalidate makes the next lookup go to the delegate" () {
+        given:
+        delegate.doesAccountExist("12345678") >> Single.just(false)
+        cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+
+        when:
+        cachingAccountRepository.invalidate("12345678")
+        def exists = cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+
+        then:
+        1 * delegate.doesAccountExist("12345678") >> Single.just(true)
+        exists
+    }
+
+    def "evicts the least recently used entry once maxSize is exceeded" () {
+        given:
+        delegate.doesAccountExist(_) >> Single.just(true)
+
+        when:
+        cachingAccountRepository.doesAccountExist("11111111").toBlocking().value()
+        cachingAccountRepository.doesAccountExist("22222222").toBlocking().value()
+        cachingAccountRepository.doesAccountExist("11111111").toBlocking().value()
+        cachingAccountRepository.doesAccountExist("33333333").toBlocking().value()
+
+        then:
+        cachingAccountRepository.size() == 2
+        cachingAccountRepository.evictions == 1
+        cachingAccountRepository.hits == 1
+    }
+
+    def "findExistingAccounts only asks the delegate for accounts that are not cached" () {
+        given:
+        delegate.doesAccountExist("11111111") >> Single.just(true)
+        cachingAccountRepository.doesAccountExist("11111111").toBlocking().value()
+
+        when:
+        def existingAccounts = cachingAccountRepository.findExistingAccounts(["11111111", "22222222"]).toBlocking().value()
+
+        then:
+        1 * delegate.findExistingAccounts(["22222222"]) >> Single.just(["22222222"] as Set)
+        existingAccounts == ["11111111", "22222222"] as Set
+    }
+
+    def "does not cache a lookup that was in flight when its account was invalidated" () {
+        given:
+        def inFlight = PublishSubject.<Boolean>create()
+        def inFlightBatch = PublishSubject.<Set<String>>create()
+        delegate.doesAccountExist("12345678") >>> [inFlight.toSingle(), Single.just(true)]
+        delegate.findExistingAccounts(["87654321"]) >>> [inFlightBatch.toSingle(), Single.just(["87654321"] as Set)]
+        def stale = cachingAccountRepository.doesAccountExist("12345678").toBlocking().toFuture()
+        def staleBatch = cachingAccountRepository.findExistingAccounts(["87654321"]).toBlocking().toFuture()
+
+        when:
+        cachingAccountRepository.invalidate(["12345678", "87654321"])
+        inFlight.onNext(false)
+        inFlight.onCompleted()
+        inFlightBatch.onNext([] as Set)
+        inFlightBatch.onCompleted()
+
+        then:
+        !stale.get()
+        staleBatch.get().isEmpty()
+        cachingAccountRepository.size() == 0
+        cachingAccountRepository.doesAccountExist("12345678").toBlocking().value()
+        cachingAccountRepository.findExistingAccounts(["87654321"]).toBlocking().value() == ["87654321"] as Set
+    }
+}
@@ -0,0 +1,32 @@
+package moneytransfer.database
+
+import spock.lang.Specification
+
+class KeyRangesTest extends Specification {
+
+    def "splits the range between two keys into increasing boundaries that keep their common prefix" () {
+        when:
+        def boundaries = KeyRanges.split("ACC-0001", "ACC-9999", 4)
+
+        then:
+        boundaries.size() == 3
+        boundaries.every { it.startsWith("ACC-") && it > "ACC-0001" && it < "ACC-9999" }
+        boundaries == boundaries.toSorted()
+        boundaries.toUnique().size() == 3
+    }
+
+    def "interpolates between keys of different lengths" () {
+        when:
+        def boundaries = KeyRanges.split("a", "zzzz", 2)
+
+        then:
+        boundaries.size() == 1
+        boundaries[0] > "a"
+        boundaries[0] < "zzzz"
+    }
+
+    def "returns a single boundary when the first and last keys are equal" () {
+        expect:
+        KeyRanges.split("12345678", "12345678", 4) == ["12345678"]
+    }
+}
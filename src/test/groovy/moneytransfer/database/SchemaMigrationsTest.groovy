@@ -0,0 +1,116 @@
+package moneytransfer.database
+
+import io.vertx.rxjava.core.Vertx
+import io.vertx.rxjava.ext.jdbc.JDBCClient
+import io.vertx.rxjava.ext.sql.SQLConnection
+import rx.Single
+import rx.functions.Func1
+import spock.lang.Shared
+import spock.lang.Specification
+
+class SchemaMigrationsTest extends Specification {
+
+    @Shared
+    private Vertx vertx
+
+    @Shared
+    private JDBCClient jdbcClient
+
+    List<Integer> applied = []
+
+    def setupSpec() {
+        Database.start()
+        vertx = Vertx.vertx()
+        jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx)
+    }
+
+    def cleanupSpec() {
+        execute("DROP TABLE IF EXISTS schema_version")
+        execute("DROP TABLE IF EXISTS migration_test")
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def cleanup() {
+        execute("DROP TABLE IF EXISTS schema_version")
+        execute("DROP TABLE IF EXISTS migration_test")
+    }
+
+    def "applies each migration once and only the new ones on a later start" () {
+        when:
+        SchemaMigrations.migrate(jdbcClient, "test", migrations(2)).toBlocking().value()
+        SchemaMigrations.migrate(jdbcClient, "test", migrations(2)).toBlocking().value()
+
+        then:
+        applied == [1, 2]
+        version("test") == 2
+
+        when:
+        SchemaMigrations.migrate(jdbcClient, "test", migrations(3)).toBlocking().value()
+
+        then:
+        applied == [1, 2, 3]
+        version("test") == 3
+        columns() == ["c1", "c2", "c3"]
+    }
+
+    def "versions each component separately" () {
+        when:
+        SchemaMigrations.migrate(jdbcClient, "test", migrations(1)).toBlocking().value()
+        SchemaMigrations.migrate(jdbcClient, "other", [{ connection -> Single.just(null) } as Func1]).toBlocking().value()
+
+        then:
+        version("test") == 1
+        version("other") == 1
+    }
+
+    def "does not record a migration that failed and retries it on the next start" () {
+        given:
+        def failing = migrations(1) + [{ connection -> Single.error(new IllegalStateException()) } as Func1]
+
+        when:
+        SchemaMigrations.migrate(jdbcClient, "test", failing).toBlocking().value()
+
+        then:
+        thrown(IllegalStateException)
+        version("test") == 1
+
+        when:
+        SchemaMigrations.migrate(jdbcClient, "test", migrations(2)).toBlocking().value()
+
+        then:
+        version("test") == 2
+        applied == [1, 2]
+    }
+
+    def "runs concurrent migrations of the same component one at a time" () {
+        when:
+        Single.zip(SchemaMigrations.migrate(jdbcClient, "test", migrations(3)), SchemaMigrations.migrate(jdbcClient, "test", migrations(3)),
+            { a, b -> null }).toBlocking().value()
+
+        then:
+        applied == [1, 2, 3]
+        version("test") == 3
+    }
+
+    private List<Func1<SQLConnection, Single<Void>>> migrations(int count) {
+        return (1..count).collect { int version ->
+            { SQLConnection connection ->
+                def statement = version == 1 ? "CREATE TABLE migration_test ( c1 INT )" : "ALTER TABLE migration_test ADD COLUMN c" + version + " INT"
+                connection.rxExecute(statement).doOnSuccess { applied << version }
+            } as Func1<SQLConnection, Single<Void>>
+        }
+    }
+
+    private int version(String component) {
+        return jdbcClient.rxQueryWithParams("SELECT version FROM schema_version WHERE component = ?", new io.vertx.core.json.JsonArray().add(component))
+            .toBlocking().value().results.get(0).getInteger(0)
+    }
+
+    private List<String> columns() {
+        return jdbcClient.rxQuery("SHOW COLUMNS FROM migration_test").toBlocking().value().results.collect { it.getString(0) }
+    }
+
+    private void execute(String statement) {
+        jdbcClient.rxGetConnection().flatMap { connection -> connection.rxExecute(statement).doAfterTerminate { connection.close() } }.toBlocking().value()
+    }
+}
@@ -0,0 +1,50 @@
+package moneytransfer.database
+
+import spock.lang.Specification
+
+class ShardRingTest extends Specification {
+
+    def accountIds = (1..20000).collect { String.format("%08d", it) }
+
+    def "routes an account to the same shard on every ring with the same shards" () {
+        given:
+        def shardRing = new ShardRing(4, 128)
+        def otherShardRing = new ShardRing(4, 128)
+
+        expect:
+        accountIds.every { shardRing.shardOf(it) == otherShardRing.shardOf(it) }
+    }
+
+    def "spreads accounts evenly over the shards" () {
+        given:
+        def shardRing = new ShardRing(4, 128)
+
+        when:
+        def counts = accountIds.countBy { shardRing.shardOf(it) }
+
+        then:
+        counts.keySet() == [0, 1, 2, 3] as Set
+        counts.values().every { it > accountIds.size() * 0.18 && it < accountIds.size() * 0.32 }
+    }
+
+    def "only moves accounts to the new shard when a shard is added" () {
+        given:
+        def fourShards = new ShardRing(4, 128)
+        def fiveShards = new ShardRing(5, 128)
+
+        when:
+        def moved = accountIds.findAll { fourShards.shardOf(it) != fiveShards.shardOf(it) }
+
+        then:
+        moved.every { fiveShards.shardOf(it) == 4 }
+        moved.size() < accountIds.size() * 0.3
+    }
+
+    def "rejects a ring without shards" () {
+        when:
+        new ShardRing(0, 128)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,69 @@
+package moneytransfer.database
+
+import rx.Single
+import rx.functions.Func0
+import rx.observers.TestSubscriber
+import spock.lang.Specification
+
+import java.sql.SQLException
+import java.sql.SQLTransactionRollbackException
+
+class TransferRetryPolicyTest extends Specification {
+
+    TransferRetryPolicy transferRetryPolicy = new TransferRetryPolicy(null, 3, 1, 2)
+
+    def "retries a transaction that failed with a deadlock until it succeeds" () {
+        given:
+        int attempts = 0
+        Func0<Single<String>> transaction = {
+            attempts++
+            attempts < 3 ? Single.error(new SQLTransactionRollbackException("Deadlock found", "40001", 1213)) : Single.just("done")
+        }
+
+        when:
+        def result = transferRetryPolicy.execute(transaction).toBlocking().value()
+
+        then:
+        result == "done"
+        attempts == 3
+        transferRetryPolicy.retries == 2
+    }
+
+    def "gives up after maxRetries retries" () {
+        given:
+        int attempts = 0
+        Func0<Single<String>> transaction = {
+            attempts++
+            Single.error(new SQLException("Lock wait timeout exceeded", "HY000", 1205))
+        }
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        transferRetryPolicy.execute(transaction).subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().get(0) instanceof SQLException
+        attempts == 4
+        transferRetryPolicy.retries == 3
+    }
+
+    def "does not retry errors that are not caused by lock contention" () {
+        given:
+        int attempts = 0
+        Func0<Single<String>> transaction = {
+            attempts++
+            Single.error(new RuntimeException(new SQLException("Data truncation", "22001", 1264)))
+        }
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        transferRetryPolicy.execute(transaction).subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        testSubscriber.getOnErrorEvents().size() == 1
+        attempts == 1
+        transferRetryPolicy.retries == 0
+    }
+}
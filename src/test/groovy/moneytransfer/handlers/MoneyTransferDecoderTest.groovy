@@ -0,0 +1,58 @@
+package moneytransfer.handlers
+
+import io.netty.buffer.Unpooled
+import io.vertx.core.json.DecodeException
+import io.vertx.rxjava.core.buffer.Buffer
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.StandardCharsets
+
+class MoneyTransferDecoderTest extends Specification {
+
+    def "decodes every field of a transfer from the body bytes" () {
+        when:
+        def moneyTransfer = MoneyTransferDecoder.decode(Buffer.buffer('{"sourceAccount": "12345678", "destinationAccount": "87654321", "amount": "4.55", "currency": "GBP"}'))
+
+        then:
+        moneyTransfer.sourceAccount == "12345678"
+        moneyTransfer.destinationAccount == "87654321"
+        moneyTransfer.amount == "4.55"
+        moneyTransfer.currency == "GBP"
+    }
+
+    def "decodes a body that is a slice of a larger buffer" () {
+        given:
+        def bytes = 'xx{"currency": "GBP", "amount": 10, "destinationAccount": "b", "sourceAccount": "a"}yy'.getBytes(StandardCharsets.UTF_8)
+        def body = Buffer.newInstance(io.vertx.core.buffer.Buffer.buffer(Unpooled.wrappedBuffer(bytes, 2, bytes.length - 4)))
+
+        when:
+        def moneyTransfer = MoneyTransferDecoder.decode(body)
+
+        then:
+        moneyTransfer.sourceAccount == "a"
+        moneyTransfer.amount == "10"
+    }
+
+    @Unroll
+    def "rejects #description" () {
+        when:
+        MoneyTransferDecoder.decode(body == null ? null : Buffer.buffer(body))
+
+        then:
+        thrown(expectedException)
+
+        where:
+        description                  | body                                                                                                         | expectedException
+        "a missing body"             | null                                                                                                         | DecodeException
+        "malformed json"             | '{"sourceAccount": "a", '                                                                                    | DecodeException
+        "a missing field"            | '{"sourceAccount": "a", "destinationAccount": "b", "amount": "1"}'                                           | DecodeException
+        "a null field"               | '{"sourceAccount": null, "destinationAccount": "b", "amount": "1", "currency": "GBP"}'                      | DecodeException
+        "an unknown field"           | '{"sourceAccount": "a", "destinationAccount": "b", "amount": "1", "currency": "GBP", "memo": "x"}'          | DecodeException
+        "an object as a field"       | '{"sourceAccount": {}, "destinationAccount": "b", "amount": "1", "currency": "GBP"}'                        | DecodeException
+        "trailing content"           | '{"sourceAccount": "a", "destinationAccount": "b", "amount": "1", "currency": "GBP"} {}'                    | DecodeException
+        "an array"                   | '[]'                                                                                                         | DecodeException
+        "a malformed amount"         | '{"sourceAccount": "a", "destinationAccount": "b", "amount": "1.2.3", "currency": "GBP"}'                   | NumberFormatException
+        "a boolean amount"           | '{"sourceAccount": "a", "destinationAccount": "b", "amount": true, "currency": "GBP"}'                      | DecodeException
+    }
+}
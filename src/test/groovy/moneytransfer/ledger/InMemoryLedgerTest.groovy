@@ -0,0 +1,187 @@
+package moneytransfer.ledger
+
+import io.vertx.rxjava.core.Vertx
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import moneytransfer.exceptions.InvalidAccountException
+import moneytransfer.models.BatchMode
+import moneytransfer.models.Transfer
+import moneytransfer.models.TransferStatus
+import rx.observers.TestSubscriber
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class InMemoryLedgerTest extends Specification {
+
+    private static final long SEGMENT_SIZE = 1024
+
+    @Shared
+    Vertx vertx = Vertx.vertx()
+
+    Path directory
+
+    InMemoryLedger ledger
+
+    def setup() {
+        directory = Files.createTempDirectory("ledger")
+        ledger = open()
+    }
+
+    def cleanup() {
+        ledger.close()
+        directory.toFile().deleteDir()
+    }
+
+    def cleanupSpec() {
+        vertx.rxClose().toBlocking().value()
+    }
+
+    def "transfers are recovered from the write-ahead log after reopening" () {
+        given:
+        createAccount("12345678", "GBP", "10.24")
+        createAccount("87654321", "GBP", "5.30")
+
+        when:
+        ledger.transfer("12345678", "87654321", new BigDecimal("10.20"), "GBP").toBlocking().value()
+        reopen()
+
+        then:
+        ledger.getBalance("12345678", "GBP") == new BigDecimal("0.04")
+        ledger.getBalance("87654321", "GBP") == new BigDecimal("15.50")
+    }
+
+    def "transfer fails without changing balances when the source balance is insufficient or an account does not exist" () {
+        given:
+        createAccount("12345678", "GBP", "10.24")
+        createAccount("87654321", "GBP", "0")
+
+        when:
+        TestSubscriber testSubscriber = new TestSubscriber()
+        ledger.transfer(sourceAccount, "87654321", new BigDecimal("10.25"), "GBP").subscribe(testSubscriber)
+        testSubscriber.awaitTerminalEvent()
+
+        then:
+        expectedException.isInstance(testSubscriber.getOnErrorEvents().get(0))
+        ledger.getBalance("12345678", "GBP") == new BigDecimal("10.24")
+        ledger.getBalance("87654321", "GBP") == BigDecimal.ZERO
+
+        where:
+        sourceAccount | expectedException
+        "12345678"    | InsufficientAccountBalanceException
+        "99999999"    | InvalidAccountException
+    }
+
+    def "best effort batch applies the transfers that can be made and all or nothing batch applies none" () {
+        given:
+        createAccount("12345678", "GBP", "10")
+        createAccount("87654321", "GBP", "0")
+        def transfers = [
+            new Transfer("12345678", "87654321", new BigDecimal("6"), "GBP"),
+            new Transfer("12345678", "87654321", new BigDecimal("6"), "GBP"),
+            new Transfer("12345678", "87654321", new BigDecimal("4"), "GBP")
+        ]
+
+        when:
+        def results = ledger.transferBatch(transfers, batchMode).toBlocking().value()
+        reopen()
+
+        then:
+        results*.status == expectedStatuses
+        ledger.getBalance("12345678", "GBP") == new BigDecimal(expectedSourceBalance)
+        ledger.getBalance("87654321", "GBP") == new BigDecimal(expectedDestinationBalance)
+
+        where:
+        batchMode                | expectedStatuses                                                                  | expectedSourceBalance | expectedDestinationBalance
+        BatchMode.BEST_EFFORT    | [TransferStatus.SUCCESS, TransferStatus.FAILED, TransferStatus.SUCCESS]           | "0"                   | "10"
+        BatchMode.ALL_OR_NOTHING | [TransferStatus.ROLLED_BACK, TransferStatus.FAILED, TransferStatus.ROLLED_BACK]   | "10"                  | "0"
+    }
+
+    def "checkpoint writes a snapshot, removes covered segments and recovery replays only later records" () {
+        given:
+        createAccount("12345678", "GBP", "1000")
+        createAccount("87654321", "GBP", "0")
+        100.times {
+            ledger.transfer("12345678", "87654321", BigDecimal.ONE, "GBP").toBlocking().value()
+        }
+        def segmentsBeforeCheckpoint = segmentCount()
+
+        when:
+        ledger.checkpoint()
+        def segmentsAfterCheckpoint = segmentCount()
+        ledger.transfer("12345678", "87654321", BigDecimal.ONE, "GBP").toBlocking().value()
+        reopen()
+
+        then:
+        segmentsBeforeCheckpoint > 1
+        segmentsAfterCheckpoint == 1
+        ledger.getBalance("12345678", "GBP") == new BigDecimal("899")
+        ledger.getBalance("87654321", "GBP") == new BigDecimal("101")
+    }
+
+    def "records written to pre-allocated segments are recovered and the spare segment is removed on close" () {
+        given:
+        createAccount("12345678", "GBP", "1000")
+        createAccount("87654321", "GBP", "0")
+
+        when:
+        300.times {
+            ledger.transfer("12345678", "87654321", BigDecimal.ONE, "GBP").toBlocking().value()
+        }
+        reopen()
+        ledger.close()
+
+        then:
+        segmentCount() > 2
+        !Files.exists(directory.resolve("spare-segment"))
+
+        when:
+        ledger = open()
+
+        then:
+        ledger.getBalance("12345678", "GBP") == new BigDecimal("700")
+        ledger.getBalance("87654321", "GBP") == new BigDecimal("300")
+    }
+
+    def "recovery stops at a torn record at the tail of the log" () {
+        given:
+        createAccount("12345678", "GBP", "10")
+        createAccount("87654321", "GBP", "0")
+        ledger.transfer("12345678", "87654321", new BigDecimal("3"), "GBP").toBlocking().value()
+        ledger.transfer("12345678", "87654321", new BigDecimal("4"), "GBP").toBlocking().value()
+        ledger.close()
+
+        when:
+        def segment = Files.list(directory).find { it.fileName.toString().startsWith("wal-") } as Path
+        def bytes = Files.readAllBytes(segment)
+        def lastWrittenByte = bytes.findLastIndexOf { it != 0 }
+        bytes[lastWrittenByte] = (byte) (bytes[lastWrittenByte] ^ 0xFF)
+        Files.write(segment, bytes)
+        ledger = open()
+        ledger.transfer("12345678", "87654321", new BigDecimal("1"), "GBP").toBlocking().value()
+        reopen()
+
+        then:
+        ledger.getBalance("12345678", "GBP") == new BigDecimal("6")
+        ledger.getBalance("87654321", "GBP") == new BigDecimal("4")
+    }
+
+    private InMemoryLedger open() {
+        return InMemoryLedger.open(vertx, directory, 4, SEGMENT_SIZE, true, Integer.MAX_VALUE)
+    }
+
+    private void reopen() {
+        ledger.close()
+        ledger = open()
+    }
+
+    private void createAccount(String accountId, String currency, String balance) {
+        ledger.createAccount(accountId).toBlocking().value()
+        ledger.deposit(accountId, currency, new BigDecimal(balance)).toBlocking().value()
+    }
+
+    private int segmentCount() {
+        return Files.list(directory).findAll { it.fileName.toString().startsWith("wal-") }.size()
+    }
+}
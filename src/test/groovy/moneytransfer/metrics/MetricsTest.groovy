@@ -0,0 +1,68 @@
+package moneytransfer.metrics
+
+import moneytransfer.models.ErrorCode
+import rx.Single
+import rx.observers.TestSubscriber
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class MetricsTest extends Specification {
+
+    Metrics metrics = new Metrics()
+
+    def "time records a stage duration whether the single succeeds or fails" () {
+        when:
+        metrics.time(TransferStage.DEBIT, Single.just(1)).toBlocking().value()
+        metrics.time(TransferStage.DEBIT, Single.error(new RuntimeException())).subscribe(new TestSubscriber())
+
+        then:
+        metrics.scrape().contains('transfer_stage_duration_seconds_count{stage="debit",} 2.0')
+        metrics.scrape().contains('transfer_stage_duration_seconds_count{stage="credit",} 0.0')
+    }
+
+    def "time does not start the clock until the single is subscribed to" () {
+        given:
+        def timed = metrics.time(TransferStage.COMMIT, Single.just(1))
+
+        when:
+        sleep(50)
+        timed.toBlocking().value()
+
+        then:
+        metrics.scrape().contains('transfer_stage_duration_seconds_bucket{stage="commit",le="0.025",} 1.0')
+    }
+
+    def "recordError counts errors per error code" () {
+        when:
+        metrics.recordError(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE)
+        metrics.recordError(ErrorCode.INSUFFICIENT_ACCOUNT_BALANCE)
+
+        then:
+        metrics.scrape().contains('transfer_errors_total{error_code="INSUFFICIENT_ACCOUNT_BALANCE",} 2.0')
+        metrics.scrape().contains('transfer_errors_total{error_code="MONEY_OVERFLOW",} 0.0')
+    }
+
+    def "requestCounter counts requests per server instance" () {
+        when:
+        metrics.requestCounter("0").inc()
+        metrics.requestCounter("1").inc()
+        metrics.requestCounter("1").inc()
+
+        then:
+        metrics.scrape().contains('http_requests_total{server_instance="0",} 1.0')
+        metrics.scrape().contains('http_requests_total{server_instance="1",} 2.0')
+    }
+
+    def "registerCounter exports the current value of a counter kept elsewhere" () {
+        given:
+        long retries = 0
+        metrics.registerCounter("transfer_retries_total", "Retries", { retries } as LongSupplier)
+
+        when:
+        retries = 3
+
+        then:
+        metrics.scrape().contains('transfer_retries_total 3.0')
+    }
+}
@@ -0,0 +1,75 @@
+package moneytransfer.money
+
+import moneytransfer.exceptions.MoneyOverflowException
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FixedPointMoneyTest extends Specification {
+
+    @Unroll
+    def "parses #amount with scale #scale to #expectedUnits" () {
+        expect:
+        FixedPointMoney.parse(amount, scale) == expectedUnits
+
+        where:
+        amount                  | scale | expectedUnits
+        "10.24"                 | 2     | 1024
+        "10.2"                  | 2     | 1020
+        "10"                    | 2     | 1000
+        ".5"                    | 2     | 50
+        "5."                    | 2     | 500
+        "-1.25"                 | 2     | -125
+        "+1.25"                 | 2     | 125
+        "1.5E2"                 | 2     | 15000
+        "125E-2"                | 2     | 125
+        "0E99"                  | 2     | 0
+        "92233720368547758.07"  | 2     | Long.MAX_VALUE
+    }
+
+    @Unroll
+    def "parse of #amount with scale #scale throws #expectedException.simpleName" () {
+        when:
+        FixedPointMoney.parse(amount, scale)
+
+        then:
+        thrown(expectedException)
+
+        where:
+        amount                  | scale | expectedException
+        "0.001"                 | 2     | MoneyTooManyDecimalPlacesException
+        "1.50"                  | 1     | MoneyTooManyDecimalPlacesException
+        "1E-3"                  | 2     | MoneyTooManyDecimalPlacesException
+        "92233720368547758.08"  | 2     | MoneyOverflowException
+        "1E17"                  | 2     | MoneyOverflowException
+        "99999999999999999999"  | 0     | MoneyOverflowException
+        "notanumber"            | 2     | NumberFormatException
+        ""                      | 2     | NumberFormatException
+        "1.2.3"                 | 2     | NumberFormatException
+        "1E"                    | 2     | NumberFormatException
+        "-"                     | 2     | NumberFormatException
+    }
+
+    @Unroll
+    def "isWellFormed agrees with BigDecimal for #amount" () {
+        given:
+        boolean parsesAsBigDecimal
+        try {
+            new BigDecimal(amount)
+            parsesAsBigDecimal = true
+        } catch (NumberFormatException ex) {
+            parsesAsBigDecimal = false
+        }
+
+        expect:
+        FixedPointMoney.isWellFormed(amount) == parsesAsBigDecimal
+
+        where:
+        amount << ["1", "-1.5", "+.5", "5.", ".", "1e5", "1E+5", "1E-5", "1E", "E5", "1.2.3", " 1", "0x10", "--1", ""]
+    }
+
+    def "toUnits converts a BigDecimal to minor units" () {
+        expect:
+        FixedPointMoney.toUnits(new BigDecimal("10.2"), 2) == 1020
+    }
+}
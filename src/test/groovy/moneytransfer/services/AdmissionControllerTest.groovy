@@ -0,0 +1,257 @@
+package moneytransfer.services
+
+import io.vertx.core.Vertx
+import moneytransfer.exceptions.IdempotencyKeyNotSupportedException
+import moneytransfer.exceptions.IdempotencyKeyReusedException
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import moneytransfer.exceptions.InvalidAccountException
+import moneytransfer.exceptions.MoneyOverflowException
+import moneytransfer.exceptions.MoneyTooManyDecimalPlacesException
+import moneytransfer.exceptions.OverloadedException
+import moneytransfer.exceptions.TransferHistoryNotRecordedException
+import moneytransfer.metrics.Metrics
+import rx.Single
+import rx.observers.TestSubscriber
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.function.LongSupplier
+
+class AdmissionControllerTest extends Specification {
+
+    long now = 0
+
+    Metrics metrics = new Metrics()
+
+    List<String> started = []
+
+    AdmissionController admissionController = create(2, 1, 10)
+
+    def "admits operations up to the limit and starts a queued one when another completes" () {
+        given:
+        def first = PublishSubject.<Void>create()
+        def queued = new TestSubscriber()
+
+        when:
+        admit("a", first)
+        admit("b", PublishSubject.create())
+        admit("c", PublishSubject.create(), queued)
+
+        then:
+        started == ["a", "b"]
+        admissionController.inFlight == 2
+        admissionController.queued == 1
+
+        when:
+        complete(first)
+
+        then:
+        started == ["a", "b", "c"]
+        admissionController.queued == 0
+        queued.onErrorEvents.isEmpty()
+    }
+
+    def "rejects an operation once its account's queue is full while other accounts can still queue" () {
+        given:
+        5.times { admit("a", PublishSubject.create()) }
+        def rejected = new TestSubscriber()
+        def otherAccount = new TestSubscriber()
+
+        when:
+        admit("a", PublishSubject.create(), rejected)
+        admit("b", PublishSubject.create(), otherAccount)
+
+        then:
+        rejected.onErrorEvents.get(0) instanceof OverloadedException
+        otherAccount.onErrorEvents.isEmpty()
+        admissionController.queued == 4
+        admissionController.rejections == 1
+        metrics.scrape().contains('admission_rejected_total{reason="account_queue_full",} 1.0')
+    }
+
+    def "rejects an operation once the total queue is full" () {
+        given:
+        admit("a", PublishSubject.create())
+        admit("b", PublishSubject.create())
+        ["c", "d", "e", "f"].each { admit(it, PublishSubject.create()) }
+        def rejected = new TestSubscriber()
+
+        when:
+        admit("g", PublishSubject.create(), rejected)
+
+        then:
+        rejected.onErrorEvents.get(0) instanceof OverloadedException
+        metrics.scrape().contains('admission_rejected_total{reason="queue_full",} 1.0')
+    }
+
+    def "takes queued operations from each account in turn" () {
+        given:
+        def running = [PublishSubject.<Void>create(), PublishSubject.<Void>create()]
+        admit("busy", running[0])
+        admit("busy", running[1])
+        def busyNext = PublishSubject.<Void>create()
+        admit("busy", busyNext)
+        admit("busy", PublishSubject.create())
+        admit("quiet", PublishSubject.create())
+
+        when:
+        complete(running[0])
+        complete(busyNext)
+
+        then:
+        started == ["busy", "busy", "busy", "quiet"]
+    }
+
+    def "rejects a queued operation that waited longer than the maximum queue wait" () {
+        given:
+        def running = PublishSubject.<Void>create()
+        admit("a", running)
+        admit("b", PublishSubject.create())
+        def expired = new TestSubscriber()
+        admit("c", PublishSubject.create(), expired)
+
+        when:
+        now += TimeUnit.MILLISECONDS.toNanos(50)
+        complete(running)
+
+        then:
+        expired.onErrorEvents.get(0) instanceof OverloadedException
+        started == ["a", "b"]
+        metrics.scrape().contains('admission_rejected_total{reason="queue_timeout",} 1.0')
+    }
+
+    def "rejects a queued operation once the maximum queue wait passes and frees its place in the queue" () {
+        given:
+        def vertx = Vertx.vertx()
+        admissionController = new AdmissionController(vertx, true, 1, 1, 1, 100, 0.9, 1, 4, 200, metrics, { now } as LongSupplier)
+        admit("a", PublishSubject.create())
+        def expired = new TestSubscriber()
+        def requeued = new TestSubscriber()
+
+        when:
+        admit("b", PublishSubject.create(), expired)
+        expired.awaitTerminalEvent(5, TimeUnit.SECONDS)
+        admit("b", PublishSubject.create(), requeued)
+
+        then:
+        expired.onErrorEvents.get(0) instanceof OverloadedException
+        requeued.onErrorEvents.isEmpty()
+        admissionController.queued == 1
+        started == ["a"]
+
+        cleanup:
+        vertx.close()
+    }
+
+    def "cuts the limit when an operation is slower than the target latency or fails unexpectedly" () {
+        given:
+        admissionController = create(10, 4, 20)
+        def slow = PublishSubject.<Void>create()
+        def failing = PublishSubject.<Void>create()
+        admit("a", slow)
+        admit("b", failing)
+
+        when:
+        now += TimeUnit.MILLISECONDS.toNanos(150)
+        complete(slow)
+
+        then:
+        admissionController.limit == 9
+
+        when:
+        failing.onError(new IllegalStateException())
+
+        then:
+        admissionController.limit == 8
+    }
+
+    def "never cuts the limit below the minimum" () {
+        given:
+        admissionController = create(5, 4, 20)
+
+        when:
+        5.times {
+            admissionController.admit("a", { now += TimeUnit.MILLISECONDS.toNanos(150); Single.just(null) }).toBlocking().value()
+        }
+
+        then:
+        admissionController.limit == 4
+    }
+
+    def "raises the limit by one for each limit's worth of fast operations while the limit is in use, up to the maximum" () {
+        given:
+        admissionController = create(4, 1, 5)
+
+        when:
+        40.times {
+            def running = (1..4).collect { PublishSubject.<Void>create() }
+            running.each { admit("a", it) }
+            running.each { complete(it) }
+        }
+
+        then:
+        admissionController.limit == 5
+        admissionController.inFlight == 0
+    }
+
+    def "does not count a rejected transfer as a failure" () {
+        given:
+        admissionController = create(10, 4, 20)
+
+        when:
+        admissionController.admit("a", { Single.error(new InsufficientAccountBalanceException()) }).subscribe(new TestSubscriber())
+
+        then:
+        admissionController.limit == 10
+    }
+
+    def "does not cut the limit when an operation fails because of its request" () {
+        given:
+        admissionController = create(10, 4, 20)
+        def failing = PublishSubject.<Void>create()
+        admit("a", failing)
+
+        when:
+        failing.onError(error)
+
+        then:
+        admissionController.limit == 10
+        admissionController.inFlight == 0
+
+        where:
+        error << [
+            new InvalidAccountException(),
+            new MoneyOverflowException(),
+            new MoneyTooManyDecimalPlacesException(),
+            new NumberFormatException(),
+            new IdempotencyKeyReusedException(),
+            new IdempotencyKeyNotSupportedException(),
+            new TransferHistoryNotRecordedException()
+        ]
+    }
+
+    def "an unlimited controller runs every operation immediately" () {
+        given:
+        admissionController = AdmissionController.unlimited()
+
+        when:
+        100.times { admit("a", PublishSubject.create()) }
+
+        then:
+        started.size() == 100
+    }
+
+    private AdmissionController create(int initialLimit, int minLimit, int maxLimit) {
+        return new AdmissionController(null, true, initialLimit, minLimit, maxLimit, 100, 0.9, 3, 4, 10, metrics, { now } as LongSupplier)
+    }
+
+    private void admit(String accountId, PublishSubject<Void> result, TestSubscriber subscriber = new TestSubscriber()) {
+        admissionController.admit(accountId, { started << accountId; result.toSingle() }).subscribe(subscriber)
+    }
+
+    private static void complete(PublishSubject<Void> result) {
+        result.onNext(null)
+        result.onCompleted()
+    }
+}
@@ -0,0 +1,113 @@
+package moneytransfer.services
+
+import moneytransfer.exceptions.IdempotencyKeyReusedException
+import moneytransfer.exceptions.InsufficientAccountBalanceException
+import rx.Single
+import rx.observers.TestSubscriber
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+import java.util.function.LongSupplier
+
+class IdempotencyCacheTest extends Specification {
+
+    long now = 0
+
+    int executions = 0
+
+    IdempotencyCache idempotencyCache = new IdempotencyCache(2, 1000, { now } as LongSupplier)
+
+    def "execute replays a successful outcome without running the operation again" () {
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+
+        then:
+        executions == 1
+        idempotencyCache.replays == 1
+    }
+
+    def "execute rejects a key reused with a different request" () {
+        given:
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+        idempotencyCache.execute("source", "key", "other", { executions++; Single.just(null) }).subscribe(second)
+
+        then:
+        executions == 1
+        second.getOnErrorEvents().get(0) instanceof IdempotencyKeyReusedException
+    }
+
+    def "execute scopes keys per source account" () {
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+        idempotencyCache.execute("other", "key", "other", { executions++; Single.just(null) }).toBlocking().value()
+
+        then:
+        executions == 2
+    }
+
+    def "execute replays a failed transfer outcome" () {
+        given:
+        TestSubscriber first = new TestSubscriber()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.error(new InsufficientAccountBalanceException()) }).subscribe(first)
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).subscribe(second)
+
+        then:
+        executions == 1
+        first.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+        second.getOnErrorEvents().get(0) instanceof InsufficientAccountBalanceException
+    }
+
+    def "execute runs the operation again after an unexpected error" () {
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.error(new IllegalStateException()) }).subscribe(new TestSubscriber())
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+
+        then:
+        executions == 2
+    }
+
+    def "concurrent duplicates share one in-flight execution" () {
+        given:
+        PublishSubject<Void> result = PublishSubject.create()
+        TestSubscriber first = new TestSubscriber()
+        TestSubscriber second = new TestSubscriber()
+
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; result.toSingle() }).subscribe(first)
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; result.toSingle() }).subscribe(second)
+        result.onNext(null)
+        result.onCompleted()
+
+        then:
+        executions == 1
+        first.getOnCompletedEvents().size() == 1
+        second.getOnCompletedEvents().size() == 1
+    }
+
+    def "execute runs the operation again once the outcome has expired" () {
+        when:
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+        now = 1000
+        idempotencyCache.execute("source", "key", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+
+        then:
+        executions == 2
+    }
+
+    def "evicts the least recently used key once maxSize is exceeded" () {
+        when:
+        ["a", "b", "c"].each { key -> idempotencyCache.execute("source", key, "fingerprint", { Single.just(null) }).toBlocking().value() }
+        idempotencyCache.execute("source", "a", "fingerprint", { executions++; Single.just(null) }).toBlocking().value()
+
+        then:
+        idempotencyCache.size() == 2
+        executions == 1
+    }
+}
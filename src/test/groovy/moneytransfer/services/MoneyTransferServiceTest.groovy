@@ -3,6 +3,12 @@ package moneytransfer.services
 import moneytransfer.database.AccountBalanceRepository
 import moneytransfer.database.AccountRepository
 import moneytransfer.exceptions.InvalidAccountException
+import moneytransfer.models.BatchMode
+import moneytransfer.models.ErrorCode
+import moneytransfer.models.OpeningBalance
+import moneytransfer.models.Transfer
+import moneytransfer.models.TransferResult
+import moneytransfer.models.TransferStatus
 import rx.Single
 import rx.observers.TestSubscriber
 import spock.lang.Specification
@@ -72,4 +78,58 @@ class MoneyTransferServiceTest extends Specification {
         then:
         transferMoneyExecuted
     }
+
+    def "transferMoney does not look up accounts if accountBalanceRepository checks that they exist" () {
+        given:
+        accountBalanceRepository.checksAccountsExist() >> true
+
+        when:
+        moneyTransferService.transferMoney(sourceAccount, destinationAccount, amount, currency).toBlocking().value()
+
+        then:
+        0 * accountRepository.doesAccountExist(_)
+        1 * accountBalanceRepository.transferMoney(sourceAccount, destinationAccount, amount, currency) >> Single.just(null)
+    }
+
+    def "transferMoneyBatch fails transfers with unknown accounts and only passes valid ones to the repository in BEST_EFFORT mode" () {
+        given:
+        def validTransfer = new Transfer(sourceAccount, destinationAccount, amount, currency)
+        def invalidTransfer = new Transfer(sourceAccount, "22554411", amount, currency)
+        accountRepository.findExistingAccounts(_) >> Single.just([sourceAccount, destinationAccount] as Set)
+
+        when:
+        def results = moneyTransferService.transferMoneyBatch([invalidTransfer, validTransfer], BatchMode.BEST_EFFORT).toBlocking().value()
+
+        then:
+        1 * accountBalanceRepository.transferMoneyBatch([validTransfer], BatchMode.BEST_EFFORT) >> Single.just([TransferResult.success()])
+        results*.status == [TransferStatus.FAILED, TransferStatus.SUCCESS]
+        results[0].errorCode == ErrorCode.INVALID_ACCOUNT
+    }
+
+    def "transferMoneyBatch does not execute any transfer in ALL_OR_NOTHING mode when an account does not exist" () {
+        given:
+        def validTransfer = new Transfer(sourceAccount, destinationAccount, amount, currency)
+        def invalidTransfer = new Transfer(sourceAccount, "22554411", amount, currency)
+        accountRepository.findExistingAccounts(_) >> Single.just([sourceAccount, destinationAccount] as Set)
+
+        when:
+        def results = moneyTransferService.transferMoneyBatch([validTransfer, invalidTransfer], BatchMode.ALL_OR_NOTHING).toBlocking().value()
+
+        then:
+        0 * accountBalanceRepository.transferMoneyBatch(_, _)
+        results*.status == [TransferStatus.ROLLED_BACK, TransferStatus.FAILED]
+        results[1].errorCode == ErrorCode.INVALID_ACCOUNT
+    }
+
+    def "importOpeningBalances invalidates the cached lookups of the accounts it imported" () {
+        given:
+        def openingBalances = [new OpeningBalance(sourceAccount, currency, amount), new OpeningBalance(destinationAccount, currency, amount)]
+        accountBalanceRepository.importOpeningBalances(openingBalances) >> Single.just([null, ErrorCode.MONEY_OVERFLOW])
+
+        when:
+        moneyTransferService.importOpeningBalances(openingBalances).toBlocking().value()
+
+        then:
+        1 * accountRepository.invalidate({ it == [sourceAccount] as Set })
+    }
 }
@@ -0,0 +1,168 @@
+package moneytransfer.services
+
+import moneytransfer.database.AccountBalanceRepository
+import moneytransfer.database.BalanceScan
+import moneytransfer.metrics.Metrics
+import moneytransfer.models.ErrorCode
+import rx.Single
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+class ReconciliationJobTest extends Specification {
+
+    AccountBalanceRepository accountBalanceRepository = Mock(AccountBalanceRepository)
+
+    ReconciliationJob reconciliationJob = new ReconciliationJob(accountBalanceRepository, new Metrics(), 4, 100, 0)
+
+    def "reports a consistent ledger after a single scan" () {
+        given:
+        1 * accountBalanceRepository.scanBalances(4, 100) >> Single.just(scan("10.50", ["1": "4", "2": "6.5"]))
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        report.consistent
+        !report.rescanned
+        report.rowsScanned == 2
+        report.partitions == 4
+        report.currencies*.currency == ["GBP"]
+        report.currencies[0].expectedTotal == "10.5"
+        report.currencies[0].actualTotal == "10.5"
+        report.currencies[0].drift == "0"
+        reconciliationJob.status().lastReport == report
+        !reconciliationJob.status().running
+    }
+
+    def "scans again when it finds drift and reports the second scan" () {
+        given:
+        2 * accountBalanceRepository.scanBalances(4, 100) >>> [
+            Single.just(scan("10", ["1": "4", "2": "7"])),
+            Single.just(scan("10", ["1": "4", "2": "6"]))
+        ]
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        report.consistent
+        report.rescanned
+        report.rowsScanned == 4
+    }
+
+    def "reports drift that is still there after the second scan" () {
+        given:
+        2 * accountBalanceRepository.scanBalances(4, 100) >> Single.just(scan("10", ["1": "4", "2": "7"]))
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        !report.consistent
+        report.currencies[0].drift == "1"
+    }
+
+    def "baselines a currency without a supply once a second scan finds the same total" () {
+        given:
+        2 * accountBalanceRepository.scanBalances(4, 100) >>> [
+            Single.just(scan(null, ["1": "4", "2": "6"])),
+            Single.just(scan(null, ["1": "3", "2": "7"]))
+        ]
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        1 * accountBalanceRepository.baselineCurrencySupply({ it == [GBP: new BigDecimal("10")] }) >> Single.just(null)
+        report.consistent
+        report.rescanned
+        report.currencies[0].baselined
+        report.currencies[0].expectedTotal == "10"
+    }
+
+    def "does not baseline a currency whose total changed between scans" () {
+        given:
+        2 * accountBalanceRepository.scanBalances(4, 100) >>> [
+            Single.just(scan(null, ["1": "4", "2": "6"])),
+            Single.just(scan(null, ["1": "4", "2": "7"]))
+        ]
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        0 * accountBalanceRepository.baselineCurrencySupply(_)
+        !report.consistent
+        !report.currencies[0].baselined
+        report.currencies[0].expectedTotal == null
+        report.currencies[0].drift == null
+    }
+
+    def "does not baseline a currency while another currency still drifts" () {
+        given:
+        def drifting = { -> def scan = scan(null, ["1": "10"]); scan.add("1", "USD", new BigDecimal("5")); scan.addSupply("USD", new BigDecimal("4")); scan }
+        2 * accountBalanceRepository.scanBalances(4, 100) >>> [Single.just(drifting()), Single.just(drifting())]
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        0 * accountBalanceRepository.baselineCurrencySupply(_)
+        !report.consistent
+    }
+
+    def "reports negative balances as inconsistent" () {
+        given:
+        1 * accountBalanceRepository.scanBalances(4, 100) >> Single.just(scan("10", ["1": "12", "2": "-2"]))
+
+        when:
+        def report = reconciliationJob.trigger().toBlocking().value()
+
+        then:
+        !report.consistent
+        report.currencies[0].negativeBalances == 1
+        report.negativeBalanceAccounts == ["2"]
+    }
+
+    def "joins the running reconciliation instead of starting another one" () {
+        given:
+        def scanned = PublishSubject.create()
+        1 * accountBalanceRepository.scanBalances(4, 100) >> scanned.toSingle()
+
+        when:
+        def first = reconciliationJob.trigger()
+        def second = reconciliationJob.trigger()
+
+        then:
+        reconciliationJob.status().running
+
+        when:
+        scanned.onNext(scan("1", ["1": "1"]))
+        scanned.onCompleted()
+
+        then:
+        first.toBlocking().value().is(second.toBlocking().value())
+        !reconciliationJob.status().running
+    }
+
+    def "records that the repository cannot be reconciled" () {
+        given:
+        accountBalanceRepository.scanBalances(4, 100) >> Single.error(new UnsupportedOperationException())
+
+        when:
+        reconciliationJob.trigger()
+
+        then:
+        !reconciliationJob.status().running
+        reconciliationJob.status().lastError == ErrorCode.RECONCILIATION_NOT_SUPPORTED
+    }
+
+    private static BalanceScan scan(String supply, Map<String, String> balances) {
+        def scan = new BalanceScan()
+        balances.each { accountId, balance -> scan.add(accountId, "GBP", new BigDecimal(balance)) }
+        if (supply != null) {
+            scan.addSupply("GBP", new BigDecimal(supply))
+        }
+        return scan
+    }
+}
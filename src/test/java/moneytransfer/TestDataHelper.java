@@ -0,0 +1,18 @@
+package moneytransfer;
+
+import rx.Single;
+
+import java.math.BigDecimal;
+
+public interface TestDataHelper {
+
+    Single<Void> dropTables();
+
+    Single<Void> clearTables();
+
+    Single<Void> insertAccount(String accountId);
+
+    Single<Void> insertAccountBalance(String accountId, String currency, BigDecimal balance);
+
+    Single<BigDecimal> getAccountBalance(String accountId, String currency);
+}
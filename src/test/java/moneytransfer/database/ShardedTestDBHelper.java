@@ -0,0 +1,56 @@
+package moneytransfer.database;
+
+import moneytransfer.TestDataHelper;
+import rx.Observable;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class ShardedTestDBHelper implements TestDataHelper {
+
+    private final List<TestDBHelper> shards;
+    private final ShardRing shardRing;
+
+    public ShardedTestDBHelper(List<TestDBHelper> shards, ShardRing shardRing) {
+        this.shards = shards;
+        this.shardRing = shardRing;
+    }
+
+    @Override
+    public Single<Void> dropTables() {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.dropTables().toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Void> clearTables() {
+        return Observable.from(shards)
+            .concatMap((shard) -> shard.clearTables().toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Void> insertAccount(String accountId) {
+        return shardOf(accountId).insertAccount(accountId);
+    }
+
+    @Override
+    public Single<Void> insertAccountBalance(String accountId, String currency, BigDecimal balance) {
+        return shardOf(accountId).insertAccountBalance(accountId, currency, balance);
+    }
+
+    @Override
+    public Single<BigDecimal> getAccountBalance(String accountId, String currency) {
+        return shardOf(accountId).getAccountBalance(accountId, currency);
+    }
+
+    private TestDBHelper shardOf(String accountId) {
+        return shards.get(shardRing.shardOf(accountId));
+    }
+}
@@ -3,11 +3,12 @@ package moneytransfer.database;
 import io.vertx.core.json.JsonArray;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import moneytransfer.TestDataHelper;
 import rx.Single;
 
 import java.math.BigDecimal;
 
-public class TestDBHelper {
+public class TestDBHelper implements TestDataHelper {
 
     private final JDBCClient jdbcClient;
 
@@ -15,30 +16,67 @@ public class TestDBHelper {
         this.jdbcClient = jdbcClient;
     }
 
+    @Override
     public Single<Void> dropTables() {
-        return executeUpdate("DROP TABLE account_balance")
+        return executeUpdate("DROP TABLE IF EXISTS schema_version")
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS idempotency_key"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS transfer_out"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS transfer_in"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS transfer_journal"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS currency_supply"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE IF EXISTS account_balance_stripe"))
+            .flatMap((__) ->
+                executeUpdate("DROP TABLE account_balance"))
             .onErrorResumeNext((__) -> Single.just(null))
             .flatMap((__) ->
                 executeUpdate("DROP TABLE account"));
     }
 
+    @Override
     public Single<Void> clearTables() {
-        return executeUpdate("DELETE FROM account_balance")
+        return executeUpdate("DELETE FROM idempotency_key")
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM transfer_out"))
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM transfer_in"))
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM transfer_journal"))
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM currency_supply"))
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM account_balance_stripe"))
+            .onErrorResumeNext((__) -> Single.just(null))
+            .flatMap((__) ->
+                executeUpdate("DELETE FROM account_balance"))
             .onErrorResumeNext((__) -> Single.just(null))
             .flatMap((__) ->
                 executeUpdate("DELETE FROM account"));
     }
 
+    @Override
     public Single<Void> insertAccount(String accountId) {
         String insertAccountStatement = "INSERT INTO account ( account_id ) VALUES ( ? )";
         return executeUpdate(insertAccountStatement, accountId);
     }
 
+    @Override
     public Single<Void> insertAccountBalance(String accountId, String currency, BigDecimal balance) {
         String insertAccountBalanceStatement = "INSERT INTO account_balance ( account_id, currency, balance ) VALUES ( ?, ?, CAST(? AS DECIMAL(65,10)) )";
         return executeUpdate(insertAccountBalanceStatement, accountId, currency, balance.toString());
     }
 
+    @Override
     public Single<BigDecimal> getAccountBalance(String accountId, String currency) {
         String getAccountBalanceQuery = "SELECT CAST(balance AS char(255)) from account_balance where account_id = ? AND currency = ?";
         return executeQuery(getAccountBalanceQuery, accountId, currency)
@@ -46,6 +84,20 @@ public class TestDBHelper {
             .map(BigDecimal::new);
     }
 
+    public Single<Long> countRows(String table) {
+        return executeQuery("SELECT COUNT(*) FROM " + table)
+            .map((resultSet) -> resultSet.getResults().get(0).getLong(0));
+    }
+
+    public Single<Void> backdateIdempotencyKeys(long seconds) {
+        return executeUpdate("UPDATE idempotency_key SET created_at = created_at - INTERVAL ? SECOND", seconds);
+    }
+
+    public Single<Void> backdateCrossShardTransfers(long seconds) {
+        return executeUpdate("UPDATE transfer_out SET created_at = created_at - INTERVAL ? SECOND", seconds)
+            .flatMap((__) -> executeUpdate("UPDATE transfer_in SET created_at = created_at - INTERVAL ? SECOND", seconds));
+    }
+
     private Single<Void> executeUpdate(String statement, Object... params) {
         JsonArray jsonParams = new JsonArray();
         for (Object param : params) {
@@ -0,0 +1,65 @@
+package moneytransfer.ledger;
+
+import moneytransfer.TestDataHelper;
+import rx.Observable;
+import rx.Single;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class TestLedgerHelper implements TestDataHelper {
+
+    private final InMemoryLedger ledger;
+    private final Path directory;
+
+    public TestLedgerHelper(InMemoryLedger ledger, Path directory) {
+        this.ledger = ledger;
+        this.directory = directory;
+    }
+
+    @Override
+    public Single<Void> dropTables() {
+        return Single.fromCallable(() -> {
+            ledger.close();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                    try {
+                        Files.delete(path);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Single<Void> clearTables() {
+        return Observable.from(ledger.getAccountIds())
+            .flatMap(accountId -> ledger.deleteAccount(accountId).toObservable())
+            .toList()
+            .toSingle()
+            .map((__) -> null);
+    }
+
+    @Override
+    public Single<Void> insertAccount(String accountId) {
+        return ledger.createAccount(accountId);
+    }
+
+    @Override
+    public Single<Void> insertAccountBalance(String accountId, String currency, BigDecimal balance) {
+        return ledger.deposit(accountId, currency, balance);
+    }
+
+    @Override
+    public Single<BigDecimal> getAccountBalance(String accountId, String currency) {
+        return Single.fromCallable(() -> ledger.getBalance(accountId, currency));
+    }
+}
@@ -0,0 +1,222 @@
+package moneytransfer.loadtest;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.rxjava.core.Context;
+import io.vertx.rxjava.core.Vertx;
+import io.vertx.rxjava.core.http.HttpClient;
+import io.vertx.rxjava.core.http.HttpClientRequest;
+import io.vertx.rxjava.ext.jdbc.JDBCClient;
+import moneytransfer.MainVerticle;
+import moneytransfer.database.Database;
+import moneytransfer.database.MySqlJdbcClientFactory;
+import moneytransfer.ledger.InMemoryLedger;
+import moneytransfer.money.CurrencyScales;
+import moneytransfer.money.FixedPointMoney;
+import org.HdrHistogram.Recorder;
+import rx.Single;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class LoadGenerator {
+
+    private static final String CURRENCY = "GBP";
+    private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final Vertx vertx;
+    private final JsonObject config;
+    private final TransferScenario scenario;
+    private final Random random;
+
+    LoadGenerator(Vertx vertx, JsonObject config) {
+        this.vertx = vertx;
+        this.config = config;
+        this.scenario = TransferScenario.create(config);
+        this.random = new Random(config.getLong("seed", 42L));
+    }
+
+    public static void main(String[] args) throws Exception {
+        JsonObject config = new JsonObject();
+        if (args.length > 0) {
+            config = new JsonObject(new String(Files.readAllBytes(Paths.get(args[0]))));
+        }
+
+        Vertx vertx = Vertx.vertx();
+        LoadGenerator loadGenerator = new LoadGenerator(vertx, config);
+        if (config.getBoolean("startApplication", true)) {
+            loadGenerator.startApplication();
+        }
+
+        JsonArray rates = config.getJsonArray("rates", new JsonArray().add(config.getDouble("rate", 1000.0)));
+        for (Object rate : rates) {
+            loadGenerator.run(((Number) rate).doubleValue()).print(System.out);
+        }
+        System.exit(0);
+    }
+
+    void startApplication() throws Exception {
+        JsonObject applicationConfig = config.getJsonObject("application", new JsonObject());
+        Database.start();
+        boolean inMemory = "inMemory".equals(applicationConfig.getString("accountBalanceRepository"));
+        if (!inMemory) {
+            JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx);
+            executeBatch(jdbcClient, "DROP TABLE IF EXISTS account_balance", null)
+                .flatMap((__) -> executeBatch(jdbcClient, "DROP TABLE IF EXISTS account", null))
+                .toBlocking().value();
+        }
+
+        vertx.rxDeployVerticle(MainVerticle.class.getName(), new DeploymentOptions().setConfig(applicationConfig)).toBlocking().value();
+
+        BigDecimal initialBalance = new BigDecimal(config.getString("initialBalance", "1000000"));
+        if (inMemory) {
+            InMemoryLedger ledger = InMemoryLedger.createShared(vertx, applicationConfig.getJsonObject("ledger", new JsonObject()));
+            for (int i = 0; i < scenario.accountCount; i++) {
+                String accountId = TransferScenario.accountId(i);
+                ledger.createAccount(accountId).toBlocking().value();
+                if (ledger.getBalance(accountId, CURRENCY) == null) {
+                    ledger.deposit(accountId, CURRENCY, initialBalance).toBlocking().value();
+                }
+            }
+            return;
+        }
+
+        Object balanceParam = initialBalance.toPlainString();
+        if ("fixedPoint".equals(applicationConfig.getString("accountBalanceRepository"))) {
+            CurrencyScales currencyScales = CurrencyScales.fromConfig(applicationConfig.getJsonObject("money", new JsonObject()));
+            balanceParam = FixedPointMoney.toUnits(initialBalance, currencyScales.scaleOf(CURRENCY));
+        }
+        List<JsonArray> accountParams = new ArrayList<>();
+        List<JsonArray> balanceParams = new ArrayList<>();
+        for (int i = 0; i < scenario.accountCount; i++) {
+            accountParams.add(new JsonArray().add(TransferScenario.accountId(i)));
+            balanceParams.add(new JsonArray().add(TransferScenario.accountId(i)).add(CURRENCY).add(balanceParam));
+        }
+        JDBCClient jdbcClient = MySqlJdbcClientFactory.createMySqlJdbcClient(vertx);
+        executeBatch(jdbcClient, "INSERT INTO account ( account_id ) VALUES ( ? )", accountParams)
+            .flatMap((__) -> executeBatch(jdbcClient, "INSERT INTO account_balance ( account_id, currency, balance ) VALUES ( ?, ?, ? )", balanceParams))
+            .toBlocking().value();
+    }
+
+    LoadReport run(double rate) {
+        String host = config.getString("host", "localhost");
+        int port = config.getInteger("port", 1234);
+        long warmupNanos = TimeUnit.SECONDS.toNanos(config.getLong("warmupSeconds", 10L));
+        long durationNanos = TimeUnit.SECONDS.toNanos(config.getLong("durationSeconds", 30L));
+        long requestTimeoutMillis = config.getLong("requestTimeoutMillis", 30000L);
+        double insufficientFundsRatio = config.getDouble("insufficientFundsRatio", 0.0);
+        String amount = config.getString("amount", "0.01");
+        String insufficientAmount = config.getString("insufficientAmount", "1000000000000");
+
+        HttpClient httpClient = vertx.createHttpClient(new HttpClientOptions()
+            .setDefaultHost(host)
+            .setDefaultPort(port)
+            .setMaxPoolSize(config.getInteger("connections", 64))
+            .setMaxWaitQueueSize(-1));
+        Context context = vertx.getOrCreateContext();
+
+        Recorder correctedLatencies = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+        Recorder uncorrectedLatencies = new Recorder(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        AtomicLong outstanding = new AtomicLong();
+        long sent = 0;
+
+        int[] accounts = new int[2];
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + warmupNanos;
+        long endNanos = measureFromNanos + durationNanos;
+        for (long i = 0; ; i++) {
+            long intendedSendNanos = startNanos + (long) (i * TimeUnit.SECONDS.toNanos(1) / rate);
+            if (intendedSendNanos >= endNanos) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intendedSendNanos) {
+                LockSupport.parkNanos(intendedSendNanos - now);
+            }
+
+            scenario.nextAccounts(random, accounts);
+            String body = new JsonObject()
+                .put("sourceAccount", TransferScenario.accountId(accounts[0]))
+                .put("destinationAccount", TransferScenario.accountId(accounts[1]))
+                .put("amount", random.nextDouble() < insufficientFundsRatio ? insufficientAmount : amount)
+                .put("currency", CURRENCY)
+                .encode();
+            boolean measured = intendedSendNanos >= measureFromNanos;
+            if (measured) {
+                sent++;
+            }
+            outstanding.incrementAndGet();
+            context.runOnContext((__) -> {
+                long actualSendNanos = System.nanoTime();
+                boolean[] completed = new boolean[1];
+                HttpClientRequest request = httpClient.post("/transfer-money", response -> response.bodyHandler(responseBody -> {
+                    if (!completed[0]) {
+                        completed[0] = true;
+                        String outcome = response.statusCode() == 200 ? "OK" : errorCode(response.statusCode(), responseBody.toString());
+                        complete(measured, intendedSendNanos, actualSendNanos, outcome, correctedLatencies, uncorrectedLatencies, outcomes, outstanding);
+                    }
+                }));
+                request.exceptionHandler(throwable -> {
+                    if (!completed[0]) {
+                        completed[0] = true;
+                        complete(measured, intendedSendNanos, actualSendNanos, throwable.getClass().getSimpleName(),
+                            correctedLatencies, uncorrectedLatencies, outcomes, outstanding);
+                    }
+                });
+                request.setTimeout(requestTimeoutMillis);
+                request.putHeader("Content-Type", "application/json");
+                request.end(body);
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMillis);
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        httpClient.close();
+
+        Map<String, Long> outcomeCounts = new ConcurrentHashMap<>();
+        outcomes.forEach((outcome, count) -> outcomeCounts.put(outcome, count.sum()));
+        return new LoadReport(config.getString("scenario", "uniform"), rate, durationNanos, sent,
+            correctedLatencies.getIntervalHistogram(), uncorrectedLatencies.getIntervalHistogram(), outcomeCounts, outstanding.get());
+    }
+
+    private static void complete(boolean measured, long intendedSendNanos, long actualSendNanos, String outcome,
+                                 Recorder correctedLatencies, Recorder uncorrectedLatencies, Map<String, LongAdder> outcomes,
+                                 AtomicLong outstanding) {
+        long now = System.nanoTime();
+        if (measured) {
+            correctedLatencies.recordValue(Math.min(now - intendedSendNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+            uncorrectedLatencies.recordValue(Math.min(now - actualSendNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+            outcomes.computeIfAbsent(outcome, (__) -> new LongAdder()).increment();
+        }
+        outstanding.decrementAndGet();
+    }
+
+    private static String errorCode(int statusCode, String responseBody) {
+        try {
+            return new JsonObject(responseBody).getString("errorCode", "HTTP " + statusCode);
+        } catch (RuntimeException ex) {
+            return "HTTP " + statusCode;
+        }
+    }
+
+    private static Single<Void> executeBatch(JDBCClient jdbcClient, String statement, List<JsonArray> batchParams) {
+        return jdbcClient.rxGetConnection().flatMap(sqlConnection ->
+            (batchParams == null ? sqlConnection.rxExecute(statement) : sqlConnection.rxBatchWithParams(statement, batchParams).map((counts) -> (Void) null))
+                .doAfterTerminate(sqlConnection::close));
+    }
+}
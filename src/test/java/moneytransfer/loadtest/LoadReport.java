@@ -0,0 +1,59 @@
+package moneytransfer.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+class LoadReport {
+
+    private final String scenario;
+    private final double targetRate;
+    private final long durationNanos;
+    private final long sent;
+    private final Histogram correctedLatencies;
+    private final Histogram uncorrectedLatencies;
+    private final Map<String, Long> outcomes;
+    private final long unfinished;
+
+    LoadReport(String scenario, double targetRate, long durationNanos, long sent, Histogram correctedLatencies,
+               Histogram uncorrectedLatencies, Map<String, Long> outcomes, long unfinished) {
+        this.scenario = scenario;
+        this.targetRate = targetRate;
+        this.durationNanos = durationNanos;
+        this.sent = sent;
+        this.correctedLatencies = correctedLatencies;
+        this.uncorrectedLatencies = uncorrectedLatencies;
+        this.outcomes = new TreeMap<>(outcomes);
+        this.unfinished = unfinished;
+    }
+
+    void print(PrintStream out) {
+        long completed = correctedLatencies.getTotalCount();
+        double seconds = durationNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        out.printf("Scenario %s at %.0f requests/s for %.0fs%n", scenario, targetRate, seconds);
+        out.printf("Sent %d, completed %d (%.1f/s), unfinished %d%n", sent, completed, completed / seconds, unfinished);
+        out.printf("%-24s %10s %10s %10s %10s %10s%n", "Latency (ms)", "p50", "p90", "p99", "p99.9", "max");
+        printLatencies(out, "from intended send time", correctedLatencies);
+        printLatencies(out, "from actual send time", uncorrectedLatencies);
+        out.println("Outcomes:");
+        outcomes.forEach((outcome, count) ->
+            out.printf("  %-32s %10d %7.2f%%%n", outcome, count, completed == 0 ? 0 : 100.0 * count / completed));
+        out.println();
+    }
+
+    private void printLatencies(PrintStream out, String label, Histogram histogram) {
+        out.printf("%-24s %10.3f %10.3f %10.3f %10.3f %10.3f%n", label,
+            millis(histogram.getValueAtPercentile(50)),
+            millis(histogram.getValueAtPercentile(90)),
+            millis(histogram.getValueAtPercentile(99)),
+            millis(histogram.getValueAtPercentile(99.9)),
+            millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
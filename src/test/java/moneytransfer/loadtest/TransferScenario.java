@@ -0,0 +1,101 @@
+package moneytransfer.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Random;
+
+abstract class TransferScenario {
+
+    final int accountCount;
+
+    TransferScenario(int accountCount) {
+        this.accountCount = accountCount;
+    }
+
+    static TransferScenario create(JsonObject config) {
+        int accountCount = config.getInteger("accounts", 1000);
+        String scenario = config.getString("scenario", "uniform");
+        switch (scenario) {
+            case "uniform":
+                return new Uniform(accountCount);
+            case "zipfian":
+                return new Zipfian(accountCount, config.getDouble("zipfExponent", 1.0));
+            case "opposingPairs":
+                return new OpposingPairs(accountCount, config.getInteger("pairs", 10));
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    static String accountId(int index) {
+        return String.format("%08d", index);
+    }
+
+    abstract void nextAccounts(Random random, int[] accounts);
+
+    private static class Uniform extends TransferScenario {
+
+        private Uniform(int accountCount) {
+            super(accountCount);
+        }
+
+        @Override
+        void nextAccounts(Random random, int[] accounts) {
+            accounts[0] = random.nextInt(accountCount);
+            accounts[1] = (accounts[0] + 1 + random.nextInt(accountCount - 1)) % accountCount;
+        }
+    }
+
+    private static class Zipfian extends TransferScenario {
+
+        private final double[] cumulativeProbabilities;
+
+        private Zipfian(int accountCount, double exponent) {
+            super(accountCount);
+            cumulativeProbabilities = new double[accountCount];
+            double total = 0;
+            for (int rank = 0; rank < accountCount; rank++) {
+                total += 1 / Math.pow(rank + 1, exponent);
+                cumulativeProbabilities[rank] = total;
+            }
+            for (int rank = 0; rank < accountCount; rank++) {
+                cumulativeProbabilities[rank] /= total;
+            }
+        }
+
+        @Override
+        void nextAccounts(Random random, int[] accounts) {
+            accounts[0] = nextRank(random);
+            do {
+                accounts[1] = nextRank(random);
+            } while (accounts[1] == accounts[0]);
+        }
+
+        private int nextRank(Random random) {
+            int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, accountCount - 1);
+        }
+    }
+
+    private static class OpposingPairs extends TransferScenario {
+
+        private final int pairCount;
+
+        private OpposingPairs(int accountCount, int pairCount) {
+            super(accountCount);
+            if (pairCount * 2 > accountCount) {
+                throw new IllegalArgumentException("opposingPairs needs at least " + pairCount * 2 + " accounts");
+            }
+            this.pairCount = pairCount;
+        }
+
+        @Override
+        void nextAccounts(Random random, int[] accounts) {
+            int pair = random.nextInt(pairCount);
+            boolean forwards = random.nextBoolean();
+            accounts[0] = 2 * pair + (forwards ? 0 : 1);
+            accounts[1] = 2 * pair + (forwards ? 1 : 0);
+        }
+    }
+}